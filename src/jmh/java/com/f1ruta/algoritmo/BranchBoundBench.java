@@ -0,0 +1,59 @@
+package com.f1ruta.algoritmo;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Branch & Bound secuencial vs. paralelo con cada cota inferior, y Held-Karp como referencia exacta.
+ * Desde 50 circuitos Branch & Bound corta por tiempo (se mide el límite, no la búsqueda), por eso
+ * se queda en 10 y 20; la calidad se imprime al final de cada trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class BranchBoundBench {
+
+    @Param({"10", "20"})
+    int n;
+
+    /** 1 = secuencial, 0 = un trabajador por núcleo; 4 fija la cantidad aunque haya menos núcleos */
+    @Param({"1", "4", "0"})
+    int trabajadores;
+
+    @Param({"UNO_ARBOL", "DOS_ARISTAS_INCREMENTAL"})
+    CotaInferior.Tipo cota;
+
+    SnapshotCircuitos circuitos;
+    ForkJoinPool pool;
+    BranchBoundTSP.Config config;
+    double km;
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        circuitos = GeneradorCircuitos.generar(n);
+        circuitos.matriz();
+        int hilos = trabajadores > 0 ? trabajadores : Runtime.getRuntime().availableProcessors();
+        pool = hilos == 1 ? null : new ForkJoinPool(hilos);
+        config = new BranchBoundTSP.Config(hilos, 0, 0, cota);
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() {
+        if (pool != null) pool.shutdown();
+        double optimo = HeldKarpTSP.calcularRuta(circuitos, circuitos.nombre(0)).kmTotales();
+        System.out.printf("%ncalidad branch-bound n=%d trabajadores=%d cota=%s: %.0f km (optimo %.0f km)%n",
+                n, trabajadores, cota, km, optimo);
+    }
+
+    @Benchmark
+    public BranchBoundTSP.Resultado branchBound() {
+        BranchBoundTSP.Resultado r = BranchBoundTSP.calcularRuta(circuitos, circuitos.nombre(0), config, pool);
+        km = r.kmTotales();
+        return r;
+    }
+}
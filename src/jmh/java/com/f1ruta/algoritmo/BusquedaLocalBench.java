@@ -0,0 +1,53 @@
+package com.f1ruta.algoritmo;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Construcción Nearest Neighbor y búsqueda local (2-opt + Or-opt) desde un inicio.
+ * La calidad de la ruta mejorada se imprime al final de cada trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class BusquedaLocalBench {
+
+    @Param({"10", "20", "50", "200", "1000", "10000"})
+    int n;
+
+    DistanceMatrix matriz;
+    BusquedaLocal busqueda;
+    int[] tourNN;
+    int[] ruta;
+    double km;
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        matriz = GeneradorCircuitos.generar(n).matriz();
+        busqueda = new BusquedaLocal(matriz);
+        tourNN = RutaF1TSP.vecinoMasCercano(matriz, 0);
+        ruta = new int[n];
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() {
+        System.out.printf("%ncalidad busqueda local n=%d: NN %.0f km -> %.0f km%n",
+                n, busqueda.largo(tourNN), km);
+    }
+
+    @Benchmark
+    public int[] vecinoMasCercano() {
+        return RutaF1TSP.vecinoMasCercano(matriz, 0);
+    }
+
+    @Benchmark
+    public double mejorar() {
+        System.arraycopy(tourNN, 0, ruta, 0, n);
+        km = busqueda.mejorar(ruta);
+        return km;
+    }
+}
@@ -0,0 +1,44 @@
+package com.f1ruta.algoritmo;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/** Construcción de la matriz de distancias y de las listas de vecinos cercanos */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class DistanceMatrixBench {
+
+    @Param({"10", "20", "50", "200", "1000", "10000"})
+    int n;
+
+    double[] lat;
+    double[] lon;
+    DistanceMatrix matriz;
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        SnapshotCircuitos cs = GeneradorCircuitos.generar(n);
+        lat = new double[n];
+        lon = new double[n];
+        for (int i = 0; i < n; i++) {
+            lat[i] = cs.latitud(i);
+            lon[i] = cs.longitud(i);
+        }
+        matriz = DistanceMatrix.de(lat, lon, 1);
+    }
+
+    @Benchmark
+    public DistanceMatrix construir() {
+        return new DistanceMatrix(lat, lon, 1);
+    }
+
+    @Benchmark
+    public VecinosCercanos vecinos() {
+        return new VecinosCercanos(matriz, BusquedaLocal.VECINOS);
+    }
+}
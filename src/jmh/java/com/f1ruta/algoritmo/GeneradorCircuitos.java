@@ -0,0 +1,47 @@
+package com.f1ruta.algoritmo;
+
+import java.util.Random;
+
+/**
+ * Sets sintéticos de circuitos para los benchmarks: misma semilla, mismo set.
+ * La mitad de los puntos se agrupa alrededor de unos pocos centros (como el calendario real,
+ * concentrado en Europa) y el resto se reparte uniforme entre las latitudes -55 y 65.
+ */
+final class GeneradorCircuitos {
+
+    static final long SEMILLA = 42L;
+
+    private GeneradorCircuitos() {
+    }
+
+    static SnapshotCircuitos generar(int n) {
+        return generar(n, SEMILLA);
+    }
+
+    static SnapshotCircuitos generar(int n, long semilla) {
+        Random rnd = new Random(semilla);
+        int centros = Math.max(1, n / 50);
+        double[] latCentro = new double[centros];
+        double[] lonCentro = new double[centros];
+        for (int c = 0; c < centros; c++) {
+            latCentro[c] = -55 + rnd.nextDouble() * 120;
+            lonCentro[c] = -180 + rnd.nextDouble() * 360;
+        }
+
+        String[] nombres = new String[n];
+        double[] lat = new double[n];
+        double[] lon = new double[n];
+        for (int i = 0; i < n; i++) {
+            nombres[i] = String.format("Circuito %05d", i);
+            if (i % 2 == 0) {
+                int c = rnd.nextInt(centros);
+                lat[i] = Math.max(-89, Math.min(89, latCentro[c] + rnd.nextGaussian() * 4));
+                lon[i] = ((lonCentro[c] + rnd.nextGaussian() * 6 + 540) % 360) - 180;
+            } else {
+                lat[i] = -55 + rnd.nextDouble() * 120;
+                lon[i] = -180 + rnd.nextDouble() * 360;
+            }
+        }
+        return SnapshotCircuitos.de(nombres, lat, lon, 1);
+    }
+}
@@ -0,0 +1,50 @@
+package com.f1ruta.algoritmo;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/** Dijkstra (grafo completo), A* (grafo disperso de 6 vecinos) y BFS por umbral */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class GrafosBench {
+
+    @Param({"10", "20", "50", "200", "1000", "10000"})
+    int n;
+
+    @Param({"3000"})
+    double maxKm;
+
+    SnapshotCircuitos circuitos;
+    String origen;
+    String destino;
+    GrafoDisperso grafo;
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        circuitos = GeneradorCircuitos.generar(n);
+        circuitos.matriz();
+        origen = circuitos.nombre(0);
+        destino = circuitos.nombre(n - 1);
+        grafo = circuitos.grafo(6, 0);
+    }
+
+    @Benchmark
+    public DijkstraRutas.Resultado dijkstra() {
+        return DijkstraRutas.calcularRuta(circuitos, origen, destino);
+    }
+
+    @Benchmark
+    public DijkstraRutas.Resultado aEstrella() {
+        return DijkstraRutas.calcularRuta(circuitos, origen, destino, grafo);
+    }
+
+    @Benchmark
+    public BFSRutas.Resultado bfs() {
+        return BFSRutas.ejecutar(circuitos, origen, maxKm);
+    }
+}
@@ -0,0 +1,93 @@
+package com.f1ruta.algoritmo;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Triángulo de distancias con cada kernel: referencia (Haversine clásico con senos por par, la fórmula
+ * que se usaba antes), escalar (atan2 sobre vectores unitarios de {@link KernelHaversine}) y vectorial
+ * (Vector API, necesita --add-modules jdk.incubator.vector). El setup verifica que cada kernel quede
+ * dentro de {@link KernelHaversine#ERROR_MAXIMO_KM} de {@link DistanceMatrix#haversine}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class HaversineBench {
+
+    @Param({"1000", "5000"})
+    int n;
+
+    @Param({"referencia", "escalar", "vectorial"})
+    String kernel;
+
+    double[] lat, lon;
+    double[] x, y, z;
+    double[] destino;
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        if (kernel.equals("vectorial") && !KernelHaversine.VECTORIAL)
+            throw new IllegalStateException("Falta --add-modules jdk.incubator.vector para el kernel vectorial");
+        SnapshotCircuitos cs = GeneradorCircuitos.generar(n);
+        lat = new double[n];
+        lon = new double[n];
+        for (int i = 0; i < n; i++) {
+            lat[i] = cs.latitud(i);
+            lon[i] = cs.longitud(i);
+        }
+        double[][] u = KernelHaversine.unitarios(lat, lon);
+        x = u[0];
+        y = u[1];
+        z = u[2];
+        destino = new double[n];
+        verificarPrecision();
+    }
+
+    /** Compara todas las filas del kernel elegido contra DistanceMatrix.haversine */
+    private void verificarPrecision() {
+        double peor = 0;
+        for (int i = 0; i + 1 < n; i++) {
+            calcularFila(i);
+            for (int j = i + 1; j < n; j++) {
+                double error = Math.abs(destino[j] - DistanceMatrix.haversine(lat[i], lon[i], lat[j], lon[j]));
+                if (!(error <= KernelHaversine.ERROR_MAXIMO_KM))
+                    throw new IllegalStateException("Kernel " + kernel + ": error de " + error + " km en (" + i + ", " + j + ")");
+                peor = Math.max(peor, error);
+            }
+        }
+        System.out.println("Kernel " + kernel + ", n=" + n + ": peor error " + peor + " km");
+    }
+
+    private void calcularFila(int i) {
+        switch (kernel) {
+            case "referencia" -> {
+                for (int j = i + 1; j < n; j++) destino[j] = haversineClasico(lat[i], lon[i], lat[j], lon[j]);
+            }
+            case "escalar" -> KernelHaversine.filaEscalar(x, y, z, i, i + 1, n, destino, i + 1);
+            default -> KernelHaversine.filaVectorial(x, y, z, i, i + 1, n, destino, i + 1);
+        }
+    }
+
+    private static double haversineClasico(double lat1, double lon1, double lat2, double lon2) {
+        double p1 = Math.toRadians(lat1), p2 = Math.toRadians(lat2);
+        double dphi = p2 - p1;
+        double dlambda = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dphi / 2) * Math.sin(dphi / 2)
+                + Math.cos(p1) * Math.cos(p2) * Math.sin(dlambda / 2) * Math.sin(dlambda / 2);
+        return 2 * DistanceMatrix.RADIO_TIERRA_KM * Math.asin(Math.sqrt(a));
+    }
+
+    @Benchmark
+    public double triangulo() {
+        double suma = 0;
+        for (int i = 0; i + 1 < n; i++) {
+            calcularFila(i);
+            suma += destino[n - 1];
+        }
+        return suma;
+    }
+}
@@ -0,0 +1,31 @@
+package com.f1ruta.algoritmo;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/** Held-Karp exacto: solo tamaños chicos (la memoria crece como 2^n · n) */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class HeldKarpBench {
+
+    @Param({"10", "16", "20"})
+    int n;
+
+    SnapshotCircuitos circuitos;
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        circuitos = GeneradorCircuitos.generar(n);
+        circuitos.matriz();
+    }
+
+    @Benchmark
+    public HeldKarpTSP.Resultado heldKarp() {
+        return HeldKarpTSP.calcularRuta(circuitos, circuitos.nombre(0));
+    }
+}
@@ -0,0 +1,56 @@
+package com.f1ruta.algoritmo;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/** Mergesort de circuitos por cada criterio: respuesta completa y solo la permutación de índices */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class MergesortBench {
+
+    @Param({"10", "20", "50", "200", "1000", "10000", "100000"})
+    int n;
+
+    @Param({"latitud", "nombre"})
+    String criterio;
+
+    @Param({"asc", "desc"})
+    String orden;
+
+    /** 1 = secuencial, 0 = un hilo por procesador (paralelo desde el umbral) */
+    @Param({"1", "0"})
+    int hilos;
+
+    SnapshotCircuitos circuitos;
+    ForkJoinPool pool;
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        circuitos = GeneradorCircuitos.generar(n);
+        pool = hilos == 1 ? null : new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() {
+        if (pool != null) pool.shutdown();
+    }
+
+    @Benchmark
+    public MergesortCircuitos.Resultado ordenar() {
+        return MergesortCircuitos.ordenar(circuitos, criterio, orden, pool);
+    }
+
+    @Benchmark
+    public int[] indices() {
+        return MergesortCircuitos.ordenarIndices(circuitos,
+                MergesortCircuitos.Criterio.valueOf(criterio.toUpperCase(Locale.ROOT)),
+                MergesortCircuitos.Orden.valueOf(orden.toUpperCase(Locale.ROOT)), pool);
+    }
+}
@@ -0,0 +1,55 @@
+package com.f1ruta.algoritmo;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Multi-start Nearest Neighbor + búsqueda local (RutaF1TSP), secuencial y en el pool.
+ * Llega hasta 1000 circuitos: con 10000 el multi-start completo tarda minutos por operación
+ * (el bloque base, NN + búsqueda local desde un inicio, se mide hasta 10000 en {@link BusquedaLocalBench}).
+ * La calidad (km de la ruta) es determinista y se imprime al final de cada trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class NearestBench {
+
+    @Param({"10", "20", "50", "200", "1000"})
+    int n;
+
+    /** 0 = todos los inicios */
+    @Param({"0", "8"})
+    int topK;
+
+    @Param({"1", "0"})
+    int hilos;
+
+    SnapshotCircuitos circuitos;
+    ForkJoinPool pool;
+    double km;
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        circuitos = GeneradorCircuitos.generar(n);
+        circuitos.matriz().vecinos(BusquedaLocal.VECINOS);
+        pool = hilos == 1 ? null : new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() {
+        if (pool != null) pool.shutdown();
+        System.out.printf("%ncalidad nearest n=%d topK=%d hilos=%d: %.0f km%n", n, topK, hilos, km);
+    }
+
+    @Benchmark
+    public RutaF1TSP.Resultado multiStart() {
+        RutaF1TSP.Resultado r = RutaF1TSP.calcularRuta(circuitos, topK, pool);
+        km = r.kmTotales();
+        return r;
+    }
+}
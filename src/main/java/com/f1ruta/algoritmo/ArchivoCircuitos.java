@@ -0,0 +1,216 @@
+package com.f1ruta.algoritmo;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HexFormat;
+
+/**
+ * Archivo binario con las estructuras derivadas de un set de circuitos: nombres, coordenadas, triángulo de
+ * la {@link DistanceMatrix} y, si se calculó, la {@link TablaRutas}. Se nombra por la huella SHA-256 del set
+ * y al abrirlo se comparan nombres y coordenadas, así que nunca se usa la matriz de otro set;
+ * se escribe una vez y se lee con {@link FileChannel#map}: la matriz y la tabla quedan fuera del heap,
+ * en buffers de solo lectura que comparten todos los algoritmos.
+ *
+ * <pre>
+ * cabecera (96 bytes, little endian): mágico, formato, n, posición de nombres / coordenadas / matriz /
+ *                                     tabla, k y maxKm del grafo de la tabla, huella (32 bytes)
+ * nombres: por circuito, largo + bytes UTF-8 (relleno hasta múltiplo de 8)
+ * coordenadas: n latitudes y n longitudes (doubles)
+ * matriz:  n(n-1)/2 doubles, triángulo superior en el orden de DistanceMatrix (se mapea por tramos)
+ * tabla:   n² ints de predecesores (opcional)
+ * </pre>
+ */
+public final class ArchivoCircuitos {
+
+    /** "F1RUTAS1" */
+    private static final long MAGICO = 0x3153415455523146L;
+    private static final int FORMATO = 2;
+    private static final int CABECERA = 96;
+    private static final int POS_HUELLA = 64;
+    private static final ByteOrder ORDEN = ByteOrder.LITTLE_ENDIAN;
+
+    /** Qué estructuras se leyeron del archivo y se instalaron en el snapshot */
+    public record Lectura(boolean matriz, boolean tablaRutas) {}
+
+    private static final Lectura NADA = new Lectura(false, false);
+
+    private ArchivoCircuitos() {}
+
+    /** Nombre del archivo de un set de circuitos (depende solo de su contenido) */
+    public static String nombreArchivo(SnapshotCircuitos circuitos) {
+        return "circuitos-" + circuitos.huella() + ".bin";
+    }
+
+    /**
+     * Si la matriz de n circuitos entra en una {@link DistanceMatrix} (se mapea por tramos, así que puede
+     * pasar de 2 GB) y la tabla, si va, en un único mapeo
+     */
+    public static boolean puedeGuardar(int n, boolean conTabla) {
+        if ((long) n * (n - 1) / 2 > Integer.MAX_VALUE - 8) return false;
+        return !conTabla || TablaRutas.bytesNecesarios(n) <= Integer.MAX_VALUE - 8;
+    }
+
+    /**
+     * Lee el archivo y, si corresponde a este snapshot, le instala la matriz mapeada y, cuando el archivo
+     * tiene la tabla de rutas de 'grafo' (null = no interesa), también la tabla. Un archivo inexistente,
+     * de otro set o incompleto no instala nada.
+     */
+    public static Lectura abrir(Path archivo, SnapshotCircuitos circuitos, GrafoDisperso grafo) throws IOException {
+        if (!Files.isRegularFile(archivo)) return NADA;
+        int n = circuitos.size();
+        try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.READ)) {
+            long tamanio = canal.size();
+            if (tamanio < CABECERA) return NADA;
+            ByteBuffer cabecera = canal.map(FileChannel.MapMode.READ_ONLY, 0, CABECERA).order(ORDEN);
+            if (cabecera.getLong(0) != MAGICO || cabecera.getInt(8) != FORMATO || cabecera.getInt(12) != n
+                    || !Arrays.equals(huella(cabecera), HexFormat.of().parseHex(circuitos.huella()))) {
+                return NADA;
+            }
+            long posNombres = cabecera.getLong(16);
+            long posCoordenadas = cabecera.getLong(24);
+            long posMatriz = cabecera.getLong(32);
+            long posTabla = cabecera.getLong(40);
+            int grafoK = cabecera.getInt(48);
+            double grafoMaxKm = cabecera.getDouble(56);
+
+            long bytesCoordenadas = 2L * n * Double.BYTES;
+            long bytesMatriz = DistanceMatrix.celdas(n) * Double.BYTES;
+            if (posNombres < CABECERA || posCoordenadas < posNombres || posMatriz < posCoordenadas + bytesCoordenadas
+                    || posMatriz + bytesMatriz > tamanio) {
+                return NADA;
+            }
+            if (!mismosNombres(canal.map(FileChannel.MapMode.READ_ONLY, posNombres, posCoordenadas - posNombres)
+                    .order(ORDEN), circuitos)
+                    || !mismasCoordenadas(canal.map(FileChannel.MapMode.READ_ONLY, posCoordenadas, bytesCoordenadas)
+                    .order(ORDEN), circuitos)) {
+                return NADA;
+            }
+
+            MappedByteBuffer[] matriz = mapearMatriz(canal, FileChannel.MapMode.READ_ONLY, posMatriz, n);
+            circuitos.usarMatriz(new DistanceMatrix(n, circuitos.version(), doubles(matriz)));
+
+            boolean tabla = grafo != null && posTabla > 0 && grafo.size() == n
+                    && grafo.k() == grafoK && grafo.maxKm() == grafoMaxKm
+                    && posTabla + TablaRutas.bytesNecesarios(n) <= tamanio;
+            if (tabla) {
+                MappedByteBuffer previo = canal.map(FileChannel.MapMode.READ_ONLY, posTabla,
+                        TablaRutas.bytesNecesarios(n));
+                circuitos.usarTablaRutas(new TablaRutas(grafo, previo.order(ORDEN).asIntBuffer()));
+            }
+            return new Lectura(true, tabla);
+        }
+    }
+
+    private static boolean mismosNombres(ByteBuffer datos, SnapshotCircuitos circuitos) {
+        for (int i = 0; i < circuitos.size(); i++) {
+            if (datos.remaining() < Integer.BYTES) return false;
+            int largo = datos.getInt();
+            if (largo < 0 || largo > datos.remaining()) return false;
+            byte[] bytes = new byte[largo];
+            datos.get(bytes);
+            if (!new String(bytes, StandardCharsets.UTF_8).equals(circuitos.nombre(i))) return false;
+        }
+        return true;
+    }
+
+    /** Compara bit a bit: el archivo solo vale para exactamente las mismas coordenadas */
+    private static boolean mismasCoordenadas(ByteBuffer datos, SnapshotCircuitos circuitos) {
+        int n = circuitos.size();
+        for (int i = 0; i < n; i++) {
+            if (datos.getLong(i * Double.BYTES) != Double.doubleToLongBits(circuitos.latitud(i))
+                    || datos.getLong((n + i) * Double.BYTES) != Double.doubleToLongBits(circuitos.longitud(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] huella(ByteBuffer cabecera) {
+        byte[] huella = new byte[CABECERA - POS_HUELLA];
+        cabecera.get(POS_HUELLA, huella);
+        return huella;
+    }
+
+    /**
+     * Escribe el archivo del snapshot (su matriz y, si no es null, la tabla de rutas) en un temporal
+     * y lo mueve a 'archivo', así un lector nunca ve un archivo a medio escribir.
+     */
+    public static void guardar(Path archivo, SnapshotCircuitos circuitos, TablaRutas tabla) throws IOException {
+        int n = circuitos.size();
+        if (!puedeGuardar(n, tabla != null))
+            throw new IllegalArgumentException("Demasiados circuitos para guardar en un archivo mapeado: " + n);
+
+        byte[][] nombres = new byte[n][];
+        long bytesNombres = 0;
+        for (int i = 0; i < n; i++) {
+            nombres[i] = circuitos.nombre(i).getBytes(StandardCharsets.UTF_8);
+            bytesNombres += Integer.BYTES + nombres[i].length;
+        }
+        long posCoordenadas = alinear(CABECERA + bytesNombres);
+        long posMatriz = posCoordenadas + 2L * n * Double.BYTES;
+        long bytesMatriz = DistanceMatrix.celdas(n) * Double.BYTES;
+        long posTabla = tabla != null ? alinear(posMatriz + bytesMatriz) : 0;
+
+        Path temporal = archivo.resolveSibling(archivo.getFileName() + ".tmp");
+        try (FileChannel canal = FileChannel.open(temporal, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer inicio = ByteBuffer.allocate((int) posMatriz).order(ORDEN);
+            inicio.putLong(MAGICO).putInt(FORMATO).putInt(n)
+                    .putLong(CABECERA).putLong(posCoordenadas).putLong(posMatriz).putLong(posTabla)
+                    .putInt(tabla != null ? tabla.grafo().k() : 0).putInt(0)
+                    .putDouble(tabla != null ? tabla.grafo().maxKm() : 0.0)
+                    .put(HexFormat.of().parseHex(circuitos.huella()));
+            for (byte[] nombre : nombres) inicio.putInt(nombre.length).put(nombre);
+            inicio.position((int) posCoordenadas);
+            for (int i = 0; i < n; i++) inicio.putDouble(circuitos.latitud(i));
+            for (int i = 0; i < n; i++) inicio.putDouble(circuitos.longitud(i));
+            inicio.clear();
+            while (inicio.hasRemaining()) canal.write(inicio);
+
+            MappedByteBuffer[] matriz = mapearMatriz(canal, FileChannel.MapMode.READ_WRITE, posMatriz, n);
+            circuitos.matriz().copiarEn(doubles(matriz));
+            for (MappedByteBuffer tramo : matriz) tramo.force();
+
+            if (tabla != null) {
+                MappedByteBuffer previo = canal.map(FileChannel.MapMode.READ_WRITE, posTabla, tabla.bytes());
+                tabla.copiarEn(previo.order(ORDEN).asIntBuffer());
+                previo.force();
+            }
+        }
+        Files.move(temporal, archivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** El triángulo de n circuitos desde 'posicion', en tramos de {@link DistanceMatrix#CELDAS_POR_TRAMO} valores */
+    private static MappedByteBuffer[] mapearMatriz(FileChannel canal, FileChannel.MapMode modo, long posicion, int n)
+            throws IOException {
+        long celdas = DistanceMatrix.celdas(n);
+        int porTramo = DistanceMatrix.CELDAS_POR_TRAMO;
+        MappedByteBuffer[] tramos = new MappedByteBuffer[(int) Math.max(1, (celdas + porTramo - 1) / porTramo)];
+        for (int t = 0; t < tramos.length; t++) {
+            long desde = (long) t * porTramo;
+            long cantidad = Math.min(porTramo, celdas - desde);
+            tramos[t] = canal.map(modo, posicion + desde * Double.BYTES, cantidad * Double.BYTES);
+        }
+        return tramos;
+    }
+
+    private static DoubleBuffer[] doubles(MappedByteBuffer[] tramos) {
+        DoubleBuffer[] doubles = new DoubleBuffer[tramos.length];
+        for (int t = 0; t < tramos.length; t++) doubles[t] = tramos[t].order(ORDEN).asDoubleBuffer();
+        return doubles;
+    }
+
+    private static long alinear(long posicion) {
+        return (posicion + 7) & ~7L;
+    }
+}
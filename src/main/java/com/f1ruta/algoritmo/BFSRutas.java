@@ -2,7 +2,15 @@ package com.f1ruta.algoritmo;
 
 import java.util.*;
 
-/** BFS (anchura) sobre grafo implícito: hay arista si distancia <= maxKm */
+/**
+ * BFS (anchura) sobre grafo implícito: hay arista si distancia <= maxKm.
+ * Los vecinos salen de consultas por radio al {@link IndiceEspacial} del snapshot, que además va
+ * quitando los ya visitados: cada circuito se encuentra una sola vez, sin matriz de distancias.
+ * <p>
+ * También puede correr sin el snapshot ({@link #ejecutar(Vecindario, String, double)}): cada nivel se
+ * expande con una consulta por radio a un {@link Vecindario} (p. ej. Neo4j con un índice de puntos), así
+ * que solo se traen los circuitos alcanzables.
+ */
 public class BFSRutas {
 
     public static record Resultado(
@@ -16,36 +24,35 @@ public class BFSRutas {
     /** Usamos el mismo DTO que el TSP (nombre, latitud, longitud) */
     public static class Circuito extends RutaF1TSP.Circuito { }
 
-    private static double haversine(double lat1, double lon1, double lat2, double lon2) {
-        final double R = 6371.0;
-        double p1 = Math.toRadians(lat1), p2 = Math.toRadians(lat2);
-        double dphi = p2 - p1;
-        double dlambda = Math.toRadians(lon2 - lon1);
-        double a = Math.sin(dphi/2)*Math.sin(dphi/2)
-                + Math.cos(p1)*Math.cos(p2)*Math.sin(dlambda/2)*Math.sin(dlambda/2);
-        return 2 * R * Math.asin(Math.sqrt(a));
-    }
+    /** Un circuito encontrado a partir de 'origen' (null para el de inicio) */
+    public static record Candidato(String origen, String nombre, double latitud, double longitud) {}
 
-    /** Matriz de distancias */
-    private static double[][] distancias(List<RutaF1TSP.Circuito> cs) {
-        int n = cs.size();
-        double[][] d = new double[n][n];
-        for (int i = 0; i < n; i++) {
-            var a = cs.get(i);
-            for (int j = 0; j < n; j++) {
-                if (i == j) { d[i][j] = 0; continue; }
-                var b = cs.get(j);
-                d[i][j] = haversine(a.latitud, a.longitud, b.latitud, b.longitud);
-            }
-        }
-        return d;
+    /**
+     * BFS resuelto sin el snapshot: el mismo resultado salvo noAlcanzados (null: conocerlos exige leer
+     * todo el set) y los circuitos visitados con sus coordenadas, en orden de visita.
+     */
+    public static record ResultadoRemoto(Resultado resultado, SnapshotCircuitos visitados) {}
+
+    /** Fuente de circuitos por consultas de radio, para un BFS que no tiene el set completo */
+    public interface Vecindario {
+
+        /** El circuito con ese nombre (sin distinguir mayúsculas), o null si no existe */
+        Candidato buscar(String nombre);
+
+        /**
+         * Para cada circuito de 'frontera', al menos todos los que están a distancia <= radioKm de él y no
+         * están en 'excluidos', con origen = el circuito de la frontera. Puede devolver de más: el BFS
+         * vuelve a filtrar con la distancia de {@link IndiceEspacial#distancia} y con los ya visitados.
+         * 'excluidos' son solo el nivel anterior y la frontera, no todo lo visitado.
+         */
+        List<Candidato> vecinos(List<String> frontera, double radioKm, List<String> excluidos);
     }
 
     /**
      * BFS desde 'inicioNombre'. Hay arista u->v si distancia(u,v) <= maxKm.
      * Devuelve orden de visita y nodos por nivel.
      */
-    public static Resultado ejecutar(List<RutaF1TSP.Circuito> circuitos,
+    public static Resultado ejecutar(SnapshotCircuitos circuitos,
                                      String inicioNombre,
                                      double maxKm) {
         if (inicioNombre == null || inicioNombre.isBlank())
@@ -53,47 +60,112 @@ public class BFSRutas {
         inicioNombre = inicioNombre.trim().toLowerCase(Locale.ROOT);
 
         int n = circuitos.size();
-        Map<String,Integer> idx = new HashMap<>();
-        for (int i = 0; i < n; i++) {
-            idx.put(circuitos.get(i).nombre.toLowerCase(Locale.ROOT), i);
-        }
-        Integer s = idx.get(inicioNombre);
-        if (s == null) throw new IllegalArgumentException("Circuito inicio no encontrado: " + inicioNombre);
+        int s = circuitos.indice(inicioNombre);
+        if (s < 0) throw new IllegalArgumentException("Circuito inicio no encontrado: " + inicioNombre);
 
-        double[][] d = distancias(circuitos);
+        IndiceEspacial.Recorrido pendientes = circuitos.indiceEspacial().recorrido();
 
         // BFS
-        boolean[] vis = new boolean[n];
         int[] level = new int[n];
         Arrays.fill(level, -1);
+        int[] vecinos = new int[n];
 
-        Queue<Integer> q = new ArrayDeque<>();
-        vis[s] = true; level[s] = 0; q.add(s);
+        int[] q = new int[n];
+        int cabeza = 0, cola = 0;
+        pendientes.quitar(s); level[s] = 0; q[cola++] = s;
 
         List<String> orden = new ArrayList<>();
         Map<Integer, List<String>> niveles = new LinkedHashMap<>();
-        niveles.put(0, new ArrayList<>(List.of(circuitos.get(s).nombre)));
-
-        while (!q.isEmpty()) {
-            int u = q.poll();
-            orden.add(circuitos.get(u).nombre);
-
-            for (int v = 0; v < n; v++) {
-                if (!vis[v] && d[u][v] <= maxKm) {
-                    vis[v] = true;
-                    level[v] = level[u] + 1;
-                    q.add(v);
-                    niveles.computeIfAbsent(level[v], k -> new ArrayList<>())
-                           .add(circuitos.get(v).nombre);
-                }
+        niveles.put(0, new ArrayList<>(List.of(circuitos.nombre(s))));
+
+        while (cabeza < cola) {
+            int u = q[cabeza++];
+            orden.add(circuitos.nombre(u));
+
+            // Vecinos aún no visitados, en orden de índice como el recorrido original
+            int m = pendientes.extraer(u, maxKm, vecinos);
+            Arrays.sort(vecinos, 0, m);
+            for (int i = 0; i < m; i++) {
+                int v = vecinos[i];
+                level[v] = level[u] + 1;
+                q[cola++] = v;
+                niveles.computeIfAbsent(level[v], k -> new ArrayList<>())
+                       .add(circuitos.nombre(v));
             }
         }
 
         List<String> noAlcanzados = new ArrayList<>();
         for (int i = 0; i < n; i++) {
-            if (!vis[i]) noAlcanzados.add(circuitos.get(i).nombre);
+            if (level[i] < 0) noAlcanzados.add(circuitos.nombre(i));
+        }
+
+        return new Resultado(circuitos.nombre(s), maxKm, orden, niveles, noAlcanzados);
+    }
+
+    /**
+     * BFS desde 'inicioNombre' pidiendo a 'vecindario' los vecinos de un nivel entero en una consulta.
+     * Los niveles son los mismos que con el snapshot; dentro de un nivel, los vecinos de cada circuito
+     * se agregan por nombre (sin snapshot no hay índices).
+     */
+    public static ResultadoRemoto ejecutar(Vecindario vecindario, String inicioNombre, double maxKm) {
+        if (inicioNombre == null || inicioNombre.isBlank())
+            throw new IllegalArgumentException("El circuito de inicio no puede ser vacío");
+        Candidato inicio = vecindario.buscar(inicioNombre.trim());
+        if (inicio == null) throw new IllegalArgumentException("Circuito inicio no encontrado: " + inicioNombre.trim());
+
+        List<Candidato> visitados = new ArrayList<>();
+        Set<String> vistos = new HashSet<>();
+        Map<Integer, List<String>> niveles = new LinkedHashMap<>();
+        vistos.add(inicio.nombre());
+        niveles.put(0, new ArrayList<>(List.of(inicio.nombre())));
+
+        double[] x = new double[2], y = new double[2], z = new double[2];
+        List<Candidato> frontera = List.of(inicio);
+        List<String> nombresAnterior = List.of();
+        for (int nivel = 1; !frontera.isEmpty(); nivel++) {
+            visitados.addAll(frontera);
+            List<String> nombresFrontera = new ArrayList<>(frontera.size());
+            for (Candidato c : frontera) nombresFrontera.add(c.nombre());
+
+            // Un visitado a distancia <= maxKm de la frontera solo puede ser del nivel anterior o de la
+            // frontera misma (si no, la frontera estaría un nivel antes): no hace falta mandar los demás
+            List<String> excluidos = new ArrayList<>(nombresAnterior.size() + nombresFrontera.size());
+            excluidos.addAll(nombresAnterior);
+            excluidos.addAll(nombresFrontera);
+
+            Map<String, List<Candidato>> porOrigen = new HashMap<>();
+            for (Candidato c : vecindario.vecinos(nombresFrontera, maxKm, excluidos)) {
+                porOrigen.computeIfAbsent(c.origen(), k -> new ArrayList<>()).add(c);
+            }
+
+            List<Candidato> siguiente = new ArrayList<>();
+            for (Candidato u : frontera) {
+                List<Candidato> candidatos = porOrigen.get(u.nombre());
+                if (candidatos == null) continue;
+                candidatos.sort(Comparator.comparing(Candidato::nombre));
+                KernelHaversine.unitario(u.latitud(), u.longitud(), x, y, z, 0);
+                for (Candidato v : candidatos) {
+                    if (vistos.contains(v.nombre())) continue;
+                    KernelHaversine.unitario(v.latitud(), v.longitud(), x, y, z, 1);
+                    if (KernelHaversine.distancia(x, y, z, 0, 1) > maxKm) continue;
+                    vistos.add(v.nombre());
+                    siguiente.add(v);
+                    niveles.computeIfAbsent(nivel, k -> new ArrayList<>()).add(v.nombre());
+                }
+            }
+            nombresAnterior = nombresFrontera;
+            frontera = siguiente;
         }
 
-        return new Resultado(circuitos.get(s).nombre, maxKm, orden, niveles, noAlcanzados);
+        int n = visitados.size();
+        String[] nombres = new String[n];
+        double[] lat = new double[n], lon = new double[n];
+        for (int i = 0; i < n; i++) {
+            nombres[i] = visitados.get(i).nombre();
+            lat[i] = visitados.get(i).latitud();
+            lon[i] = visitados.get(i).longitud();
+        }
+        Resultado resultado = new Resultado(inicio.nombre(), maxKm, Arrays.asList(nombres), niveles, null);
+        return new ResultadoRemoto(resultado, SnapshotCircuitos.de(nombres, lat, lon, 0));
     }
 }
@@ -1,282 +1,776 @@
 package com.f1ruta.algoritmo;
 
 import java.util.*;
-import java.util.Locale;
-import com.f1ruta.algoritmo.RutaF1TSP.Circuito;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class BranchBoundTSP {
 
-    public static record Resultado(List<String> ruta, double kmTotales) {}
+    public static record Resultado(List<String> ruta, double kmTotales, Estadisticas estadisticas) {
+        Resultado(List<String> ruta, double kmTotales) {
+            this(ruta, kmTotales, Estadisticas.SIN_BUSQUEDA);
+        }
+    }
+
+    /** Por qué terminó la búsqueda antes de recorrer todo el árbol (NINGUNO = lo recorrió) */
+    public enum Corte { NINGUNO, TIEMPO, NODOS, CANCELADO }
 
-    private static double haversine(double lat1, double lon1, double lat2, double lon2) {
-        final double R = 6371.0;
-        double p1 = Math.toRadians(lat1), p2 = Math.toRadians(lat2);
-        double dphi = p2 - p1;
-        double dlambda = Math.toRadians(lon2 - lon1);
-        double a = Math.sin(dphi / 2) * Math.sin(dphi / 2)
-                + Math.cos(p1) * Math.cos(p2) * Math.sin(dlambda / 2) * Math.sin(dlambda / 2);
-        return 2 * R * Math.asin(Math.sqrt(a));
+    /**
+     * Números de una búsqueda: nodos expandidos, nodos podados (descartados al sacarlos de la cola o sin
+     * llegar a crearse), máximo de nodos en la cola de un trabajador, motivo del corte y gap final
+     * (NaN si la cota no es admisible, ver {@link Progreso#gap()}).
+     */
+    public static record Estadisticas(int nodosExplorados, long nodosPodados, int colaMaxima, Corte corte,
+                                      double gap) {
+        static final Estadisticas SIN_BUSQUEDA = new Estadisticas(0, 0, 0, Corte.NINGUNO, 0.0);
     }
 
-    /** Matriz de distancias entre todos los circuitos */
-    private static double[][] distancias(List<Circuito> cs) {
-        int n = cs.size();
-        double[][] d = new double[n][n];
-        for (int i = 0; i < n; i++) {
-            for (int j = 0; j < n; j++) {
-                d[i][j] = (i == j) ? 0.0 :
-                        haversine(cs.get(i).latitud, cs.get(i).longitud,
-                                  cs.get(j).latitud, cs.get(j).longitud);
+    /**
+     * Arena de nodos del árbol de búsqueda en arreglos primitivos.
+     * Cada nodo guarda solo su último circuito y un puntero al padre (la ruta se reconstruye subiendo),
+     * la máscara de visitados en 'palabras' longs, costo/cota en float y el estado auxiliar de la cota.
+     * Los nodos se liberan por conteo de referencias (heap + hijos vivos) y sus lugares se reutilizan.
+     */
+    private static final class ArenaNodos {
+        final int palabras;
+        int[] padre;
+        int[] ultimo;
+        int[] profundidad;
+        int[] refs;
+        float[] costo;
+        float[] cota;
+        double[] aux;
+        long[] visitado;
+
+        int usados;       // lugares entregados alguna vez
+        int libre = -1;   // cabeza de la lista de lugares libres (enlazada por 'padre')
+
+        ArenaNodos(int n, int capacidad) {
+            palabras = (n + 63) >>> 6;
+            padre = new int[capacidad];
+            ultimo = new int[capacidad];
+            profundidad = new int[capacidad];
+            refs = new int[capacidad];
+            costo = new float[capacidad];
+            cota = new float[capacidad];
+            aux = new double[capacidad];
+            visitado = new long[capacidad * palabras];
+        }
+
+        /** Crea un nodo hijo de 'p' (o raíz si p = -1) que agrega el circuito 'siguiente' */
+        int nuevo(int p, int siguiente, float costoNodo, float cotaNodo, double auxNodo) {
+            int id;
+            if (libre >= 0) {
+                id = libre;
+                libre = padre[id];
+            } else {
+                if (usados == padre.length) crecer();
+                id = usados++;
             }
+            padre[id] = p;
+            ultimo[id] = siguiente;
+            costo[id] = costoNodo;
+            cota[id] = cotaNodo;
+            aux[id] = auxNodo;
+            refs[id] = 1; // referencia del heap
+            int base = id * palabras;
+            if (p >= 0) {
+                profundidad[id] = profundidad[p] + 1;
+                System.arraycopy(visitado, p * palabras, visitado, base, palabras);
+                refs[p]++;
+            } else {
+                profundidad[id] = 1;
+                Arrays.fill(visitado, base, base + palabras, 0L);
+            }
+            visitado[base + (siguiente >>> 6)] |= 1L << siguiente;
+            return id;
+        }
+
+        boolean visitado(int id, int j) {
+            return (visitado[id * palabras + (j >>> 6)] & (1L << j)) != 0;
         }
-        return d;
-    }
 
-    /** Nodo del árbol de búsqueda */
-    private static class Nodo {
-        List<Integer> ruta;          // Ruta parcial
-        double costoActual;          // Costo acumulado
-        double cotaInferior;         // Estimación del costo mínimo restante
-        boolean[] visitado;          // Nodos visitados
+        /** Suelta una referencia; si el nodo queda sin referencias se libera junto con los ancestros que queden huérfanos */
+        void soltar(int id) {
+            while (id >= 0 && --refs[id] == 0) {
+                int p = padre[id];
+                padre[id] = libre;
+                libre = id;
+                id = p;
+            }
+        }
+
+        /** Copia en 'mascara' los visitados del nodo más el circuito 'extra' */
+        void mascara(int id, int extra, long[] mascara) {
+            System.arraycopy(visitado, id * palabras, mascara, 0, palabras);
+            mascara[extra >>> 6] |= 1L << extra;
+        }
 
-        Nodo(List<Integer> ruta, double costoActual, double cotaInferior, boolean[] visitado) {
-            this.ruta = new ArrayList<>(ruta);
-            this.costoActual = costoActual;
-            this.cotaInferior = cotaInferior;
-            this.visitado = Arrays.copyOf(visitado, visitado.length);
+        /** Ruta desde la raíz hasta el nodo, en índices de circuito */
+        List<Integer> ruta(int id) {
+            Integer[] r = new Integer[profundidad[id]];
+            for (int k = r.length - 1; k >= 0; k--, id = padre[id]) {
+                r[k] = ultimo[id];
+            }
+            return Arrays.asList(r);
         }
 
-        double getCostoTotalEstimado() {
-            return costoActual + cotaInferior;
+        private void crecer() {
+            int cap = padre.length * 2;
+            padre = Arrays.copyOf(padre, cap);
+            ultimo = Arrays.copyOf(ultimo, cap);
+            profundidad = Arrays.copyOf(profundidad, cap);
+            refs = Arrays.copyOf(refs, cap);
+            costo = Arrays.copyOf(costo, cap);
+            cota = Arrays.copyOf(cota, cap);
+            aux = Arrays.copyOf(aux, cap);
+            visitado = Arrays.copyOf(visitado, cap * palabras);
         }
     }
 
-    /** Calcula cota inferior usando la suma de las dos aristas más cortas de cada nodo */
-    private static double calcularCotaInferior(double[][] distancias, boolean[] visitado, int ultimo) {
-        int n = distancias.length;
-        double cota = 0.0;
-        int noVisitados = 0;
-        
-        // Contar nodos no visitados
-        for (boolean v : visitado) {
-            if (!v) noVisitados++;
-        }
-        
-        if (noVisitados == 0) return 0.0;
-
-        // Para el último nodo visitado: sumar la arista más corta hacia un nodo no visitado
-        if (ultimo >= 0) {
-            double minDesdeUltimo = Double.POSITIVE_INFINITY;
-            for (int j = 0; j < n; j++) {
-                if (!visitado[j]) {
-                    minDesdeUltimo = Math.min(minDesdeUltimo, distancias[ultimo][j]);
-                }
+    /** Heap binario de ids de nodo con prioridad float (menor costo estimado primero) */
+    private static final class HeapNodos {
+        int[] nodo;
+        float[] clave;
+        int size;
+
+        HeapNodos(int capacidad) {
+            nodo = new int[capacidad];
+            clave = new float[capacidad];
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        void push(int id, float prioridad) {
+            if (size == nodo.length) {
+                nodo = Arrays.copyOf(nodo, size * 2);
+                clave = Arrays.copyOf(clave, size * 2);
             }
-            if (minDesdeUltimo != Double.POSITIVE_INFINITY) {
-                cota += minDesdeUltimo;
+            int k = size++;
+            while (k > 0) {
+                int p = (k - 1) >>> 1;
+                if (clave[p] <= prioridad) break;
+                nodo[k] = nodo[p];
+                clave[k] = clave[p];
+                k = p;
             }
+            nodo[k] = id;
+            clave[k] = prioridad;
         }
 
-        // Para cada nodo no visitado: sumar las dos aristas más cortas hacia otros nodos no visitados
-        for (int i = 0; i < n; i++) {
-            if (!visitado[i]) {
-                double min1 = Double.POSITIVE_INFINITY;
-                double min2 = Double.POSITIVE_INFINITY;
-                
-                for (int j = 0; j < n; j++) {
-                    if (i != j && !visitado[j]) {
-                        double dist = distancias[i][j];
-                        if (dist < min1) {
-                            min2 = min1;
-                            min1 = dist;
-                        } else if (dist < min2) {
-                            min2 = dist;
-                        }
-                    }
-                }
-                
-                if (min1 != Double.POSITIVE_INFINITY && min2 != Double.POSITIVE_INFINITY) {
-                    cota += min1 + min2;
-                } else if (min1 != Double.POSITIVE_INFINITY) {
-                    // Si solo hay un nodo no visitado, usar la distancia dos veces
-                    cota += min1 * 2;
-                }
+        /** Clave del tope (llamar solo si no está vacío) */
+        float minimo() {
+            return clave[0];
+        }
+
+        int pop() {
+            int top = nodo[0];
+            int ultimoId = nodo[--size];
+            float ultimaClave = clave[size];
+            int k = 0;
+            int mitad = size >>> 1;
+            while (k < mitad) {
+                int c = 2 * k + 1;
+                if (c + 1 < size && clave[c + 1] < clave[c]) c++;
+                if (ultimaClave <= clave[c]) break;
+                nodo[k] = nodo[c];
+                clave[k] = clave[c];
+                k = c;
             }
+            nodo[k] = ultimoId;
+            clave[k] = ultimaClave;
+            return top;
+        }
+    }
+
+    /**
+     * Parámetros de la búsqueda. Con trabajadores > 1 se usa el modo paralelo con robo de trabajo;
+     * tiempoLimiteMs / maxNodos en 0 significan usar los límites por tamaño del set.
+     * 'cota' elige la estrategia de cota inferior usada para podar.
+     */
+    public static record Config(int trabajadores, long tiempoLimiteMs, int maxNodos, CotaInferior.Tipo cota) {
+        public static final Config SECUENCIAL = new Config(1, 0, 0, CotaInferior.Tipo.UNO_ARBOL);
+
+        /** Copia con otro límite de tiempo (p. ej. el presupuesto de un request) */
+        public Config conTiempoLimite(long ms) {
+            return new Config(trabajadores, ms, maxNodos, cota);
+        }
+    }
+
+    /**
+     * Estado de una búsqueda en curso. cotaInferior es una cota probada del óptimo (NaN si la cota usada
+     * no es admisible); con la búsqueda completa sube hasta el mejor costo a medida que se cierra la frontera.
+     */
+    public static record Progreso(double mejorCosto, int nodosExplorados, double cotaInferior, long milisegundos) {
+        /** Brecha relativa entre la mejor ruta y la cota (0 = óptimo probado), NaN si no hay cota */
+        public double gap() {
+            if (Double.isNaN(cotaInferior) || Double.isInfinite(mejorCosto) || mejorCosto <= 0) return Double.NaN;
+            return Math.max(0.0, (mejorCosto - cotaInferior) / mejorCosto);
+        }
+    }
+
+    /** Recibe el progreso (en cada mejora de la ruta y periódicamente) y puede pedir que se corte la búsqueda */
+    public interface Observador {
+        void progreso(Progreso progreso);
+
+        /** Si devuelve true la búsqueda termina con la mejor ruta encontrada hasta ese momento */
+        default boolean cancelado() {
+            return false;
         }
+    }
+
+    /** Intervalo mínimo entre reportes periódicos de progreso */
+    private static final long INTERVALO_PROGRESO_NS = 250_000_000L;
+
+    /** Encuentra la ruta óptima usando Branch & Bound con límites de tiempo y nodos (un solo hilo) */
+    public static Resultado calcularRuta(SnapshotCircuitos cs, String origenNombre) {
+        return calcularRuta(cs, origenNombre, Config.SECUENCIAL, null);
+    }
 
-        // Dividir por 2 porque cada arista se cuenta dos veces (desde i y desde j)
-        return cota / 2.0;
+    /**
+     * Encuentra la ruta óptima usando Branch & Bound con límites de tiempo y nodos.
+     * En modo paralelo cada trabajador tiene su propia cola de prioridad y roba nodos de las de los demás
+     * cuando se queda sin trabajo; la mejor solución (cota superior) se comparte para podar.
+     * Si la búsqueda termina sin cortar por límites, el costo no depende del orden de exploración.
+     */
+    public static Resultado calcularRuta(SnapshotCircuitos cs, String origenNombre, Config config, ForkJoinPool pool) {
+        return calcularRuta(cs, origenNombre, config, pool, null);
     }
 
-    /** Encuentra la ruta óptima usando Branch & Bound con límites de tiempo y nodos */
-    public static Resultado calcularRuta(List<Circuito> cs, String origenNombre) {
+    /** Igual que {@link #calcularRuta(SnapshotCircuitos, String, Config, ForkJoinPool)}, informando a 'observador' */
+    public static Resultado calcularRuta(SnapshotCircuitos cs, String origenNombre, Config config, ForkJoinPool pool,
+                                         Observador observador) {
+        long inicio = System.nanoTime();
         int n = cs.size();
         if (n == 0) return new Resultado(List.of(), 0.0);
-        if (n == 1) return new Resultado(List.of(cs.get(0).nombre), 0.0);
-
-        double[][] distancias = distancias(cs);
-        
-        // Buscar índice del origen
-        int origen = 0;
-        if (origenNombre != null && !origenNombre.trim().isEmpty()) {
-            origenNombre = origenNombre.trim().toLowerCase(Locale.ROOT);
-            for (int i = 0; i < n; i++) {
-                if (cs.get(i).nombre.toLowerCase(Locale.ROOT).equals(origenNombre)) {
-                    origen = i;
-                    break;
-                }
-            }
-        }
+        int origen = HeldKarpTSP.origen(cs, origenNombre);
+        if (n == 1) return new Resultado(List.of(cs.nombre(0)), 0.0);
 
-        // Solución inicial usando Nearest Neighbor como cota superior
-        List<Integer> mejorRuta = vecinoMasCercano(distancias, origen);
-        double mejorCosto = calcularCostoRuta(distancias, mejorRuta);
+        DistanceMatrix distancias = cs.matriz();
 
         // Límites para evitar que tarde demasiado
         // Ajustar según el número de nodos: más nodos = límites más estrictos
-        long tiempoInicio = System.currentTimeMillis();
         long tiempoLimite;
         int maxNodos;
-        
+
         if (n > 20) {
             tiempoLimite = 3000; // 3 segundos para casos grandes
-            maxNodos = 15000;
+            maxNodos = 150000;
         } else if (n > 15) {
             tiempoLimite = 5000; // 5 segundos
-            maxNodos = 30000;
+            maxNodos = 300000;
         } else {
             tiempoLimite = 10000; // 10 segundos para casos pequeños
-            maxNodos = 100000;
-        }
-        
-        int nodosExplorados = 0;
-
-        // Cola de prioridad (explorar nodos con menor cota primero)
-        PriorityQueue<Nodo> cola = new PriorityQueue<>(
-            Comparator.comparingDouble(Nodo::getCostoTotalEstimado)
-        );
-
-        // Nodo inicial
-        boolean[] visitadoInicial = new boolean[n];
-        visitadoInicial[origen] = true;
-        List<Integer> rutaInicial = new ArrayList<>();
-        rutaInicial.add(origen);
-        
-        double cotaInicial = calcularCotaInferior(distancias, visitadoInicial, origen);
-        cola.offer(new Nodo(rutaInicial, 0.0, cotaInicial, visitadoInicial));
-
-        // Branch & Bound con límites
-        while (!cola.isEmpty()) {
-            // Verificar límites de tiempo y nodos
-            long tiempoTranscurrido = System.currentTimeMillis() - tiempoInicio;
-            if (tiempoTranscurrido > tiempoLimite || nodosExplorados > maxNodos) {
-                break; // Usar la mejor solución encontrada hasta ahora
+            maxNodos = 1000000;
+        }
+        if (config.tiempoLimiteMs() > 0) tiempoLimite = config.tiempoLimiteMs();
+        if (config.maxNodos() > 0) maxNodos = config.maxNodos();
+
+        // Expandir solo los mejores candidatos si hay muchos (heurística: explorar solo los más cercanos)
+        // Ajustar según el número de nodos: más nodos = menos expansión
+        // Con una cota admisible la poda alcanza para expandir todo hasta 20 circuitos (búsqueda exacta)
+        int limiteExpansion;
+        if (n <= 20 && config.cota().admisible()) {
+            limiteExpansion = n;
+        } else if (n > 20) {
+            limiteExpansion = 4; // Solo 4 mejores para casos grandes
+        } else if (n > 15) {
+            limiteExpansion = 5;
+        } else if (n > 10) {
+            limiteExpansion = 7;
+        } else {
+            limiteExpansion = n; // Todos para casos pequeños
+        }
+
+        int trabajadores = pool == null ? 1 : Math.max(1, config.trabajadores());
+        Busqueda busqueda = new Busqueda(distancias, config.cota(), trabajadores, inicio,
+                inicio + tiempoLimite * 1_000_000, maxNodos, limiteExpansion, observador);
+
+        // Solución inicial: Nearest Neighbor + búsqueda local como cota superior
+        int[] inicial = RutaF1TSP.vecinoMasCercano(distancias, origen);
+        double largoInicial = new BusquedaLocal(distancias).mejorar(inicial, busqueda.fin);
+        List<Integer> rutaInicial = new ArrayList<>(n);
+        for (int idx : inicial) rutaInicial.add(idx);
+        busqueda.ofrecer(largoInicial, rutaInicial);
+
+        busqueda.ejecutar(origen, pool);
+        busqueda.reportar(true);
+
+        // Convertir índices a nombres
+        return new Resultado(cs.nombres(busqueda.mejorRuta), Math.round(busqueda.mejorCosto()),
+                busqueda.estadisticas());
+    }
+
+    /** Estado compartido por todos los trabajadores de una búsqueda */
+    private static final class Busqueda {
+        final DistanceMatrix distancias;
+        final int n;
+        /** Plazo según System.nanoTime() */
+        final long fin;
+        final int maxNodos;
+        final int limiteExpansion;
+        final Trabajador[] trabajadores;
+
+        /** Mejor costo encontrado (bits del double), leído sin bloqueo para podar */
+        final AtomicLong mejorCosto = new AtomicLong(Double.doubleToLongBits(Double.POSITIVE_INFINITY));
+        List<Integer> mejorRuta;
+
+        final AtomicInteger nodosExplorados = new AtomicInteger();
+        /** Trabajadores sin nodos propios y que no están robando; si son todos, la búsqueda terminó */
+        final AtomicInteger ociosos;
+        /** Trabajadores ociosos que están dormidos en parkNanos esperando que aparezca trabajo */
+        final AtomicInteger dormidos = new AtomicInteger();
+        volatile boolean terminado;
+        /** Motivo por el que se cortó la búsqueda (null = recorrió todo el árbol) */
+        volatile Corte corte;
+
+        // Progreso: observador (puede ser null), inicio y la mejor cota inferior probada hasta ahora
+        final Observador observador;
+        final long inicio;
+        /** Con cota admisible y expansión completa, el mínimo de la frontera abierta es cota del óptimo */
+        final boolean fronteraEsCota;
+        final boolean cotaAdmisible;
+        float cotaRaiz = Float.NaN;
+        double cotaProbada = Double.NEGATIVE_INFINITY;
+        volatile long proximoReporte;
+        final Object reportes = new Object();
+
+        Busqueda(DistanceMatrix distancias, CotaInferior.Tipo cota, int cantidad, long inicio, long fin, int maxNodos,
+                 int limiteExpansion, Observador observador) {
+            this.distancias = distancias;
+            this.n = distancias.size();
+            this.inicio = inicio;
+            this.fin = fin;
+            this.maxNodos = maxNodos;
+            this.limiteExpansion = limiteExpansion;
+            this.observador = observador;
+            this.cotaAdmisible = cota.admisible();
+            this.fronteraEsCota = cotaAdmisible && limiteExpansion >= n;
+            this.trabajadores = new Trabajador[cantidad];
+            for (int i = 0; i < cantidad; i++) {
+                trabajadores[i] = new Trabajador(this, i, cota.crear(distancias));
+            }
+            // Todos menos el que arranca con la raíz empiezan ociosos
+            this.ociosos = new AtomicInteger(cantidad - 1);
+        }
+
+        double mejorCosto() {
+            return Double.longBitsToDouble(mejorCosto.get());
+        }
+
+        /** Marca la búsqueda como terminada y despierta a los trabajadores dormidos */
+        void terminar() {
+            terminado = true;
+            if (dormidos.get() == 0) return;
+            for (Trabajador t : trabajadores) {
+                if (t.dormido) LockSupport.unpark(t.hilo);
+            }
+        }
+
+        /** Despierta a un trabajador dormido, si hay, porque otro acaba de encolar nodos */
+        void despertarUno() {
+            if (dormidos.get() == 0) return;
+            for (Trabajador t : trabajadores) {
+                if (t.dormido) {
+                    LockSupport.unpark(t.hilo);
+                    return;
+                }
+            }
+        }
+
+        void ofrecer(double costo, List<Integer> ruta) {
+            boolean mejoro;
+            synchronized (this) {
+                mejoro = costo < mejorCosto();
+                if (mejoro) {
+                    mejorRuta = new ArrayList<>(ruta);
+                    mejorCosto.set(Double.doubleToLongBits(costo));
+                }
+            }
+            if (mejoro) reportar(true);
+        }
+
+        boolean limiteAlcanzado() {
+            Corte motivo = System.nanoTime() - fin > 0 ? Corte.TIEMPO
+                    : nodosExplorados.get() > maxNodos ? Corte.NODOS
+                    : observador != null && observador.cancelado() ? Corte.CANCELADO
+                    : null;
+            if (motivo == null) return false;
+            if (corte == null) corte = motivo;
+            return true;
+        }
+
+        /** Llamar cuando terminaron todos los trabajadores */
+        Estadisticas estadisticas() {
+            long podados = 0;
+            int colaMaxima = 0;
+            for (Trabajador t : trabajadores) {
+                podados += t.podados;
+                colaMaxima = Math.max(colaMaxima, t.colaMaxima);
+            }
+            double gap;
+            synchronized (reportes) {
+                double mejor = mejorCosto();
+                gap = new Progreso(mejor, 0, cotaInferior(mejor), 0).gap();
+            }
+            return new Estadisticas(nodosExplorados.get(), podados, colaMaxima,
+                    corte != null ? corte : Corte.NINGUNO, gap);
+        }
+
+        /** Informa el progreso al observador; si no es 'forzado', solo cuando pasó el intervalo mínimo */
+        void reportar(boolean forzado) {
+            if (observador == null) return;
+            synchronized (reportes) {
+                long ahora = System.nanoTime();
+                if (!forzado && ahora - proximoReporte < 0) return;
+                proximoReporte = ahora + INTERVALO_PROGRESO_NS;
+                double mejor = mejorCosto();
+                observador.progreso(new Progreso(mejor, nodosExplorados.get(), cotaInferior(mejor),
+                        (ahora - inicio) / 1_000_000));
+            }
+        }
+
+        /**
+         * Cota inferior probada del óptimo: el mínimo de la frontera (acotado por la mejor ruta) si la búsqueda
+         * es completa, si no la de la raíz. Como cada valor calculado es una cota válida, se guarda el máximo.
+         */
+        private double cotaInferior(double mejor) {
+            if (!cotaAdmisible || Float.isNaN(cotaRaiz)) return Double.NaN;
+            double cota = cotaRaiz;
+            if (fronteraEsCota) {
+                if (terminado && corte == null) {
+                    cota = mejor; // se recorrió todo el árbol: la mejor ruta es óptima
+                } else {
+                    double frontera = Double.POSITIVE_INFINITY;
+                    for (Trabajador t : trabajadores) frontera = Math.min(frontera, t.frontera);
+                    cota = Math.max(cota, Math.min(frontera, mejor));
+                }
+            }
+            cotaProbada = Math.max(cotaProbada, Math.min(cota, mejor));
+            return cotaProbada;
+        }
+
+        /** Corre la búsqueda: el trabajador 0 en el hilo actual y el resto en el pool */
+        void ejecutar(int origen, ForkJoinPool pool) {
+            Trabajador primero = trabajadores[0];
+            long[] mascara = primero.mascara;
+            mascara[origen >>> 6] |= 1L << origen;
+            float cotaInicial = primero.cota.calcular(mascara, origen, Double.NaN);
+            int raiz = primero.arena.nuevo(-1, origen, 0f, cotaInicial, primero.cota.aux());
+            primero.cola.push(raiz, cotaInicial);
+            primero.frontera = cotaInicial;
+            synchronized (reportes) {
+                cotaRaiz = cotaInicial;
+            }
+
+            List<ForkJoinTask<?>> tareas = new ArrayList<>();
+            for (int i = 1; i < trabajadores.length; i++) {
+                tareas.add(pool.submit(trabajadores[i]));
+            }
+            primero.run();
+            for (ForkJoinTask<?> tarea : tareas) {
+                tarea.join();
+            }
+        }
+    }
+
+    /** Trabajador con arena y cola propias; las demás colas se tocan solo bajo su lock al robar */
+    private static final class Trabajador implements Runnable {
+        /** Espera de un ocioso entre intentos de robo: vueltas activas, cesiones del hilo y luego parkNanos */
+        private static final int VUELTAS_ESPERA = 64;
+        private static final int CESIONES_ESPERA = 16;
+        private static final long ESPERA_MINIMA_NS = 1_000;
+        private static final long ESPERA_MAXIMA_NS = 1_000_000;
+
+        final Busqueda b;
+        final int id;
+        final ArenaNodos arena;
+        final HeapNodos cola;
+        final CotaInferior cota;
+        final ReentrantLock lock = new ReentrantLock();
+        /** Hilo que corre al trabajador y si está dormido esperando trabajo (para despertarlo con unpark) */
+        volatile Thread hilo;
+        volatile boolean dormido;
+
+        /**
+         * Cota de lo que tiene este trabajador: mínimo entre su cola y el nodo que está procesando.
+         * Solo la escribe el propio trabajador; si otro le roba queda más baja de lo real, que sigue siendo válido.
+         */
+        volatile float frontera = Float.POSITIVE_INFINITY;
+        /** Estimado del nodo que se está expandiendo o robando (infinito si ninguno) */
+        float enCurso = Float.POSITIVE_INFINITY;
+
+        // Estadísticas propias (se suman al terminar la búsqueda)
+        long podados;
+        int colaMaxima;
+
+        // Buffers reutilizados en cada expansión
+        final int[] candidatos;
+        final float[] distCandidatos;
+        final float[] cotasHijos;
+        final double[] auxHijos;
+        final int[] rutaRobada;
+        final long[] mascara;
+
+        Trabajador(Busqueda b, int id, CotaInferior cota) {
+            this.b = b;
+            this.id = id;
+            this.cota = cota;
+            this.arena = new ArenaNodos(b.n, 1024);
+            this.cola = new HeapNodos(1024);
+            this.candidatos = new int[b.n];
+            this.distCandidatos = new float[b.n];
+            this.cotasHijos = new float[b.n];
+            this.auxHijos = new double[b.n];
+            this.rutaRobada = new int[b.n];
+            this.mascara = new long[arena.palabras];
+        }
+
+        @Override
+        public void run() {
+            hilo = Thread.currentThread();
+            boolean ocioso = id != 0;
+            while (true) {
+                if (ocioso) {
+                    if (!buscarTrabajo()) return;
+                    ocioso = false;
+                }
+                // Verificar límites de tiempo y nodos
+                if (b.terminado) return;
+                if (b.limiteAlcanzado()) {
+                    b.terminar(); // Usar la mejor solución encontrada hasta ahora
+                    return;
+                }
+
+                int actual;
+                float estimado = 0f;
+                lock.lock();
+                try {
+                    if (cola.isEmpty()) {
+                        actual = -1;
+                    } else {
+                        estimado = cola.minimo();
+                        actual = cola.pop();
+                        enCurso = estimado;
+                    }
+                    actualizarFrontera();
+                } finally {
+                    lock.unlock();
+                }
+                if (actual < 0) {
+                    b.ociosos.incrementAndGet();
+                    ocioso = true;
+                    continue;
+                }
+                b.nodosExplorados.incrementAndGet();
+                expandir(actual, estimado);
+                if (b.observador != null && System.nanoTime() - b.proximoReporte > 0) b.reportar(false);
             }
+        }
 
-            Nodo actual = cola.poll();
-            nodosExplorados++;
+        private void expandir(int actual, float estimado) {
+            DistanceMatrix distancias = b.distancias;
+            boolean encolo = false;
+            int n = b.n;
 
             // Poda: si la cota inferior es mayor que la mejor solución, descartar
-            if (actual.getCostoTotalEstimado() >= mejorCosto) {
-                continue;
+            if (estimado >= b.mejorCosto()) {
+                podados++;
+                soltar(actual);
+                return;
             }
 
             // Si ya visitamos todos los nodos, es una solución completa
-            if (actual.ruta.size() == n) {
-                double costo = actual.costoActual;
-                if (costo < mejorCosto) {
-                    mejorCosto = costo;
-                    mejorRuta = new ArrayList<>(actual.ruta);
+            if (arena.profundidad[actual] == n) {
+                List<Integer> ruta = arena.ruta(actual);
+                double costo = distancias.largoRuta(ruta);
+                if (costo < b.mejorCosto()) {
+                    b.ofrecer(costo, ruta);
                 }
-                continue;
+                soltar(actual);
+                return;
             }
 
             // Expandir: agregar cada nodo no visitado, ordenados por distancia
-            int ultimo = actual.ruta.get(actual.ruta.size() - 1);
-            
+            int ultimo = arena.ultimo[actual];
+            float costoActual = arena.costo[actual];
+
             // Ordenar nodos no visitados por distancia (heurística: explorar los más cercanos primero)
-            List<int[]> candidatos = new ArrayList<>();
+            int cantidad = 0;
             for (int siguiente = 0; siguiente < n; siguiente++) {
-                if (!actual.visitado[siguiente]) {
-                    candidatos.add(new int[]{siguiente, (int)Math.round(distancias[ultimo][siguiente])});
+                if (!arena.visitado(actual, siguiente)) {
+                    float dist = (float) distancias.get(ultimo, siguiente);
+                    int k = cantidad++;
+                    while (k > 0 && distCandidatos[k - 1] > dist) {
+                        candidatos[k] = candidatos[k - 1];
+                        distCandidatos[k] = distCandidatos[k - 1];
+                        k--;
+                    }
+                    candidatos[k] = siguiente;
+                    distCandidatos[k] = dist;
                 }
             }
-            candidatos.sort(Comparator.comparingInt(a -> a[1]));
-            
-            // Expandir solo los mejores candidatos si hay muchos (heurística: explorar solo los más cercanos)
-            // Ajustar según el número de nodos: más nodos = menos expansión
-            int limiteExpansion;
-            if (n > 20) {
-                limiteExpansion = Math.min(candidatos.size(), 4); // Solo 4 mejores para casos grandes
-            } else if (n > 15) {
-                limiteExpansion = Math.min(candidatos.size(), 5);
-            } else if (n > 10) {
-                limiteExpansion = Math.min(candidatos.size(), 7);
-            } else {
-                limiteExpansion = candidatos.size(); // Todos para casos pequeños
-            }
-            
+            int limiteExpansion = Math.min(cantidad, b.limiteExpansion);
+
+            // Las cotas se calculan fuera del lock: el nodo actual y sus ancestros siguen vivos
+            double auxActual = arena.aux[actual];
             for (int idx = 0; idx < limiteExpansion; idx++) {
-                int siguiente = candidatos.get(idx)[0];
-                double nuevoCosto = actual.costoActual + distancias[ultimo][siguiente];
-                
-                // Crear nuevo nodo
-                List<Integer> nuevaRuta = new ArrayList<>(actual.ruta);
-                nuevaRuta.add(siguiente);
-                boolean[] nuevoVisitado = Arrays.copyOf(actual.visitado, n);
-                nuevoVisitado[siguiente] = true;
-                
-                double nuevaCota = calcularCotaInferior(distancias, nuevoVisitado, siguiente);
-                double costoEstimado = nuevoCosto + nuevaCota;
-                
-                // Poda: solo agregar si puede mejorar la mejor solución
-                if (costoEstimado < mejorCosto) {
-                    cola.offer(new Nodo(nuevaRuta, nuevoCosto, nuevaCota, nuevoVisitado));
+                arena.mascara(actual, candidatos[idx], mascara);
+                cotasHijos[idx] = cota.calcular(mascara, candidatos[idx], auxActual);
+                auxHijos[idx] = cota.aux();
+            }
+
+            lock.lock();
+            try {
+                double mejorCosto = b.mejorCosto();
+                for (int idx = 0; idx < limiteExpansion; idx++) {
+                    float nuevoCosto = costoActual + distCandidatos[idx];
+                    float costoEstimado = nuevoCosto + cotasHijos[idx];
+
+                    // Poda: solo crear el nodo si puede mejorar la mejor solución
+                    if (costoEstimado < mejorCosto) {
+                        int hijo = arena.nuevo(actual, candidatos[idx], nuevoCosto, cotasHijos[idx], auxHijos[idx]);
+                        cola.push(hijo, costoEstimado);
+                        encolo = true;
+                    } else {
+                        podados++;
+                    }
                 }
+                colaMaxima = Math.max(colaMaxima, cola.size);
+                arena.soltar(actual);
+                enCurso = Float.POSITIVE_INFINITY;
+                actualizarFrontera();
+            } finally {
+                lock.unlock();
             }
+            // Con más de un nodo en la cola hay algo para robar
+            if (encolo && cola.size > 1) b.despertarUno();
         }
 
-        // Convertir índices a nombres
-        List<String> nombres = new ArrayList<>();
-        for (int idx : mejorRuta) {
-            nombres.add(cs.get(idx).nombre);
+        /** Suelta el nodo en curso sin hijos (podado o ruta completa) */
+        private void soltar(int nodo) {
+            lock.lock();
+            try {
+                arena.soltar(nodo);
+                enCurso = Float.POSITIVE_INFINITY;
+                actualizarFrontera();
+            } finally {
+                lock.unlock();
+            }
         }
 
-        return new Resultado(nombres, Math.round(mejorCosto));
-    }
+        /** Llamar con el lock propio tomado */
+        private void actualizarFrontera() {
+            frontera = Math.min(cola.isEmpty() ? Float.POSITIVE_INFINITY : cola.minimo(), enCurso);
+        }
 
-    /** Heurística Nearest Neighbor para cota superior inicial */
-    private static List<Integer> vecinoMasCercano(double[][] d, int start) {
-        int n = d.length;
-        boolean[] vis = new boolean[n];
-        List<Integer> r = new ArrayList<>(n);
-        int cur = start;
-        r.add(cur);
-        vis[cur] = true;
-
-        for (int k = 1; k < n; k++) {
-            int best = -1;
-            double bestD = Double.POSITIVE_INFINITY;
-            for (int j = 0; j < n; j++) {
-                if (!vis[j] && d[cur][j] < bestD) {
-                    bestD = d[cur][j];
-                    best = j;
+        /**
+         * Espera ocioso hasta robar un nodo (true) o hasta que la búsqueda termine (false). Entre intentos
+         * fallidos gira unas vueltas, después cede el hilo y al final duerme con espera exponencial acotada;
+         * quien encola nodos lo despierta antes.
+         */
+        private boolean buscarTrabajo() {
+            Trabajador[] todos = b.trabajadores;
+            for (int intento = 0; ; intento++) {
+                if (b.terminado) return false;
+                if (b.ociosos.get() == todos.length || b.limiteAlcanzado()) {
+                    b.terminar();
+                    return false;
+                }
+                // Mientras intenta robar no cuenta como ocioso, así nadie da por terminada la búsqueda
+                b.ociosos.decrementAndGet();
+                int inicio = ThreadLocalRandom.current().nextInt(todos.length);
+                for (int k = 0; k < todos.length; k++) {
+                    Trabajador victima = todos[(inicio + k) % todos.length];
+                    if (victima != this && robarDe(victima)) return true;
+                }
+                b.ociosos.incrementAndGet();
+                esperar(intento);
+            }
+        }
+
+        private void esperar(int intento) {
+            if (intento < VUELTAS_ESPERA) {
+                Thread.onSpinWait();
+            } else if (intento < VUELTAS_ESPERA + CESIONES_ESPERA) {
+                Thread.yield();
+            } else {
+                int exponente = Math.min(intento - VUELTAS_ESPERA - CESIONES_ESPERA, 10);
+                long espera = Math.min(ESPERA_MINIMA_NS << exponente, ESPERA_MAXIMA_NS);
+                dormido = true;
+                b.dormidos.incrementAndGet();
+                try {
+                    // Volver a mirar después de anunciarse: un push anterior no lo habría despertado
+                    if (!b.terminado && !hayTrabajo()) LockSupport.parkNanos(this, espera);
+                } finally {
+                    b.dormidos.decrementAndGet();
+                    dormido = false;
                 }
             }
-            r.add(best);
-            vis[best] = true;
-            cur = best;
         }
-        return r;
-    }
 
-    /** Calcula el costo total de una ruta */
-    private static double calcularCostoRuta(double[][] d, List<Integer> ruta) {
-        double total = 0.0;
-        for (int i = 0; i + 1 < ruta.size(); i++) {
-            total += d[ruta.get(i)][ruta.get(i + 1)];
+        /** Lectura sin lock: solo decide si vale la pena dormir */
+        private boolean hayTrabajo() {
+            for (Trabajador t : b.trabajadores) {
+                if (t != this && t.cola.size > 0) return true;
+            }
+            return false;
+        }
+
+        /** Toma el mejor nodo de la cola de la víctima y lo reconstruye en la arena propia */
+        private boolean robarDe(Trabajador victima) {
+            if (victima.cola.isEmpty() || !victima.lock.tryLock()) return false;
+            int largo;
+            float costo;
+            float cotaNodo;
+            double auxNodo;
+            float clave;
+            try {
+                if (victima.cola.isEmpty()) return false;
+                clave = victima.cola.minimo();
+                // Antes de sacarlo de la víctima, para que la frontera nunca lo pierda de vista
+                enCurso = clave;
+                frontera = Math.min(frontera, clave);
+                int nodo = victima.cola.pop();
+                ArenaNodos otra = victima.arena;
+                largo = otra.profundidad[nodo];
+                costo = otra.costo[nodo];
+                cotaNodo = otra.cota[nodo];
+                auxNodo = otra.aux[nodo];
+                for (int k = largo - 1, x = nodo; k >= 0; k--, x = otra.padre[x]) {
+                    rutaRobada[k] = otra.ultimo[x];
+                }
+                otra.soltar(nodo);
+            } finally {
+                victima.lock.unlock();
+            }
+
+            lock.lock();
+            try {
+                int nodo = arena.nuevo(-1, rutaRobada[0], 0f, 0f, 0.0);
+                for (int k = 1; k < largo; k++) {
+                    int hijo = arena.nuevo(nodo, rutaRobada[k], 0f, 0f, 0.0);
+                    arena.soltar(nodo); // queda vivo por la referencia del hijo
+                    nodo = hijo;
+                }
+                arena.costo[nodo] = costo;
+                arena.cota[nodo] = cotaNodo;
+                arena.aux[nodo] = auxNodo;
+                cola.push(nodo, clave);
+                colaMaxima = Math.max(colaMaxima, cola.size);
+                enCurso = Float.POSITIVE_INFINITY;
+                actualizarFrontera();
+            } finally {
+                lock.unlock();
+            }
+            return true;
         }
-        return total;
     }
 }
-
@@ -0,0 +1,342 @@
+package com.f1ruta.algoritmo;
+
+import java.util.Random;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Búsqueda local sobre una ruta abierta en int[] con el primer nodo fijo.
+ * Combina 2-opt con Or-opt (mover segmentos de 1 a {@link #MAX_SEGMENTO} nodos en cualquier sentido,
+ * la "inserción de segmento" de 3-opt). Los movimientos se restringen a los vecinos más cercanos
+ * de cada nodo y se usan bits "no mirar": solo se revisan los nodos cuyas aristas cambiaron.
+ * Con {@link #iterar} funciona como solver "anytime" (búsqueda local iterada con double-bridge)
+ * que devuelve la mejor ruta encontrada al vencer el plazo.
+ * Una instancia reutiliza sus buffers entre llamadas, por lo que no es thread-safe.
+ */
+public final class BusquedaLocal {
+
+    /** Vecinos candidatos por nodo por defecto */
+    public static final int VECINOS = 10;
+
+    /** Largo máximo de los segmentos que mueve Or-opt */
+    public static final int MAX_SEGMENTO = 3;
+
+    /** Plazo que nunca vence (para {@link #mejorar(int[], long)} e {@link #iterar}) */
+    public static final long SIN_LIMITE = Long.MAX_VALUE;
+
+    /** Largo máximo de cada uno de los dos segmentos que intercambia la perturbación */
+    private static final int MAX_PERTURBACION = 50;
+
+    private static final double EPS = 1e-6;
+
+    /** Movimientos que mejoraron una ruta, sumando todas las instancias (para métricas) */
+    private static final LongAdder MOVIMIENTOS_DOS_OPT = new LongAdder();
+    private static final LongAdder MOVIMIENTOS_OR_OPT = new LongAdder();
+
+    private final DistanceMatrix d;
+    private final VecinosCercanos vecinos;
+    private final int n;
+    private final int k;
+
+    /** Ruta en curso y posición de cada nodo dentro de ella */
+    private int[] ruta;
+    private final int[] pos;
+
+    /** Cola circular de nodos activos (bit "no mirar" apagado) */
+    private final int[] cola;
+    private final boolean[] activo;
+    private int cabeza, pendientes;
+
+    /** Largo de la ruta en curso, actualizado con la ganancia de cada movimiento */
+    private double largoActual;
+
+    public BusquedaLocal(DistanceMatrix d) {
+        this(d, VECINOS);
+    }
+
+    public BusquedaLocal(DistanceMatrix d, int k) {
+        this.d = d;
+        this.n = d.size();
+        this.vecinos = d.vecinos(k);
+        this.k = Math.min(k, vecinos.k());
+        this.pos = new int[n];
+        this.cola = new int[n];
+        this.activo = new boolean[n];
+    }
+
+    /** Mejora 'ruta' en el lugar (ruta[0] queda fijo) hasta un óptimo local y devuelve su largo en km */
+    public double mejorar(int[] ruta) {
+        return mejorar(ruta, SIN_LIMITE);
+    }
+
+    /**
+     * Igual que {@link #mejorar(int[])} pero se detiene al llegar a 'limiteNanos' (según System.nanoTime()),
+     * dejando en 'ruta' la mejor ruta alcanzada hasta ese momento.
+     */
+    public double mejorar(int[] ruta, long limiteNanos) {
+        cargar(ruta);
+        optimizar(limiteNanos);
+        return largo(ruta);
+    }
+
+    /**
+     * Búsqueda local iterada hasta 'limiteNanos': perturba la mejor ruta con un double-bridge local
+     * (intercambia dos segmentos contiguos), re-optimiza solo desde los nodos tocados y se queda con
+     * el resultado si mejora. Deja en 'ruta' la mejor encontrada y devuelve su largo.
+     */
+    public double iterar(int[] ruta, Random rnd, long limiteNanos) {
+        cargar(ruta);
+        if (!optimizar(limiteNanos) || n < 4) return largo(ruta);
+
+        int[] mejor = ruta.clone();
+        double mejorLargo = largoActual;
+        while (!vencido(limiteNanos)) {
+            perturbar(rnd);
+            boolean completo = optimizar(limiteNanos);
+            if (largoActual < mejorLargo - EPS) {
+                mejorLargo = largoActual;
+                System.arraycopy(ruta, 0, mejor, 0, n);
+            } else {
+                // Se descarta la perturbación: volver a la mejor ruta
+                System.arraycopy(mejor, 0, ruta, 0, n);
+                for (int i = 0; i < n; i++) pos[ruta[i]] = i;
+                largoActual = mejorLargo;
+                vaciarCola();
+            }
+            if (!completo) break;
+        }
+        return largo(ruta);
+    }
+
+    /** Toma 'ruta' como ruta en curso con todos los nodos activos */
+    private void cargar(int[] ruta) {
+        if (ruta.length != n)
+            throw new IllegalArgumentException("La ruta tiene " + ruta.length + " nodos, se esperaban " + n);
+        this.ruta = ruta;
+        for (int i = 0; i < n; i++) pos[ruta[i]] = i;
+        largoActual = largo(ruta);
+
+        vaciarCola();
+        for (int i = 0; i < n; i++) activar(ruta[i]);
+    }
+
+    /** Total de movimientos 2-opt aplicados (en todas las búsquedas desde que arrancó la JVM) */
+    public static long movimientosDosOpt() {
+        return MOVIMIENTOS_DOS_OPT.sum();
+    }
+
+    /** Total de movimientos Or-opt aplicados (en todas las búsquedas desde que arrancó la JVM) */
+    public static long movimientosOrOpt() {
+        return MOVIMIENTOS_OR_OPT.sum();
+    }
+
+    /** Largo de la ruta en curso según las ganancias acumuladas de los movimientos (debe igualar a {@link #largo}) */
+    double largoAcumulado() {
+        return largoActual;
+    }
+
+    /** Aplica movimientos hasta que no quedan nodos activos; false si venció el plazo antes */
+    private boolean optimizar(long limiteNanos) {
+        int pasos = 0;
+        int dosOpt = 0, orOpt = 0;
+        try {
+            while (pendientes > 0) {
+                // Revisar el reloj cada 256 nodos para no pagar nanoTime() en cada uno
+                if ((++pasos & 255) == 0 && vencido(limiteNanos)) return false;
+                int a = cola[cabeza];
+                cabeza = (cabeza + 1) % n;
+                pendientes--;
+                activo[a] = false;
+                if (dosOpt(a)) {
+                    dosOpt++;
+                    activar(a);
+                } else if (orOpt(a)) {
+                    orOpt++;
+                    activar(a);
+                }
+            }
+            return true;
+        } finally {
+            // Una suma por llamada, no por movimiento, para no competir entre hilos
+            MOVIMIENTOS_DOS_OPT.add(dosOpt);
+            MOVIMIENTOS_OR_OPT.add(orOpt);
+        }
+    }
+
+    /** Double-bridge local: ruta[s..m-1] y ruta[m..f] intercambian lugar */
+    private void perturbar(Random rnd) {
+        int s = 1 + rnd.nextInt(n - 2);
+        int largoB = 1 + rnd.nextInt(Math.min(MAX_PERTURBACION, n - s - 1));
+        int m = s + largoB;
+        int f = m + rnd.nextInt(Math.min(MAX_PERTURBACION, n - m));
+
+        int ant = ruta[s - 1], b0 = ruta[s], b1 = ruta[m - 1], c0 = ruta[m], c1 = ruta[f];
+        int sig = f + 1 < n ? ruta[f + 1] : -1;
+        largoActual += d.get(ant, c0) + d.get(c1, b0) + w(b1, sig)
+                - d.get(ant, b0) - d.get(b1, c0) - w(c1, sig);
+
+        activar(ant);
+        activar(b0);
+        activar(b1);
+        activar(c0);
+        activar(c1);
+        if (sig >= 0) activar(sig);
+        moverSegmento(s, m - 1, f, false);
+    }
+
+    private static boolean vencido(long limiteNanos) {
+        return limiteNanos != SIN_LIMITE && System.nanoTime() - limiteNanos >= 0;
+    }
+
+    /** Largo en km de una ruta abierta */
+    public double largo(int[] ruta) {
+        double total = 0;
+        for (int i = 0; i + 1 < ruta.length; i++) total += d.get(ruta[i], ruta[i + 1]);
+        return total;
+    }
+
+    /** Primer 2-opt que mejora creando una arista entre 'a' y uno de sus vecinos */
+    private boolean dosOpt(int a) {
+        int i = pos[a];
+        double dSig = i + 1 < n ? d.get(a, ruta[i + 1]) : 0.0;
+        double dAnt = i > 0 ? d.get(a, ruta[i - 1]) : 0.0;
+
+        for (int r = 0; r < k; r++) {
+            int c = vecinos.vecino(a, r);
+            double dAC = d.get(a, c);
+            if (dAC >= dSig && dAC >= dAnt) break;
+            int j = pos[c];
+            int p = Math.min(i, j), q = Math.max(i, j);
+
+            // Reemplaza la arista (a, siguiente): invertir ruta[p+1..q] une ruta[p] con ruta[q]
+            if (dAC < dSig && aplicar2(p, q)) return true;
+            // Reemplaza la arista (anterior, a): invertir ruta[p..q-1] une ruta[p] con ruta[q]
+            if (dAC < dAnt && p > 0 && aplicar2(p - 1, q - 1)) return true;
+        }
+        return false;
+    }
+
+    /** Ganancia de invertir ruta[p+1..q]: salen (p, p+1) y (q, q+1), entran (p, q) y (p+1, q+1) */
+    private double ganancia2(int p, int q) {
+        int sig = q + 1 < n ? ruta[q + 1] : -1;
+        return d.get(ruta[p], ruta[p + 1]) + w(ruta[q], sig)
+                - d.get(ruta[p], ruta[q]) - w(ruta[p + 1], sig);
+    }
+
+    /** Invierte ruta[p+1..q] si eso acorta la ruta */
+    private boolean aplicar2(int p, int q) {
+        double ganancia = ganancia2(p, q);
+        if (ganancia <= EPS) return false;
+        largoActual -= ganancia;
+        activar(ruta[p]);
+        activar(ruta[p + 1]);
+        activar(ruta[q]);
+        if (q + 1 < n) activar(ruta[q + 1]);
+        invertir(p + 1, q);
+        return true;
+    }
+
+    /** Primer Or-opt que mejora moviendo un segmento con 'a' en un extremo junto a uno de sus vecinos */
+    private boolean orOpt(int a) {
+        int i = pos[a];
+        for (int largo = 1; largo <= MAX_SEGMENTO; largo++) {
+            // Segmento que empieza en 'a' y segmento que termina en 'a' (iguales si largo = 1)
+            for (int lado = 0; lado < (largo == 1 ? 1 : 2); lado++) {
+                int s = lado == 0 ? i : i - largo + 1;
+                int e = s + largo - 1;
+                if (s < 1 || e >= n) continue;
+
+                int sigE = e + 1 < n ? ruta[e + 1] : -1;
+                double quitar = d.get(ruta[s - 1], ruta[s]) + w(ruta[e], sigE) - w(ruta[s - 1], sigE);
+                if (quitar <= EPS) continue;
+                if (insertar(a, s, e, quitar)) return true;
+            }
+        }
+        return false;
+    }
+
+    /** Busca dónde reinsertar ruta[s..e] junto a un vecino de 'a' con ganancia positiva */
+    private boolean insertar(int a, int s, int e, double quitar) {
+        boolean aEsInicio = ruta[s] == a;
+        for (int r = 0; r < k; r++) {
+            int c = vecinos.vecino(a, r);
+            double dAC = d.get(a, c);
+            if (dAC >= quitar) break;
+            int j = pos[c];
+            if (j >= s && j <= e) continue;
+
+            // Opción 1: 'a' queda después de c (se inserta entre c y su siguiente)
+            // Opción 2: 'a' queda antes de c (se inserta entre el anterior de c y c)
+            for (int opcion = 0; opcion < 2; opcion++) {
+                int p = opcion == 0 ? j : j - 1;
+                if (p < 0 || (p >= s - 1 && p <= e)) continue;
+                boolean invertido = s != e && (opcion == 0 ? !aEsInicio : aEsInicio);
+                int x = invertido ? ruta[e] : ruta[s];
+                int y = invertido ? ruta[s] : ruta[e];
+                int sigP = p + 1 < n ? ruta[p + 1] : -1;
+                double agregar = d.get(ruta[p], x) + w(y, sigP) - w(ruta[p], sigP);
+                if (quitar - agregar > EPS) {
+                    largoActual -= quitar - agregar;
+                    activar(ruta[s - 1]);
+                    activar(ruta[s]);
+                    activar(ruta[e]);
+                    if (e + 1 < n) activar(ruta[e + 1]);
+                    activar(ruta[p]);
+                    if (sigP >= 0) activar(sigP);
+                    moverSegmento(s, e, p, invertido);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /** Mueve ruta[s..e] a continuación de la posición p (fuera del segmento) con tres inversiones como máximo */
+    private void moverSegmento(int s, int e, int p, boolean invertido) {
+        int largo = e - s + 1;
+        if (p > e) {
+            // B Y -> Y B
+            int medio = p - e;
+            invertir(s, p);
+            invertir(s, s + medio - 1);
+            if (!invertido) invertir(s + medio, p);
+        } else {
+            // Y B -> B Y
+            invertir(p + 1, e);
+            invertir(p + largo + 1, e);
+            if (!invertido) invertir(p + 1, p + largo);
+        }
+    }
+
+    private void invertir(int i, int j) {
+        while (i < j) {
+            int t = ruta[i];
+            ruta[i] = ruta[j];
+            ruta[j] = t;
+            pos[ruta[i]] = i;
+            pos[ruta[j]] = j;
+            i++;
+            j--;
+        }
+    }
+
+    private void vaciarCola() {
+        while (pendientes > 0) {
+            activo[cola[cabeza]] = false;
+            cabeza = (cabeza + 1) % n;
+            pendientes--;
+        }
+        cabeza = 0;
+    }
+
+    private void activar(int nodo) {
+        if (activo[nodo]) return;
+        activo[nodo] = true;
+        cola[(cabeza + pendientes) % n] = nodo;
+        pendientes++;
+    }
+
+    /** Distancia con -1 como "sin nodo" (el final abierto de la ruta no cuesta nada) */
+    private double w(int x, int y) {
+        return y < 0 ? 0.0 : d.get(x, y);
+    }
+}
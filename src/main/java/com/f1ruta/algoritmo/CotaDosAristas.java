@@ -0,0 +1,68 @@
+package com.f1ruta.algoritmo;
+
+import static com.f1ruta.algoritmo.CotaInferior.visitado;
+
+/** Cota usando la suma de las dos aristas más cortas de cada nodo no visitado (O(n²) por nodo) */
+public final class CotaDosAristas implements CotaInferior {
+
+    private final DistanceMatrix distancias;
+
+    public CotaDosAristas(DistanceMatrix distancias) {
+        this.distancias = distancias;
+    }
+
+    @Override
+    public float calcular(long[] visitados, int ultimo, double auxPadre) {
+        int n = distancias.size();
+        double cota = 0.0;
+        int noVisitados = 0;
+
+        // Contar nodos no visitados
+        for (int j = 0; j < n; j++) {
+            if (!visitado(visitados, j)) noVisitados++;
+        }
+
+        if (noVisitados == 0) return 0f;
+
+        // Para el último nodo visitado: sumar la arista más corta hacia un nodo no visitado
+        double minDesdeUltimo = Double.POSITIVE_INFINITY;
+        for (int j = 0; j < n; j++) {
+            if (!visitado(visitados, j)) {
+                minDesdeUltimo = Math.min(minDesdeUltimo, distancias.get(ultimo, j));
+            }
+        }
+        if (minDesdeUltimo != Double.POSITIVE_INFINITY) {
+            cota += minDesdeUltimo;
+        }
+
+        // Para cada nodo no visitado: sumar las dos aristas más cortas hacia otros nodos no visitados
+        for (int i = 0; i < n; i++) {
+            if (!visitado(visitados, i)) {
+                double min1 = Double.POSITIVE_INFINITY;
+                double min2 = Double.POSITIVE_INFINITY;
+
+                for (int j = 0; j < n; j++) {
+                    if (i != j && !visitado(visitados, j)) {
+                        double dist = distancias.get(i, j);
+                        if (dist < min1) {
+                            min2 = min1;
+                            min1 = dist;
+                        } else if (dist < min2) {
+                            min2 = dist;
+                        }
+                    }
+                }
+
+                if (min1 != Double.POSITIVE_INFINITY && min2 != Double.POSITIVE_INFINITY) {
+                    cota += min1 + min2;
+                } else if (min1 != Double.POSITIVE_INFINITY) {
+                    // Si solo hay un nodo no visitado, usar la distancia dos veces
+                    cota += min1 * 2;
+                }
+            }
+        }
+
+        // Dividir por 2 porque cada arista se cuenta dos veces (desde i y desde j)
+        return (float) (cota / 2.0);
+    }
+}
@@ -0,0 +1,122 @@
+package com.f1ruta.algoritmo;
+
+import static com.f1ruta.algoritmo.CotaInferior.visitado;
+
+/**
+ * Misma cota que {@link CotaDosAristas}, pero mantenida incrementalmente: el nodo guarda la suma de los
+ * pares de aristas más cortas de sus no visitados, y al agregar un circuito v solo se corrigen los nodos
+ * que tenían a v entre sus dos vecinos más cercanos. Los vecinos se recorren en listas ordenadas,
+ * así que cada nodo se resuelve mirando sus primeros no visitados en lugar de toda la fila. Las listas
+ * son de {@link #VECINOS} (O(n·k) compartido con la búsqueda local, no el orden completo de n²); si en
+ * la lista no aparecen los no visitados que hacen falta, se recorre la fila de la matriz.
+ */
+public final class CotaDosAristasIncremental implements CotaInferior {
+
+    /** Largo de las listas de vecinos: alcanza mientras los visitados no tapen a los más cercanos */
+    static final int VECINOS = 16;
+
+    private final DistanceMatrix distancias;
+    private final VecinosCercanos orden;
+    private final int n;
+    private final int k;
+
+    private double aux;
+
+    public CotaDosAristasIncremental(DistanceMatrix distancias) {
+        this.distancias = distancias;
+        this.n = distancias.size();
+        this.orden = distancias.vecinos(VECINOS);
+        this.k = orden.k();
+    }
+
+    @Override
+    public float calcular(long[] visitados, int ultimo, double auxPadre) {
+        double suma;
+        if (Double.isNaN(auxPadre)) {
+            // Raíz: suma completa de los pares de cada no visitado
+            suma = 0.0;
+            for (int i = 0; i < n; i++) {
+                if (!visitado(visitados, i)) suma += par(visitados, i, -1);
+            }
+        } else {
+            // El padre tenía además a 'ultimo' sin visitar: se quita su par y se corrigen los afectados
+            suma = auxPadre - par(visitados, ultimo, -1);
+            for (int i = 0; i < n; i++) {
+                if (!visitado(visitados, i)) suma += correccion(visitados, i, ultimo);
+            }
+        }
+        aux = suma;
+
+        // Arista más corta desde el último hacia un no visitado
+        for (int r = 0; r < k; r++) {
+            int j = orden.vecino(ultimo, r);
+            if (!visitado(visitados, j)) {
+                return (float) ((distancias.get(ultimo, j) + suma) / 2.0);
+            }
+        }
+        double minimo = Double.POSITIVE_INFINITY;
+        for (int j = 0; j < n; j++) {
+            if (j != ultimo && !visitado(visitados, j)) minimo = Math.min(minimo, distancias.get(ultimo, j));
+        }
+        if (minimo == Double.POSITIVE_INFINITY) return 0f; // no quedan nodos sin visitar
+        return (float) ((minimo + suma) / 2.0);
+    }
+
+    @Override
+    public double aux() {
+        return aux;
+    }
+
+    /** Suma de las dos aristas más cortas de i hacia no visitados (más 'extra' si es >= 0) */
+    private double par(long[] visitados, int i, int extra) {
+        double min1 = Double.POSITIVE_INFINITY;
+        for (int r = 0; r < k; r++) {
+            int j = orden.vecino(i, r);
+            if (j != extra && visitado(visitados, j)) continue;
+            double dist = distancias.get(i, j);
+            if (min1 == Double.POSITIVE_INFINITY) {
+                min1 = dist;
+            } else {
+                return min1 + dist;
+            }
+        }
+        if (k < n - 1) return parEnFila(visitados, i, extra);
+        // Si solo hay un nodo no visitado, usar la distancia dos veces
+        return min1 == Double.POSITIVE_INFINITY ? 0.0 : min1 * 2;
+    }
+
+    /** {@link #par} recorriendo la fila entera, para cuando la lista de vecinos no alcanza */
+    private double parEnFila(long[] visitados, int i, int extra) {
+        double min1 = Double.POSITIVE_INFINITY, min2 = Double.POSITIVE_INFINITY;
+        for (int j = 0; j < n; j++) {
+            if (j == i || (j != extra && visitado(visitados, j))) continue;
+            double dist = distancias.get(i, j);
+            if (dist < min1) {
+                min2 = min1;
+                min1 = dist;
+            } else if (dist < min2) {
+                min2 = dist;
+            }
+        }
+        if (min2 != Double.POSITIVE_INFINITY) return min1 + min2;
+        return min1 == Double.POSITIVE_INFINITY ? 0.0 : min1 * 2;
+    }
+
+    /** Cambio en el par de i al dejar de estar disponible 'v' (0 si v no estaba entre sus dos más cercanos) */
+    private double correccion(long[] visitados, int i, int v) {
+        int encontrados = 0;
+        boolean usaV = false;
+        for (int r = 0; r < k && encontrados < 2; r++) {
+            int j = orden.vecino(i, r);
+            if (j == v) {
+                usaV = true;
+                encontrados++;
+            } else if (!visitado(visitados, j)) {
+                encontrados++;
+            }
+        }
+        // Sin los dos en la lista no se sabe si v era de los más cercanos: se calcula la diferencia
+        if (!usaV && encontrados == 2) return 0.0;
+        return par(visitados, i, -1) - par(visitados, i, v);
+    }
+}
@@ -0,0 +1,47 @@
+package com.f1ruta.algoritmo;
+
+/**
+ * Estrategia de cota inferior para Branch & Bound: estima el costo mínimo de completar una ruta parcial
+ * saliendo de 'ultimo' y recorriendo todos los circuitos no visitados.
+ * Las implementaciones pueden guardar estado de trabajo, así que cada hilo usa su propia instancia.
+ */
+public interface CotaInferior {
+
+    /**
+     * Calcula la cota para el nodo cuyo conjunto de visitados es 'visitados' (máscara de bits que ya incluye
+     * a 'ultimo'). 'auxPadre' es el {@link #aux()} guardado en el nodo padre, o NaN para la raíz.
+     */
+    float calcular(long[] visitados, int ultimo, double auxPadre);
+
+    /** Estado auxiliar del último cálculo, que se guarda en el nodo para el cálculo incremental de sus hijos */
+    default double aux() {
+        return 0.0;
+    }
+
+    static boolean visitado(long[] mascara, int j) {
+        return (mascara[j >>> 6] & (1L << j)) != 0;
+    }
+
+    /** Estrategias disponibles */
+    enum Tipo {
+        /** Suma de las dos aristas más cortas de cada nodo no visitado, recalculada en O(n²) */
+        DOS_ARISTAS,
+        /** Misma cota que DOS_ARISTAS, actualizada desde la del padre con listas de vecinos ordenadas */
+        DOS_ARISTAS_INCREMENTAL,
+        /** 1-árbol mínimo con penalidades por nodo optimizadas por subgradiente (Held-Karp lagrangiano) */
+        UNO_ARBOL;
+
+        /** true si nunca sobreestima el costo restante (las dos aristas por nodo pueden sobreestimarlo) */
+        public boolean admisible() {
+            return this == UNO_ARBOL;
+        }
+
+        public CotaInferior crear(DistanceMatrix d) {
+            return switch (this) {
+                case DOS_ARISTAS -> new CotaDosAristas(d);
+                case DOS_ARISTAS_INCREMENTAL -> new CotaDosAristasIncremental(d);
+                case UNO_ARBOL -> new CotaUnoArbol(d);
+            };
+        }
+    }
+}
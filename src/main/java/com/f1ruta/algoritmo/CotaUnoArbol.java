@@ -0,0 +1,166 @@
+package com.f1ruta.algoritmo;
+
+import java.util.Arrays;
+
+import static com.f1ruta.algoritmo.CotaInferior.visitado;
+
+/**
+ * Cota de 1-árbol con penalidades lagrangianas (Held-Karp) para la ruta abierta restante.
+ * Se agrega un nodo ficticio unido con costo 0 a 'ultimo' y a todos los no visitados, de modo que la ruta
+ * restante más el ficticio forma un ciclo; el 1-árbol mínimo (árbol generador sobre los reales + dos aristas
+ * del ficticio) es una cota inferior válida para cualquier vector de penalidades, y las penalidades se
+ * ajustan por subgradiente para empujar los grados hacia 2. Las penalidades se reutilizan entre llamadas
+ * como punto de partida, ya que nodos hermanos tienen conjuntos casi iguales.
+ */
+public final class CotaUnoArbol implements CotaInferior {
+
+    /** Iteraciones de subgradiente en la raíz y en cada nodo hijo */
+    private static final int ITERACIONES_RAIZ = 60;
+    private static final int ITERACIONES = 12;
+
+    /** Margen relativo para que los redondeos no conviertan la cota en una sobreestimación */
+    private static final double MARGEN = 1e-6;
+
+    private final DistanceMatrix distancias;
+
+    private final double[] penalidad;
+    private final int[] nodos;
+    private final int[] grado;
+    private final double[] clave;
+    private final int[] enlace;
+    private final boolean[] enArbol;
+
+    public CotaUnoArbol(DistanceMatrix distancias) {
+        this.distancias = distancias;
+        int n = distancias.size();
+        this.penalidad = new double[n];
+        this.nodos = new int[n];
+        this.grado = new int[n];
+        this.clave = new double[n];
+        this.enlace = new int[n];
+        this.enArbol = new boolean[n];
+    }
+
+    @Override
+    public float calcular(long[] visitados, int ultimo, double auxPadre) {
+        int n = distancias.size();
+        int m = 0;
+        nodos[m++] = ultimo;
+        for (int j = 0; j < n; j++) {
+            if (!visitado(visitados, j)) nodos[m++] = j;
+        }
+        if (m == 1) return 0f;
+        // Con el margen también acá: el float redondeado de la arista exacta puede quedar por encima
+        if (m == 2) return (float) (distancias.get(ultimo, nodos[1]) * (1 - MARGEN));
+
+        boolean raiz = Double.isNaN(auxPadre);
+        if (raiz) Arrays.fill(penalidad, 0.0);
+
+        double superior = completarVecinoMasCercano(m);
+        double mejor = 0.0;
+        double lambda = 2.0;
+        int sinMejora = 0;
+        int iteraciones = raiz ? ITERACIONES_RAIZ : ITERACIONES;
+
+        for (int it = 0; it < iteraciones; it++) {
+            double cota = unoArbol(m);
+            if (cota > mejor) {
+                mejor = cota;
+                sinMejora = 0;
+            } else if (++sinMejora >= 3) {
+                lambda /= 2;
+                sinMejora = 0;
+            }
+
+            double norma = 0.0;
+            for (int k = 0; k < m; k++) {
+                int g = grado[k] - 2;
+                norma += g * g;
+            }
+            // Grados todos 2: el 1-árbol es una ruta y la cota es exacta
+            if (norma == 0.0 || superior - cota <= 1e-9) break;
+
+            double paso = lambda * (superior - cota) / norma;
+            for (int k = 0; k < m; k++) {
+                penalidad[nodos[k]] += paso * (grado[k] - 2);
+            }
+        }
+        return (float) (mejor * (1 - MARGEN));
+    }
+
+    /** Costo lagrangiano del 1-árbol mínimo sobre nodos[0..m) (deja los grados en 'grado') */
+    private double unoArbol(int m) {
+        // Prim O(m²) con costos d(i,j) + π_i + π_j
+        for (int k = 0; k < m; k++) {
+            clave[k] = Double.POSITIVE_INFINITY;
+            enArbol[k] = false;
+            grado[k] = 0;
+        }
+        clave[0] = 0.0;
+        enlace[0] = -1;
+        double total = 0.0;
+
+        for (int paso = 0; paso < m; paso++) {
+            int u = -1;
+            for (int k = 0; k < m; k++) {
+                if (!enArbol[k] && (u < 0 || clave[k] < clave[u])) u = k;
+            }
+            enArbol[u] = true;
+            total += clave[u];
+            if (enlace[u] >= 0) {
+                grado[u]++;
+                grado[enlace[u]]++;
+            }
+            int a = nodos[u];
+            double pa = penalidad[a];
+            for (int k = 0; k < m; k++) {
+                if (enArbol[k]) continue;
+                int b = nodos[k];
+                double c = distancias.get(a, b) + pa + penalidad[b];
+                if (c < clave[k]) {
+                    clave[k] = c;
+                    enlace[k] = u;
+                }
+            }
+        }
+
+        // Aristas del nodo ficticio: la obligada hacia 'ultimo' y la más barata hacia un no visitado
+        int minimo = 1;
+        for (int k = 2; k < m; k++) {
+            if (penalidad[nodos[k]] < penalidad[nodos[minimo]]) minimo = k;
+        }
+        total += penalidad[nodos[0]] + penalidad[nodos[minimo]];
+        grado[0]++;
+        grado[minimo]++;
+
+        double sumaPenalidades = 0.0;
+        for (int k = 0; k < m; k++) {
+            sumaPenalidades += penalidad[nodos[k]];
+        }
+        return total - 2 * sumaPenalidades;
+    }
+
+    /** Costo de completar la ruta con Vecino Más Cercano desde 'ultimo' (cota superior para el paso) */
+    private double completarVecinoMasCercano(int m) {
+        for (int k = 0; k < m; k++) enArbol[k] = false;
+        enArbol[0] = true;
+        int actual = nodos[0];
+        double total = 0.0;
+        for (int paso = 1; paso < m; paso++) {
+            int mejor = -1;
+            double mejorD = Double.POSITIVE_INFINITY;
+            for (int k = 1; k < m; k++) {
+                if (enArbol[k]) continue;
+                double dk = distancias.get(actual, nodos[k]);
+                if (dk < mejorD) {
+                    mejorD = dk;
+                    mejor = k;
+                }
+            }
+            enArbol[mejor] = true;
+            total += mejorD;
+            actual = nodos[mejor];
+        }
+        return total;
+    }
+}
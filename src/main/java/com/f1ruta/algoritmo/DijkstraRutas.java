@@ -2,64 +2,74 @@ package com.f1ruta.algoritmo;
 
 import java.util.*;
 
+/**
+ * Ruta mínima entre dos circuitos. Modo completo: Dijkstra sobre el grafo Haversine completo.
+ * Modo disperso: A* sobre un {@link GrafoDisperso} con la distancia Haversine al destino como heurística
+ * (admisible y consistente, porque cada arista pesa su propia distancia Haversine).
+ * Con una {@link TablaRutas} precalculada del mismo grafo, la ruta sale de la tabla sin búsqueda.
+ * Si el grafo disperso deja a origen y destino en componentes distintas se lanza {@link RutaInexistenteException}.
+ */
 public class DijkstraRutas {
 
-    public static record Resultado(List<String> ruta, double kmTotales) {}
+    /** Ruta, km y cuántos nodos se cerraron durante la búsqueda */
+    public static record Resultado(List<String> ruta, double kmTotales, int nodosExplorados) {}
 
     /** DTO ya usado en tu TSP (mismo formato que el JSON) */
     public static class Circuito extends RutaF1TSP.Circuito { }
 
-    /** Distancia Haversine en km */
-    private static double haversine(double lat1, double lon1, double lat2, double lon2) {
-        final double R = 6371.0;
-        double p1 = Math.toRadians(lat1), p2 = Math.toRadians(lat2);
-        double dphi = p2 - p1;
-        double dlambda = Math.toRadians(lon2 - lon1);
-        double a = Math.sin(dphi/2)*Math.sin(dphi/2)
-                + Math.cos(p1)*Math.cos(p2)*Math.sin(dlambda/2)*Math.sin(dlambda/2);
-        return 2 * R * Math.asin(Math.sqrt(a));
-    }
+    /** Calcula la ruta mínima entre 'origen' y 'destino' (nombres del JSON) sobre el grafo completo */
+    public static Resultado calcularRuta(SnapshotCircuitos circuitos,
+                                         String origen, String destino) {
+        int[] st = extremos(circuitos, origen, destino);
+        int s = st[0], t = st[1];
+        if (s == t) return new Resultado(List.of(circuitos.nombre(s)), 0.0, 0);
+
+        int n = circuitos.size();
+        DistanceMatrix d = circuitos.matriz();
+
+        // Dijkstra
+        double[] dist = new double[n];
+        int[] prev = new int[n];
+        boolean[] vis = new boolean[n];
+        Arrays.fill(dist, Double.POSITIVE_INFINITY);
+        Arrays.fill(prev, -1);
+        dist[s] = 0.0;
 
-    /** Matriz de distancias de grafo completo usando Haversine */
-    private static double[][] distancias(List<RutaF1TSP.Circuito> cs) {
-        int n = cs.size();
-        double[][] d = new double[n][n];
-        for (int i = 0; i < n; i++) {
-            var a = cs.get(i);
-            for (int j = 0; j < n; j++) {
-                if (i == j) { d[i][j] = 0; continue; }
-                var b = cs.get(j);
-                d[i][j] = haversine(a.latitud, a.longitud, b.latitud, b.longitud);
+        HeapIndexado pq = new HeapIndexado(n);
+        pq.actualizar(s, 0.0);
+        int explorados = 0;
+
+        while (!pq.isEmpty()) {
+            int u = pq.sacar();
+            vis[u] = true;
+            explorados++;
+            if (u == t) break;
+
+            for (int v = 0; v < n; v++) {
+                if (vis[v]) continue;
+                double alt = dist[u] + d.get(u, v);
+                if (alt < dist[v]) {
+                    dist[v] = alt;
+                    prev[v] = u;
+                    pq.actualizar(v, alt);
+                }
             }
         }
-        return d;
+
+        return resultado(circuitos, prev, dist, s, t, explorados);
     }
 
-    /** Calcula la ruta mínima entre 'origen' y 'destino' (nombres del JSON) */
-    public static Resultado calcularRuta(List<RutaF1TSP.Circuito> circuitos,
-                                         String origen, String destino) {
-        if (origen == null || destino == null)
-            throw new IllegalArgumentException("origen/destino no pueden ser nulos");
-        origen  = origen.trim().toLowerCase(Locale.ROOT);
-        destino = destino.trim().toLowerCase(Locale.ROOT);
+    /** A* entre 'origen' y 'destino' sobre el grafo disperso, guiado por la distancia Haversine al destino */
+    public static Resultado calcularRuta(SnapshotCircuitos circuitos,
+                                         String origen, String destino,
+                                         GrafoDisperso grafo) {
+        int[] st = extremos(circuitos, origen, destino);
+        int s = st[0], t = st[1];
+        if (s == t) return new Resultado(List.of(circuitos.nombre(s)), 0.0, 0);
 
         int n = circuitos.size();
-        Map<String,Integer> idx = new HashMap<>();
-        for (int i = 0; i < n; i++) {
-            idx.put(circuitos.get(i).nombre.toLowerCase(Locale.ROOT), i);
-        }
+        IndiceEspacial geo = circuitos.indiceEspacial();
 
-        Integer s = idx.get(origen);
-        Integer t = idx.get(destino);
-        if (s == null) throw new IllegalArgumentException("Circuito origen no encontrado: " + origen);
-        if (t == null) throw new IllegalArgumentException("Circuito destino no encontrado: " + destino);
-        if (s.equals(t)) return new Resultado(
-                List.of(circuitos.get(s).nombre), 0.0
-        );
-
-        double[][] d = distancias(circuitos);
-
-        // Dijkstra
         double[] dist = new double[n];
         int[] prev = new int[n];
         boolean[] vis = new boolean[n];
@@ -67,38 +77,67 @@ public class DijkstraRutas {
         Arrays.fill(prev, -1);
         dist[s] = 0.0;
 
-        // PQ por distancia actual; guardamos índices de nodo
-        PriorityQueue<Integer> pq = new PriorityQueue<>(Comparator.comparingDouble(u -> dist[u]));
-        pq.offer(s);
+        HeapIndexado abiertos = new HeapIndexado(n);
+        abiertos.actualizar(s, geo.distancia(s, t));
+        int explorados = 0;
 
-        while (!pq.isEmpty()) {
-            int u = pq.poll();
-            if (vis[u]) continue;
+        while (!abiertos.isEmpty()) {
+            int u = abiertos.sacar();
             vis[u] = true;
+            explorados++;
             if (u == t) break;
 
-            for (int v = 0; v < n; v++) {
-                if (u == v) continue;
-                double alt = dist[u] + d[u][v];
+            for (int e = grafo.inicio(u); e < grafo.fin(u); e++) {
+                int v = grafo.destino(e);
+                if (vis[v]) continue;
+                double alt = dist[u] + grafo.peso(e);
                 if (alt < dist[v]) {
                     dist[v] = alt;
                     prev[v] = u;
-                    pq.offer(v);
+                    abiertos.actualizar(v, alt + geo.distancia(v, t));
                 }
             }
         }
 
-        if (Double.isInfinite(dist[t]))
-            throw new IllegalStateException("No existe ruta entre origen y destino.");
+        return resultado(circuitos, prev, dist, s, t, explorados);
+    }
+
+    /** Ruta mínima sobre el grafo disperso leída de la tabla precalculada (sin explorar nodos) */
+    public static Resultado calcularRuta(SnapshotCircuitos circuitos,
+                                         String origen, String destino,
+                                         TablaRutas tabla) {
+        int[] st = extremos(circuitos, origen, destino);
+        int[] ruta = tabla.ruta(st[0], st[1]);
+        if (ruta == null) throw new RutaInexistenteException(circuitos.nombre(st[0]), circuitos.nombre(st[1]));
+
+        List<Integer> pathIdx = new ArrayList<>(ruta.length);
+        for (int idx : ruta) pathIdx.add(idx);
+        return new Resultado(circuitos.nombres(pathIdx), Math.round(tabla.largo(ruta)), 0);
+    }
+
+    /** Índices de origen y destino, validados */
+    private static int[] extremos(SnapshotCircuitos circuitos, String origen, String destino) {
+        if (origen == null || destino == null)
+            throw new IllegalArgumentException("origen/destino no pueden ser nulos");
+        origen  = origen.trim().toLowerCase(Locale.ROOT);
+        destino = destino.trim().toLowerCase(Locale.ROOT);
+
+        int s = circuitos.indice(origen);
+        int t = circuitos.indice(destino);
+        if (s < 0) throw new IllegalArgumentException("Circuito origen no encontrado: " + origen);
+        if (t < 0) throw new IllegalArgumentException("Circuito destino no encontrado: " + destino);
+        return new int[]{s, t};
+    }
+
+    private static Resultado resultado(SnapshotCircuitos circuitos, int[] prev, double[] dist, int s, int t,
+                                       int explorados) {
+        if (Double.isInfinite(dist[t])) throw new RutaInexistenteException(circuitos.nombre(s), circuitos.nombre(t));
 
         // Reconstrucción
         List<Integer> pathIdx = new ArrayList<>();
         for (int cur = t; cur != -1; cur = prev[cur]) pathIdx.add(cur);
         Collections.reverse(pathIdx);
 
-        List<String> nombres = new ArrayList<>();
-        for (int id : pathIdx) nombres.add(circuitos.get(id).nombre);
-
-        return new Resultado(nombres, Math.round(dist[t]));
+        return new Resultado(circuitos.nombres(pathIdx), Math.round(dist[t]), explorados);
     }
 }
@@ -0,0 +1,269 @@
+package com.f1ruta.algoritmo;
+
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Matriz de distancias Haversine compartida por todos los algoritmos.
+ * Como la matriz es simétrica y con diagonal nula, guarda solo el triángulo superior
+ * en un único arreglo plano de primitivos. Se construye una vez por versión del set de circuitos,
+ * o se lee de un {@link ArchivoCircuitos} mapeado en memoria (fuera del heap), en tramos de
+ * {@link #CELDAS_POR_TRAMO} valores porque un mapeo no puede pasar de 2 GB.
+ * <p>
+ * Cuando cambian pocos circuitos ({@link #parchear}), la matriz nueva comparte el triángulo de la
+ * anterior y guarda aparte la fila completa de cada nodo cambiado: O(n) por cambio en lugar de O(n²).
+ */
+public final class DistanceMatrix {
+
+    /** Radio medio de la Tierra en km */
+    public static final double RADIO_TIERRA_KM = 6371.0;
+
+    private final int n;
+    private final long version;
+
+    /** Triángulo superior empaquetado (i < j) y desplazamiento de cada fila dentro del arreglo */
+    private final double[] datos;
+    private final int[] fila;
+
+    /** Valores por tramo mapeado (1 GB de doubles); una potencia de 2 para ubicar la celda con un corrimiento */
+    static final int CELDAS_POR_TRAMO = 1 << 27;
+
+    /**
+     * El mismo triángulo leído de un archivo mapeado (solo lectura), cuando datos es null: tramos
+     * consecutivos de 2^bitsTramo valores (el último puede ser más corto)
+     */
+    private final DoubleBuffer[] mapeados;
+    private final int bitsTramo;
+
+    /** Máximo de filas parcheadas sobre un mismo triángulo; pasado este número conviene recalcularlo */
+    static final int MAX_FILAS_PARCHE = 64;
+
+    /**
+     * Matriz sin parches cuyo triángulo se comparte (null si no hay parches). parche[i] es la fila de
+     * 'filas' con las distancias de i a todos, o -1; las filas se agregan en orden, así que de dos nodos
+     * parcheados vale la del más reciente, que se calculó con las dos coordenadas vigentes.
+     */
+    private final DistanceMatrix base;
+    private final int[] parche;
+    private final double[][] filas;
+
+    /** Listas de vecinos más cercanos (se calculan en el primer uso y se reutilizan si alcanza su k) */
+    private volatile VecinosCercanos vecinos;
+    /**
+     * Filas completas ordenadas (k = n - 1), aparte de las listas cortas: si compartieran lugar, la cota
+     * incremental de Branch & Bound y la búsqueda local se pisarían las listas en cada corrida.
+     */
+    private volatile VecinosCercanos ordenCompleto;
+
+    /** Usa los arreglos recibidos sin copiarlos (deben ser inmutables, p. ej. los del snapshot) */
+    DistanceMatrix(double[] lat, double[] lon, long version) {
+        if (lat.length != lon.length)
+            throw new IllegalArgumentException("latitudes y longitudes deben tener el mismo tamaño");
+        this.n = lat.length;
+        this.version = version;
+        this.fila = filas(n);
+        this.mapeados = null;
+        this.bitsTramo = 0;
+        this.base = null;
+        this.parche = null;
+        this.filas = null;
+
+        // Vectores unitarios por nodo; cada fila del triángulo es contigua y se calcula de una vez
+        double[][] u = KernelHaversine.unitarios(lat, lon);
+        datos = new double[(int) celdas(n)];
+        for (int i = 0; i + 1 < n; i++) {
+            KernelHaversine.fila(u[0], u[1], u[2], i, i + 1, n, datos, fila[i] + i + 1);
+        }
+    }
+
+    /**
+     * Usa el triángulo ya calculado de un archivo mapeado, partido en tramos: todos salvo el último con
+     * la misma cantidad de valores, potencia de 2, y entre todos {@link #celdas(int)} valores
+     */
+    DistanceMatrix(int n, long version, DoubleBuffer[] mapeados) {
+        // Con un solo tramo cualquier posición (< 2^31) cae en el primero
+        int porTramo = mapeados.length > 1 ? mapeados[0].limit() : 0;
+        long total = 0;
+        for (int t = 0; t < mapeados.length; t++) {
+            if (t + 1 < mapeados.length && mapeados[t].limit() != porTramo)
+                throw new IllegalArgumentException("Los tramos del triángulo deben tener el mismo tamaño");
+            total += mapeados[t].limit();
+        }
+        if (mapeados.length > 1 && Integer.bitCount(porTramo) != 1)
+            throw new IllegalArgumentException("Los tramos del triángulo deben tener una potencia de 2 de valores");
+        if (total != celdas(n))
+            throw new IllegalArgumentException("El triángulo de distancias no corresponde a " + n + " circuitos");
+        this.n = n;
+        this.version = version;
+        this.fila = filas(n);
+        this.datos = null;
+        this.mapeados = mapeados;
+        this.bitsTramo = mapeados.length > 1 ? Integer.numberOfTrailingZeros(porTramo) : 31;
+        this.base = null;
+        this.parche = null;
+        this.filas = null;
+    }
+
+    private DistanceMatrix(DistanceMatrix base, int n, long version, int[] parche, double[][] filas) {
+        this.n = n;
+        this.version = version;
+        this.fila = base.fila;
+        this.datos = base.datos;
+        this.mapeados = base.mapeados;
+        this.bitsTramo = base.bitsTramo;
+        this.base = base;
+        this.parche = parche;
+        this.filas = filas;
+    }
+
+    /**
+     * Matriz del snapshot con coordenadas lat/lon que difiere de esta solo en los nodos 'cambiados'
+     * (índices del snapshot nuevo; los demás conservan índice y coordenadas, salvo los que quedan fuera
+     * de un set más chico). Calcula una fila por nodo cambiado, en O(n) cada una. Devuelve null si se
+     * superaría {@link #MAX_FILAS_PARCHE}: ahí la matriz se vuelve a calcular entera en el primer uso.
+     */
+    DistanceMatrix parchear(double[] lat, double[] lon, int[] cambiados, long version) {
+        int anteriores = filas != null ? filas.length : 0;
+        if (anteriores + cambiados.length > MAX_FILAS_PARCHE) return null;
+        int m = lat.length;
+        int[] nuevoParche = new int[m];
+        Arrays.fill(nuevoParche, -1);
+        if (parche != null) System.arraycopy(parche, 0, nuevoParche, 0, Math.min(m, parche.length));
+        double[][] nuevasFilas = filas != null ? Arrays.copyOf(filas, anteriores + cambiados.length)
+                : new double[cambiados.length][];
+
+        double[][] u = KernelHaversine.unitarios(lat, lon);
+        for (int c = 0; c < cambiados.length; c++) {
+            int i = cambiados[c];
+            double[] distancias = new double[m];
+            KernelHaversine.fila(u[0], u[1], u[2], i, 0, m, distancias, 0);
+            distancias[i] = 0.0;
+            nuevasFilas[anteriores + c] = distancias;
+            nuevoParche[i] = anteriores + c;
+        }
+        return new DistanceMatrix(base != null ? base : this, m, version, nuevoParche, nuevasFilas);
+    }
+
+    /** Cantidad de pares (i < j) guardados para n nodos */
+    static long celdas(int n) {
+        long celdas = (long) n * (n - 1) / 2;
+        if (celdas > Integer.MAX_VALUE - 8)
+            throw new IllegalArgumentException("Demasiados circuitos para la matriz de distancias: " + n);
+        return celdas;
+    }
+
+    /** fila[i] + j da la posición del par (i, j) con i < j */
+    private static int[] filas(int n) {
+        int[] fila = new int[n];
+        for (int i = 0; i < n; i++) {
+            fila[i] = (int) ((long) i * (2L * n - i - 1) / 2 - i - 1);
+        }
+        return fila;
+    }
+
+    /** Construye la matriz a partir de arreglos de coordenadas en grados */
+    public static DistanceMatrix de(double[] lat, double[] lon, long version) {
+        return new DistanceMatrix(lat.clone(), lon.clone(), version);
+    }
+
+    /** Distancia en km entre los nodos i y j (sin asignar memoria) */
+    public double get(int i, int j) {
+        if (i == j) return 0.0;
+        if (parche != null) {
+            int fi = parche[i], fj = parche[j];
+            if (fi > fj) return filas[fi][j];
+            if (fj >= 0) return filas[fj][i];
+        }
+        int p = i < j ? fila[i] + j : fila[j] + i;
+        return datos != null ? datos[p] : mapeados[p >>> bitsTramo].get(p & ((1 << bitsTramo) - 1));
+    }
+
+    /** Cantidad de nodos */
+    public int size() {
+        return n;
+    }
+
+    /** Si el triángulo está en un archivo mapeado en lugar del heap */
+    public boolean mapeada() {
+        return datos == null;
+    }
+
+    /** Cantidad de filas parcheadas sobre el triángulo compartido (0 = matriz calculada entera) */
+    public int filasParcheadas() {
+        return filas != null ? filas.length : 0;
+    }
+
+    /** Copia el triángulo empaquetado en los tramos consecutivos de 'destino' (para guardarlo en un archivo) */
+    void copiarEn(DoubleBuffer[] destino) {
+        if (parche == null && datos != null) {
+            int desde = 0;
+            for (DoubleBuffer tramo : destino) {
+                int cantidad = tramo.remaining();
+                tramo.put(datos, desde, cantidad);
+                desde += cantidad;
+            }
+            return;
+        }
+        int t = 0;
+        for (int i = 0; i + 1 < n; i++) {
+            for (int j = i + 1; j < n; j++) {
+                while (!destino[t].hasRemaining()) t++;
+                destino[t].put(get(i, j));
+            }
+        }
+    }
+
+    /** Versión del set de circuitos con la que se construyó la matriz */
+    public long version() {
+        return version;
+    }
+
+    /** Los k vecinos más cercanos de cada nodo, ordenados por distancia */
+    public VecinosCercanos vecinos(int k) {
+        k = Math.min(k, n - 1);
+        if (k == n - 1) return ordenCompleto();
+        VecinosCercanos v = vecinos;
+        if (v == null || v.k() < k) {
+            synchronized (this) {
+                v = vecinos;
+                if (v == null || v.k() < k) {
+                    v = new VecinosCercanos(this, k);
+                    vecinos = v;
+                }
+            }
+        }
+        return v;
+    }
+
+    private VecinosCercanos ordenCompleto() {
+        VecinosCercanos v = ordenCompleto;
+        if (v == null) {
+            synchronized (this) {
+                v = ordenCompleto;
+                if (v == null) {
+                    v = new VecinosCercanos(this, n - 1);
+                    ordenCompleto = v;
+                }
+            }
+        }
+        return v;
+    }
+
+    /** Longitud total (km) de una ruta abierta dada por índices */
+    public double largoRuta(List<Integer> ruta) {
+        double total = 0;
+        for (int i = 0; i + 1 < ruta.size(); i++) {
+            total += get(ruta.get(i), ruta.get(i + 1));
+        }
+        return total;
+    }
+
+    /**
+     * Distancia Haversine en km entre dos coordenadas en grados: la misma fórmula y operaciones que las
+     * celdas de la matriz en el camino escalar (ver {@link KernelHaversine})
+     */
+    public static double haversine(double lat1, double lon1, double lat2, double lon2) {
+        return KernelHaversine.distancia(lat1, lon1, lat2, lon2);
+    }
+}
@@ -0,0 +1,113 @@
+package com.f1ruta.algoritmo;
+
+import java.util.Arrays;
+
+/**
+ * Grafo no dirigido y disperso sobre los circuitos, en formato CSR (inicio[i]..inicio[i+1] en
+ * destino/peso son las aristas de i). Une cada circuito con sus k más cercanos dentro de maxKm,
+ * simetrizado, con peso Haversine. Se arma con el {@link IndiceEspacial}, sin matriz de distancias.
+ */
+public final class GrafoDisperso {
+
+    private final int k;
+    private final double maxKm;
+    private final int[] inicio;
+    private final int[] destino;
+    private final double[] peso;
+
+    private GrafoDisperso(int k, double maxKm, int[] inicio, int[] destino, double[] peso) {
+        this.k = k;
+        this.maxKm = maxKm;
+        this.inicio = inicio;
+        this.destino = destino;
+        this.peso = peso;
+    }
+
+    /** Aristas a los k vecinos más cercanos de cada circuito (maxKm <= 0 = sin límite de distancia) */
+    public static GrafoDisperso deVecinos(IndiceEspacial indice, int k, double maxKm) {
+        if (k <= 0) throw new IllegalArgumentException("k debe ser positivo: " + k);
+        int n = indice.size();
+
+        // Aristas dirigidas i -> vecino, luego se agregan las inversas y se quitan repetidas
+        int[] vecinos = new int[Math.min(k, Math.max(0, n - 1))];
+        int[] cantidad = new int[n];
+        int[][] listas = new int[n][];
+        int total = 0;
+        for (int i = 0; i < n; i++) {
+            int m = indice.masCercanos(i, k, maxKm, vecinos);
+            listas[i] = Arrays.copyOf(vecinos, m);
+            cantidad[i] += m;
+            for (int r = 0; r < m; r++) cantidad[vecinos[r]]++;
+            total += 2 * m;
+        }
+
+        int[] inicio = new int[n + 1];
+        for (int i = 0; i < n; i++) inicio[i + 1] = inicio[i] + cantidad[i];
+        int[] destino = new int[total];
+        int[] llenado = Arrays.copyOf(inicio, n);
+        for (int i = 0; i < n; i++) {
+            for (int v : listas[i]) {
+                destino[llenado[i]++] = v;
+                destino[llenado[v]++] = i;
+            }
+        }
+
+        // Ordenar cada lista y compactar sin repetidos
+        int[] compacto = new int[n + 1];
+        int escritos = 0;
+        for (int i = 0; i < n; i++) {
+            int desde = inicio[i], hasta = inicio[i + 1];
+            Arrays.sort(destino, desde, hasta);
+            compacto[i] = escritos;
+            for (int e = desde; e < hasta; e++) {
+                if (e > desde && destino[e] == destino[e - 1]) continue;
+                destino[escritos++] = destino[e];
+            }
+        }
+        compacto[n] = escritos;
+
+        int[] destinoFinal = Arrays.copyOf(destino, escritos);
+        double[] peso = new double[escritos];
+        for (int i = 0; i < n; i++) {
+            for (int e = compacto[i]; e < compacto[i + 1]; e++) {
+                peso[e] = indice.distancia(i, destinoFinal[e]);
+            }
+        }
+        return new GrafoDisperso(k, maxKm, compacto, destinoFinal, peso);
+    }
+
+    public int size() {
+        return inicio.length - 1;
+    }
+
+    /** Cantidad de aristas (cada una contada en ambos sentidos) */
+    public int aristas() {
+        return destino.length;
+    }
+
+    public int k() {
+        return k;
+    }
+
+    public double maxKm() {
+        return maxKm;
+    }
+
+    /** Primera posición de las aristas de i en {@link #destino}/{@link #peso} */
+    public int inicio(int i) {
+        return inicio[i];
+    }
+
+    /** Posición siguiente a la última arista de i */
+    public int fin(int i) {
+        return inicio[i + 1];
+    }
+
+    public int destino(int e) {
+        return destino[e];
+    }
+
+    public double peso(int e) {
+        return peso[e];
+    }
+}
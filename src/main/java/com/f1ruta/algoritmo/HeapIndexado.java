@@ -0,0 +1,84 @@
+package com.f1ruta.algoritmo;
+
+import java.util.Arrays;
+
+/**
+ * Heap binario de nodos 0..n-1 con clave double y decrease-key: cada nodo está a lo sumo una vez,
+ * así que no se acumulan entradas viejas como en un PriorityQueue que se reinserta.
+ */
+final class HeapIndexado {
+
+    private final int[] heap;
+    /** Posición de cada nodo en el heap, o -1 si no está */
+    private final int[] posicion;
+    private final double[] clave;
+    private int tamanio;
+
+    HeapIndexado(int n) {
+        heap = new int[n];
+        posicion = new int[n];
+        clave = new double[n];
+        Arrays.fill(posicion, -1);
+    }
+
+    boolean isEmpty() {
+        return tamanio == 0;
+    }
+
+    /** Inserta el nodo o baja su clave si ya está y la nueva es menor */
+    void actualizar(int nodo, double nuevaClave) {
+        int p = posicion[nodo];
+        if (p < 0) {
+            p = tamanio++;
+            heap[p] = nodo;
+            posicion[nodo] = p;
+        } else if (nuevaClave >= clave[nodo]) {
+            return;
+        }
+        clave[nodo] = nuevaClave;
+        subir(p);
+    }
+
+    /** Saca el nodo de menor clave */
+    int sacar() {
+        int top = heap[0];
+        posicion[top] = -1;
+        int ultimo = heap[--tamanio];
+        if (tamanio > 0) {
+            heap[0] = ultimo;
+            posicion[ultimo] = 0;
+            bajar(0);
+        }
+        return top;
+    }
+
+    private void subir(int p) {
+        int nodo = heap[p];
+        double c = clave[nodo];
+        while (p > 0) {
+            int padre = (p - 1) >>> 1;
+            if (clave[heap[padre]] <= c) break;
+            heap[p] = heap[padre];
+            posicion[heap[p]] = p;
+            p = padre;
+        }
+        heap[p] = nodo;
+        posicion[nodo] = p;
+    }
+
+    private void bajar(int p) {
+        int nodo = heap[p];
+        double c = clave[nodo];
+        int mitad = tamanio >>> 1;
+        while (p < mitad) {
+            int hijo = 2 * p + 1;
+            if (hijo + 1 < tamanio && clave[heap[hijo + 1]] < clave[heap[hijo]]) hijo++;
+            if (c <= clave[heap[hijo]]) break;
+            heap[p] = heap[hijo];
+            posicion[heap[p]] = p;
+            p = hijo;
+        }
+        heap[p] = nodo;
+        posicion[nodo] = p;
+    }
+}
@@ -0,0 +1,107 @@
+package com.f1ruta.algoritmo;
+
+import java.util.*;
+
+/**
+ * TSP exacto por programación dinámica de Held-Karp sobre máscaras de bits.
+ * Ruta abierta con origen fijo: O(2^n · n²) tiempo y O(2^n · n) memoria en tablas primitivas,
+ * por eso solo se usa para sets chicos (n <= {@link #MAX_CIRCUITOS}).
+ */
+public class HeldKarpTSP {
+
+    public static record Resultado(List<String> ruta, double kmTotales) {}
+
+    /** Máximo de circuitos soportado (con n = 22 las tablas ocupan ~220 MB) */
+    public static final int MAX_CIRCUITOS = 22;
+
+    /** Calcula la ruta abierta óptima que sale de 'origenNombre' y visita todos los circuitos */
+    public static Resultado calcularRuta(SnapshotCircuitos cs, String origenNombre) {
+        int n = cs.size();
+        if (n == 0) return new Resultado(List.of(), 0.0);
+        if (n > MAX_CIRCUITOS)
+            throw new IllegalArgumentException("Held-Karp admite hasta " + MAX_CIRCUITOS + " circuitos, recibió " + n);
+        int origen = origen(cs, origenNombre);
+        if (n == 1) return new Resultado(List.of(cs.nombre(0)), 0.0);
+
+        DistanceMatrix d = cs.matriz();
+
+        // Los demás nodos se renumeran 0..m-1 para indexar las máscaras
+        int m = n - 1;
+        int[] nodo = new int[m];
+        for (int i = 0, k = 0; i < n; i++) {
+            if (i != origen) nodo[k++] = i;
+        }
+
+        // dp[mascara * m + j]: costo mínimo saliendo del origen, visitando 'mascara' y terminando en j
+        int estados = 1 << m;
+        float[] dp = new float[estados * m];
+        byte[] previo = new byte[estados * m];
+        Arrays.fill(dp, Float.POSITIVE_INFINITY);
+
+        for (int j = 0; j < m; j++) {
+            dp[(1 << j) * m + j] = (float) d.get(origen, nodo[j]);
+            previo[(1 << j) * m + j] = -1;
+        }
+
+        // Distancias entre los m nodos como tabla float contigua
+        float[] w = new float[m * m];
+        for (int i = 0; i < m; i++) {
+            for (int j = 0; j < m; j++) {
+                w[i * m + j] = (float) d.get(nodo[i], nodo[j]);
+            }
+        }
+
+        for (int mascara = 1; mascara < estados; mascara++) {
+            int base = mascara * m;
+            for (int j = 0; j < m; j++) {
+                if ((mascara & (1 << j)) == 0) continue;
+                float costo = dp[base + j];
+                if (costo == Float.POSITIVE_INFINITY) continue;
+
+                int fila = j * m;
+                int libres = ~mascara & (estados - 1);
+                while (libres != 0) {
+                    int k = Integer.numberOfTrailingZeros(libres);
+                    libres &= libres - 1;
+                    int destino = (mascara | (1 << k)) * m + k;
+                    float nuevo = costo + w[fila + k];
+                    if (nuevo < dp[destino]) {
+                        dp[destino] = nuevo;
+                        previo[destino] = (byte) j;
+                    }
+                }
+            }
+        }
+
+        // Mejor extremo final con todos los nodos visitados
+        int completa = estados - 1;
+        int fin = 0;
+        for (int j = 1; j < m; j++) {
+            if (dp[completa * m + j] < dp[completa * m + fin]) fin = j;
+        }
+
+        // Reconstrucción siguiendo los predecesores
+        int[] orden = new int[m];
+        int mascara = completa;
+        for (int pos = m - 1, j = fin; pos >= 0; pos--) {
+            orden[pos] = nodo[j];
+            int anterior = previo[mascara * m + j];
+            mascara &= ~(1 << j);
+            j = anterior;
+        }
+
+        List<Integer> ruta = new ArrayList<>(n);
+        ruta.add(origen);
+        for (int idx : orden) ruta.add(idx);
+
+        return new Resultado(cs.nombres(ruta), Math.round(d.largoRuta(ruta)));
+    }
+
+    /** Índice del origen (el primer circuito si no se indica); IllegalArgumentException si no existe */
+    static int origen(SnapshotCircuitos cs, String origenNombre) {
+        if (origenNombre == null || origenNombre.trim().isEmpty()) return 0;
+        int origen = cs.indice(origenNombre);
+        if (origen < 0) throw new IllegalArgumentException("Circuito origen no encontrado: " + origenNombre.trim());
+        return origen;
+    }
+}
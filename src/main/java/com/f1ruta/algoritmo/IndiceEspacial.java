@@ -0,0 +1,376 @@
+package com.f1ruta.algoritmo;
+
+import java.util.Arrays;
+
+/**
+ * Árbol k-d sobre los circuitos como vectores unitarios 3D: una distancia sobre la esfera de d km
+ * equivale a una cuerda de 2·sin(d / 2R), así que las consultas por radio se resuelven con una esfera
+ * euclídea y se confirman con Haversine. El árbol es implícito (rango [lo, hi) con el nodo en el medio)
+ * y se construye una vez por snapshot en O(n log n), sin la matriz de n² distancias.
+ * <p>
+ * Un snapshot con pocos circuitos cambiados ({@link #parchear}) comparte el árbol del anterior: los
+ * circuitos quitados o movidos quedan como huecos del árbol y los nuevos o movidos van a una lista
+ * aparte que las consultas recorren entera, hasta {@link #MAX_FUERA_DEL_ARBOL} entre ambos.
+ */
+public final class IndiceEspacial {
+
+    /** Margen relativo de la cuerda para no perder puntos justo en el borde por redondeo */
+    private static final double MARGEN = 1e-9;
+
+    /** Máximo de huecos más circuitos fuera del árbol; pasado este número se reconstruye */
+    static final int MAX_FUERA_DEL_ARBOL = 64;
+
+    /** Cantidad de circuitos y de nodos del árbol (distintos si hay parches) */
+    private final int n;
+    private final int m;
+
+    /** Coordenadas 3D e índice original (-1 = hueco), en el orden del árbol */
+    private final double[] x, y, z;
+    private final int[] indice;
+    /** Posición en el árbol de cada índice original, o -(1 + i) si es el i-ésimo de 'fuera' */
+    private final int[] posicion;
+    /** Circuitos que no están en el árbol y cantidad de huecos */
+    private final int[] fuera;
+    private final int huecos;
+    /** Eje de corte (0, 1, 2) de cada nodo, indexado por su posición en el árbol */
+    private final byte[] eje;
+
+    /** Vectores unitarios por índice original, para el filtro exacto con {@link KernelHaversine} */
+    private final double[] ux, uy, uz;
+
+    /** Usa los arreglos recibidos sin copiarlos (deben ser inmutables, p. ej. los del snapshot) */
+    IndiceEspacial(double[] lat, double[] lon) {
+        if (lat.length != lon.length)
+            throw new IllegalArgumentException("latitudes y longitudes deben tener el mismo tamaño");
+        this.n = lat.length;
+        this.m = n;
+        this.fuera = new int[0];
+        this.huecos = 0;
+        x = new double[n];
+        y = new double[n];
+        z = new double[n];
+        indice = new int[n];
+        posicion = new int[n];
+        eje = new byte[n];
+        double[][] u = KernelHaversine.unitarios(lat, lon);
+        ux = u[0];
+        uy = u[1];
+        uz = u[2];
+
+        for (int i = 0; i < n; i++) {
+            x[i] = ux[i];
+            y[i] = uy[i];
+            z[i] = uz[i];
+            indice[i] = i;
+        }
+        construir(0, n);
+        for (int p = 0; p < n; p++) posicion[indice[p]] = p;
+    }
+
+    private IndiceEspacial(IndiceEspacial arbol, int[] indice, int[] posicion, int[] fuera, int huecos,
+                           double[] ux, double[] uy, double[] uz) {
+        this.n = posicion.length;
+        this.m = arbol.m;
+        this.x = arbol.x;
+        this.y = arbol.y;
+        this.z = arbol.z;
+        this.eje = arbol.eje;
+        this.indice = indice;
+        this.posicion = posicion;
+        this.fuera = fuera;
+        this.huecos = huecos;
+        this.ux = ux;
+        this.uy = uy;
+        this.uz = uz;
+    }
+
+    /**
+     * Índice del snapshot con coordenadas lat/lon que comparte este árbol: 'quitados' son índices de este
+     * índice que dejan de valer (circuitos borrados, movidos o renumerados) y 'cambiados' índices del
+     * snapshot nuevo con coordenadas nuevas; el resto conserva índice y coordenadas. O(n) por los
+     * arreglos por circuito. Devuelve null si se superaría {@link #MAX_FUERA_DEL_ARBOL}: ahí el índice
+     * se vuelve a construir en el primer uso.
+     */
+    IndiceEspacial parchear(double[] lat, double[] lon, int[] quitados, int[] cambiados) {
+        int[] nuevoIndice = indice.clone();
+        int nuevosHuecos = huecos;
+        int[] nuevoFuera = new int[fuera.length + cambiados.length];
+        int cantidadFuera = 0;
+        boolean[] quitado = new boolean[n];
+        for (int q : quitados) {
+            quitado[q] = true;
+            if (posicion[q] >= 0) {
+                nuevoIndice[posicion[q]] = -1;
+                nuevosHuecos++;
+            }
+        }
+        for (int f : fuera) {
+            if (!quitado[f]) nuevoFuera[cantidadFuera++] = f;
+        }
+        for (int c : cambiados) nuevoFuera[cantidadFuera++] = c;
+        if (nuevosHuecos + cantidadFuera > MAX_FUERA_DEL_ARBOL) return null;
+        nuevoFuera = Arrays.copyOf(nuevoFuera, cantidadFuera);
+
+        int total = lat.length;
+        int[] nuevaPosicion = new int[total];
+        for (int p = 0; p < m; p++) {
+            if (nuevoIndice[p] >= 0) nuevaPosicion[nuevoIndice[p]] = p;
+        }
+        for (int f = 0; f < cantidadFuera; f++) nuevaPosicion[nuevoFuera[f]] = -(1 + f);
+
+        double[] nx = Arrays.copyOf(ux, total), ny = Arrays.copyOf(uy, total), nz = Arrays.copyOf(uz, total);
+        for (int c : cambiados) KernelHaversine.unitario(lat[c], lon[c], nx, ny, nz, c);
+        return new IndiceEspacial(this, nuevoIndice, nuevaPosicion, nuevoFuera, nuevosHuecos, nx, ny, nz);
+    }
+
+    public int size() {
+        return n;
+    }
+
+    /**
+     * Distancia Haversine en km entre los circuitos i y j (simétrica: solo usa cuadrados). Es la fórmula de {@link DistanceMatrix#get}
+     * en su camino escalar; con la Vector API la matriz puede diferir en el último bit.
+     */
+    public double distancia(int i, int j) {
+        if (i == j) return 0.0;
+        return KernelHaversine.distancia(ux, uy, uz, i, j);
+    }
+
+    /**
+     * Los (hasta) k circuitos más cercanos a 'centro' a distancia <= maxKm (maxKm <= 0 = sin límite),
+     * sin incluirlo, ordenados por distancia creciente. Escribe los índices en 'salida' y devuelve cuántos.
+     */
+    public int masCercanos(int centro, int k, double maxKm, int[] salida) {
+        if (k <= 0 || n <= 1) return 0;
+        double cuerda = maxKm > 0 ? cuerda(maxKm) : 2.0 * (1 + MARGEN);
+        Cercanos c = new Cercanos(Math.min(k, n - 1), cuerda * cuerda, salida);
+        double qx = ux[centro], qy = uy[centro], qz = uz[centro];
+        masCercanos(0, m, centro, qx, qy, qz, c);
+        for (int f : fuera) {
+            if (f == centro) continue;
+            double dx = ux[f] - qx, dy = uy[f] - qy, dz = uz[f] - qz;
+            c.ofrecer(f, dx * dx + dy * dy + dz * dz);
+        }
+
+        // La cuerda ordena igual que la distancia; el filtro exacto solo puede recortar el final
+        int cantidad = c.cantidad;
+        while (maxKm > 0 && cantidad > 0 && distancia(centro, salida[cantidad - 1]) > maxKm) cantidad--;
+        return cantidad;
+    }
+
+    /** Los mejores candidatos de una consulta k-NN, ordenados por cuerda² creciente */
+    private static final class Cercanos {
+        final int k;
+        final int[] salida;
+        final double[] d2;
+        int cantidad;
+        double radio2;
+
+        Cercanos(int k, double radio2, int[] salida) {
+            this.k = k;
+            this.salida = salida;
+            this.d2 = new double[k];
+            this.radio2 = radio2;
+        }
+
+        void ofrecer(int i, double dist2) {
+            if (dist2 > radio2 || (cantidad == k && dist2 >= d2[k - 1])) return;
+            int pos = cantidad < k ? cantidad++ : k - 1;
+            while (pos > 0 && d2[pos - 1] > dist2) {
+                d2[pos] = d2[pos - 1];
+                salida[pos] = salida[pos - 1];
+                pos--;
+            }
+            d2[pos] = dist2;
+            salida[pos] = i;
+            if (cantidad == k) radio2 = Math.min(radio2, d2[k - 1]);
+        }
+    }
+
+    private void masCercanos(int lo, int hi, int centro, double qx, double qy, double qz, Cercanos c) {
+        if (lo >= hi) return;
+        int mid = (lo + hi) >>> 1;
+        if (indice[mid] >= 0 && indice[mid] != centro) {
+            double dx = x[mid] - qx, dy = y[mid] - qy, dz = z[mid] - qz;
+            c.ofrecer(indice[mid], dx * dx + dy * dy + dz * dz);
+        }
+        double diferencia = switch (eje[mid]) {
+            case 0 -> qx - x[mid];
+            case 1 -> qy - y[mid];
+            default -> qz - z[mid];
+        };
+        // Primero el lado del centro: achica el radio antes de mirar el otro
+        boolean izquierda = diferencia <= 0;
+        if (izquierda) masCercanos(lo, mid, centro, qx, qy, qz, c);
+        else masCercanos(mid + 1, hi, centro, qx, qy, qz, c);
+        if (diferencia * diferencia <= c.radio2) {
+            if (izquierda) masCercanos(mid + 1, hi, centro, qx, qy, qz, c);
+            else masCercanos(lo, mid, centro, qx, qy, qz, c);
+        }
+    }
+
+    /** Cuerda (con margen) equivalente a una distancia en km sobre la esfera */
+    private static double cuerda(double km) {
+        double angulo = km / DistanceMatrix.RADIO_TIERRA_KM;
+        double cuerda = angulo >= Math.PI ? 2.0 : 2 * Math.sin(angulo / 2);
+        return cuerda * (1 + MARGEN) + MARGEN;
+    }
+
+    /** Nuevo recorrido: cada circuito se puede extraer una sola vez (p. ej. al visitarlo en un BFS) */
+    public Recorrido recorrido() {
+        return new Recorrido();
+    }
+
+    /**
+     * Estado de una consulta que va quitando circuitos del índice compartido sin modificarlo:
+     * cada nodo guarda cuántos circuitos quedan en su subárbol para saltear ramas ya vaciadas
+     * (los huecos cuentan como ya quitados).
+     */
+    public final class Recorrido {
+
+        private final boolean[] quitado = new boolean[m];
+        private final int[] restantes = new int[m];
+        private final boolean[] quitadoFuera = new boolean[fuera.length];
+
+        private Recorrido() {
+            contar(0, m);
+        }
+
+        private int contar(int lo, int hi) {
+            if (lo >= hi) return 0;
+            int mid = (lo + hi) >>> 1;
+            quitado[mid] = indice[mid] < 0;
+            restantes[mid] = contar(lo, mid) + contar(mid + 1, hi) + (quitado[mid] ? 0 : 1);
+            return restantes[mid];
+        }
+
+        /** Quita el circuito i sin devolverlo (p. ej. el inicio de un BFS) */
+        public void quitar(int i) {
+            int p = posicion[i];
+            if (p < 0) {
+                quitadoFuera[-p - 1] = true;
+                return;
+            }
+            if (quitado[p]) return;
+            quitado[p] = true;
+            // Bajar desde la raíz hasta p descontando en cada nodo del camino
+            int lo = 0, hi = m;
+            while (true) {
+                int mid = (lo + hi) >>> 1;
+                restantes[mid]--;
+                if (mid == p) return;
+                if (p < mid) hi = mid;
+                else lo = mid + 1;
+            }
+        }
+
+        /**
+         * Quita y devuelve en 'salida' todos los circuitos que quedan a distancia <= maxKm de 'centro'.
+         * Devuelve cuántos escribió; el orden es el del árbol y después el de los que están fuera de él.
+         */
+        public int extraer(int centro, double maxKm, int[] salida) {
+            if (maxKm < 0) return 0;
+            double cuerda = cuerda(maxKm);
+            double qx = ux[centro], qy = uy[centro], qz = uz[centro];
+            int cantidad = extraer(0, m, centro, qx, qy, qz, cuerda, maxKm, salida, 0);
+            for (int f = 0; f < fuera.length; f++) {
+                if (!quitadoFuera[f] && distancia(centro, fuera[f]) <= maxKm) {
+                    quitadoFuera[f] = true;
+                    salida[cantidad++] = fuera[f];
+                }
+            }
+            return cantidad;
+        }
+
+        private int extraer(int lo, int hi, int centro, double qx, double qy, double qz,
+                            double cuerda, double maxKm, int[] salida, int cantidad) {
+            if (lo >= hi) return cantidad;
+            int mid = (lo + hi) >>> 1;
+            if (restantes[mid] == 0) return cantidad;
+            int antes = cantidad;
+
+            if (!quitado[mid]) {
+                double dx = x[mid] - qx, dy = y[mid] - qy, dz = z[mid] - qz;
+                if (dx * dx + dy * dy + dz * dz <= cuerda * cuerda && distancia(centro, indice[mid]) <= maxKm) {
+                    quitado[mid] = true;
+                    salida[cantidad++] = indice[mid];
+                }
+            }
+
+            double diferencia = switch (eje[mid]) {
+                case 0 -> qx - x[mid];
+                case 1 -> qy - y[mid];
+                default -> qz - z[mid];
+            };
+            if (diferencia <= cuerda) {
+                cantidad = extraer(lo, mid, centro, qx, qy, qz, cuerda, maxKm, salida, cantidad);
+            }
+            if (diferencia >= -cuerda) {
+                cantidad = extraer(mid + 1, hi, centro, qx, qy, qz, cuerda, maxKm, salida, cantidad);
+            }
+            restantes[mid] -= cantidad - antes;
+            return cantidad;
+        }
+    }
+
+    // ================== Construcción ==================
+
+    /** Ubica la mediana del eje de mayor rango en el medio de [lo, hi) y sigue por cada mitad */
+    private void construir(int lo, int hi) {
+        if (hi - lo <= 1) return;
+        int mid = (lo + hi) >>> 1;
+        int e = ejeMayorRango(lo, hi);
+        eje[mid] = (byte) e;
+        seleccionar(lo, hi - 1, mid, e);
+        construir(lo, mid);
+        construir(mid + 1, hi);
+    }
+
+    private int ejeMayorRango(int lo, int hi) {
+        double minX = Double.MAX_VALUE, maxX = -Double.MAX_VALUE;
+        double minY = Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+        double minZ = Double.MAX_VALUE, maxZ = -Double.MAX_VALUE;
+        for (int i = lo; i < hi; i++) {
+            minX = Math.min(minX, x[i]);
+            maxX = Math.max(maxX, x[i]);
+            minY = Math.min(minY, y[i]);
+            maxY = Math.max(maxY, y[i]);
+            minZ = Math.min(minZ, z[i]);
+            maxZ = Math.max(maxZ, z[i]);
+        }
+        double rx = maxX - minX, ry = maxY - minY, rz = maxZ - minZ;
+        if (rx >= ry && rx >= rz) return 0;
+        return ry >= rz ? 1 : 2;
+    }
+
+    /** Quickselect: deja en k el k-ésimo por el eje e, menores o iguales a la izquierda y mayores o iguales a la derecha */
+    private void seleccionar(int lo, int hi, int k, int e) {
+        while (hi > lo) {
+            double pivote = coordenada(e, (lo + hi) >>> 1);
+            int i = lo, j = hi;
+            while (i <= j) {
+                while (coordenada(e, i) < pivote) i++;
+                while (coordenada(e, j) > pivote) j--;
+                if (i <= j) {
+                    intercambiar(i, j);
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) hi = j;
+            else if (k >= i) lo = i;
+            else return;
+        }
+    }
+
+    private double coordenada(int e, int i) {
+        return e == 0 ? x[i] : e == 1 ? y[i] : z[i];
+    }
+
+    private void intercambiar(int i, int j) {
+        double t = x[i]; x[i] = x[j]; x[j] = t;
+        t = y[i]; y[i] = y[j]; y[j] = t;
+        t = z[i]; z[i] = z[j]; z[j] = t;
+        int ti = indice[i]; indice[i] = indice[j]; indice[j] = ti;
+    }
+}
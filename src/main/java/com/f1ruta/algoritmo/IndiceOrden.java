@@ -0,0 +1,141 @@
+package com.f1ruta.algoritmo;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Permutación de los circuitos ordenada por un criterio, calculada una vez por snapshot y usada en los
+ * dos sentidos. El orden DESC de {@link MergesortCircuitos} es estable (los empates quedan en el orden
+ * original), así que no es el ASC al revés: se recorren los tramos de empate de atrás hacia adelante y
+ * cada tramo hacia adelante. Para eso se guarda, por posición, la suma del inicio y el fin de su tramo.
+ * Si cambian pocos circuitos, {@link #parchear} lo actualiza en O(n) sin volver a ordenar.
+ */
+public final class IndiceOrden {
+
+    private final SnapshotCircuitos circuitos;
+    private final MergesortCircuitos.Criterio criterio;
+    /** Índices de los circuitos en orden ascendente */
+    private final int[] asc;
+    /** inicio + fin (inclusive) del tramo de empates que contiene cada posición de 'asc' */
+    private final int[] tramo;
+
+    IndiceOrden(SnapshotCircuitos circuitos, MergesortCircuitos.Criterio criterio, ForkJoinPool pool) {
+        this(circuitos, criterio,
+                MergesortCircuitos.ordenarIndices(circuitos, criterio, MergesortCircuitos.Orden.ASC, pool));
+    }
+
+    private IndiceOrden(SnapshotCircuitos circuitos, MergesortCircuitos.Criterio criterio, int[] asc) {
+        this.circuitos = circuitos;
+        this.criterio = criterio;
+        this.asc = asc;
+
+        int n = asc.length;
+        tramo = new int[n];
+        for (int inicio = 0; inicio < n; ) {
+            int fin = inicio;
+            while (fin + 1 < n && empatan(asc[inicio], asc[fin + 1])) fin++;
+            for (int p = inicio; p <= fin; p++) tramo[p] = inicio + fin;
+            inicio = fin + 1;
+        }
+    }
+
+    /**
+     * El mismo orden para el snapshot 'nuevo': 'quitados' son índices de este snapshot que dejan de valer
+     * (circuitos borrados, movidos o renumerados) y 'cambiados' índices de 'nuevo' con valores nuevos;
+     * el resto conserva índice y valores, así que conserva su orden relativo. Cada cambiado se ubica con
+     * una búsqueda binaria por (valor, índice), que es el orden del mergesort estable sobre 0..n-1.
+     */
+    IndiceOrden parchear(SnapshotCircuitos nuevo, int[] quitados, int[] cambiados) {
+        boolean[] quitado = new boolean[circuitos.size()];
+        for (int q : quitados) quitado[q] = true;
+        int[] quedan = new int[asc.length];
+        int cantidad = 0;
+        for (int i : asc) {
+            if (!quitado[i]) quedan[cantidad++] = i;
+        }
+
+        Integer[] nuevos = new Integer[cambiados.length];
+        for (int c = 0; c < cambiados.length; c++) nuevos[c] = cambiados[c];
+        Arrays.sort(nuevos, (a, b) -> comparar(nuevo, criterio, a, b));
+
+        int[] orden = new int[cantidad + nuevos.length];
+        int desde = 0, escritos = 0;
+        for (int c : nuevos) {
+            int lo = desde, hi = cantidad;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (comparar(nuevo, criterio, quedan[mid], c) < 0) lo = mid + 1;
+                else hi = mid;
+            }
+            System.arraycopy(quedan, desde, orden, escritos, lo - desde);
+            escritos += lo - desde;
+            orden[escritos++] = c;
+            desde = lo;
+        }
+        System.arraycopy(quedan, desde, orden, escritos, cantidad - desde);
+        return new IndiceOrden(nuevo, criterio, orden);
+    }
+
+    /** Orden ASC de {@link MergesortCircuitos#ordenarIndices} entre los circuitos a y b, desempatado por índice */
+    private static int comparar(SnapshotCircuitos cs, MergesortCircuitos.Criterio criterio, int a, int b) {
+        int c = switch (criterio) {
+            case LATITUD -> Double.compare(cs.latitud(a), cs.latitud(b));
+            case LONGITUD -> Double.compare(cs.longitud(a), cs.longitud(b));
+            case NOMBRE -> cs.nombre(a).compareToIgnoreCase(cs.nombre(b));
+        };
+        return c != 0 ? c : Integer.compare(a, b);
+    }
+
+    private boolean empatan(int a, int b) {
+        return switch (criterio) {
+            case LATITUD -> Double.compare(circuitos.latitud(a), circuitos.latitud(b)) == 0;
+            case LONGITUD -> Double.compare(circuitos.longitud(a), circuitos.longitud(b)) == 0;
+            case NOMBRE -> circuitos.nombre(a).compareToIgnoreCase(circuitos.nombre(b)) == 0;
+        };
+    }
+
+    public MergesortCircuitos.Criterio criterio() {
+        return criterio;
+    }
+
+    public int size() {
+        return asc.length;
+    }
+
+    /** Circuito en la posición p (0 = primero) del orden pedido, en O(1) */
+    public int circuito(int p, MergesortCircuitos.Orden orden) {
+        if (orden == MergesortCircuitos.Orden.ASC) return asc[p];
+        int x = asc.length - 1 - p;
+        return asc[tramo[x] - x];
+    }
+
+    /**
+     * Posiciones [desde, hasta) del orden pedido cuyos valores del criterio están en [min, max], en O(log n).
+     * Solo para LATITUD y LONGITUD; los empates caen enteros dentro o fuera, así que en DESC es el mismo
+     * conjunto reflejado.
+     */
+    public int[] banda(double min, double max, MergesortCircuitos.Orden orden) {
+        if (criterio == MergesortCircuitos.Criterio.NOMBRE)
+            throw new IllegalArgumentException("min/max solo se aplican a los criterios latitud y longitud");
+        int desde = primeraPosicion(min, false);
+        int hasta = Math.max(desde, primeraPosicion(max, true));
+        if (orden == MergesortCircuitos.Orden.ASC) return new int[]{desde, hasta};
+        return new int[]{asc.length - hasta, asc.length - desde};
+    }
+
+    /** Primera posición ASC con valor >= v (o > v si 'estricta') */
+    private int primeraPosicion(double v, boolean estricta) {
+        int lo = 0, hi = asc.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int c = Double.compare(valor(asc[mid]), v);
+            if (c < 0 || (estricta && c == 0)) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    private double valor(int i) {
+        return criterio == MergesortCircuitos.Criterio.LATITUD ? circuitos.latitud(i) : circuitos.longitud(i);
+    }
+}
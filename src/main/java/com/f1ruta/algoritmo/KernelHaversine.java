@@ -0,0 +1,110 @@
+package com.f1ruta.algoritmo;
+
+/**
+ * Distancias Haversine por lotes sobre vectores unitarios 3D: para dos puntos de la esfera a distancia d,
+ * |p − q| = 2·sin(d / 2R) (la cuerda) y |p + q| = 2·cos(d / 2R), así que d = 2R·atan2(|p − q|, |p + q|).
+ * Con las dos normas el ángulo queda bien condicionado en todo el rango: asin(|p − q| / 2) pierde precisión
+ * cerca de puntos antípodas, donde la derivada del asin se dispara. El ciclo interno queda en restas,
+ * productos, dos raíces y un atan2, sin senos ni cosenos de las coordenadas por par.
+ * <p>
+ * Si la JVM arrancó con {@code --add-modules jdk.incubator.vector}, las filas se calculan con la
+ * Vector API (KernelHaversineVectorial, que se compila aparte y se carga por reflexión solo si el módulo
+ * está presente); si no, con el mismo cálculo escalar.
+ * <p>
+ * Es la única fórmula de distancia del proyecto: la usan la matriz, el {@link IndiceEspacial} (umbrales de
+ * BFS y del grafo disperso), el BFS en Neo4j y {@link DistanceMatrix#haversine}. Los umbrales siempre se
+ * deciden con el camino escalar, así que no dependen de que esté la Vector API; en el camino escalar la
+ * matriz coincide bit a bit con esas distancias y en el vectorial su atan2 puede diferir en unos ulps,
+ * siempre dentro de {@link #ERROR_MAXIMO_KM}.
+ */
+final class KernelHaversine {
+
+    /** Error máximo admitido de los dos caminos contra la distancia exacta sobre la esfera (1 mm) */
+    static final double ERROR_MAXIMO_KM = 1e-6;
+
+    /** Cálculo de una fila de distancias; el camino vectorial lo implementa KernelHaversineVectorial */
+    interface Fila {
+        void fila(double[] x, double[] y, double[] z, int i, int desde, int hasta, double[] destino, int offset);
+    }
+
+    private static final Fila FILA_VECTORIAL = cargarVectorial();
+
+    /** Si se usa la Vector API (el módulo incubator está cargado) */
+    static final boolean VECTORIAL = FILA_VECTORIAL != null;
+
+    private static final double DOS_R = 2 * DistanceMatrix.RADIO_TIERRA_KM;
+
+    private KernelHaversine() {}
+
+    private static Fila cargarVectorial() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) return null;
+        try {
+            return (Fila) Class.forName("com.f1ruta.algoritmo.KernelHaversineVectorial")
+                    .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null; // compilado sin la clase vectorial: queda el camino escalar
+        }
+    }
+
+    /** Vectores unitarios de coordenadas en grados: {x, y, z} */
+    static double[][] unitarios(double[] lat, double[] lon) {
+        int n = lat.length;
+        double[] x = new double[n], y = new double[n], z = new double[n];
+        for (int i = 0; i < n; i++) unitario(lat[i], lon[i], x, y, z, i);
+        return new double[][]{x, y, z};
+    }
+
+    /** Escribe en la posición i de x, y, z el vector unitario de (lat, lon) en grados */
+    static void unitario(double lat, double lon, double[] x, double[] y, double[] z, int i) {
+        double latRad = Math.toRadians(lat);
+        double lonRad = Math.toRadians(lon);
+        double cosLat = Math.cos(latRad);
+        x[i] = cosLat * Math.cos(lonRad);
+        y[i] = cosLat * Math.sin(lonRad);
+        z[i] = Math.sin(latRad);
+    }
+
+    /**
+     * Distancia en km entre dos coordenadas en grados (mismas operaciones que una celda de la matriz),
+     * con los vectores unitarios en variables locales: sin arreglos por par
+     */
+    static double distancia(double lat1, double lon1, double lat2, double lon2) {
+        double latRad1 = Math.toRadians(lat1), lonRad1 = Math.toRadians(lon1);
+        double latRad2 = Math.toRadians(lat2), lonRad2 = Math.toRadians(lon2);
+        double cosLat1 = Math.cos(latRad1), cosLat2 = Math.cos(latRad2);
+        return distancia(cosLat1 * Math.cos(lonRad1), cosLat1 * Math.sin(lonRad1), Math.sin(latRad1),
+                cosLat2 * Math.cos(lonRad2), cosLat2 * Math.sin(lonRad2), Math.sin(latRad2));
+    }
+
+    /** Distancia en km entre los puntos i y j */
+    static double distancia(double[] x, double[] y, double[] z, int i, int j) {
+        return distancia(x[i], y[i], z[i], x[j], y[j], z[j]);
+    }
+
+    /** Distancia en km entre los vectores unitarios (xi, yi, zi) y (xj, yj, zj) */
+    private static double distancia(double xi, double yi, double zi, double xj, double yj, double zj) {
+        double dx = xj - xi, dy = yj - yi, dz = zj - zi;
+        double sx = xj + xi, sy = yj + yi, sz = zj + zi;
+        return DOS_R * Math.atan2(Math.sqrt(dx * dx + dy * dy + dz * dz), Math.sqrt(sx * sx + sy * sy + sz * sz));
+    }
+
+    /** Escribe en destino[offset + (j - desde)] la distancia de i a cada j en [desde, hasta) */
+    static void fila(double[] x, double[] y, double[] z, int i, int desde, int hasta, double[] destino, int offset) {
+        if (VECTORIAL) FILA_VECTORIAL.fila(x, y, z, i, desde, hasta, destino, offset);
+        else filaEscalar(x, y, z, i, desde, hasta, destino, offset);
+    }
+
+    /** Fila con la Vector API; IllegalStateException si el módulo no está cargado */
+    static void filaVectorial(double[] x, double[] y, double[] z, int i, int desde, int hasta,
+                              double[] destino, int offset) {
+        if (!VECTORIAL) throw new IllegalStateException("Falta --add-modules jdk.incubator.vector");
+        FILA_VECTORIAL.fila(x, y, z, i, desde, hasta, destino, offset);
+    }
+
+    static void filaEscalar(double[] x, double[] y, double[] z, int i, int desde, int hasta,
+                            double[] destino, int offset) {
+        for (int j = desde; j < hasta; j++) {
+            destino[offset + j - desde] = distancia(x, y, z, i, j);
+        }
+    }
+}
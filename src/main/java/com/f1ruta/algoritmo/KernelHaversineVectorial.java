@@ -0,0 +1,39 @@
+package com.f1ruta.algoritmo;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Camino de {@link KernelHaversine} con la Vector API: tantos pares por instrucción como entren en el
+ * registro más ancho de la CPU. Solo se carga si el módulo jdk.incubator.vector está presente; el build
+ * la compila en una ejecución aparte del compilador, la única que necesita el módulo.
+ */
+final class KernelHaversineVectorial implements KernelHaversine.Fila {
+
+    private static final VectorSpecies<Double> ESPECIE = DoubleVector.SPECIES_PREFERRED;
+    private static final double DOS_R = 2 * DistanceMatrix.RADIO_TIERRA_KM;
+
+    @Override
+    public void fila(double[] x, double[] y, double[] z, int i, int desde, int hasta, double[] destino, int offset) {
+        DoubleVector xi = DoubleVector.broadcast(ESPECIE, x[i]);
+        DoubleVector yi = DoubleVector.broadcast(ESPECIE, y[i]);
+        DoubleVector zi = DoubleVector.broadcast(ESPECIE, z[i]);
+        int j = desde;
+        int limite = desde + ESPECIE.loopBound(hasta - desde);
+        for (; j < limite; j += ESPECIE.length()) {
+            DoubleVector xj = DoubleVector.fromArray(ESPECIE, x, j);
+            DoubleVector yj = DoubleVector.fromArray(ESPECIE, y, j);
+            DoubleVector zj = DoubleVector.fromArray(ESPECIE, z, j);
+            DoubleVector dx = xj.sub(xi), dy = yj.sub(yi), dz = zj.sub(zi);
+            DoubleVector sx = xj.add(xi), sy = yj.add(yi), sz = zj.add(zi);
+            DoubleVector cuerda = dx.mul(dx).add(dy.mul(dy)).add(dz.mul(dz)).sqrt();
+            DoubleVector suma = sx.mul(sx).add(sy.mul(sy)).add(sz.mul(sz)).sqrt();
+            cuerda.lanewise(VectorOperators.ATAN2, suma)
+                    .mul(DOS_R)
+                    .intoArray(destino, offset + j - desde);
+        }
+        // Resto que no llena un vector
+        KernelHaversine.filaEscalar(x, y, z, i, j, hasta, destino, offset + j - desde);
+    }
+}
@@ -1,19 +1,27 @@
 package com.f1ruta.algoritmo;
 
-import java.util.*;
-import com.f1ruta.algoritmo.RutaF1TSP.Circuito;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * Algoritmo Divide y Vencerás: Mergesort para ordenar circuitos
  * Permite ordenar por diferentes criterios: latitud, longitud, nombre
+ * Las consultas reutilizan el {@link IndiceOrden} de cada criterio guardado en el snapshot.
  */
 public class MergesortCircuitos {
 
+    /**
+     * circuitos: índices del snapshot en orden; primeraPosicion: posición del primero en el orden completo;
+     * total: cuántos circuitos cumplen la consulta antes de aplicar offset/límite
+     */
     public static record Resultado(
-            List<Map<String, Object>> circuitosOrdenados,
+            int[] circuitos,
+            int primeraPosicion,
             String criterio,
             String orden,
-            int cantidadCircuitos
+            int cantidadCircuitos,
+            int total
     ) {}
 
     /**
@@ -37,95 +45,238 @@ public class MergesortCircuitos {
      * Ordena la lista de circuitos usando Mergesort
      */
     public static Resultado ordenar(
-            List<Circuito> circuitos,
+            SnapshotCircuitos circuitos,
             String criterioStr,
             String ordenStr
+    ) {
+        return ordenar(circuitos, criterioStr, ordenStr, null);
+    }
+
+    /** Igual que {@link #ordenar(SnapshotCircuitos, String, String)}, en paralelo sobre 'pool' si el set es grande */
+    public static Resultado ordenar(
+            SnapshotCircuitos circuitos,
+            String criterioStr,
+            String ordenStr,
+            ForkJoinPool pool
+    ) {
+        Criterio criterio = criterio(criterioStr);
+        Orden orden = orden(ordenStr);
+        if (circuitos == null || circuitos.isEmpty()) {
+            return new Resultado(new int[0], 0, nombre(criterio), nombre(orden), 0, 0);
+        }
+
+        int[] lista = ordenarIndices(circuitos, criterio, orden, pool);
+        return new Resultado(lista, 0, nombre(criterio), nombre(orden), lista.length, lista.length);
+    }
+
+    /**
+     * Consulta sobre el orden ya calculado del snapshot, en O(log n + k): opcionalmente solo los circuitos
+     * con el valor del criterio en [min, max] (latitud/longitud) y, de ellos, 'limite' desde 'offset'
+     * (limite <= 0 = todos). La posición de cada circuito es la que tiene en el orden completo.
+     */
+    public static Resultado consultar(
+            SnapshotCircuitos circuitos,
+            Criterio criterio,
+            Orden orden,
+            Double min,
+            Double max,
+            int offset,
+            int limite,
+            ForkJoinPool pool
     ) {
         if (circuitos == null || circuitos.isEmpty()) {
-            return new Resultado(List.of(), criterioStr, ordenStr, 0);
+            return new Resultado(new int[0], 0, nombre(criterio), nombre(orden), 0, 0);
+        }
+        IndiceOrden indice = circuitos.ordenPor(criterio, pool);
+
+        int desde = 0, hasta = indice.size();
+        if (min != null || max != null) {
+            int[] banda = indice.banda(min != null ? min : Double.NEGATIVE_INFINITY,
+                    max != null ? max : Double.POSITIVE_INFINITY, orden);
+            desde = banda[0];
+            hasta = banda[1];
         }
+        int total = hasta - desde;
+        int inicio = (int) Math.min(hasta, (long) desde + offset);
+        int fin = limite > 0 ? (int) Math.min(hasta, (long) inicio + limite) : hasta;
+
+        int[] resultado = new int[fin - inicio];
+        for (int p = inicio; p < fin; p++) {
+            resultado[p - inicio] = indice.circuito(p, orden);
+        }
+        return new Resultado(resultado, inicio, nombre(criterio), nombre(orden), resultado.length, total);
+    }
 
-        // Parsear criterio y orden
-        Criterio criterio;
+    /** Criterio de un parámetro sin distinguir mayúsculas ni espacios; NOMBRE si falta o no se reconoce */
+    public static Criterio criterio(String criterioStr) {
+        if (criterioStr == null) return Criterio.NOMBRE;
         try {
-            criterio = Criterio.valueOf(criterioStr.toUpperCase(Locale.ROOT));
+            return Criterio.valueOf(criterioStr.trim().toUpperCase(Locale.ROOT));
         } catch (IllegalArgumentException e) {
-            criterio = Criterio.NOMBRE; // Default
+            return Criterio.NOMBRE; // Default
         }
+    }
 
-        Orden orden;
+    /** Orden de un parámetro sin distinguir mayúsculas ni espacios; ASC si falta o no se reconoce */
+    public static Orden orden(String ordenStr) {
+        if (ordenStr == null) return Orden.ASC;
         try {
-            orden = Orden.valueOf(ordenStr.toUpperCase(Locale.ROOT));
+            return Orden.valueOf(ordenStr.trim().toUpperCase(Locale.ROOT));
         } catch (IllegalArgumentException e) {
-            orden = Orden.ASC; // Default
+            return Orden.ASC; // Default
         }
+    }
+
+    /** Como se informa en la respuesta: "latitud", "desc"... */
+    private static String nombre(Enum<?> valor) {
+        return valor.name().toLowerCase(Locale.ROOT);
+    }
 
-        // Crear lista mutable para ordenar
-        List<Circuito> lista = new ArrayList<>(circuitos);
+    // ==================== MERGESORT SOBRE ÍNDICES ====================
 
-        // Ejecutar Mergesort según criterio
-        switch (criterio) {
-            case LATITUD -> mergesort(lista, orden, (c1, c2) -> Double.compare(c1.latitud, c2.latitud));
-            case LONGITUD -> mergesort(lista, orden, (c1, c2) -> Double.compare(c1.longitud, c2.longitud));
-            case NOMBRE -> mergesort(lista, orden, (c1, c2) -> c1.nombre.compareToIgnoreCase(c2.nombre));
-        }
+    /** Por debajo de este tamaño los tramos se ordenan por inserción */
+    private static final int CORTE_INSERCION = 32;
+
+    /** Desde este tamaño cada mitad se ordena como una tarea del pool */
+    private static final int UMBRAL_PARALELO = 1 << 13;
 
-        // Convertir a formato de respuesta
-        List<Map<String, Object>> resultado = new ArrayList<>();
-        for (int i = 0; i < lista.size(); i++) {
-            Circuito c = lista.get(i);
-            Map<String, Object> mapa = new LinkedHashMap<>();
-            mapa.put("posicion", i + 1);
-            mapa.put("nombre", c.nombre);
-            mapa.put("latitud", c.latitud);
-            mapa.put("longitud", c.longitud);
-            resultado.add(mapa);
+    /**
+     * Permutación de los índices del snapshot ordenada (estable) por criterio y orden. Las claves se
+     * calculan una vez: las coordenadas como long que ordenan igual que {@link Double#compare} (negadas
+     * bit a bit para DESC) y los nombres ya plegados a minúsculas como los compara compareToIgnoreCase.
+     */
+    public static int[] ordenarIndices(SnapshotCircuitos circuitos, Criterio criterio, Orden orden, ForkJoinPool pool) {
+        int n = circuitos.size();
+        Claves claves = switch (criterio) {
+            case LATITUD -> new ClavesNumericas(circuitos, true, orden);
+            case LONGITUD -> new ClavesNumericas(circuitos, false, orden);
+            case NOMBRE -> new ClavesTexto(circuitos, orden);
+        };
+
+        int[] indices = new int[n];
+        for (int i = 0; i < n; i++) indices[i] = i;
+        if (n <= 1) return indices;
+        int[] auxiliar = indices.clone();
+        if (pool != null && n >= UMBRAL_PARALELO) {
+            pool.invoke(new Tarea(auxiliar, indices, 0, n, claves));
+        } else {
+            mergesort(auxiliar, indices, 0, n, claves);
         }
+        return indices;
+    }
 
-        return new Resultado(resultado, criterioStr, ordenStr, lista.size());
+    /** Orden entre dos circuitos: si a va antes que b o empata con él (empate = queda el de la izquierda) */
+    private abstract static sealed class Claves permits ClavesNumericas, ClavesTexto {
+        abstract boolean antesOIgual(int a, int b);
     }
 
-    // ==================== MERGESORT GENÉRICO ====================
+    private static final class ClavesNumericas extends Claves {
+        private final long[] clave;
 
-    @FunctionalInterface
-    private interface Comparador {
-        int comparar(Circuito c1, Circuito c2);
-    }
+        ClavesNumericas(SnapshotCircuitos circuitos, boolean latitud, Orden orden) {
+            clave = new long[circuitos.size()];
+            for (int i = 0; i < clave.length; i++) {
+                long bits = Double.doubleToLongBits(latitud ? circuitos.latitud(i) : circuitos.longitud(i));
+                long ordenable = bits ^ ((bits >> 63) & Long.MAX_VALUE);
+                clave[i] = orden == Orden.ASC ? ordenable : ~ordenable;
+            }
+        }
 
-    private static void mergesort(List<Circuito> lista, Orden orden, Comparador comparador) {
-        if (lista.size() <= 1) return;
-        mergesortRecursivo(lista, 0, lista.size() - 1, orden, comparador);
+        @Override
+        boolean antesOIgual(int a, int b) {
+            return clave[a] <= clave[b];
+        }
     }
 
-    private static void mergesortRecursivo(List<Circuito> lista, int inicio, int fin, Orden orden, Comparador comparador) {
-        if (inicio >= fin) return;
+    private static final class ClavesTexto extends Claves {
+        private final String[] clave;
+        private final int signo;
 
-        int medio = inicio + (fin - inicio) / 2;
+        ClavesTexto(SnapshotCircuitos circuitos, Orden orden) {
+            clave = new String[circuitos.size()];
+            for (int i = 0; i < clave.length; i++) clave[i] = plegar(circuitos.nombre(i));
+            signo = orden == Orden.ASC ? 1 : -1;
+        }
 
-        mergesortRecursivo(lista, inicio, medio, orden, comparador);
-        mergesortRecursivo(lista, medio + 1, fin, orden, comparador);
+        /** Cada carácter como lo compara compareToIgnoreCase: a mayúscula y de nuevo a minúscula */
+        private static String plegar(String s) {
+            StringBuilder sb = new StringBuilder(s.length());
+            for (int i = 0; i < s.length(); i++) {
+                sb.append(Character.toLowerCase(Character.toUpperCase(s.charAt(i))));
+            }
+            return sb.toString();
+        }
 
-        merge(lista, inicio, medio, fin, orden, comparador);
+        @Override
+        boolean antesOIgual(int a, int b) {
+            return signo * clave[a].compareTo(clave[b]) <= 0;
+        }
     }
 
-    private static void merge(List<Circuito> lista, int inicio, int medio, int fin, Orden orden, Comparador comparador) {
-        List<Circuito> izq = new ArrayList<>(lista.subList(inicio, medio + 1));
-        List<Circuito> der = new ArrayList<>(lista.subList(medio + 1, fin + 1));
-
-        int i = 0, j = 0, k = inicio;
+    /**
+     * Ordena dst[desde, hasta) usando src como auxiliar; ambos arrancan con el mismo contenido en el tramo.
+     * Los niveles alternan los dos arreglos, así que cada merge escribe directo sin copiar mitades.
+     */
+    private static void mergesort(int[] src, int[] dst, int desde, int hasta, Claves claves) {
+        if (hasta - desde <= CORTE_INSERCION) {
+            insercion(dst, desde, hasta, claves);
+            return;
+        }
+        int medio = (desde + hasta) >>> 1;
+        mergesort(dst, src, desde, medio, claves);
+        mergesort(dst, src, medio, hasta, claves);
+        merge(src, dst, desde, medio, hasta, claves);
+    }
 
-        while (i < izq.size() && j < der.size()) {
-            int comparacion = comparador.comparar(izq.get(i), der.get(j));
-            boolean condicion = (orden == Orden.ASC) ? comparacion <= 0 : comparacion >= 0;
+    /** Mezcla src[desde, medio) y src[medio, hasta), ya ordenados, en dst */
+    private static void merge(int[] src, int[] dst, int desde, int medio, int hasta, Claves claves) {
+        // Las mitades ya están en orden entre sí: basta copiarlas
+        if (claves.antesOIgual(src[medio - 1], src[medio])) {
+            System.arraycopy(src, desde, dst, desde, hasta - desde);
+            return;
+        }
+        int i = desde, j = medio;
+        for (int k = desde; k < hasta; k++) {
+            if (j >= hasta || (i < medio && claves.antesOIgual(src[i], src[j]))) dst[k] = src[i++];
+            else dst[k] = src[j++];
+        }
+    }
 
-            if (condicion) {
-                lista.set(k++, izq.get(i++));
-            } else {
-                lista.set(k++, der.get(j++));
+    private static void insercion(int[] a, int desde, int hasta, Claves claves) {
+        for (int i = desde + 1; i < hasta; i++) {
+            int x = a[i];
+            int j = i - 1;
+            while (j >= desde && !claves.antesOIgual(a[j], x)) {
+                a[j + 1] = a[j];
+                j--;
             }
+            a[j + 1] = x;
+        }
+    }
+
+    /** Mismo mergesort, con las dos mitades como subtareas mientras el tramo supere el umbral */
+    private static final class Tarea extends RecursiveAction {
+        private final int[] src, dst;
+        private final int desde, hasta;
+        private final Claves claves;
+
+        Tarea(int[] src, int[] dst, int desde, int hasta, Claves claves) {
+            this.src = src;
+            this.dst = dst;
+            this.desde = desde;
+            this.hasta = hasta;
+            this.claves = claves;
         }
 
-        while (i < izq.size()) lista.set(k++, izq.get(i++));
-        while (j < der.size()) lista.set(k++, der.get(j++));
+        @Override
+        protected void compute() {
+            if (hasta - desde < UMBRAL_PARALELO) {
+                mergesort(src, dst, desde, hasta, claves);
+                return;
+            }
+            int medio = (desde + hasta) >>> 1;
+            invokeAll(new Tarea(dst, src, desde, medio, claves), new Tarea(dst, src, medio, hasta, claves));
+            merge(src, dst, desde, medio, hasta, claves);
+        }
     }
 }
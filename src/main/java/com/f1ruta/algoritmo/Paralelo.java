@@ -0,0 +1,42 @@
+package com.f1ruta.algoritmo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.BinaryOperator;
+
+/** Reparto de un rango de trabajo en bloques sobre el pool de algoritmos */
+final class Paralelo {
+
+    /** Bloques por hilo del pool, para repartir mejor tareas de costo desparejo */
+    private static final int BLOQUES_POR_HILO = 4;
+
+    private Paralelo() {}
+
+    /**
+     * Parte [0, cantidad) en bloques contiguos, corre el primero en el hilo actual y el resto en el pool,
+     * y combina los resultados en orden de bloque.
+     */
+    static <T> T enBloques(int cantidad, ForkJoinPool pool, Bloque<T> bloque, BinaryOperator<T> combinar) {
+        int bloques = pool == null ? 1 : Math.max(1, Math.min(cantidad, pool.getParallelism() * BLOQUES_POR_HILO));
+        if (bloques == 1) return bloque.correr(0, cantidad);
+
+        List<ForkJoinTask<T>> tareas = new ArrayList<>(bloques - 1);
+        for (int b = 1; b < bloques; b++) {
+            int desde = (int) ((long) cantidad * b / bloques);
+            int hasta = (int) ((long) cantidad * (b + 1) / bloques);
+            tareas.add(pool.submit(() -> bloque.correr(desde, hasta)));
+        }
+        T resultado = bloque.correr(0, (int) ((long) cantidad / bloques));
+        for (ForkJoinTask<T> tarea : tareas) {
+            resultado = combinar.apply(resultado, tarea.join());
+        }
+        return resultado;
+    }
+
+    @FunctionalInterface
+    interface Bloque<T> {
+        T correr(int desde, int hasta);
+    }
+}
@@ -1,18 +1,25 @@
 package com.f1ruta.algoritmo;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 /**
- * TSP heurístico: Vecino Más Cercano + mejora 2-opt.
- * Usa distancia Haversine entre TODOS los pares (no necesita "conexiones" en el JSON).
+ * TSP heurístico: Vecino Más Cercano + búsqueda local 2-opt / Or-opt ({@link BusquedaLocal}).
+ * Usa distancia Haversine entre TODOS los pares (no necesita "conexiones" en el JSON),
+ * tomadas de la {@link DistanceMatrix} compartida.
  */
 public class RutaF1TSP {
 
     /** Resultado del algoritmo */
     public static record Resultado(List<String> ruta, double kmTotales) {}
 
+    /** Semilla base de la búsqueda local iterada (cada trabajador suma su número) */
+    private static final long SEMILLA = 20240301L;
+
     /** DTO simple que coincide con el JSON (sin conexiones) */
     public static class Circuito {
         public String nombre;
@@ -20,112 +27,147 @@ public class RutaF1TSP {
         public double longitud;
     }
 
-    /** Distancia Haversine en km */
-    private static double haversine(double lat1, double lon1, double lat2, double lon2) {
-        final double R = 6371.0;
-        double p1 = Math.toRadians(lat1), p2 = Math.toRadians(lat2);
-        double dphi = p2 - p1;
-        double dlambda = Math.toRadians(lon2 - lon1);
-        double a = Math.sin(dphi / 2) * Math.sin(dphi / 2)
-                + Math.cos(p1) * Math.cos(p2) * Math.sin(dlambda / 2) * Math.sin(dlambda / 2);
-        return 2 * R * Math.asin(Math.sqrt(a));
-    }
-
-    /** Matriz de distancias entre todos los circuitos */
-    private static double[][] distancias(List<Circuito> cs) {
-        int n = cs.size();
-        double[][] d = new double[n][n];
-        for (int i = 0; i < n; i++) {
-            for (int j = 0; j < n; j++) {
-                d[i][j] = (i == j) ? 0.0 :
-                        haversine(cs.get(i).latitud, cs.get(i).longitud,
-                                  cs.get(j).latitud, cs.get(j).longitud);
-            }
-        }
-        return d;
-    }
-
-    /** Longitud total (km) de una ruta dada la matriz de distancias */
-    private static double largoRuta(double[][] d, List<Integer> ruta) {
-        double total = 0;
-        for (int i = 0; i + 1 < ruta.size(); i++) {
-            total += d[ruta.get(i)][ruta.get(i + 1)];
-        }
-        return total;
-    }
-
     /** Heurística: Vecino Más Cercano desde un inicio */
-    private static List<Integer> vecinoMasCercano(double[][] d, int start) {
-        int n = d.length;
+    static int[] vecinoMasCercano(DistanceMatrix d, int start) {
+        int n = d.size();
         boolean[] vis = new boolean[n];
-        List<Integer> r = new ArrayList<>(n);
+        int[] r = new int[n];
         int cur = start;
-        r.add(cur);
+        r[0] = cur;
         vis[cur] = true;
 
+        VecinosCercanos vecinos = d.vecinos(BusquedaLocal.VECINOS);
+
         for (int k = 1; k < n; k++) {
             int best = -1;
+            // Los vecinos están ordenados por distancia: el primero sin visitar es el más cercano
+            for (int i = 0; i < vecinos.k() && best < 0; i++) {
+                int v = vecinos.vecino(cur, i);
+                if (!vis[v]) best = v;
+            }
+            if (best >= 0) {
+                r[k] = best;
+                vis[best] = true;
+                cur = best;
+                continue;
+            }
             double bestD = Double.POSITIVE_INFINITY;
             for (int j = 0; j < n; j++) if (!vis[j]) {
-                double dj = d[cur][j];
+                double dj = d.get(cur, j);
                 if (dj < bestD) { bestD = dj; best = j; }
             }
-            r.add(best);
+            r[k] = best;
             vis[best] = true;
             cur = best;
         }
         return r;
     }
 
-    /** Mejora local 2-opt */
-    private static List<Integer> dosOpt(double[][] d, List<Integer> ruta) {
-        List<Integer> best = new ArrayList<>(ruta);
-        boolean mejora = true;
-        int n = best.size();
-
-        while (mejora) {
-            mejora = false;
-            for (int i = 1; i < n - 2; i++) {
-                for (int j = i + 1; j < n - 1; j++) {
-                    int a = best.get(i - 1), b = best.get(i);
-                    int c = best.get(j), e = best.get(j + 1);
-                    double delta = (d[a][c] + d[b][e]) - (d[a][b] + d[c][e]);
-                    if (delta < -1e-6) {
-                        // invertir el segmento [i, j]
-                        Collections.reverse(best.subList(i, j + 1));
-                        mejora = true;
-                    }
-                }
-            }
-        }
-        return best;
+    /** Ejecuta el TSP heurístico sobre la lista de circuitos (ruta abierta, no vuelve al inicio) */
+    public static Resultado calcularRuta(SnapshotCircuitos circuitos) {
+        return calcularRuta(circuitos, 0, null);
     }
 
-    /** Ejecuta el TSP heurístico sobre la lista de circuitos (ruta abierta, no vuelve al inicio) */
-    public static Resultado calcularRuta(List<Circuito> circuitos) {
+    /**
+     * Multi-start: vecino más cercano desde cada inicio, mejorado con 2-opt + Or-opt.
+     * Los inicios se reparten en bloques sobre el pool (null = secuencial) y se reduce al mínimo;
+     * los empates se resuelven por el inicio más chico, así el resultado no depende de los hilos.
+     * Con topK > 0 solo los topK tours NN más cortos pasan por la búsqueda local.
+     */
+    public static Resultado calcularRuta(SnapshotCircuitos circuitos, int topK, ForkJoinPool pool) {
+        return calcularRuta(circuitos, topK, pool, 0);
+    }
+
+    /**
+     * Con presupuestoMs > 0 funciona como solver "anytime": el multi-start corta a la mitad del plazo
+     * (el primer inicio siempre se completa) y el tiempo que sobra se usa en búsqueda local iterada,
+     * un trabajador por hilo del pool con semilla fija. Devuelve la mejor ruta hallada al vencer el plazo.
+     */
+    public static Resultado calcularRuta(SnapshotCircuitos circuitos, int topK, ForkJoinPool pool, long presupuestoMs) {
         if (circuitos == null || circuitos.isEmpty()) {
             return new Resultado(List.of(), 0);
         }
-        
-        double[][] d = distancias(circuitos);
+
+        long ahora = System.nanoTime();
+        long limite = presupuestoMs > 0 ? ahora + presupuestoMs * 1_000_000 : BusquedaLocal.SIN_LIMITE;
+        long limiteInicios = presupuestoMs > 0 ? ahora + presupuestoMs * 500_000 : BusquedaLocal.SIN_LIMITE;
+        DistanceMatrix d = circuitos.matriz();
         int n = circuitos.size();
-        List<Integer> mejor = vecinoMasCercano(d, 0); // Inicializar con primer circuito
-        double mejorL = largoRuta(d, mejor);
-
-        for (int s = 1; s < n; s++) {
-            List<Integer> nn = vecinoMasCercano(d, s);
-            List<Integer> opt = dosOpt(d, nn);
-            double L = largoRuta(d, opt);
-            if (L < mejorL) { 
-                mejorL = L; 
-                mejor = opt; 
+        int[] inicios = topK > 0 && topK < n ? mejoresInicios(d, topK, pool, limiteInicios) : todos(n);
+
+        Candidata inicial = Paralelo.enBloques(inicios.length, pool, (desde, hasta) -> {
+            BusquedaLocal busqueda = new BusquedaLocal(d);
+            Candidata mejorBloque = null;
+            for (int i = desde; i < hasta; i++) {
+                if (i > 0 && vencido(limiteInicios)) break;
+                int[] ruta = vecinoMasCercano(d, inicios[i]);
+                Candidata c = new Candidata(busqueda.mejorar(ruta, limite), inicios[i], ruta);
+                if (mejorBloque == null || c.esMejorQue(mejorBloque)) mejorBloque = c;
             }
+            return mejorBloque;
+        }, RutaF1TSP::mejorDe);
+
+        Candidata mejor = inicial;
+        if (presupuestoMs > 0 && !vencido(limite)) {
+            int trabajadores = pool == null ? 1 : pool.getParallelism();
+            Candidata iterada = Paralelo.enBloques(trabajadores, pool, (desde, hasta) -> {
+                int[] ruta = inicial.ruta().clone();
+                double largo = new BusquedaLocal(d).iterar(ruta, new Random(SEMILLA + desde), limite);
+                return new Candidata(largo, desde, ruta);
+            }, RutaF1TSP::mejorDe);
+            mejor = mejorDe(inicial, iterada);
         }
 
-        List<String> nombres = new ArrayList<>();
-        for (int idx : mejor) {
-            nombres.add(circuitos.get(idx).nombre);
+        List<Integer> indices = new ArrayList<>(n);
+        for (int idx : mejor.ruta()) indices.add(idx);
+        return new Resultado(circuitos.nombres(indices), Math.round(mejor.largo()));
+    }
+
+    /** Ruta con su largo; ordena por largo y luego por 'orden' (inicio o trabajador) para desempatar */
+    private record Candidata(double largo, int orden, int[] ruta) {
+        boolean esMejorQue(Candidata otra) {
+            return largo < otra.largo || (largo == otra.largo && orden < otra.orden);
         }
-        return new Resultado(nombres, Math.round(mejorL));
+    }
+
+    /** Mínimo entre dos candidatas; null cuando un bloque no llegó a correr antes del plazo */
+    private static Candidata mejorDe(Candidata a, Candidata b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        return b.esMejorQue(a) ? b : a;
+    }
+
+    private static boolean vencido(long limite) {
+        return limite != BusquedaLocal.SIN_LIMITE && System.nanoTime() - limite >= 0;
+    }
+
+    /** Los k inicios cuyo tour NN (sin mejorar) es más corto; los que no se evaluaron antes del plazo van al final */
+    private static int[] mejoresInicios(DistanceMatrix d, int k, ForkJoinPool pool, long limite) {
+        int n = d.size();
+        double[] largos = new double[n];
+        Arrays.fill(largos, Double.POSITIVE_INFINITY);
+        Paralelo.enBloques(n, pool, (desde, hasta) -> {
+            for (int s = desde; s < hasta; s++) {
+                if (s > 0 && vencido(limite)) break;
+                int[] ruta = vecinoMasCercano(d, s);
+                double total = 0;
+                for (int i = 0; i + 1 < n; i++) total += d.get(ruta[i], ruta[i + 1]);
+                largos[s] = total;
+            }
+            return null;
+        }, (a, b) -> null);
+
+        Integer[] orden = new Integer[n];
+        for (int s = 0; s < n; s++) orden[s] = s;
+        Arrays.sort(orden, Comparator.<Integer>comparingDouble(s -> largos[s]).thenComparingInt(s -> s));
+        int[] inicios = new int[k];
+        for (int i = 0; i < k; i++) inicios[i] = orden[i];
+        return inicios;
+    }
+
+    private static int[] todos(int n) {
+        int[] inicios = new int[n];
+        for (int i = 0; i < n; i++) inicios[i] = i;
+        return inicios;
     }
 }
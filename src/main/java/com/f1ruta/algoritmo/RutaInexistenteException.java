@@ -0,0 +1,13 @@
+package com.f1ruta.algoritmo;
+
+/**
+ * No hay camino entre origen y destino: pasa en el grafo disperso, que con k chico puede quedar partido
+ * (p. ej. entre continentes). Los parámetros son válidos; la respuesta es que no existe la ruta.
+ */
+public class RutaInexistenteException extends IllegalStateException {
+
+    public RutaInexistenteException(String origen, String destino) {
+        super("No existe ruta entre " + origen + " y " + destino
+                + " en el grafo de vecinos más cercanos; probar con modo=completo o más vecinos");
+    }
+}
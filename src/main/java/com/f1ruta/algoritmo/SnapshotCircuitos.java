@@ -0,0 +1,305 @@
+package com.f1ruta.algoritmo;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Foto inmutable del set de circuitos en forma de arreglos paralelos (nombres, latitudes, longitudes)
+ * más un índice nombre → posición. Es lo que reciben todos los algoritmos; las estructuras derivadas
+ * (como la matriz de distancias) se calculan una sola vez por snapshot.
+ * <p>
+ * Un cambio de un circuito ({@link #conCircuito}, {@link #sinCircuito}) produce un snapshot nuevo que
+ * parchea la matriz, el índice espacial y los órdenes ya calculados del anterior en O(n) en lugar de
+ * recalcularlos; el grafo disperso y la tabla de rutas se vuelven a armar en su primer uso.
+ */
+public final class SnapshotCircuitos {
+
+    private final long version;
+    /** SHA-256 del contenido en hexadecimal (se calcula en el primer uso: los parches no la necesitan) */
+    private volatile String huella;
+    private final String[] nombres;
+    private final double[] lat;
+    private final double[] lon;
+    private final Map<String, Integer> indice;
+
+    private volatile DistanceMatrix matriz;
+    private volatile IndiceEspacial indiceEspacial;
+    private volatile GrafoDisperso grafo;
+    private volatile TablaRutas tablaRutas;
+    /** Índices ordenados por criterio (posición = ordinal de {@link MergesortCircuitos.Criterio}) */
+    private final AtomicReferenceArray<IndiceOrden> ordenes =
+            new AtomicReferenceArray<>(MergesortCircuitos.Criterio.values().length);
+
+    private SnapshotCircuitos(String[] nombres, double[] lat, double[] lon, long version) {
+        this.version = version;
+        this.nombres = nombres;
+        this.lat = lat;
+        this.lon = lon;
+
+        Map<String, Integer> idx = new HashMap<>(nombres.length * 2);
+        for (int i = 0; i < nombres.length; i++) {
+            idx.put(clave(nombres[i]), i);
+        }
+        this.indice = Collections.unmodifiableMap(idx);
+    }
+
+    /** Crea el snapshot a partir de arreglos paralelos (se copian) */
+    public static SnapshotCircuitos de(String[] nombres, double[] lat, double[] lon, long version) {
+        if (nombres.length != lat.length || nombres.length != lon.length)
+            throw new IllegalArgumentException("nombres, latitudes y longitudes deben tener el mismo tamaño");
+        return new SnapshotCircuitos(nombres.clone(), lat.clone(), lon.clone(), version);
+    }
+
+    /** Crea el snapshot a partir de la lista de circuitos (DTO del TSP) */
+    public static SnapshotCircuitos de(List<? extends RutaF1TSP.Circuito> cs, long version) {
+        int n = cs.size();
+        String[] nombres = new String[n];
+        double[] lat = new double[n];
+        double[] lon = new double[n];
+        for (int i = 0; i < n; i++) {
+            RutaF1TSP.Circuito c = cs.get(i);
+            nombres[i] = c.nombre;
+            lat[i] = c.latitud;
+            lon[i] = c.longitud;
+        }
+        return new SnapshotCircuitos(nombres, lat, lon, version);
+    }
+
+    public int size() {
+        return nombres.length;
+    }
+
+    public boolean isEmpty() {
+        return nombres.length == 0;
+    }
+
+    /** Versión monótona asignada al cargar el snapshot */
+    public long version() {
+        return version;
+    }
+
+    /**
+     * Huella SHA-256 (en hexadecimal) del contenido: nombres y coordenadas, en orden. Igual contenido =>
+     * igual huella; para decidir que dos sets son el mismo se usa {@link #mismoContenido}.
+     */
+    public String huella() {
+        String h = huella;
+        if (h == null) {
+            h = calcularHuella(nombres, lat, lon);
+            huella = h;
+        }
+        return h;
+    }
+
+    /** Si 'otro' tiene los mismos circuitos, en el mismo orden y con las mismas coordenadas (bit a bit) */
+    public boolean mismoContenido(SnapshotCircuitos otro) {
+        return Arrays.equals(nombres, otro.nombres)
+                && Arrays.equals(lat, otro.lat)
+                && Arrays.equals(lon, otro.lon);
+    }
+
+    public String nombre(int i) {
+        return nombres[i];
+    }
+
+    public double latitud(int i) {
+        return lat[i];
+    }
+
+    public double longitud(int i) {
+        return lon[i];
+    }
+
+    /** Índice del circuito por nombre (sin distinguir mayúsculas), o -1 si no existe */
+    public int indice(String nombre) {
+        if (nombre == null) return -1;
+        Integer i = indice.get(clave(nombre));
+        return i == null ? -1 : i;
+    }
+
+    /** Matriz de distancias de este snapshot (se construye en el primer uso) */
+    public DistanceMatrix matriz() {
+        DistanceMatrix m = matriz;
+        if (m == null) {
+            synchronized (this) {
+                m = matriz;
+                if (m == null) {
+                    m = new DistanceMatrix(lat, lon, version);
+                    matriz = m;
+                }
+            }
+        }
+        return m;
+    }
+
+    /** Árbol k-d para consultas por radio (se construye en el primer uso, O(n log n) sin matriz) */
+    public IndiceEspacial indiceEspacial() {
+        IndiceEspacial ie = indiceEspacial;
+        if (ie == null) {
+            synchronized (this) {
+                ie = indiceEspacial;
+                if (ie == null) {
+                    ie = new IndiceEspacial(lat, lon);
+                    indiceEspacial = ie;
+                }
+            }
+        }
+        return ie;
+    }
+
+    /** Grafo disperso de k vecinos dentro de maxKm (se reutiliza mientras se pidan los mismos parámetros) */
+    public GrafoDisperso grafo(int k, double maxKm) {
+        GrafoDisperso g = grafo;
+        if (g == null || g.k() != k || g.maxKm() != maxKm) {
+            synchronized (this) {
+                g = grafo;
+                if (g == null || g.k() != k || g.maxKm() != maxKm) {
+                    g = GrafoDisperso.deVecinos(indiceEspacial(), k, maxKm);
+                    grafo = g;
+                }
+            }
+        }
+        return g;
+    }
+
+    /** Rutas mínimas entre todos los pares de 'grafo' (se reutiliza mientras sea el mismo grafo) */
+    public TablaRutas tablaRutas(GrafoDisperso grafo, ForkJoinPool pool) {
+        TablaRutas t = tablaRutas;
+        if (t == null || t.grafo() != grafo) {
+            synchronized (this) {
+                t = tablaRutas;
+                if (t == null || t.grafo() != grafo) {
+                    t = TablaRutas.calcular(grafo, pool);
+                    tablaRutas = t;
+                }
+            }
+        }
+        return t;
+    }
+
+    /** Circuitos ordenados por 'criterio' (se ordenan en el primer uso y sirven para ASC y DESC) */
+    public IndiceOrden ordenPor(MergesortCircuitos.Criterio criterio, ForkJoinPool pool) {
+        IndiceOrden o = ordenes.get(criterio.ordinal());
+        if (o == null) {
+            synchronized (this) {
+                o = ordenes.get(criterio.ordinal());
+                if (o == null) {
+                    o = new IndiceOrden(this, criterio, pool);
+                    ordenes.set(criterio.ordinal(), o);
+                }
+            }
+        }
+        return o;
+    }
+
+    /** Reemplaza la matriz por una equivalente ya calculada (p. ej. la de un {@link ArchivoCircuitos}) */
+    synchronized void usarMatriz(DistanceMatrix m) {
+        if (m.size() != size() || m.version() != version)
+            throw new IllegalArgumentException("La matriz no corresponde a este snapshot");
+        matriz = m;
+    }
+
+    /** Reemplaza la tabla de rutas por una equivalente ya calculada (p. ej. la de un {@link ArchivoCircuitos}) */
+    synchronized void usarTablaRutas(TablaRutas t) {
+        if (t.size() != size())
+            throw new IllegalArgumentException("La tabla de rutas no corresponde a este snapshot");
+        tablaRutas = t;
+    }
+
+    /**
+     * Snapshot con el circuito agregado al final o, si ya existe (mismo nombre sin distinguir mayúsculas),
+     * con su nombre y coordenadas nuevos en el mismo índice. Devuelve este mismo si no cambia nada.
+     */
+    public SnapshotCircuitos conCircuito(String nombre, double latitud, double longitud, long version) {
+        int i = indice(nombre);
+        if (i >= 0 && nombres[i].equals(nombre) && Double.compare(lat[i], latitud) == 0
+                && Double.compare(lon[i], longitud) == 0) {
+            return this;
+        }
+        int n = size();
+        int destino = i >= 0 ? i : n;
+        String[] nuevosNombres = Arrays.copyOf(nombres, i >= 0 ? n : n + 1);
+        double[] nuevasLat = Arrays.copyOf(lat, nuevosNombres.length);
+        double[] nuevasLon = Arrays.copyOf(lon, nuevosNombres.length);
+        nuevosNombres[destino] = nombre;
+        nuevasLat[destino] = latitud;
+        nuevasLon[destino] = longitud;
+        int[] quitados = i >= 0 ? new int[]{i} : new int[0];
+        return parchear(nuevosNombres, nuevasLat, nuevasLon, version, quitados, new int[]{destino});
+    }
+
+    /**
+     * Snapshot sin el circuito: el último pasa a ocupar su índice, así solo cambian dos filas.
+     * Devuelve este mismo si el circuito no existe.
+     */
+    public SnapshotCircuitos sinCircuito(String nombre, long version) {
+        int i = indice(nombre);
+        if (i < 0) return this;
+        int ultimo = size() - 1;
+        String[] nuevosNombres = Arrays.copyOf(nombres, ultimo);
+        double[] nuevasLat = Arrays.copyOf(lat, ultimo);
+        double[] nuevasLon = Arrays.copyOf(lon, ultimo);
+        if (i == ultimo) return parchear(nuevosNombres, nuevasLat, nuevasLon, version, new int[]{i}, new int[0]);
+        nuevosNombres[i] = nombres[ultimo];
+        nuevasLat[i] = lat[ultimo];
+        nuevasLon[i] = lon[ultimo];
+        return parchear(nuevosNombres, nuevasLat, nuevasLon, version, new int[]{i, ultimo}, new int[]{i});
+    }
+
+    /**
+     * Snapshot nuevo que hereda, parcheadas, las estructuras ya calculadas de este: 'quitados' son índices
+     * de este snapshot que dejan de valer y 'cambiados' índices del nuevo con datos nuevos.
+     */
+    private SnapshotCircuitos parchear(String[] nombres, double[] lat, double[] lon, long version,
+                                       int[] quitados, int[] cambiados) {
+        SnapshotCircuitos nuevo = new SnapshotCircuitos(nombres, lat, lon, version);
+        DistanceMatrix m = matriz;
+        if (m != null) nuevo.matriz = m.parchear(lat, lon, cambiados, version);
+        IndiceEspacial ie = indiceEspacial;
+        if (ie != null) nuevo.indiceEspacial = ie.parchear(lat, lon, quitados, cambiados);
+        for (int c = 0; c < ordenes.length(); c++) {
+            IndiceOrden o = ordenes.get(c);
+            if (o != null) nuevo.ordenes.set(c, o.parchear(nuevo, quitados, cambiados));
+        }
+        return nuevo;
+    }
+
+    /** Nombres de una ruta dada por índices */
+    public List<String> nombres(List<Integer> ruta) {
+        List<String> out = new ArrayList<>(ruta.size());
+        for (int idx : ruta) out.add(nombres[idx]);
+        return out;
+    }
+
+    private static String clave(String nombre) {
+        return nombre.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static String calcularHuella(String[] nombres, double[] lat, double[] lon) {
+        MessageDigest sha;
+        try {
+            sha = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("La JVM no tiene SHA-256", e);
+        }
+        ByteBuffer circuito = ByteBuffer.allocate(2 * Integer.BYTES + 2 * Double.BYTES);
+        sha.update(circuito.putInt(0, nombres.length).array(), 0, Integer.BYTES);
+        for (int i = 0; i < nombres.length; i++) {
+            // Largo antes de cada nombre para que ("ab","c") y ("a","bc") no coincidan
+            byte[] nombre = nombres[i].getBytes(StandardCharsets.UTF_8);
+            circuito.clear();
+            circuito.putInt(nombre.length);
+            sha.update(circuito.array(), 0, Integer.BYTES);
+            sha.update(nombre);
+            circuito.clear();
+            circuito.putDouble(lat[i]).putDouble(lon[i]);
+            sha.update(circuito.array(), 0, 2 * Double.BYTES);
+        }
+        return HexFormat.of().formatHex(sha.digest());
+    }
+}
@@ -0,0 +1,134 @@
+package com.f1ruta.algoritmo;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Rutas mínimas entre todos los pares de un {@link GrafoDisperso}, precalculadas con un Dijkstra por origen
+ * (en paralelo). Solo guarda el predecesor de cada par (4·n² bytes): la ruta se reconstruye hacia atrás
+ * y los km se suman con los pesos del grafo en el mismo orden que Dijkstra, así que dan el mismo valor.
+ * La tabla puede estar en el heap o leída de un {@link ArchivoCircuitos} mapeado en memoria.
+ */
+public final class TablaRutas {
+
+    private final GrafoDisperso grafo;
+    private final int n;
+    /** previo[s * n + v]: anterior a v en la ruta mínima desde s, o -1 si v == s o no es alcanzable */
+    private final IntBuffer previo;
+
+    /** Usa 'previo' tal cual (n² valores), ya sea un arreglo envuelto o un archivo mapeado */
+    TablaRutas(GrafoDisperso grafo, IntBuffer previo) {
+        if (previo.limit() != (long) grafo.size() * grafo.size())
+            throw new IllegalArgumentException("La tabla de rutas no corresponde al grafo");
+        this.grafo = grafo;
+        this.n = grafo.size();
+        this.previo = previo;
+    }
+
+    /** Memoria que ocupa la tabla para n circuitos */
+    public static long bytesNecesarios(int n) {
+        return 4L * n * n;
+    }
+
+    /** Corre un Dijkstra desde cada circuito; los orígenes se reparten en bloques sobre el pool (null = secuencial) */
+    public static TablaRutas calcular(GrafoDisperso grafo, ForkJoinPool pool) {
+        int n = grafo.size();
+        if ((long) n * n > Integer.MAX_VALUE - 8)
+            throw new IllegalArgumentException("Demasiados circuitos para la tabla de rutas: " + n);
+        int[] previo = new int[n * n];
+
+        Paralelo.enBloques(n, pool, (desde, hasta) -> {
+            double[] dist = new double[n];
+            boolean[] cerrado = new boolean[n];
+            HeapIndexado abiertos = new HeapIndexado(n);
+            for (int s = desde; s < hasta; s++) {
+                dijkstra(grafo, s, dist, cerrado, abiertos, previo, s * n);
+            }
+            return null;
+        }, (a, b) -> null);
+        return new TablaRutas(grafo, IntBuffer.wrap(previo));
+    }
+
+    private static void dijkstra(GrafoDisperso g, int s, double[] dist, boolean[] cerrado,
+                                 HeapIndexado abiertos, int[] previo, int base) {
+        int n = dist.length;
+        Arrays.fill(dist, Double.POSITIVE_INFINITY);
+        Arrays.fill(cerrado, false);
+        Arrays.fill(previo, base, base + n, -1);
+        dist[s] = 0.0;
+        abiertos.actualizar(s, 0.0);
+
+        while (!abiertos.isEmpty()) {
+            int u = abiertos.sacar();
+            cerrado[u] = true;
+            for (int e = g.inicio(u); e < g.fin(u); e++) {
+                int v = g.destino(e);
+                if (cerrado[v]) continue;
+                double alt = dist[u] + g.peso(e);
+                if (alt < dist[v]) {
+                    dist[v] = alt;
+                    previo[base + v] = u;
+                    abiertos.actualizar(v, alt);
+                }
+            }
+        }
+    }
+
+    /** Grafo sobre el que se calculó */
+    public GrafoDisperso grafo() {
+        return grafo;
+    }
+
+    public int size() {
+        return n;
+    }
+
+    /** Memoria que ocupa esta tabla */
+    public long bytes() {
+        return bytesNecesarios(n);
+    }
+
+    /** Si la tabla está en un archivo mapeado en lugar del heap */
+    public boolean mapeada() {
+        return previo.isDirect();
+    }
+
+    /** Copia los predecesores en 'destino' (para guardarlos en un archivo) */
+    void copiarEn(IntBuffer destino) {
+        destino.put(previo.duplicate().rewind());
+    }
+
+    /** Ruta mínima de s a t (ambos incluidos), o null si t no es alcanzable desde s */
+    public int[] ruta(int s, int t) {
+        if (s == t) return new int[]{s};
+        int base = s * n;
+        if (previo.get(base + t) < 0) return null;
+
+        int pasos = 1;
+        for (int v = t; v != s; v = previo.get(base + v)) pasos++;
+        int[] ruta = new int[pasos];
+        for (int v = t, i = pasos - 1; i >= 0; v = previo.get(base + v), i--) ruta[i] = v;
+        return ruta;
+    }
+
+    /** Km de una ruta del grafo, sumados desde el origen (igual que las distancias de Dijkstra) */
+    public double largo(int[] ruta) {
+        double total = 0.0;
+        for (int i = 0; i + 1 < ruta.length; i++) total += peso(ruta[i], ruta[i + 1]);
+        return total;
+    }
+
+    /** Peso de la arista u-v (las listas del grafo están ordenadas por destino) */
+    private double peso(int u, int v) {
+        int lo = grafo.inicio(u), hi = grafo.fin(u) - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int d = grafo.destino(mid);
+            if (d < v) lo = mid + 1;
+            else if (d > v) hi = mid - 1;
+            else return grafo.peso(mid);
+        }
+        throw new IllegalStateException("La ruta usa una arista que no está en el grafo: " + u + "-" + v);
+    }
+}
@@ -0,0 +1,93 @@
+package com.f1ruta.algoritmo;
+
+/**
+ * Listas de los k vecinos más cercanos de cada nodo, ordenadas por distancia creciente,
+ * en un único arreglo plano (fila i = vecinos de i). Se obtienen con {@link DistanceMatrix#vecinos(int)}.
+ */
+public final class VecinosCercanos {
+
+    private final int k;
+    private final int[] vecinos;
+
+    /** Desde este k conviene ordenar la fila completa (O(n log n)) en lugar de la inserción acotada (O(n·k)) */
+    private static final int K_ORDENAR_FILA = 32;
+
+    VecinosCercanos(DistanceMatrix d, int k) {
+        int n = d.size();
+        this.k = Math.max(0, Math.min(k, n - 1));
+        this.vecinos = new int[n * this.k];
+        if (this.k == 0) return;
+        if (this.k >= K_ORDENAR_FILA) {
+            ordenarFilas(d, n);
+            return;
+        }
+        double[] dist = new double[this.k];
+
+        for (int i = 0; i < n; i++) {
+            int base = i * this.k;
+            int cantidad = 0;
+            // Inserción acotada: O(n·k) por fila, sin ordenar la fila completa
+            for (int j = 0; j < n; j++) {
+                if (j == i) continue;
+                double dj = d.get(i, j);
+                if (cantidad == this.k && dj >= dist[cantidad - 1]) continue;
+                int pos = cantidad < this.k ? cantidad++ : cantidad - 1;
+                while (pos > 0 && dist[pos - 1] > dj) {
+                    dist[pos] = dist[pos - 1];
+                    vecinos[base + pos] = vecinos[base + pos - 1];
+                    pos--;
+                }
+                dist[pos] = dj;
+                vecinos[base + pos] = j;
+            }
+        }
+    }
+
+    /** Ordena cada fila completa con un mergesort estable (empates por índice, igual que la inserción) */
+    private void ordenarFilas(DistanceMatrix d, int n) {
+        int[] idx = new int[n - 1];
+        double[] dist = new double[n - 1];
+        int[] auxIdx = new int[n - 1];
+        double[] auxDist = new double[n - 1];
+        for (int i = 0; i < n; i++) {
+            int m = 0;
+            for (int j = 0; j < n; j++) {
+                if (j == i) continue;
+                idx[m] = j;
+                dist[m++] = d.get(i, j);
+            }
+            ordenar(idx, dist, auxIdx, auxDist, 0, m);
+            System.arraycopy(idx, 0, vecinos, i * k, k);
+        }
+    }
+
+    private static void ordenar(int[] idx, double[] dist, int[] auxIdx, double[] auxDist, int desde, int hasta) {
+        if (hasta - desde < 2) return;
+        int medio = (desde + hasta) >>> 1;
+        ordenar(idx, dist, auxIdx, auxDist, desde, medio);
+        ordenar(idx, dist, auxIdx, auxDist, medio, hasta);
+        if (dist[medio - 1] <= dist[medio]) return; // ya están en orden
+        int a = desde, b = medio;
+        for (int r = desde; r < hasta; r++) {
+            if (b >= hasta || (a < medio && dist[a] <= dist[b])) {
+                auxIdx[r] = idx[a];
+                auxDist[r] = dist[a++];
+            } else {
+                auxIdx[r] = idx[b];
+                auxDist[r] = dist[b++];
+            }
+        }
+        System.arraycopy(auxIdx, desde, idx, desde, hasta - desde);
+        System.arraycopy(auxDist, desde, dist, desde, hasta - desde);
+    }
+
+    /** Cantidad de vecinos por nodo */
+    public int k() {
+        return k;
+    }
+
+    /** r-ésimo vecino más cercano del nodo i (r = 0 es el más cercano) */
+    public int vecino(int i, int r) {
+        return vecinos[i * k + r];
+    }
+}
@@ -0,0 +1,69 @@
+package com.f1ruta.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Pool de hilos acotado compartido por los algoritmos que trabajan en paralelo */
+@Configuration
+public class ConcurrenciaConfig {
+
+    @Bean(destroyMethod = "shutdown")
+    public ForkJoinPool poolAlgoritmos(@Value("${f1ruta.algoritmos.hilos:0}") int hilos) {
+        int paralelismo = hilos > 0 ? hilos : Runtime.getRuntime().availableProcessors();
+        return new ForkJoinPool(paralelismo);
+    }
+
+    /**
+     * Ejecutor de los trabajos asíncronos: pocos hilos y cola acotada, así unas cuantas corridas largas
+     * no le quitan el pool de algoritmos a los requests. Con la cola llena rechaza el trabajo.
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ThreadPoolExecutor poolTrabajos(@Value("${f1ruta.trabajos.hilos:2}") int hilos,
+                                           @Value("${f1ruta.trabajos.cola:16}") int cola) {
+        if (hilos <= 0 || cola <= 0)
+            throw new IllegalArgumentException("f1ruta.trabajos.hilos y f1ruta.trabajos.cola deben ser mayores que 0");
+        AtomicInteger numero = new AtomicInteger();
+        return new ThreadPoolExecutor(hilos, hilos, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(cola), r -> {
+            Thread hilo = new Thread(r, "f1ruta-trabajo-" + numero.incrementAndGet());
+            hilo.setDaemon(true);
+            return hilo;
+        });
+    }
+
+    /**
+     * Hilos para repartir las consultas de POST /batch: aparte del pool de algoritmos, en el que cada consulta
+     * hace su propio fork/join, así un lote grande no llena ese pool de tareas que esperan a otras tareas.
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService poolBatch(@Value("${f1ruta.batch.hilos:2}") int hilos) {
+        if (hilos <= 0) throw new IllegalArgumentException("f1ruta.batch.hilos debe ser mayor que 0");
+        AtomicInteger numero = new AtomicInteger();
+        return Executors.newFixedThreadPool(hilos, r -> {
+            Thread hilo = new Thread(r, "f1ruta-batch-" + numero.incrementAndGet());
+            hilo.setDaemon(true);
+            return hilo;
+        });
+    }
+
+    /**
+     * Un hilo que manda los Server-Sent Events de los trabajos, en orden: SseEmitter.send bloquea (y está
+     * sincronizado), así que un cliente lento no frena a los trabajadores de Branch & Bound.
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService poolEventos() {
+        return Executors.newSingleThreadExecutor(r -> {
+            Thread hilo = new Thread(r, "f1ruta-eventos");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+    }
+}
@@ -0,0 +1,57 @@
+package com.f1ruta.config;
+
+import com.f1ruta.dto.RespuestaBFS;
+import com.f1ruta.dto.RespuestaBranchBound;
+import com.f1ruta.dto.RespuestaDijkstra;
+import com.f1ruta.dto.RespuestaMergesort;
+import com.f1ruta.dto.RespuestaNearest;
+import com.f1ruta.dto.ResultadoBatch;
+import com.f1ruta.service.MetricasAlgoritmos;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.List;
+
+/**
+ * Conversor JSON de Spring (con el ObjectMapper de Boot) que mide la fase "serializacion" de las
+ * respuestas de los algoritmos: escribir el JSON, que con los puntos en streaming incluye mandarlo.
+ */
+@Configuration
+public class SerializacionConfig {
+
+    @Bean
+    public MappingJackson2HttpMessageConverter conversorJson(ObjectMapper mapper, MetricasAlgoritmos metricas) {
+        return new MappingJackson2HttpMessageConverter(mapper) {
+            @Override
+            protected void writeInternal(Object objeto, Type tipo, HttpOutputMessage salida) throws IOException {
+                String algoritmo = algoritmo(objeto);
+                if (algoritmo == null) {
+                    super.writeInternal(objeto, tipo, salida);
+                    return;
+                }
+                long inicio = System.nanoTime();
+                try {
+                    super.writeInternal(objeto, tipo, salida);
+                } finally {
+                    metricas.registrar(algoritmo, "serializacion", System.nanoTime() - inicio);
+                }
+            }
+        };
+    }
+
+    /** Algoritmo de una respuesta, o null si no es de un algoritmo (no se mide) */
+    private static String algoritmo(Object respuesta) {
+        if (respuesta instanceof RespuestaNearest) return "nearest";
+        if (respuesta instanceof RespuestaDijkstra) return "dijkstra";
+        if (respuesta instanceof RespuestaBFS) return "bfs";
+        if (respuesta instanceof RespuestaBranchBound) return "branch-bound";
+        if (respuesta instanceof RespuestaMergesort) return "mergesort";
+        if (respuesta instanceof List<?> lista && !lista.isEmpty() && lista.get(0) instanceof ResultadoBatch) return "batch";
+        return null;
+    }
+}
@@ -1,10 +1,21 @@
 package com.f1ruta.controller;
 
+import com.f1ruta.algoritmo.SnapshotCircuitos;
+import com.f1ruta.domain.Circuito;
+import com.f1ruta.dto.ConsultaBatch;
+import com.f1ruta.dto.EstadoSnapshot;
+import com.f1ruta.dto.RespuestaBFS;
+import com.f1ruta.dto.RespuestaBranchBound;
+import com.f1ruta.dto.RespuestaDijkstra;
+import com.f1ruta.dto.RespuestaMergesort;
+import com.f1ruta.dto.RespuestaNearest;
+import com.f1ruta.dto.ResultadoBatch;
 import com.f1ruta.service.RutaService;
+import com.f1ruta.service.SnapshotService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.Map;
+import java.util.List;
 
 // Swagger / Springdoc
 import io.swagger.v3.oas.annotations.Operation;
@@ -15,24 +26,41 @@ import io.swagger.v3.oas.annotations.Parameter;
 public class AlgoritmoController {
 
     private final RutaService servicio;
+    private final SnapshotService snapshotService;
 
-    public AlgoritmoController(RutaService servicio) {
+    public AlgoritmoController(RutaService servicio, SnapshotService snapshotService) {
         this.servicio = servicio;
+        this.snapshotService = snapshotService;
     }
 
     @Operation(summary = "Greedy TSP: Nearest Neighbor + 2-opt")
     @GetMapping("/nearest")
-    public ResponseEntity<Map<String, Object>> ejecutarNearest() {
-        return ResponseEntity.ok(servicio.ejecutarNearest());
+    public ResponseEntity<RespuestaNearest> ejecutarNearest(
+            @Parameter(description = "Solo mejora con 2-opt los k tours Nearest Neighbor más cortos (0 = todos)", example = "8")
+            @RequestParam(name = "top_k", required = false) Integer topK,
+            @Parameter(description = "Presupuesto de tiempo en ms: devuelve la mejor ruta hallada al vencer", example = "200")
+            @RequestParam(name = "budget_ms", required = false) Long budgetMs,
+            @Parameter(description = "Incluir \"puntos\" (todos los circuitos como marcadores); false = solo la ruta")
+            @RequestParam(name = "incluir_puntos", required = false, defaultValue = "true") boolean incluirPuntos
+    ) {
+        return ResponseEntity.ok(servicio.ejecutarNearest(topK, budgetMs, incluirPuntos));
     }
 
-    @Operation(summary = "Dijkstra: ruta mínima entre dos circuitos (Haversine)")
+    @Operation(
+        summary = "Dijkstra: ruta mínima entre dos circuitos (Haversine)",
+        description = "En modo disperso el grafo de vecinos más cercanos puede quedar partido: 422 si origen y destino no se conectan."
+    )
     @GetMapping("/dijkstra")
-    public ResponseEntity<Map<String, Object>> ejecutarDijkstra(
+    public ResponseEntity<RespuestaDijkstra> ejecutarDijkstra(
             @Parameter(example = "Abu Dhabi (EAU)") @RequestParam(name = "origen") String origen,
-            @Parameter(example = "Sao Paulo (Brasil)") @RequestParam(name = "destino") String destino
+            @Parameter(example = "Sao Paulo (Brasil)") @RequestParam(name = "destino") String destino,
+            @Parameter(description = "completo (grafo Haversine completo) o disperso (A* sobre k vecinos más cercanos)",
+                       example = "disperso")
+            @RequestParam(name = "modo", required = false, defaultValue = "completo") String modo,
+            @Parameter(description = "Incluir \"puntos\" (todos los circuitos como marcadores); false = solo la ruta")
+            @RequestParam(name = "incluir_puntos", required = false, defaultValue = "true") boolean incluirPuntos
     ) {
-        return ResponseEntity.ok(servicio.ejecutarDijkstra(origen.trim(), destino.trim()));
+        return ResponseEntity.ok(servicio.ejecutarDijkstra(origen.trim(), destino.trim(), modo, incluirPuntos));
     }
 
     @Operation(
@@ -40,36 +68,112 @@ public class AlgoritmoController {
         description = "Se conecta un circuito con otro si la distancia Haversine es <= max_km. Devuelve orden de visita, niveles y nodos no alcanzados."
     )
     @GetMapping("/bfs")
-    public ResponseEntity<Map<String, Object>> ejecutarBFS(
+    public ResponseEntity<RespuestaBFS> ejecutarBFS(
             @Parameter(description = "Circuito de inicio, exactamente como en el JSON",
                        example = "Monaco (Mónaco)")
             @RequestParam(name = "inicio") String inicio,
             @Parameter(description = "Umbral de conexión en km (default 3000)", example = "3000")
-            @RequestParam(name = "max_km", required = false) Double maxKm
+            @RequestParam(name = "max_km", required = false) Double maxKm,
+            @Parameter(description = "memoria (sobre el snapshot) o neo4j (consultas por radio a la base, sin cargar el set; "
+                    + "sin no_alcanzados y con solo los visitados como puntos)", example = "memoria")
+            @RequestParam(name = "modo", required = false, defaultValue = "memoria") String modo,
+            @Parameter(description = "Incluir \"puntos\" (todos los circuitos como marcadores); false = solo la ruta")
+            @RequestParam(name = "incluir_puntos", required = false, defaultValue = "true") boolean incluirPuntos
     ) {
-        return ResponseEntity.ok(servicio.ejecutarBFS(inicio, maxKm));
+        return ResponseEntity.ok(servicio.ejecutarBFS(inicio, maxKm, modo, incluirPuntos));
     }
 
     @Operation(summary = "Branch & Bound TSP: Ruta óptima exacta desde un origen")
     @GetMapping("/branch-bound")
-    public ResponseEntity<Map<String, Object>> ejecutarBranchBound(
+    public ResponseEntity<RespuestaBranchBound> ejecutarBranchBound(
             @Parameter(description = "Circuito de origen para iniciar la ruta óptima", example = "Monaco (Mónaco)")
-            @RequestParam(name = "origen", required = false) String origen
+            @RequestParam(name = "origen", required = false) String origen,
+            @Parameter(description = "Límite de tiempo en ms para Branch & Bound (reemplaza el configurado)", example = "1000")
+            @RequestParam(name = "budget_ms", required = false) Long budgetMs,
+            @Parameter(description = "Incluir \"puntos\" (todos los circuitos como marcadores); false = solo la ruta")
+            @RequestParam(name = "incluir_puntos", required = false, defaultValue = "true") boolean incluirPuntos
     ) {
-        return ResponseEntity.ok(servicio.ejecutarBranchBound(origen));
+        return ResponseEntity.ok(servicio.ejecutarBranchBound(origen, budgetMs, incluirPuntos));
     }
 
     @Operation(
         summary = "Mergesort: Ordena circuitos por criterio (Divide y Vencerás)",
-        description = "Criterios disponibles: latitud, longitud, nombre. Orden: asc o desc."
+        description = "Criterios disponibles: latitud, longitud, nombre. Orden: asc o desc. "
+                + "Opcional: top_k, banda min/max (latitud/longitud) y página offset/limit sobre el orden precalculado."
     )
     @GetMapping("/mergesort")
-    public ResponseEntity<Map<String, Object>> ejecutarMergesort(
+    public ResponseEntity<RespuestaMergesort> ejecutarMergesort(
             @Parameter(description = "Criterio de ordenamiento: latitud, longitud, nombre", example = "latitud")
             @RequestParam(name = "criterio", required = false, defaultValue = "nombre") String criterio,
             @Parameter(description = "Orden: asc (ascendente) o desc (descendente)", example = "asc")
-            @RequestParam(name = "orden", required = false, defaultValue = "asc") String orden
+            @RequestParam(name = "orden", required = false, defaultValue = "asc") String orden,
+            @Parameter(description = "Solo los primeros k circuitos del orden", example = "5")
+            @RequestParam(name = "top_k", required = false) Integer topK,
+            @Parameter(description = "Valor mínimo del criterio (latitud/longitud), inclusive", example = "-10")
+            @RequestParam(name = "min", required = false) Double min,
+            @Parameter(description = "Valor máximo del criterio (latitud/longitud), inclusive", example = "50")
+            @RequestParam(name = "max", required = false) Double max,
+            @Parameter(description = "Posición desde la que se devuelven circuitos (0 = primero)", example = "0")
+            @RequestParam(name = "offset", required = false) Integer offset,
+            @Parameter(description = "Cantidad máxima de circuitos a devolver", example = "10")
+            @RequestParam(name = "limit", required = false) Integer limit
+    ) {
+        return ResponseEntity.ok(servicio.ejecutarMergesort(criterio, orden, topK, min, max, offset, limit));
+    }
+
+    @Operation(
+        summary = "Lote de consultas a los algoritmos",
+        description = "Cada consulta indica 'algoritmo' (nearest, dijkstra, bfs, branch-bound, mergesort) y los "
+                + "parámetros de su endpoint. Todas usan el mismo snapshot; los resultados vuelven en el mismo orden "
+                + "y una consulta inválida trae 'error' sin afectar a las demás."
+    )
+    @PostMapping("/batch")
+    public ResponseEntity<List<ResultadoBatch>> ejecutarBatch(@RequestBody List<ConsultaBatch> consultas) {
+        return ResponseEntity.ok(servicio.ejecutarBatch(consultas));
+    }
+
+    @Operation(
+        summary = "Invalida el snapshot de circuitos en memoria",
+        description = "La próxima consulta vuelve a leer los circuitos desde Neo4j."
+    )
+    @PostMapping("/snapshot/invalidar")
+    public ResponseEntity<Void> invalidarSnapshot() {
+        snapshotService.invalidar();
+        return ResponseEntity.noContent().build();
+    }
+
+    @Operation(
+        summary = "Agrega un circuito o cambia sus coordenadas",
+        description = "Lo guarda en Neo4j y publica un snapshot nuevo que solo recalcula lo que depende de ese circuito."
+    )
+    @PutMapping("/snapshot/circuitos/{nombre}")
+    public ResponseEntity<EstadoSnapshot> guardarCircuito(
+            @Parameter(example = "Monaco (Mónaco)") @PathVariable("nombre") String nombre,
+            @Parameter(example = "43.7347") @RequestParam(name = "latitud") double latitud,
+            @Parameter(example = "7.4206") @RequestParam(name = "longitud") double longitud
     ) {
-        return ResponseEntity.ok(servicio.ejecutarMergesort(criterio, orden));
+        SnapshotCircuitos circuitos = snapshotService.guardarCircuito(nombre, latitud, longitud);
+        return ResponseEntity.ok(new EstadoSnapshot(circuitos.version(), circuitos.size()));
+    }
+
+    @Operation(
+        summary = "Importa muchos circuitos de una vez",
+        description = "Crea o actualiza por nombre cada circuito ({\"nombre\", \"latitud\", \"longitud\"}) con lotes UNWIND "
+                + "en Neo4j y descarta el snapshot, que se recarga entero en la próxima consulta. Devuelve cuántos escribió."
+    )
+    @PostMapping("/snapshot/circuitos")
+    public ResponseEntity<Integer> importarCircuitos(@RequestBody List<Circuito> circuitos) {
+        return ResponseEntity.ok(snapshotService.importarCircuitos(circuitos));
+    }
+
+    @Operation(
+        summary = "Borra un circuito",
+        description = "Lo borra de Neo4j y publica un snapshot nuevo sin él. 404 si no existe."
+    )
+    @DeleteMapping("/snapshot/circuitos/{nombre}")
+    public ResponseEntity<EstadoSnapshot> borrarCircuito(@PathVariable("nombre") String nombre) {
+        SnapshotCircuitos circuitos = snapshotService.borrarCircuito(nombre);
+        if (circuitos == null) return ResponseEntity.notFound().build();
+        return ResponseEntity.ok(new EstadoSnapshot(circuitos.version(), circuitos.size()));
     }
 }
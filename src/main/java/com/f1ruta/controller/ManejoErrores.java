@@ -0,0 +1,26 @@
+package com.f1ruta.controller;
+
+import com.f1ruta.algoritmo.RutaInexistenteException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ProblemDetail;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+/**
+ * Errores comunes a todos los endpoints: un parámetro inválido (circuito inexistente, coordenadas fuera
+ * de rango, demasiadas consultas...) es un 400 con el mensaje de la validación, no un 500. Un par sin
+ * camino en el grafo disperso es un 422: la consulta es válida pero no tiene respuesta.
+ */
+@RestControllerAdvice
+public class ManejoErrores {
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ProblemDetail parametroInvalido(IllegalArgumentException e) {
+        return ProblemDetail.forStatusAndDetail(HttpStatus.BAD_REQUEST, e.getMessage());
+    }
+
+    @ExceptionHandler(RutaInexistenteException.class)
+    public ProblemDetail sinRuta(RutaInexistenteException e) {
+        return ProblemDetail.forStatusAndDetail(HttpStatus.UNPROCESSABLE_ENTITY, e.getMessage());
+    }
+}
@@ -0,0 +1,72 @@
+package com.f1ruta.controller;
+
+import com.f1ruta.dto.EstadoTrabajo;
+import com.f1ruta.service.TrabajoService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+// Swagger / Springdoc
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+
+@RestController
+@RequestMapping("/api/algoritmos/trabajos")
+public class TrabajoController {
+
+    private final TrabajoService servicio;
+
+    public TrabajoController(TrabajoService servicio) {
+        this.servicio = servicio;
+    }
+
+    @Operation(
+        summary = "Encola un Branch & Bound como trabajo asíncrono",
+        description = "Devuelve el id del trabajo (202). Con la cola de trabajos llena responde 503."
+    )
+    @PostMapping("/branch-bound")
+    public ResponseEntity<EstadoTrabajo> enviarBranchBound(
+            @Parameter(description = "Circuito de origen para iniciar la ruta óptima", example = "Monaco (Mónaco)")
+            @RequestParam(name = "origen", required = false) String origen,
+            @Parameter(description = "Límite de tiempo en ms para Branch & Bound (reemplaza el configurado)", example = "60000")
+            @RequestParam(name = "budget_ms", required = false) Long budgetMs,
+            @Parameter(description = "Incluir \"puntos\" (todos los circuitos como marcadores) en el resultado")
+            @RequestParam(name = "incluir_puntos", required = false, defaultValue = "true") boolean incluirPuntos
+    ) {
+        try {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(servicio.enviarBranchBound(origen, budgetMs, incluirPuntos));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+    }
+
+    @Operation(summary = "Estado, último progreso y (al terminar) resultado de un trabajo")
+    @GetMapping("/{id}")
+    public ResponseEntity<EstadoTrabajo> estado(@PathVariable("id") String id) {
+        EstadoTrabajo estado = servicio.estado(id);
+        return estado != null ? ResponseEntity.ok(estado) : ResponseEntity.notFound().build();
+    }
+
+    @Operation(
+        summary = "Cancela un trabajo",
+        description = "Si ya estaba corriendo termina CANCELADO con la mejor ruta encontrada hasta ese momento."
+    )
+    @DeleteMapping("/{id}")
+    public ResponseEntity<EstadoTrabajo> cancelar(@PathVariable("id") String id) {
+        EstadoTrabajo estado = servicio.cancelar(id);
+        return estado != null ? ResponseEntity.ok(estado) : ResponseEntity.notFound().build();
+    }
+
+    @Operation(
+        summary = "Progreso del trabajo por Server-Sent Events",
+        description = "Eventos 'progreso' (mejor_km, nodos_explorados, cota_inferior_km, gap) en cada mejora de la ruta "
+                + "y periódicamente, y un 'fin' con el estado final."
+    )
+    @GetMapping(value = "/{id}/eventos", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> eventos(@PathVariable("id") String id) {
+        SseEmitter emisor = servicio.suscribir(id);
+        return emisor != null ? ResponseEntity.ok(emisor) : ResponseEntity.notFound().build();
+    }
+}
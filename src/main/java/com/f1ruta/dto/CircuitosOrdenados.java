@@ -0,0 +1,59 @@
+package com.f1ruta.dto;
+
+import com.f1ruta.algoritmo.SnapshotCircuitos;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+
+/**
+ * Filas de /mergesort ({"posicion", "nombre", "latitud", "longitud"}) escritas directo desde el snapshot.
+ * La posición es la del circuito en el orden completo (1 = primero).
+ */
+@JsonSerialize(using = CircuitosOrdenados.Serializador.class)
+public final class CircuitosOrdenados {
+
+    private final Puntos puntos;
+    /** Posición en el orden completo del primer circuito (0 = primero) */
+    private final int primeraPosicion;
+
+    public CircuitosOrdenados(SnapshotCircuitos circuitos, int[] indices, int primeraPosicion) {
+        this.puntos = Puntos.de(circuitos, indices);
+        this.primeraPosicion = primeraPosicion;
+    }
+
+    /** Los mismos circuitos como marcadores para el mapa */
+    public Puntos comoPuntos() {
+        return puntos;
+    }
+
+    public int size() {
+        return puntos.size();
+    }
+
+    static final class Serializador extends StdSerializer<CircuitosOrdenados> {
+
+        Serializador() {
+            super(CircuitosOrdenados.class);
+        }
+
+        @Override
+        public void serialize(CircuitosOrdenados filas, JsonGenerator gen, SerializerProvider proveedor)
+                throws IOException {
+            SnapshotCircuitos c = filas.puntos.circuitos();
+            gen.writeStartArray(filas, filas.size());
+            for (int k = 0; k < filas.size(); k++) {
+                int i = filas.puntos.circuito(k);
+                gen.writeStartObject();
+                gen.writeNumberField("posicion", filas.primeraPosicion + k + 1);
+                gen.writeStringField("nombre", c.nombre(i));
+                gen.writeNumberField("latitud", c.latitud(i));
+                gen.writeNumberField("longitud", c.longitud(i));
+                gen.writeEndObject();
+            }
+            gen.writeEndArray();
+        }
+    }
+}
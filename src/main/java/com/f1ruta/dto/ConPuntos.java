@@ -0,0 +1,8 @@
+package com.f1ruta.dto;
+
+/** Respuesta que incluye todos los circuitos como marcadores ("puntos") y puede omitirlos */
+public interface ConPuntos<T extends ConPuntos<T>> {
+
+    /** La misma respuesta sin "puntos" (para clientes que solo dibujan la ruta) */
+    T sinPuntos();
+}
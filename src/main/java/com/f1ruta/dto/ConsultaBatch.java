@@ -0,0 +1,26 @@
+package com.f1ruta.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Una invocación dentro de POST /batch: 'algoritmo' (nearest, dijkstra, bfs, branch-bound, mergesort)
+ * y los mismos parámetros que su endpoint GET; los que no aplican al algoritmo se ignoran.
+ * incluir_puntos vale false por defecto, para no repetir todos los circuitos en cada resultado.
+ */
+public record ConsultaBatch(
+        String algoritmo,
+        String origen,
+        String destino,
+        String modo,
+        String inicio,
+        @JsonProperty("max_km") Double maxKm,
+        @JsonProperty("top_k") Integer topK,
+        @JsonProperty("budget_ms") Long budgetMs,
+        String criterio,
+        String orden,
+        Double min,
+        Double max,
+        Integer offset,
+        Integer limit,
+        @JsonProperty("incluir_puntos") Boolean incluirPuntos
+) {}
@@ -0,0 +1,9 @@
+package com.f1ruta.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/** Snapshot publicado tras cambiar un circuito: su versión y cuántos circuitos tiene */
+public record EstadoSnapshot(
+        long version,
+        @JsonProperty("cantidad_circuitos") int cantidadCircuitos
+) {}
@@ -0,0 +1,16 @@
+package com.f1ruta.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Estado de un trabajo asíncrono: EN_COLA, EN_CURSO, TERMINADO, CANCELADO (con la mejor ruta hallada
+ * si ya había empezado) o ERROR. El resultado aparece al terminar.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record EstadoTrabajo(
+        String id,
+        String estado,
+        ProgresoTrabajo progreso,
+        RespuestaBranchBound resultado,
+        String error
+) {}
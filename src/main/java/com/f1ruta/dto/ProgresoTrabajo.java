@@ -0,0 +1,23 @@
+package com.f1ruta.dto;
+
+import com.f1ruta.algoritmo.BranchBoundTSP;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/** Último progreso de un trabajo de Branch & Bound (cota y gap se omiten si la cota no es admisible) */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record ProgresoTrabajo(
+        @JsonProperty("mejor_km") double mejorKm,
+        @JsonProperty("nodos_explorados") int nodosExplorados,
+        @JsonProperty("cota_inferior_km") Double cotaInferiorKm,
+        Double gap,
+        @JsonProperty("tiempo_ms") long tiempoMs
+) {
+
+    public static ProgresoTrabajo de(BranchBoundTSP.Progreso p) {
+        double gap = p.gap();
+        return new ProgresoTrabajo(p.mejorCosto(), p.nodosExplorados(),
+                Double.isNaN(p.cotaInferior()) ? null : p.cotaInferior(),
+                Double.isNaN(gap) ? null : gap, p.milisegundos());
+    }
+}
@@ -0,0 +1,84 @@
+package com.f1ruta.dto;
+
+import com.f1ruta.algoritmo.SnapshotCircuitos;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Marcadores para el mapa ({"nombre", "lat", "lon"} por circuito) sin armar un objeto por punto:
+ * guarda el snapshot y los índices, y se escriben directo desde sus arreglos al serializar.
+ */
+@JsonSerialize(using = Puntos.Serializador.class)
+public final class Puntos {
+
+    private final SnapshotCircuitos circuitos;
+    /** Índices en orden, o null = todos los circuitos del snapshot */
+    private final int[] indices;
+
+    private Puntos(SnapshotCircuitos circuitos, int[] indices) {
+        this.circuitos = circuitos;
+        this.indices = indices;
+    }
+
+    /** Todos los circuitos, en el orden del snapshot */
+    public static Puntos todos(SnapshotCircuitos circuitos) {
+        return new Puntos(circuitos, null);
+    }
+
+    /** Los circuitos de una ruta dada por índices (no se copia) */
+    public static Puntos de(SnapshotCircuitos circuitos, int[] indices) {
+        return new Puntos(circuitos, indices);
+    }
+
+    /** Los circuitos de una ruta dada por nombres (se saltean los que no estén en el snapshot) */
+    public static Puntos deNombres(SnapshotCircuitos circuitos, List<String> nombres) {
+        int[] indices = new int[nombres.size()];
+        int cantidad = 0;
+        for (String nombre : nombres) {
+            int i = circuitos.indice(nombre);
+            if (i >= 0) indices[cantidad++] = i;
+        }
+        return new Puntos(circuitos, cantidad == indices.length ? indices : Arrays.copyOf(indices, cantidad));
+    }
+
+    public int size() {
+        return indices != null ? indices.length : circuitos.size();
+    }
+
+    /** Índice en el snapshot del k-ésimo punto */
+    public int circuito(int k) {
+        return indices != null ? indices[k] : k;
+    }
+
+    public SnapshotCircuitos circuitos() {
+        return circuitos;
+    }
+
+    static final class Serializador extends StdSerializer<Puntos> {
+
+        Serializador() {
+            super(Puntos.class);
+        }
+
+        @Override
+        public void serialize(Puntos puntos, JsonGenerator gen, SerializerProvider proveedor) throws IOException {
+            SnapshotCircuitos c = puntos.circuitos;
+            gen.writeStartArray(puntos, puntos.size());
+            for (int k = 0; k < puntos.size(); k++) {
+                int i = puntos.circuito(k);
+                gen.writeStartObject();
+                gen.writeStringField("nombre", c.nombre(i));
+                gen.writeNumberField("lat", c.latitud(i));
+                gen.writeNumberField("lon", c.longitud(i));
+                gen.writeEndObject();
+            }
+            gen.writeEndArray();
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.f1ruta.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+import java.util.Map;
+
+/** Respuesta de /bfs */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record RespuestaBFS(
+        String algoritmo,
+        String inicio,
+        @JsonProperty("max_km") double maxKm,
+        @JsonProperty("orden_visita") List<String> ordenVisita,
+        Map<Integer, List<String>> niveles,
+        @JsonProperty("no_alcanzados") List<String> noAlcanzados,
+        @JsonProperty("total_visitados") int totalVisitados,
+        @JsonProperty("total_circuitos") Integer totalCircuitos,
+        Puntos puntos,
+        @JsonProperty("puntos_orden") Puntos puntosOrden
+) implements ConPuntos<RespuestaBFS> {
+
+    @Override
+    public RespuestaBFS sinPuntos() {
+        return new RespuestaBFS(algoritmo, inicio, maxKm, ordenVisita, niveles, noAlcanzados, totalVisitados,
+                totalCircuitos, null, puntosOrden);
+    }
+}
@@ -0,0 +1,24 @@
+package com.f1ruta.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/** Respuesta de /branch-bound (Held-Karp o Branch & Bound según el tamaño del set) */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record RespuestaBranchBound(
+        String algoritmo,
+        @JsonProperty("cantidad_circuitos") int cantidadCircuitos,
+        String origen,
+        List<String> ruta,
+        @JsonProperty("km_totales") double kmTotales,
+        Puntos puntos,
+        @JsonProperty("puntos_ruta") Puntos puntosRuta
+) implements ConPuntos<RespuestaBranchBound> {
+
+    @Override
+    public RespuestaBranchBound sinPuntos() {
+        return new RespuestaBranchBound(algoritmo, cantidadCircuitos, origen, ruta, kmTotales, null, puntosRuta);
+    }
+}
@@ -0,0 +1,27 @@
+package com.f1ruta.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/** Respuesta de /dijkstra */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record RespuestaDijkstra(
+        String algoritmo,
+        String modo,
+        String origen,
+        String destino,
+        List<String> ruta,
+        @JsonProperty("km_totales") double kmTotales,
+        @JsonProperty("nodos_explorados") int nodosExplorados,
+        Puntos puntos,
+        @JsonProperty("puntos_ruta") Puntos puntosRuta
+) implements ConPuntos<RespuestaDijkstra> {
+
+    @Override
+    public RespuestaDijkstra sinPuntos() {
+        return new RespuestaDijkstra(algoritmo, modo, origen, destino, ruta, kmTotales, nodosExplorados,
+                null, puntosRuta);
+    }
+}
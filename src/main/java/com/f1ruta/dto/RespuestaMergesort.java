@@ -0,0 +1,15 @@
+package com.f1ruta.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/** Respuesta de /mergesort */
+public record RespuestaMergesort(
+        String algoritmo,
+        String criterio,
+        String orden,
+        @JsonProperty("cantidad_circuitos") int cantidadCircuitos,
+        int total,
+        @JsonProperty("circuitos_ordenados") CircuitosOrdenados circuitosOrdenados,
+        @JsonProperty("puntos_ordenados") Puntos puntosOrdenados,
+        @JsonProperty("km_totales") long kmTotales
+) {}
@@ -0,0 +1,25 @@
+package com.f1ruta.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/** Respuesta de /nearest; top_k y budget_ms solo aparecen si se usaron */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record RespuestaNearest(
+        String algoritmo,
+        @JsonProperty("cantidad_circuitos") int cantidadCircuitos,
+        List<String> ruta,
+        @JsonProperty("km_totales") double kmTotales,
+        @JsonProperty("top_k") Integer topK,
+        @JsonProperty("budget_ms") Long budgetMs,
+        Puntos puntos,
+        @JsonProperty("puntos_ruta") Puntos puntosRuta
+) implements ConPuntos<RespuestaNearest> {
+
+    @Override
+    public RespuestaNearest sinPuntos() {
+        return new RespuestaNearest(algoritmo, cantidadCircuitos, ruta, kmTotales, topK, budgetMs, null, puntosRuta);
+    }
+}
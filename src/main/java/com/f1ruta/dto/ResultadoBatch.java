@@ -0,0 +1,16 @@
+package com.f1ruta.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/** Resultado de una consulta del lote: la respuesta del algoritmo o el error de esa consulta */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record ResultadoBatch(String algoritmo, Object resultado, String error) {
+
+    public static ResultadoBatch ok(String algoritmo, Object resultado) {
+        return new ResultadoBatch(algoritmo, resultado, null);
+    }
+
+    public static ResultadoBatch fallida(String algoritmo, String error) {
+        return new ResultadoBatch(algoritmo, null, error);
+    }
+}
@@ -7,7 +7,7 @@ import org.springframework.stereotype.Repository;
 import java.util.List;
 
 @Repository
-public interface CircuitoRepository extends Neo4jRepository<Circuito, String> {
+public interface CircuitoRepository extends Neo4jRepository<Circuito, String>, CircuitoRepositoryPersonalizado {
     
     List<Circuito> findAll();
 }
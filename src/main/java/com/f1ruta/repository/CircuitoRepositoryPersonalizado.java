@@ -0,0 +1,32 @@
+package com.f1ruta.repository;
+
+import com.f1ruta.algoritmo.BFSRutas;
+import com.f1ruta.domain.Circuito;
+
+import java.util.List;
+
+/**
+ * Consultas de circuitos con Cypher directo (Neo4jClient), sin pasar por el mapeo de entidades:
+ * la carga del snapshot, la importación masiva y las consultas por radio del BFS en la base
+ * (sobre la propiedad point 'ubicacion' con índice de puntos).
+ */
+public interface CircuitoRepositoryPersonalizado extends BFSRutas.Vecindario {
+
+    /** Todos los circuitos como arreglos paralelos, en el orden en que los devuelve Neo4j */
+    record Proyeccion(String[] nombres, double[] latitudes, double[] longitudes) {}
+
+    /** Lee solo nombre, latitud y longitud, volcando cada registro del resultado en los arreglos */
+    Proyeccion cargarProyeccion();
+
+    /**
+     * Crea o actualiza (por nombre) los circuitos en lotes de UNWIND, una transacción por lote,
+     * con su 'ubicacion' = point({latitude, longitude}). Devuelve cuántos se escribieron.
+     */
+    int importar(List<Circuito> circuitos);
+
+    /**
+     * Crea (si faltan) los índices por nombre y de puntos por ubicación, y completa la ubicación de los
+     * circuitos que no la tienen. Corre una vez; lo llaman la importación y el BFS en la base.
+     */
+    void prepararEsquema();
+}
@@ -0,0 +1,180 @@
+package com.f1ruta.repository;
+
+import com.f1ruta.algoritmo.BFSRutas;
+import com.f1ruta.algoritmo.DistanceMatrix;
+import com.f1ruta.domain.Circuito;
+import org.neo4j.driver.Record;
+import org.neo4j.driver.Result;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.neo4j.core.Neo4jClient;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/** Implementación de {@link CircuitoRepositoryPersonalizado} que Spring Data combina con {@link CircuitoRepository} */
+class CircuitoRepositoryPersonalizadoImpl implements CircuitoRepositoryPersonalizado {
+
+    /**
+     * Radio con el que Neo4j calcula point.distance entre puntos WGS-84 (Haversine, en km). Es mayor que
+     * {@link DistanceMatrix#RADIO_TIERRA_KM}, así que el radio de las consultas se agranda en esa proporción
+     * para no perder circuitos, y el BFS vuelve a filtrar con la distancia de la aplicación.
+     */
+    static final double RADIO_NEO4J_KM = 6378.14;
+
+    private static final String PROYECCION =
+            "MATCH (c:Circuito) RETURN c.nombre AS nombre, c.latitud AS latitud, c.longitud AS longitud";
+
+    /** MERGE por nombre: sin índice sería un recorrido de todos los nodos por cada fila */
+    private static final String INDICE_NOMBRE =
+            "CREATE INDEX circuito_nombre IF NOT EXISTS FOR (c:Circuito) ON (c.nombre)";
+
+    private static final String INDICE_UBICACION =
+            "CREATE POINT INDEX circuito_ubicacion IF NOT EXISTS FOR (c:Circuito) ON (c.ubicacion)";
+
+    /** Completa por lotes la ubicación de circuitos cargados sin ella; devuelve cuántos completó */
+    private static final String COMPLETAR_UBICACION = """
+            MATCH (c:Circuito)
+            WHERE c.ubicacion IS NULL AND c.latitud IS NOT NULL AND c.longitud IS NOT NULL
+            WITH c LIMIT $lote
+            SET c.ubicacion = point({latitude: c.latitud, longitude: c.longitud})
+            RETURN count(c)""";
+
+    private static final String IMPORTAR = """
+            UNWIND $filas AS f
+            MERGE (c:Circuito {nombre: f.nombre})
+            SET c.latitud = f.latitud, c.longitud = f.longitud,
+                c.ubicacion = point({latitude: f.latitud, longitude: f.longitud})""";
+
+    private static final String BUSCAR = """
+            MATCH (c:Circuito {nombre: $nombre})
+            RETURN c.nombre AS nombre, c.latitud AS latitud, c.longitud AS longitud""";
+
+    /** Sin distinguir mayúsculas, como el índice del snapshot (recorre los nodos, pero sin traerlos) */
+    private static final String BUSCAR_SIN_MAYUSCULAS = """
+            MATCH (c:Circuito)
+            WHERE toLower(c.nombre) = toLower($nombre)
+            RETURN c.nombre AS nombre, c.latitud AS latitud, c.longitud AS longitud
+            LIMIT 1""";
+
+    /**
+     * Los circuitos en el radio de cada origen del lote, con una búsqueda por rango en el índice de puntos;
+     * $excluidos son solo los dos últimos niveles del BFS, así que no crece con lo visitado
+     */
+    static final String VECINOS = """
+            UNWIND $frontera AS origen
+            MATCH (o:Circuito {nombre: origen})
+            MATCH (c:Circuito)
+            WHERE point.distance(c.ubicacion, o.ubicacion) <= $metros AND NOT c.nombre IN $excluidos
+            RETURN origen, c.nombre AS nombre, c.latitud AS latitud, c.longitud AS longitud""";
+
+    private final Neo4jClient cliente;
+
+    /** Filas por transacción de la importación y orígenes por consulta del BFS */
+    private final int lote;
+    private final int loteBfs;
+
+    private volatile boolean esquemaPreparado;
+
+    CircuitoRepositoryPersonalizadoImpl(Neo4jClient cliente,
+                                        @Value("${f1ruta.neo4j.lote-importacion:5000}") int lote,
+                                        @Value("${f1ruta.neo4j.lote-bfs:500}") int loteBfs) {
+        if (lote <= 0) throw new IllegalArgumentException("f1ruta.neo4j.lote-importacion debe ser positivo");
+        if (loteBfs <= 0) throw new IllegalArgumentException("f1ruta.neo4j.lote-bfs debe ser positivo");
+        this.cliente = cliente;
+        this.lote = lote;
+        this.loteBfs = loteBfs;
+    }
+
+    @Override
+    public Proyeccion cargarProyeccion() {
+        return cliente.delegateTo(runner -> {
+            Result resultado = runner.run(PROYECCION);
+            int n = 0;
+            String[] nombres = new String[1024];
+            double[] lat = new double[1024];
+            double[] lon = new double[1024];
+            while (resultado.hasNext()) {
+                Record r = resultado.next();
+                if (n == nombres.length) {
+                    int capacidad = n + (n >> 1);
+                    nombres = Arrays.copyOf(nombres, capacidad);
+                    lat = Arrays.copyOf(lat, capacidad);
+                    lon = Arrays.copyOf(lon, capacidad);
+                }
+                nombres[n] = r.get(0).asString();
+                // Igual que el mapeo de la entidad: una coordenada ausente queda en 0
+                lat[n] = r.get(1).asDouble(0.0);
+                lon[n] = r.get(2).asDouble(0.0);
+                n++;
+            }
+            return Optional.of(new Proyeccion(Arrays.copyOf(nombres, n),
+                    Arrays.copyOf(lat, n), Arrays.copyOf(lon, n)));
+        }).run().orElseThrow();
+    }
+
+    @Override
+    public int importar(List<Circuito> circuitos) {
+        prepararEsquema();
+        for (int desde = 0; desde < circuitos.size(); desde += lote) {
+            List<Circuito> tramo = circuitos.subList(desde, Math.min(circuitos.size(), desde + lote));
+            List<Map<String, Object>> filas = new ArrayList<>(tramo.size());
+            for (Circuito c : tramo) {
+                filas.add(Map.of("nombre", c.getNombre(), "latitud", c.getLatitud(), "longitud", c.getLongitud()));
+            }
+            cliente.query(IMPORTAR).bind(filas).to("filas").run();
+        }
+        return circuitos.size();
+    }
+
+    @Override
+    public void prepararEsquema() {
+        if (esquemaPreparado) return;
+        synchronized (this) {
+            if (esquemaPreparado) return;
+            cliente.query(INDICE_NOMBRE).run();
+            cliente.query(INDICE_UBICACION).run();
+            long completados;
+            do {
+                completados = cliente.query(COMPLETAR_UBICACION).bind(lote).to("lote")
+                        .fetchAs(Long.class).one().orElse(0L);
+            } while (completados > 0);
+            esquemaPreparado = true;
+        }
+    }
+
+    @Override
+    public BFSRutas.Candidato buscar(String nombre) {
+        prepararEsquema();
+        Optional<BFSRutas.Candidato> exacto = buscar(BUSCAR, nombre);
+        return exacto.isPresent() ? exacto.get() : buscar(BUSCAR_SIN_MAYUSCULAS, nombre).orElse(null);
+    }
+
+    private Optional<BFSRutas.Candidato> buscar(String consulta, String nombre) {
+        return cliente.query(consulta).bind(nombre).to("nombre")
+                .fetchAs(BFSRutas.Candidato.class)
+                .mappedBy((tipos, r) -> new BFSRutas.Candidato(null, r.get(0).asString(),
+                        r.get(1).asDouble(0.0), r.get(2).asDouble(0.0)))
+                .first();
+    }
+
+    @Override
+    public List<BFSRutas.Candidato> vecinos(List<String> frontera, double radioKm, List<String> excluidos) {
+        double metros = radioKm * 1000 * (RADIO_NEO4J_KM / DistanceMatrix.RADIO_TIERRA_KM) * (1 + 1e-9) + 1e-3;
+        List<BFSRutas.Candidato> vecinos = new ArrayList<>();
+        for (int desde = 0; desde < frontera.size(); desde += loteBfs) {
+            List<String> tramo = frontera.subList(desde, Math.min(frontera.size(), desde + loteBfs));
+            vecinos.addAll(cliente.query(VECINOS)
+                    .bind(tramo).to("frontera")
+                    .bind(metros).to("metros")
+                    .bind(excluidos).to("excluidos")
+                    .fetchAs(BFSRutas.Candidato.class)
+                    .mappedBy((tipos, r) -> new BFSRutas.Candidato(r.get(0).asString(), r.get(1).asString(),
+                            r.get(2).asDouble(0.0), r.get(3).asDouble(0.0)))
+                    .all());
+        }
+        return vecinos;
+    }
+}
@@ -0,0 +1,146 @@
+package com.f1ruta.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Cache acotada (LRU) de respuestas de los algoritmos, por (algoritmo, parámetros normalizados, versión del set).
+ * Requests idénticos concurrentes comparten un único cálculo (single-flight) y, cuando aparece una versión
+ * nueva del set de circuitos, se descartan las entradas de las anteriores; los pedidos que todavía llegan con
+ * una versión vieja se calculan sin guardarse.
+ * Métricas: f1ruta.cache.consultas{resultado=acierto|fallo|compartida} y f1ruta.cache.entradas.
+ */
+@Component
+public class CacheResultados {
+
+    /** Clave de una respuesta: algoritmo, parámetros ya normalizados y versión del snapshot */
+    public record Clave(String algoritmo, List<Object> parametros, long version) {}
+
+    /** Máximo de respuestas guardadas (0 = cache desactivada) */
+    private final int maxEntradas;
+
+    /** Orden de acceso para expulsar la menos usada; los futuros permiten esperar un cálculo en curso */
+    private final LinkedHashMap<Clave, CompletableFuture<Object>> entradas;
+    private long versionActual = Long.MIN_VALUE;
+
+    private final Counter aciertos;
+    private final Counter fallos;
+    private final Counter compartidas;
+
+    public CacheResultados(MeterRegistry registro,
+                           @Value("${f1ruta.cache.max-entradas:256}") int maxEntradas) {
+        this.maxEntradas = maxEntradas;
+        this.entradas = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Clave, CompletableFuture<Object>> mayor) {
+                return size() > CacheResultados.this.maxEntradas;
+            }
+        };
+        this.aciertos = contador(registro, "acierto", "Respuestas servidas desde la cache");
+        this.fallos = contador(registro, "fallo", "Respuestas calculadas por no estar en la cache");
+        this.compartidas = contador(registro, "compartida", "Requests que esperaron un cálculo idéntico en curso");
+        registro.gauge("f1ruta.cache.entradas", this, CacheResultados::tamanio);
+    }
+
+    private static Counter contador(MeterRegistry registro, String resultado, String descripcion) {
+        return Counter.builder("f1ruta.cache.consultas")
+                .tag("resultado", resultado)
+                .description(descripcion)
+                .register(registro);
+    }
+
+    /**
+     * Devuelve la respuesta guardada para la clave o la calcula con 'calculo' (una sola vez aunque lleguen
+     * varios requests iguales a la vez). Las respuestas se comparten entre requests, así que deben ser
+     * inmutables. Los errores no se guardan: se propagan a todos los que esperaban.
+     */
+    public <T> T obtener(String algoritmo, long version, List<Object> parametros, Supplier<T> calculo) {
+        return obtener(algoritmo, version, parametros, calculo, respuesta -> true);
+    }
+
+    /**
+     * Como {@link #obtener(String, long, List, Supplier)}, pero solo guarda la respuesta si cumple 'guardar'
+     * (p. ej. una búsqueda que terminó y no una cortada por tiempo, que depende del reloj). Los requests que
+     * esperaban el cálculo igual reciben esa respuesta.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T obtener(String algoritmo, long version, List<Object> parametros, Supplier<T> calculo,
+                         Predicate<? super T> guardar) {
+        if (maxEntradas <= 0) {
+            fallos.increment();
+            return calculo.get();
+        }
+
+        Clave clave = new Clave(algoritmo, parametros, version);
+        CompletableFuture<Object> futuro;
+        boolean propio = false;
+        synchronized (entradas) {
+            if (version > versionActual) {
+                entradas.keySet().removeIf(c -> c.version() < version);
+                versionActual = version;
+            }
+            // Una versión ya reemplazada no se guarda: nadie la va a volver a pedir ni a purgar
+            if (version < versionActual) {
+                futuro = null;
+            } else {
+                futuro = entradas.get(clave);
+                if (futuro == null) {
+                    futuro = new CompletableFuture<>();
+                    entradas.put(clave, futuro);
+                    propio = true;
+                }
+            }
+        }
+
+        if (futuro == null) {
+            fallos.increment();
+            return calculo.get();
+        }
+
+        if (propio) {
+            fallos.increment();
+            try {
+                T respuesta = calculo.get();
+                futuro.complete(respuesta);
+                if (!guardar.test(respuesta)) {
+                    synchronized (entradas) {
+                        entradas.remove(clave, futuro);
+                    }
+                }
+                return respuesta;
+            } catch (RuntimeException | Error e) {
+                synchronized (entradas) {
+                    entradas.remove(clave, futuro);
+                }
+                futuro.completeExceptionally(e);
+                throw e;
+            }
+        }
+
+        if (futuro.isDone()) aciertos.increment();
+        else compartidas.increment();
+        try {
+            return (T) futuro.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw e;
+        }
+    }
+
+    /** Cantidad de respuestas guardadas (incluye cálculos en curso) */
+    public int tamanio() {
+        synchronized (entradas) {
+            return entradas.size();
+        }
+    }
+}
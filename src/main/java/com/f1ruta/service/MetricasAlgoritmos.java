@@ -0,0 +1,106 @@
+package com.f1ruta.service;
+
+import com.f1ruta.algoritmo.BranchBoundTSP;
+import com.f1ruta.algoritmo.BusquedaLocal;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Métricas de los algoritmos (en /actuator/metrics y /actuator/prometheus):
+ * <ul>
+ *   <li>f1ruta.algoritmo.fase{algoritmo, fase}: tiempo de cada fase de una consulta. snapshot = obtener el set,
+ *       derivados = matriz de distancias / grafo / índice (casi nulo si ya estaban armados), resolver = el
+ *       algoritmo, serializacion = escribir el JSON de la respuesta. Con cache, solo se miden las fases que corrieron.</li>
+ *   <li>f1ruta.branchbound.nodos{tipo=explorados|podados}, f1ruta.branchbound.cola.maxima y
+ *       f1ruta.branchbound.gap por búsqueda; f1ruta.branchbound.cortes{motivo} cuenta búsquedas por motivo de fin.</li>
+ *   <li>f1ruta.busqueda-local.movimientos{tipo=2-opt|or-opt}: movimientos que mejoraron una ruta.</li>
+ * </ul>
+ */
+@Component
+public class MetricasAlgoritmos {
+
+    private final MeterRegistry registro;
+    private final Map<String, Timer> fases = new ConcurrentHashMap<>();
+
+    private final DistributionSummary nodosExplorados;
+    private final DistributionSummary nodosPodados;
+    private final DistributionSummary colaMaxima;
+    private final DistributionSummary gap;
+    private final Map<BranchBoundTSP.Corte, Counter> cortes = new EnumMap<>(BranchBoundTSP.Corte.class);
+
+    public MetricasAlgoritmos(MeterRegistry registro) {
+        this.registro = registro;
+        this.nodosExplorados = nodos(registro, "explorados", "Nodos expandidos por búsqueda de Branch & Bound");
+        this.nodosPodados = nodos(registro, "podados", "Nodos descartados por la cota por búsqueda de Branch & Bound");
+        this.colaMaxima = DistributionSummary.builder("f1ruta.branchbound.cola.maxima")
+                .description("Máximo de nodos en la cola de un trabajador de Branch & Bound")
+                .baseUnit("nodos")
+                .register(registro);
+        this.gap = DistributionSummary.builder("f1ruta.branchbound.gap")
+                .description("Brecha relativa final entre la ruta de Branch & Bound y la cota inferior (0 = óptima)")
+                .register(registro);
+        for (BranchBoundTSP.Corte corte : BranchBoundTSP.Corte.values()) {
+            cortes.put(corte, Counter.builder("f1ruta.branchbound.cortes")
+                    .tag("motivo", corte.name().toLowerCase(Locale.ROOT))
+                    .description("Búsquedas de Branch & Bound por motivo de fin (ninguno = recorrió todo el árbol)")
+                    .register(registro));
+        }
+        FunctionCounter.builder("f1ruta.busqueda-local.movimientos", this, m -> BusquedaLocal.movimientosDosOpt())
+                .tag("tipo", "2-opt")
+                .description("Movimientos 2-opt que acortaron una ruta")
+                .register(registro);
+        FunctionCounter.builder("f1ruta.busqueda-local.movimientos", this, m -> BusquedaLocal.movimientosOrOpt())
+                .tag("tipo", "or-opt")
+                .description("Movimientos Or-opt que acortaron una ruta")
+                .register(registro);
+    }
+
+    private static DistributionSummary nodos(MeterRegistry registro, String tipo, String descripcion) {
+        return DistributionSummary.builder("f1ruta.branchbound.nodos")
+                .tag("tipo", tipo)
+                .description(descripcion)
+                .baseUnit("nodos")
+                .publishPercentileHistogram()
+                .register(registro);
+    }
+
+    /** Corre 'paso' y registra su duración como la fase indicada del algoritmo */
+    public <T> T medir(String algoritmo, String fase, Supplier<T> paso) {
+        long inicio = System.nanoTime();
+        try {
+            return paso.get();
+        } finally {
+            registrar(algoritmo, fase, System.nanoTime() - inicio);
+        }
+    }
+
+    public void registrar(String algoritmo, String fase, long nanos) {
+        fases.computeIfAbsent(algoritmo + '/' + fase, k -> Timer.builder("f1ruta.algoritmo.fase")
+                .tag("algoritmo", algoritmo)
+                .tag("fase", fase)
+                .description("Duración de cada fase de una consulta a los algoritmos")
+                .publishPercentileHistogram()
+                .register(registro))
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /** Números de una búsqueda de Branch & Bound (Held-Karp no pasa por acá) */
+    public void registrar(BranchBoundTSP.Estadisticas e) {
+        nodosExplorados.record(e.nodosExplorados());
+        nodosPodados.record(e.nodosPodados());
+        colaMaxima.record(e.colaMaxima());
+        if (!Double.isNaN(e.gap())) gap.record(e.gap());
+        cortes.get(e.corte()).increment();
+    }
+}
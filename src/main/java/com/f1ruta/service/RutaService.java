@@ -4,200 +4,440 @@ import com.f1ruta.algoritmo.RutaF1TSP;
 import com.f1ruta.algoritmo.DijkstraRutas;
 import com.f1ruta.algoritmo.BFSRutas;
 import com.f1ruta.algoritmo.BranchBoundTSP;
+import com.f1ruta.algoritmo.CotaInferior;
+import com.f1ruta.algoritmo.HeldKarpTSP;
+import com.f1ruta.algoritmo.DistanceMatrix;
+import com.f1ruta.algoritmo.GrafoDisperso;
 import com.f1ruta.algoritmo.MergesortCircuitos;
-import com.f1ruta.algoritmo.RutaF1TSP.Circuito;
+import com.f1ruta.algoritmo.SnapshotCircuitos;
+import com.f1ruta.algoritmo.TablaRutas;
+import com.f1ruta.dto.CircuitosOrdenados;
+import com.f1ruta.dto.ConPuntos;
+import com.f1ruta.dto.ConsultaBatch;
+import com.f1ruta.dto.Puntos;
+import com.f1ruta.dto.RespuestaBFS;
+import com.f1ruta.dto.RespuestaBranchBound;
+import com.f1ruta.dto.RespuestaDijkstra;
+import com.f1ruta.dto.RespuestaMergesort;
+import com.f1ruta.dto.RespuestaNearest;
+import com.f1ruta.dto.ResultadoBatch;
 import com.f1ruta.repository.CircuitoRepository;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Service
 public class RutaService {
 
+    /**
+     * Trabajadores de Branch & Bound si no se configuran: el pool es compartido con los demás algoritmos,
+     * así que una búsqueda no debe ocuparlo entero
+     */
+    static final int TRABAJADORES_POR_DEFECTO = 4;
+
+    private final SnapshotService snapshotService;
+
+    /** Consultas por radio del BFS en Neo4j (modo "neo4j") */
     private final CircuitoRepository circuitoRepository;
 
-    public RutaService(CircuitoRepository circuitoRepository) {
+    private final ForkJoinPool pool;
+
+    /** Respuestas ya calculadas por algoritmo, parámetros y versión del set */
+    private final CacheResultados cache;
+
+    /** Tiempos por fase y números de las búsquedas */
+    private final MetricasAlgoritmos metricas;
+
+    /** Hasta cuántos circuitos /branch-bound usa Held-Karp (exacto) en lugar de Branch & Bound */
+    private final int heldKarpMax;
+
+    /** Inicios de /nearest que pasan por la búsqueda local (0 = todos) */
+    private final int nearestTopK;
+
+    /** Presupuesto por defecto de /nearest en ms (0 = multi-start completo, sin plazo) */
+    private final long nearestBudgetMs;
+
+    /** Trabajadores y límites de Branch & Bound */
+    private final BranchBoundTSP.Config configBranchBound;
+
+    /** Máximo de consultas por lote en /batch */
+    private final int batchMaxConsultas;
+
+    /** Hilos propios de /batch (ver {@link #ejecutarBatch}) */
+    private final ExecutorService poolBatch;
+    private final int batchHilos;
+
+    public RutaService(SnapshotService snapshotService,
+                       CircuitoRepository circuitoRepository,
+                       ForkJoinPool pool,
+                       CacheResultados cache,
+                       MetricasAlgoritmos metricas,
+                       @Value("${f1ruta.nearest.top-k:0}") int nearestTopK,
+                       @Value("${f1ruta.nearest.budget-ms:0}") long nearestBudgetMs,
+                       @Value("${f1ruta.branchbound.held-karp-max:18}") int heldKarpMax,
+                       @Value("${f1ruta.branchbound.trabajadores:0}") int trabajadores,
+                       @Value("${f1ruta.branchbound.tiempo-limite-ms:0}") long tiempoLimiteMs,
+                       @Value("${f1ruta.branchbound.max-nodos:0}") int maxNodos,
+                       @Value("${f1ruta.branchbound.cota:UNO_ARBOL}") CotaInferior.Tipo cota,
+                       @Value("${f1ruta.batch.max-consultas:1000}") int batchMaxConsultas,
+                       @Qualifier("poolBatch") ExecutorService poolBatch,
+                       @Value("${f1ruta.batch.hilos:2}") int batchHilos) {
+        this.snapshotService = snapshotService;
         this.circuitoRepository = circuitoRepository;
+        this.pool = pool;
+        this.cache = cache;
+        this.metricas = metricas;
+        this.nearestTopK = nearestTopK;
+        this.nearestBudgetMs = nearestBudgetMs;
+        this.heldKarpMax = Math.min(heldKarpMax, HeldKarpTSP.MAX_CIRCUITOS);
+        this.configBranchBound = new BranchBoundTSP.Config(
+                trabajadores > 0 ? trabajadores : Math.min(TRABAJADORES_POR_DEFECTO, pool.getParallelism()),
+                tiempoLimiteMs, maxNodos, cota);
+        this.batchMaxConsultas = batchMaxConsultas;
+        this.poolBatch = poolBatch;
+        this.batchHilos = batchHilos;
     }
 
     // ================== Helpers ==================
 
-    private List<Circuito> cargarCircuitos() {
-        List<com.f1ruta.domain.Circuito> circuitosDomain = circuitoRepository.findAll();
-        List<Circuito> circuitos = new ArrayList<>();
-        for (com.f1ruta.domain.Circuito cd : circuitosDomain) {
-            Circuito c = new Circuito();
-            c.nombre = cd.getNombre();
-            c.latitud = cd.getLatitud();
-            c.longitud = cd.getLongitud();
-            circuitos.add(c);
-        }
-        return circuitos;
-    }
-
-    /** Lista de TODOS los puntos (para marcar en el mapa, si querés). */
-    private List<Map<String, Object>> puntos(List<Circuito> circuitos) {
-        List<Map<String, Object>> ps = new ArrayList<>(circuitos.size());
-        for (Circuito c : circuitos) {
-            Map<String, Object> m = new LinkedHashMap<>();
-            m.put("nombre", c.nombre);
-            m.put("lat", c.latitud);
-            m.put("lon", c.longitud);
-            ps.add(m);
-        }
-        return ps;
+    /** Presupuesto efectivo en ms: el del request o, si no vino, el configurado */
+    private static long presupuesto(Long budgetMs, long porDefecto) {
+        if (budgetMs == null) return porDefecto;
+        if (budgetMs <= 0) throw new IllegalArgumentException("budget_ms debe ser positivo");
+        return budgetMs;
     }
 
-    /** Puntos en el orden de una ruta dada por nombres (para polilínea). */
-    private List<Map<String, Object>> puntosEnOrden(List<Circuito> circuitos, List<String> nombres) {
-        // Index rápido por nombre (case-insensitive)
-        Map<String, Circuito> porNombre = new HashMap<>();
-        for (Circuito c : circuitos) {
-            porNombre.put(c.nombre.toLowerCase(Locale.ROOT), c);
-        }
-        List<Map<String, Object>> out = new ArrayList<>();
-        for (String nombre : nombres) {
-            Circuito c = porNombre.get(nombre.toLowerCase(Locale.ROOT));
-            if (c == null) continue; // por si hubiera alguna diferencia de escritura
-            Map<String, Object> m = new LinkedHashMap<>();
-            m.put("nombre", c.nombre);
-            m.put("lat", c.latitud);
-            m.put("lon", c.longitud);
-            out.add(m);
-        }
-        return out;
+    /** Snapshot actual, midiendo cuánto tarda obtenerlo (cargarlo desde Neo4j si venció) */
+    private SnapshotCircuitos snapshot(String algoritmo) {
+        return metricas.medir(algoritmo, "snapshot", snapshotService::actual);
+    }
+
+    /** La respuesta tal cual o sin "puntos" (todos los circuitos) si el cliente no los pidió */
+    private static <T extends ConPuntos<T>> T conPuntos(T respuesta, boolean incluirPuntos) {
+        return incluirPuntos ? respuesta : respuesta.sinPuntos();
     }
 
     // ================== Algoritmos ==================
 
-    /** Heurística TSP: Nearest Neighbor + 2-opt */
-    public Map<String, Object> ejecutarNearest() {
-        List<Circuito> circuitos = cargarCircuitos();
-        var res = RutaF1TSP.calcularRuta(circuitos);
+    /**
+     * Heurística TSP: Nearest Neighbor + 2-opt (multi-start en paralelo; topK null = valor configurado).
+     * Con presupuesto (budget_ms) devuelve la mejor ruta encontrada al vencer el plazo.
+     */
+    public RespuestaNearest ejecutarNearest(Integer topK, Long budgetMs, boolean incluirPuntos) {
+        return ejecutarNearest(snapshot("nearest"), topK, budgetMs, incluirPuntos);
+    }
+
+    private RespuestaNearest ejecutarNearest(SnapshotCircuitos circuitos, Integer topK, Long budgetMs, boolean incluirPuntos) {
+        int k = topK != null ? topK : nearestTopK;
+        if (k < 0) throw new IllegalArgumentException("top_k no puede ser negativo");
+        long presupuesto = presupuesto(budgetMs, nearestBudgetMs);
+        // Con presupuesto la búsqueda local iterada corre hasta el plazo: el resultado depende del reloj
+        // y no se guarda (igual se comparte entre requests simultáneos)
+        RespuestaNearest respuesta = cache.obtener("nearest", circuitos.version(), Arrays.asList(k, presupuesto),
+                () -> calcularNearest(circuitos, k, presupuesto), r -> presupuesto == 0);
+        return conPuntos(respuesta, incluirPuntos);
+    }
 
-        Map<String, Object> out = new LinkedHashMap<>();
-        out.put("algoritmo", "Nearest Neighbor + 2-opt");
-        out.put("cantidad_circuitos", circuitos.size());
-        out.put("ruta", res.ruta());
-        out.put("km_totales", res.kmTotales());
+    private RespuestaNearest calcularNearest(SnapshotCircuitos circuitos, int k, long presupuesto) {
+        metricas.medir("nearest", "derivados", circuitos::matriz);
+        var res = metricas.medir("nearest", "resolver", () -> RutaF1TSP.calcularRuta(circuitos, k, pool, presupuesto));
 
-        // Para Leaflet
-        out.put("puntos", puntos(circuitos)); // todos los marcadores (opcional)
-        out.put("puntos_ruta", puntosEnOrden(circuitos, res.ruta())); // polilínea en orden
-        return out;
+        // Para Leaflet: todos los marcadores y la polilínea en orden
+        return new RespuestaNearest("Nearest Neighbor + 2-opt", circuitos.size(), res.ruta(), res.kmTotales(),
+                k > 0 ? k : null, presupuesto > 0 ? presupuesto : null,
+                Puntos.todos(circuitos), Puntos.deNombres(circuitos, res.ruta()));
     }
 
-    /** Dijkstra: ruta mínima entre dos circuitos */
-    public Map<String, Object> ejecutarDijkstra(String origen, String destino) {
-        List<Circuito> circuitos = cargarCircuitos();
-        var res = DijkstraRutas.calcularRuta(circuitos, origen, destino);
+    /**
+     * Dijkstra: ruta mínima entre dos circuitos. modo "completo" (default) usa el grafo Haversine completo;
+     * "disperso" usa el grafo de k vecinos más cercanos configurado: lee la tabla de rutas precalculada
+     * si está disponible y, si no, corre A*.
+     */
+    public RespuestaDijkstra ejecutarDijkstra(String origen, String destino, String modo, boolean incluirPuntos) {
+        return ejecutarDijkstra(snapshot("dijkstra"), origen, destino, modo, incluirPuntos);
+    }
 
-        Map<String, Object> out = new LinkedHashMap<>();
-        out.put("algoritmo", "Dijkstra (ruta mínima entre dos circuitos)");
-        out.put("origen", origen);
-        out.put("destino", destino);
-        out.put("ruta", res.ruta());
-        out.put("km_totales", res.kmTotales());
+    private RespuestaDijkstra ejecutarDijkstra(SnapshotCircuitos circuitos, String origen, String destino, String modo, boolean incluirPuntos) {
+        String m = (modo == null || modo.trim().isEmpty()) ? "completo" : modo.trim().toLowerCase(Locale.ROOT);
+        if (!m.equals("completo") && !m.equals("disperso"))
+            throw new IllegalArgumentException("modo debe ser 'completo' o 'disperso': " + modo);
+        RespuestaDijkstra respuesta = cache.obtener("dijkstra", circuitos.version(), Arrays.asList(origen, destino, m),
+                () -> calcularDijkstra(circuitos, origen, destino, m.equals("disperso")));
+        return conPuntos(respuesta, incluirPuntos);
+    }
 
-        // Para Leaflet
-        out.put("puntos", puntos(circuitos)); // todos (si querés mostrar todo el set)
-        out.put("puntos_ruta", puntosEnOrden(circuitos, res.ruta())); // polilínea origen→…→destino
-        return out;
+    private RespuestaDijkstra calcularDijkstra(SnapshotCircuitos circuitos, String origen, String destino,
+                                                 boolean disperso) {
+        DijkstraRutas.Resultado res;
+        String algoritmo;
+        if (!disperso) {
+            metricas.medir("dijkstra", "derivados", circuitos::matriz);
+            res = metricas.medir("dijkstra", "resolver", () -> DijkstraRutas.calcularRuta(circuitos, origen, destino));
+            algoritmo = "Dijkstra (ruta mínima entre dos circuitos)";
+        } else {
+            long inicio = System.nanoTime();
+            GrafoDisperso grafo = snapshotService.grafo(circuitos);
+            TablaRutas tabla = snapshotService.tablaRutas(circuitos);
+            metricas.registrar("dijkstra", "derivados", System.nanoTime() - inicio);
+            if (tabla != null) {
+                res = metricas.medir("dijkstra", "resolver",
+                        () -> DijkstraRutas.calcularRuta(circuitos, origen, destino, tabla));
+                algoritmo = "Tabla de rutas precalculada (grafo de " + grafo.k() + " vecinos más cercanos)";
+            } else {
+                res = metricas.medir("dijkstra", "resolver",
+                        () -> DijkstraRutas.calcularRuta(circuitos, origen, destino, grafo));
+                algoritmo = "A* (grafo de " + grafo.k() + " vecinos más cercanos, heurística Haversine)";
+            }
+        }
+
+        // Para Leaflet: todos los marcadores y la polilínea origen→…→destino
+        return new RespuestaDijkstra(algoritmo, disperso ? "disperso" : "completo", origen, destino,
+                res.ruta(), res.kmTotales(), res.nodosExplorados(),
+                Puntos.todos(circuitos), Puntos.deNombres(circuitos, res.ruta()));
     }
 
-    /** BFS con umbral de conexión (maxKm) para definir aristas */
-    public Map<String, Object> ejecutarBFS(String inicio, Double maxKm) {
-        List<Circuito> circuitos = cargarCircuitos();
+    /**
+     * BFS con umbral de conexión (maxKm) para definir aristas. modo "memoria" (default) recorre el snapshot;
+     * "neo4j" expande cada nivel con consultas por radio a la base, sin cargar el set (ni cachear: lee la base
+     * actual). En modo neo4j no hay no_alcanzados y los puntos son solo los visitados.
+     */
+    public RespuestaBFS ejecutarBFS(String inicio, Double maxKm, String modo, boolean incluirPuntos) {
+        if (modoNeo4j(modo)) return ejecutarBFS(null, inicio, maxKm, modo, incluirPuntos);
+        return ejecutarBFS(snapshot("bfs"), inicio, maxKm, modo, incluirPuntos);
+    }
+
+    private static boolean modoNeo4j(String modo) {
+        String m = (modo == null || modo.trim().isEmpty()) ? "memoria" : modo.trim().toLowerCase(Locale.ROOT);
+        if (!m.equals("memoria") && !m.equals("neo4j"))
+            throw new IllegalArgumentException("modo debe ser 'memoria' o 'neo4j': " + modo);
+        return m.equals("neo4j");
+    }
+
+    private RespuestaBFS ejecutarBFS(SnapshotCircuitos circuitos, String inicio, Double maxKm, String modo,
+                                     boolean incluirPuntos) {
         double umbral = (maxKm == null || maxKm <= 0) ? 3000.0 : maxKm; // default 3000 km
-        var res = BFSRutas.ejecutar(circuitos, inicio, umbral);
-
-        Map<String, Object> out = new LinkedHashMap<>();
-        out.put("algoritmo", "BFS (arista si distancia <= maxKm)");
-        out.put("inicio", res.inicio());
-        out.put("max_km", res.maxKm());
-        out.put("orden_visita", res.ordenVisita());
-        out.put("niveles", res.niveles());
-        out.put("no_alcanzados", res.noAlcanzados());
-        out.put("total_visitados", res.ordenVisita().size());
-        out.put("total_circuitos", circuitos.size());
-
-        // Para Leaflet
-        out.put("puntos", puntos(circuitos)); // todos los circuitos (marcadores)
-        out.put("puntos_orden", puntosEnOrden(circuitos, res.ordenVisita())); // polilínea por niveles
-        return out;
-    }
-
-    /** Branch & Bound TSP: Ruta óptima exacta desde un origen */
-    public Map<String, Object> ejecutarBranchBound(String origen) {
-        List<Circuito> circuitos = cargarCircuitos();
-        var res = BranchBoundTSP.calcularRuta(circuitos, origen);
-
-        Map<String, Object> out = new LinkedHashMap<>();
-        out.put("algoritmo", "Branch & Bound TSP (Ruta óptima exacta)");
-        out.put("cantidad_circuitos", circuitos.size());
-        out.put("origen", origen != null && !origen.trim().isEmpty() ? origen : circuitos.get(0).nombre);
-        out.put("ruta", res.ruta());
-        out.put("km_totales", res.kmTotales());
-
-        // Para Leaflet
-        out.put("puntos", puntos(circuitos)); // todos los marcadores
-        out.put("puntos_ruta", puntosEnOrden(circuitos, res.ruta())); // ruta ordenada para visualización
-        return out;
-    }
-
-    /** Mergesort: Ordena circuitos por diferentes criterios (Divide y Vencerás) */
-    public Map<String, Object> ejecutarMergesort(String criterio, String orden) {
-        List<Circuito> circuitos = cargarCircuitos();
-        
-        // Valores por defecto
-        criterio = (criterio == null || criterio.trim().isEmpty()) ? "nombre" : criterio;
-        orden = (orden == null || orden.trim().isEmpty()) ? "asc" : orden;
-
-        var res = MergesortCircuitos.ordenar(circuitos, criterio, orden);
-
-        // Calcular distancia total y preparar puntos para visualización
-        List<Map<String, Object>> puntosVisualizacion = new ArrayList<>();
+        if (modoNeo4j(modo)) return conPuntos(calcularBFSNeo4j(inicio, umbral), incluirPuntos);
+        RespuestaBFS respuesta = cache.obtener("bfs", circuitos.version(), Arrays.asList(inicio, umbral),
+                () -> calcularBFS(circuitos, inicio, umbral));
+        return conPuntos(respuesta, incluirPuntos);
+    }
+
+    private RespuestaBFS calcularBFS(SnapshotCircuitos circuitos, String inicio, double umbral) {
+        metricas.medir("bfs", "derivados", circuitos::indiceEspacial);
+        var res = metricas.medir("bfs", "resolver", () -> BFSRutas.ejecutar(circuitos, inicio, umbral));
+
+        // Para Leaflet: todos los circuitos (marcadores) y la polilínea por niveles
+        return new RespuestaBFS("BFS (arista si distancia <= maxKm)", res.inicio(), res.maxKm(),
+                res.ordenVisita(), res.niveles(), res.noAlcanzados(), res.ordenVisita().size(), circuitos.size(),
+                Puntos.todos(circuitos), Puntos.deNombres(circuitos, res.ordenVisita()));
+    }
+
+    private RespuestaBFS calcularBFSNeo4j(String inicio, double umbral) {
+        var remoto = metricas.medir("bfs-neo4j", "resolver", () -> BFSRutas.ejecutar(circuitoRepository, inicio, umbral));
+        var res = remoto.resultado();
+        Puntos visitados = Puntos.todos(remoto.visitados());
+        return new RespuestaBFS("BFS en Neo4j (consultas por radio sobre el índice de puntos)", res.inicio(), res.maxKm(),
+                res.ordenVisita(), res.niveles(), null, res.ordenVisita().size(), null, visitados, visitados);
+    }
+
+    /** Branch & Bound TSP: Ruta óptima exacta desde un origen (Held-Karp si el set es chico) */
+    public RespuestaBranchBound ejecutarBranchBound(String origen, Long budgetMs, boolean incluirPuntos) {
+        return ejecutarBranchBound(snapshot("branch-bound"), origen, budgetMs, incluirPuntos);
+    }
+
+    private RespuestaBranchBound ejecutarBranchBound(SnapshotCircuitos circuitos, String origen, Long budgetMs, boolean incluirPuntos) {
+        BranchBoundTSP.Config config = configBranchBound(budgetMs);
+        // Sin origen se usa el primer circuito, así que null y "" comparten entrada
+        String claveOrigen = origen == null || origen.trim().isEmpty() ? "" : origen;
+        // Solo se guardan las búsquedas completas: una cortada por tiempo o nodos depende del reloj
+        BranchBound calculado = cache.obtener("branch-bound", circuitos.version(),
+                Arrays.asList(claveOrigen, config.tiempoLimiteMs()),
+                () -> calcularBranchBound(circuitos, origen, config, null), BranchBound::completo);
+        return conPuntos(calculado.respuesta(), incluirPuntos);
+    }
+
+    /**
+     * Branch & Bound para un trabajo asíncrono: sin pasar por la cache, informando el progreso a
+     * 'observador', que también puede cortar la búsqueda (se devuelve la mejor ruta hasta ese momento).
+     */
+    public RespuestaBranchBound ejecutarBranchBound(String origen, Long budgetMs, boolean incluirPuntos,
+                                                    BranchBoundTSP.Observador observador) {
+        BranchBound calculado = calcularBranchBound(snapshot("branch-bound"), origen,
+                configBranchBound(budgetMs), observador);
+        return conPuntos(calculado.respuesta(), incluirPuntos);
+    }
+
+    /** El presupuesto reemplaza el límite de tiempo de Branch & Bound (Held-Karp no lo necesita) */
+    private BranchBoundTSP.Config configBranchBound(Long budgetMs) {
+        return budgetMs != null ? configBranchBound.conTiempoLimite(presupuesto(budgetMs, 0)) : configBranchBound;
+    }
+
+    /** Respuesta de /branch-bound y si la búsqueda terminó (Held-Karp, o Branch & Bound sin corte) */
+    private record BranchBound(RespuestaBranchBound respuesta, boolean completo) {}
+
+    private BranchBound calcularBranchBound(SnapshotCircuitos circuitos, String origen,
+                                                    BranchBoundTSP.Config config,
+                                                    BranchBoundTSP.Observador observador) {
+        boolean exacto = circuitos.size() <= heldKarpMax;
+        metricas.medir("branch-bound", "derivados", circuitos::matriz);
+        long inicio = System.nanoTime();
+        List<String> ruta;
+        double km;
+        boolean completo = true;
+        if (exacto) {
+            var res = HeldKarpTSP.calcularRuta(circuitos, origen);
+            ruta = res.ruta();
+            km = res.kmTotales();
+            // Held-Karp no tiene pasos intermedios: un único reporte con el óptimo
+            if (observador != null) {
+                observador.progreso(new BranchBoundTSP.Progreso(km, 0, km, (System.nanoTime() - inicio) / 1_000_000));
+            }
+        } else {
+            var res = BranchBoundTSP.calcularRuta(circuitos, origen, config, pool, observador);
+            ruta = res.ruta();
+            km = res.kmTotales();
+            metricas.registrar(res.estadisticas());
+            completo = res.estadisticas().corte() == BranchBoundTSP.Corte.NINGUNO;
+        }
+        metricas.registrar("branch-bound", "resolver", System.nanoTime() - inicio);
+
+        // Para Leaflet: todos los marcadores y la ruta ordenada para visualización
+        return new BranchBound(new RespuestaBranchBound(
+                exacto
+                        ? "Held-Karp TSP (programación dinámica, ruta óptima exacta)"
+                        : "Branch & Bound TSP (Ruta óptima exacta)",
+                circuitos.size(),
+                origen != null && !origen.trim().isEmpty() ? origen : circuitos.nombre(0),
+                ruta, km, Puntos.todos(circuitos), Puntos.deNombres(circuitos, ruta)), completo);
+    }
+
+    /**
+     * Mergesort: Ordena circuitos por diferentes criterios (Divide y Vencerás). Consulta sobre el orden
+     * precalculado: los primeros top_k, una banda [min, max] del criterio (latitud/longitud) y/o una
+     * página offset/limit. Sin esos parámetros devuelve el orden completo.
+     */
+    public RespuestaMergesort ejecutarMergesort(String criterio, String orden, Integer topK,
+                                                 Double min, Double max, Integer offset, Integer limit) {
+        return ejecutarMergesort(snapshot("mergesort"), criterio, orden, topK, min, max, offset, limit);
+    }
+
+    private RespuestaMergesort ejecutarMergesort(SnapshotCircuitos circuitos, String criterio, String orden,
+                                                 Integer topK, Double min, Double max, Integer offset, Integer limit) {
+        if (topK != null && (offset != null || limit != null))
+            throw new IllegalArgumentException("top_k no se combina con offset/limit");
+        if (topK != null && topK <= 0) throw new IllegalArgumentException("top_k debe ser positivo");
+        if (limit != null && limit <= 0) throw new IllegalArgumentException("limit debe ser positivo");
+        if (offset != null && offset < 0) throw new IllegalArgumentException("offset no puede ser negativo");
+        if (min != null && max != null && min > max) throw new IllegalArgumentException("min no puede ser mayor que max");
+        int desde = offset != null ? offset : 0;
+        int limite = topK != null ? topK : limit != null ? limit : 0;
+
+        // Normalizados (con sus valores por defecto) antes de la clave: "LATITUD" y " latitud" son la misma consulta
+        MergesortCircuitos.Criterio criterioFinal = MergesortCircuitos.criterio(criterio);
+        MergesortCircuitos.Orden ordenFinal = MergesortCircuitos.orden(orden);
+        return cache.obtener("mergesort", circuitos.version(), Arrays.asList(criterioFinal, ordenFinal, min, max, desde, limite),
+                () -> calcularMergesort(circuitos, criterioFinal, ordenFinal, min, max, desde, limite));
+    }
+
+    private RespuestaMergesort calcularMergesort(SnapshotCircuitos circuitos, MergesortCircuitos.Criterio criterio,
+                                                 MergesortCircuitos.Orden orden, Double min, Double max,
+                                                 int offset, int limite) {
+        // El índice ordenado se arma en la primera consulta de cada criterio y cae dentro de "resolver"
+        var res = metricas.medir("mergesort", "resolver",
+                () -> MergesortCircuitos.consultar(circuitos, criterio, orden, min, max, offset, limite, pool));
+        CircuitosOrdenados ordenados = new CircuitosOrdenados(circuitos, res.circuitos(), res.primeraPosicion());
+
+        // Distancia total entre circuitos consecutivos
         double distanciaTotal = 0.0;
-        
-        for (int i = 0; i < res.circuitosOrdenados().size(); i++) {
-            Map<String, Object> circ = res.circuitosOrdenados().get(i);
-            
-            // Agregar punto para visualización
-            puntosVisualizacion.add(Map.of(
-                "nombre", circ.get("nombre"),
-                "lat", circ.get("latitud"),
-                "lon", circ.get("longitud")
-            ));
-            
-            // Calcular distancia entre circuitos consecutivos
-            if (i > 0) {
-                Map<String, Object> anterior = res.circuitosOrdenados().get(i - 1);
-                distanciaTotal += haversine(
-                    (Double) anterior.get("latitud"), (Double) anterior.get("longitud"),
-                    (Double) circ.get("latitud"), (Double) circ.get("longitud")
-                );
+        int[] lista = res.circuitos();
+        for (int i = 1; i < lista.length; i++) {
+            distanciaTotal += DistanceMatrix.haversine(
+                circuitos.latitud(lista[i - 1]), circuitos.longitud(lista[i - 1]),
+                circuitos.latitud(lista[i]), circuitos.longitud(lista[i])
+            );
+        }
+
+        return new RespuestaMergesort("Mergesort (Divide y Vencerás)", res.criterio(), res.orden(),
+                res.cantidadCircuitos(), res.total(), ordenados, ordenados.comoPuntos(), Math.round(distanciaTotal));
+    }
+
+    // ================== Lotes ==================
+
+    /**
+     * Corre un lote de consultas contra un único snapshot (y su matriz) y devuelve los resultados en el mismo
+     * orden. Las reparten el hilo del request y hasta f1ruta.batch.hilos - 1 hilos del ejecutor de /batch,
+     * nunca el pool de algoritmos (donde cada consulta ya hace su fork/join). Cualquier error de una consulta
+     * falla solo esa consulta.
+     */
+    public List<ResultadoBatch> ejecutarBatch(List<ConsultaBatch> consultas) {
+        if (consultas == null || consultas.isEmpty())
+            throw new IllegalArgumentException("El lote debe tener al menos una consulta");
+        if (consultas.size() > batchMaxConsultas)
+            throw new IllegalArgumentException("El lote supera el máximo de " + batchMaxConsultas + " consultas");
+
+        SnapshotCircuitos circuitos = snapshot("batch");
+        int n = consultas.size();
+        ResultadoBatch[] resultados = new ResultadoBatch[n];
+        AtomicInteger siguiente = new AtomicInteger();
+        CountDownLatch pendientes = new CountDownLatch(n);
+        AtomicReference<Error> error = new AtomicReference<>();
+        Runnable repartidor = () -> {
+            for (int i; (i = siguiente.getAndIncrement()) < n; ) {
+                try {
+                    resultados[i] = ejecutarConsulta(circuitos, consultas.get(i));
+                } catch (Error e) {
+                    error.compareAndSet(null, e);
+                } finally {
+                    pendientes.countDown();
+                }
             }
+        };
+        // Los ayudantes que arrancan tarde no encuentran nada y terminan: no se los espera
+        for (int h = 1; h < Math.min(batchHilos, n); h++) {
+            poolBatch.execute(repartidor);
+        }
+        repartidor.run();
+        try {
+            pendientes.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Lote interrumpido", e);
         }
+        if (error.get() != null) throw error.get();
+        return Arrays.asList(resultados);
+    }
+
+    private ResultadoBatch ejecutarConsulta(SnapshotCircuitos circuitos, ConsultaBatch c) {
+        String algoritmo = c == null || c.algoritmo() == null ? null : c.algoritmo().trim().toLowerCase(Locale.ROOT);
+        try {
+            if (algoritmo == null) throw new IllegalArgumentException("Falta 'algoritmo'");
+            boolean incluirPuntos = Boolean.TRUE.equals(c.incluirPuntos());
+            Object resultado = switch (algoritmo) {
+                case "nearest" -> ejecutarNearest(circuitos, c.topK(), c.budgetMs(), incluirPuntos);
+                case "dijkstra" -> ejecutarDijkstra(circuitos, recortar(c.origen()), recortar(c.destino()),
+                        c.modo(), incluirPuntos);
+                case "bfs" -> ejecutarBFS(circuitos, c.inicio(), c.maxKm(), c.modo(), incluirPuntos);
+                case "branch-bound" -> ejecutarBranchBound(circuitos, c.origen(), c.budgetMs(), incluirPuntos);
+                case "mergesort" -> ejecutarMergesort(circuitos, c.criterio(), c.orden(), c.topK(),
+                        c.min(), c.max(), c.offset(), c.limit());
+                default -> throw new IllegalArgumentException("Algoritmo desconocido: " + c.algoritmo());
+            };
+            return ResultadoBatch.ok(algoritmo, resultado);
+        } catch (RuntimeException e) {
+            // Parámetros inválidos y también errores inesperados (p. ej. Neo4j caído en bfs modo neo4j)
+            String mensaje = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            return ResultadoBatch.fallida(algoritmo, mensaje);
+        }
+    }
 
-        return Map.of(
-            "algoritmo", "Mergesort (Divide y Vencerás)",
-            "criterio", res.criterio(),
-            "orden", res.orden(),
-            "cantidad_circuitos", res.cantidadCircuitos(),
-            "circuitos_ordenados", res.circuitosOrdenados(),
-            "puntos_ordenados", puntosVisualizacion,
-            "km_totales", Math.round(distanciaTotal)
-        );
-    }
-    
-    /** Distancia Haversine en km (helper para calcular distancias) */
-    private double haversine(double lat1, double lon1, double lat2, double lon2) {
-        final double R = 6371.0;
-        double p1 = Math.toRadians(lat1), p2 = Math.toRadians(lat2);
-        double dphi = p2 - p1;
-        double dlambda = Math.toRadians(lon2 - lon1);
-        double a = Math.sin(dphi / 2) * Math.sin(dphi / 2)
-                + Math.cos(p1) * Math.cos(p2) * Math.sin(dlambda / 2) * Math.sin(dlambda / 2);
-        return 2 * R * Math.asin(Math.sqrt(a));
+    private static String recortar(String s) {
+        return s == null ? null : s.trim();
     }
 }
@@ -0,0 +1,301 @@
+package com.f1ruta.service;
+
+import com.f1ruta.algoritmo.ArchivoCircuitos;
+import com.f1ruta.algoritmo.GrafoDisperso;
+import com.f1ruta.algoritmo.SnapshotCircuitos;
+import com.f1ruta.algoritmo.TablaRutas;
+import com.f1ruta.repository.CircuitoRepository;
+import com.f1ruta.repository.CircuitoRepositoryPersonalizado;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+
+/**
+ * Mantiene en memoria el snapshot de circuitos para no consultar Neo4j en cada request.
+ * Se recarga solo ante una invalidación explícita o cuando vence el TTL configurado.
+ * Guardar o borrar un circuito por este servicio escribe en Neo4j y publica un snapshot nuevo con solo ese
+ * circuito cambiado ({@link SnapshotCircuitos#conCircuito}), sin releer el set ni recalcular lo derivado.
+ * Los lectores toman el snapshot de una referencia atómica sin bloquearse; las cargas y los cambios
+ * publican con compareAndSet y reintentan si otro publicó antes.
+ * También define el grafo disperso de cada snapshot y, si está habilitada, precalcula al cargarlo
+ * la tabla de rutas mínimas entre todos los pares (acotada por f1ruta.rutas.max-mb).
+ * Con f1ruta.snapshot.directorio, la matriz y la tabla de cada set se guardan una vez en un
+ * {@link ArchivoCircuitos} y se leen mapeadas en memoria en las cargas siguientes (arranque en caliente).
+ * Métricas: f1ruta.rutas.tabla.bytes (memoria de la tabla vigente, 0 si no hay),
+ * f1ruta.snapshot.archivo{resultado=leido|escrito|error} y f1ruta.snapshot.parches{operacion=guardar|borrar}.
+ */
+@Service
+public class SnapshotService {
+
+    private final CircuitoRepository circuitoRepository;
+
+    /** TTL del snapshot en ms (0 = solo se recarga al invalidar) */
+    private final long ttlMs;
+
+    /** Grafo disperso: vecinos por circuito y distancia máxima de una arista (0 = sin límite) */
+    private final int grafoK;
+    private final double grafoMaxKm;
+
+    /** Si se precalcula la tabla de rutas al cargar y cuánta memoria puede ocupar como máximo */
+    private final boolean precalcularRutas;
+    private final long maxBytesRutas;
+
+    /** Directorio de los archivos mapeados (null = no se guardan) */
+    private final Path directorio;
+
+    private final ForkJoinPool pool;
+
+    private final Counter archivosLeidos;
+    private final Counter archivosEscritos;
+    private final Counter archivosConError;
+    private final Counter parchesGuardar;
+    private final Counter parchesBorrar;
+
+    private final AtomicReference<SnapshotCircuitos> snapshot = new AtomicReference<>();
+    private volatile long cargadoEn;
+    private final AtomicLong ultimaVersion = new AtomicLong();
+    private volatile long bytesTablaRutas;
+
+    /** Serializa los cambios de circuitos para que Neo4j y el snapshot los apliquen en el mismo orden */
+    private final Object cambios = new Object();
+
+    public SnapshotService(CircuitoRepository circuitoRepository,
+                           ForkJoinPool pool,
+                           MeterRegistry registro,
+                           @Value("${f1ruta.snapshot.ttl-ms:0}") long ttlMs,
+                           @Value("${f1ruta.snapshot.directorio:}") String directorio,
+                           @Value("${f1ruta.grafo.k-vecinos:6}") int grafoK,
+                           @Value("${f1ruta.grafo.max-km:0}") double grafoMaxKm,
+                           @Value("${f1ruta.rutas.precalcular:false}") boolean precalcularRutas,
+                           @Value("${f1ruta.rutas.max-mb:256}") long maxMbRutas) {
+        if (grafoK <= 0) throw new IllegalArgumentException("f1ruta.grafo.k-vecinos debe ser positivo");
+        this.circuitoRepository = circuitoRepository;
+        this.pool = pool;
+        this.ttlMs = ttlMs;
+        this.grafoK = grafoK;
+        this.grafoMaxKm = grafoMaxKm;
+        this.precalcularRutas = precalcularRutas;
+        this.maxBytesRutas = maxMbRutas * 1024 * 1024;
+        this.directorio = directorio == null || directorio.isBlank() ? null : Path.of(directorio.trim());
+        registro.gauge("f1ruta.rutas.tabla.bytes", this, s -> s.bytesTablaRutas);
+        this.archivosLeidos = contador(registro, "leido", "Snapshots cuyas estructuras se leyeron de un archivo mapeado");
+        this.archivosEscritos = contador(registro, "escrito", "Snapshots cuyas estructuras se calcularon y guardaron");
+        this.archivosConError = contador(registro, "error", "Errores de E/S al leer o guardar el archivo de un snapshot");
+        this.parchesGuardar = parches(registro, "guardar", "Snapshots publicados parcheando un circuito agregado o movido");
+        this.parchesBorrar = parches(registro, "borrar", "Snapshots publicados parcheando un circuito borrado");
+    }
+
+    private static Counter parches(MeterRegistry registro, String operacion, String descripcion) {
+        return Counter.builder("f1ruta.snapshot.parches")
+                .tag("operacion", operacion)
+                .description(descripcion)
+                .register(registro);
+    }
+
+    private static Counter contador(MeterRegistry registro, String resultado, String descripcion) {
+        return Counter.builder("f1ruta.snapshot.archivo")
+                .tag("resultado", resultado)
+                .description(descripcion)
+                .register(registro);
+    }
+
+    /** Snapshot vigente; lo carga desde Neo4j si no existe o venció */
+    public SnapshotCircuitos actual() {
+        SnapshotCircuitos s = snapshot.get();
+        if (s != null && !vencido()) return s;
+        synchronized (this) {
+            s = snapshot.get();
+            if (s == null || vencido()) {
+                s = cargar();
+            }
+            return s;
+        }
+    }
+
+    /**
+     * Agrega el circuito o, si ya existe (mismo nombre sin distinguir mayúsculas), cambia sus coordenadas:
+     * lo guarda en Neo4j y publica el snapshot parcheado, que devuelve.
+     */
+    public SnapshotCircuitos guardarCircuito(String nombre, double latitud, double longitud) {
+        validar(nombre, latitud, longitud);
+        synchronized (cambios) {
+            SnapshotCircuitos s = actual();
+            int i = s.indice(nombre);
+            // El id en Neo4j es el nombre exacto: se conserva el del circuito existente
+            String id = i >= 0 ? s.nombre(i) : nombre.trim();
+            // Por Cypher y no save(): así también se actualiza la ubicación (point) del BFS en la base
+            circuitoRepository.importar(List.of(new com.f1ruta.domain.Circuito(id, latitud, longitud)));
+            parchesGuardar.increment();
+            return publicar((anterior, version) -> anterior.conCircuito(id, latitud, longitud, version));
+        }
+    }
+
+    /** Borra el circuito de Neo4j y publica el snapshot parcheado, que devuelve; null si no estaba en el snapshot */
+    public SnapshotCircuitos borrarCircuito(String nombre) {
+        if (nombre == null || nombre.isBlank()) throw new IllegalArgumentException("El nombre del circuito es obligatorio");
+        synchronized (cambios) {
+            SnapshotCircuitos s = actual();
+            int i = s.indice(nombre);
+            if (i < 0) return null;
+            circuitoRepository.deleteById(s.nombre(i));
+            parchesBorrar.increment();
+            return publicar((anterior, version) -> anterior.sinCircuito(nombre, version));
+        }
+    }
+
+    /**
+     * Importa (crea o actualiza por nombre) muchos circuitos de una vez con lotes UNWIND y descarta el
+     * snapshot: con tantos cambios conviene recargarlo entero en la próxima lectura. Devuelve cuántos escribió.
+     */
+    public int importarCircuitos(List<com.f1ruta.domain.Circuito> circuitos) {
+        if (circuitos == null || circuitos.isEmpty())
+            throw new IllegalArgumentException("La importación debe tener al menos un circuito");
+        for (com.f1ruta.domain.Circuito c : circuitos) validar(c.getNombre(), c.getLatitud(), c.getLongitud());
+        synchronized (cambios) {
+            int escritos = circuitoRepository.importar(circuitos);
+            invalidar();
+            return escritos;
+        }
+    }
+
+    private static void validar(String nombre, double latitud, double longitud) {
+        if (nombre == null || nombre.isBlank()) throw new IllegalArgumentException("El nombre del circuito es obligatorio");
+        if (!(latitud >= -90 && latitud <= 90)) throw new IllegalArgumentException("latitud debe estar entre -90 y 90");
+        if (!(longitud >= -180 && longitud <= 180)) throw new IllegalArgumentException("longitud debe estar entre -180 y 180");
+    }
+
+    /**
+     * Publica con compareAndSet el snapshot que 'cambio' arma sobre el vigente con una versión nueva.
+     * Si una carga publicó en el medio se reintenta sobre el cargado; si el vigente venció, se recarga
+     * de Neo4j, que ya tiene el cambio. Con la tabla de rutas precalculada, la del parcheado se arma en
+     * el pool; hasta entonces el gauge sigue midiendo la anterior.
+     */
+    private SnapshotCircuitos publicar(BiFunction<SnapshotCircuitos, Long, SnapshotCircuitos> cambio) {
+        while (true) {
+            SnapshotCircuitos anterior = snapshot.get();
+            if (anterior == null || vencido()) return actual();
+            SnapshotCircuitos nuevo = cambio.apply(anterior, ultimaVersion.incrementAndGet());
+            if (nuevo == anterior) return anterior;
+            if (snapshot.compareAndSet(anterior, nuevo)) {
+                if (!tablaHabilitada(nuevo)) {
+                    bytesTablaRutas = 0;
+                } else {
+                    // Si otro cambio lo reemplaza antes de que empiece, esa tabla ya no hace falta
+                    pool.execute(() -> {
+                        if (nuevo == snapshot.get()) tablaRutas(nuevo);
+                    });
+                }
+                return nuevo;
+            }
+        }
+    }
+
+    /** Descarta el snapshot actual: la próxima lectura vuelve a consultar Neo4j */
+    public void invalidar() {
+        synchronized (this) {
+            cargadoEn = Long.MIN_VALUE;
+        }
+    }
+
+    /** Grafo disperso configurado del snapshot */
+    public GrafoDisperso grafo(SnapshotCircuitos circuitos) {
+        return circuitos.grafo(grafoK, grafoMaxKm);
+    }
+
+    /** Tabla de rutas del grafo disperso, o null si está deshabilitada o no entra en la memoria permitida */
+    public TablaRutas tablaRutas(SnapshotCircuitos circuitos) {
+        if (!tablaHabilitada(circuitos)) return null;
+        TablaRutas tabla = circuitos.tablaRutas(grafo(circuitos), pool);
+        if (circuitos == snapshot.get()) bytesTablaRutas = tabla.bytes();
+        return tabla;
+    }
+
+    private boolean tablaHabilitada(SnapshotCircuitos circuitos) {
+        return precalcularRutas && TablaRutas.bytesNecesarios(circuitos.size()) <= maxBytesRutas;
+    }
+
+    /**
+     * Prepara las estructuras derivadas de un snapshot nuevo: si hay directorio, las lee del archivo de su
+     * huella o, si no está (o le falta la tabla), las calcula, las guarda y se queda con las mapeadas.
+     * Un error de E/S no impide la carga: las estructuras quedan en el heap.
+     */
+    private void prepararDerivados(SnapshotCircuitos circuitos) {
+        boolean conTabla = tablaHabilitada(circuitos);
+        if (directorio != null && !circuitos.isEmpty() && ArchivoCircuitos.puedeGuardar(circuitos.size(), conTabla)) {
+            Path archivo = directorio.resolve(ArchivoCircuitos.nombreArchivo(circuitos));
+            GrafoDisperso grafo = conTabla ? grafo(circuitos) : null;
+            try {
+                ArchivoCircuitos.Lectura lectura = ArchivoCircuitos.abrir(archivo, circuitos, grafo);
+                if (lectura.matriz() && (lectura.tablaRutas() || !conTabla)) {
+                    archivosLeidos.increment();
+                } else {
+                    Files.createDirectories(directorio);
+                    ArchivoCircuitos.guardar(archivo, circuitos, conTabla ? tablaRutas(circuitos) : null);
+                    ArchivoCircuitos.abrir(archivo, circuitos, grafo);
+                    archivosEscritos.increment();
+                    borrarOtrosArchivos(archivo);
+                }
+            } catch (IOException e) {
+                archivosConError.increment();
+            }
+        }
+        tablaRutas(circuitos);
+    }
+
+    /** Borra los archivos de sets anteriores (cada set nuevo deja el suyo) */
+    private void borrarOtrosArchivos(Path actual) throws IOException {
+        try (DirectoryStream<Path> archivos = Files.newDirectoryStream(directorio, "circuitos-*.bin")) {
+            for (Path archivo : archivos) {
+                if (!archivo.equals(actual)) Files.deleteIfExists(archivo);
+            }
+        }
+    }
+
+    private boolean vencido() {
+        if (cargadoEn == Long.MIN_VALUE) return true;
+        return ttlMs > 0 && System.currentTimeMillis() - cargadoEn > ttlMs;
+    }
+
+    /**
+     * Lee Neo4j; si el contenido no cambió se conserva el snapshot anterior (y sus estructuras derivadas).
+     * Si un cambio de circuito publicó mientras se leía, se vuelve a leer para no pisarlo con datos viejos.
+     */
+    private SnapshotCircuitos cargar() {
+        while (true) {
+            SnapshotCircuitos anterior = snapshot.get();
+            SnapshotCircuitos nuevo = leer(anterior);
+            if (!snapshot.compareAndSet(anterior, nuevo)) continue;
+            cargadoEn = System.currentTimeMillis();
+            if (nuevo != anterior) {
+                prepararDerivados(nuevo);
+                if (!tablaHabilitada(nuevo)) bytesTablaRutas = 0;
+            }
+            return nuevo;
+        }
+    }
+
+    private SnapshotCircuitos leer(SnapshotCircuitos anterior) {
+        CircuitoRepositoryPersonalizado.Proyeccion p = circuitoRepository.cargarProyeccion();
+        String[] nombres = p.nombres();
+        double[] lat = p.latitudes();
+        double[] lon = p.longitudes();
+
+        // Las versiones solo tienen que ser únicas y crecientes: una lectura sin cambios deja un salto
+        SnapshotCircuitos nuevo = SnapshotCircuitos.de(nombres, lat, lon, ultimaVersion.incrementAndGet());
+        if (anterior != null && anterior.mismoContenido(nuevo)) {
+            return anterior;
+        }
+        return nuevo;
+    }
+}
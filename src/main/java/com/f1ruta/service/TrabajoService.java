@@ -0,0 +1,218 @@
+package com.f1ruta.service;
+
+import com.f1ruta.algoritmo.BranchBoundTSP;
+import com.f1ruta.dto.EstadoTrabajo;
+import com.f1ruta.dto.ProgresoTrabajo;
+import com.f1ruta.dto.RespuestaBranchBound;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Trabajos asíncronos de Branch & Bound: se encolan en un ejecutor propio y acotado, se consultan por id,
+ * se cancelan (quedándose con la mejor ruta hallada) y publican su progreso por Server-Sent Events.
+ * Los eventos los manda un hilo aparte, en orden; del progreso solo se manda el último valor pendiente.
+ * Los trabajos terminados se olvidan pasado el tiempo de retención.
+ */
+@Service
+public class TrabajoService {
+
+    public enum Estado { EN_COLA, EN_CURSO, TERMINADO, CANCELADO, ERROR }
+
+    private final RutaService rutaService;
+    private final ThreadPoolExecutor ejecutor;
+    /** Hilo único que hace los SseEmitter.send (fuera de los trabajadores de la búsqueda) */
+    private final ExecutorService eventos;
+    private final long retencionMs;
+    private final Map<String, Trabajo> trabajos = new ConcurrentHashMap<>();
+
+    public TrabajoService(RutaService rutaService,
+                          @Qualifier("poolTrabajos") ThreadPoolExecutor poolTrabajos,
+                          @Qualifier("poolEventos") ExecutorService poolEventos,
+                          @Value("${f1ruta.trabajos.retencion-ms:600000}") long retencionMs) {
+        this.rutaService = rutaService;
+        this.ejecutor = poolTrabajos;
+        this.eventos = poolEventos;
+        this.retencionMs = retencionMs;
+    }
+
+    /** Encola un Branch & Bound; IllegalStateException si la cola de trabajos está llena */
+    public EstadoTrabajo enviarBranchBound(String origen, Long budgetMs, boolean incluirPuntos) {
+        purgar();
+        Trabajo trabajo = new Trabajo(UUID.randomUUID().toString(), origen, budgetMs, incluirPuntos);
+        trabajos.put(trabajo.id, trabajo);
+        try {
+            ejecutor.execute(trabajo);
+        } catch (RejectedExecutionException e) {
+            trabajos.remove(trabajo.id);
+            throw new IllegalStateException("Hay demasiados trabajos en cola; reintentar más tarde");
+        }
+        return trabajo.estado();
+    }
+
+    /** Estado actual del trabajo, o null si no existe (o ya se olvidó) */
+    public EstadoTrabajo estado(String id) {
+        Trabajo trabajo = trabajos.get(id);
+        return trabajo != null ? trabajo.estado() : null;
+    }
+
+    /**
+     * Cancela el trabajo: si seguía en cola no llega a correr; si está corriendo, la búsqueda se corta
+     * en el próximo chequeo de límites y el trabajo termina CANCELADO con la mejor ruta hasta ese momento.
+     */
+    public EstadoTrabajo cancelar(String id) {
+        Trabajo trabajo = trabajos.get(id);
+        if (trabajo == null) return null;
+        trabajo.cancelado = true;
+        if (ejecutor.remove(trabajo)) trabajo.terminar(Estado.CANCELADO, null, null);
+        return trabajo.estado();
+    }
+
+    /**
+     * Stream de eventos del trabajo: "progreso" en cada mejora de la ruta (y periódicamente) y un "fin"
+     * con el estado final, tras el cual se cierra. Null si el trabajo no existe.
+     */
+    public SseEmitter suscribir(String id) {
+        Trabajo trabajo = trabajos.get(id);
+        if (trabajo == null) return null;
+        SseEmitter emisor = new SseEmitter(0L);
+        trabajo.suscribir(emisor);
+        return emisor;
+    }
+
+    private void purgar() {
+        long limite = System.currentTimeMillis() - retencionMs;
+        trabajos.values().removeIf(t -> t.terminadoEn != 0 && t.terminadoEn < limite);
+    }
+
+    private final class Trabajo implements Runnable, BranchBoundTSP.Observador {
+
+        final String id;
+        final String origen;
+        final Long budgetMs;
+        final boolean incluirPuntos;
+
+        volatile Estado estado = Estado.EN_COLA;
+        volatile ProgresoTrabajo progreso;
+        volatile RespuestaBranchBound resultado;
+        volatile String error;
+        volatile boolean cancelado;
+        volatile long terminadoEn;
+        final List<SseEmitter> suscriptores = new CopyOnWriteArrayList<>();
+        /** Hay un envío de progreso encolado en 'eventos' (que mandará el último valor) */
+        final AtomicBoolean progresoPendiente = new AtomicBoolean();
+
+        Trabajo(String id, String origen, Long budgetMs, boolean incluirPuntos) {
+            this.id = id;
+            this.origen = origen;
+            this.budgetMs = budgetMs;
+            this.incluirPuntos = incluirPuntos;
+        }
+
+        @Override
+        public void run() {
+            if (cancelado) {
+                terminar(Estado.CANCELADO, null, null);
+                return;
+            }
+            estado = Estado.EN_CURSO;
+            try {
+                RespuestaBranchBound respuesta = rutaService.ejecutarBranchBound(origen, budgetMs, incluirPuntos, this);
+                terminar(cancelado ? Estado.CANCELADO : Estado.TERMINADO, respuesta, null);
+            } catch (RuntimeException e) {
+                terminar(Estado.ERROR, null, e.getMessage());
+            }
+        }
+
+        @Override
+        public void progreso(BranchBoundTSP.Progreso p) {
+            progreso = ProgresoTrabajo.de(p);
+            // Corre en un trabajador de la búsqueda: solo encola, y a lo sumo un envío a la vez
+            if (!suscriptores.isEmpty() && progresoPendiente.compareAndSet(false, true)) {
+                despachar(this::enviarProgreso);
+            }
+        }
+
+        private void enviarProgreso() {
+            progresoPendiente.set(false);
+            ProgresoTrabajo ultimo = progreso;
+            for (SseEmitter emisor : suscriptores) enviar(emisor, "progreso", ultimo);
+        }
+
+        @Override
+        public boolean cancelado() {
+            return cancelado;
+        }
+
+        EstadoTrabajo estado() {
+            return new EstadoTrabajo(id, estado.name(), progreso, resultado, error);
+        }
+
+        synchronized void terminar(Estado fin, RespuestaBranchBound respuesta, String mensaje) {
+            resultado = respuesta;
+            error = mensaje;
+            estado = fin;
+            terminadoEn = System.currentTimeMillis();
+            EstadoTrabajo estadoFinal = estado();
+            List<SseEmitter> pendientes = new ArrayList<>(suscriptores);
+            suscriptores.clear();
+            // Después de cualquier progreso ya encolado, así el "fin" es siempre el último evento
+            despachar(() -> {
+                for (SseEmitter emisor : pendientes) {
+                    if (enviar(emisor, "fin", estadoFinal)) emisor.complete();
+                }
+            });
+        }
+
+        /** Si el trabajo ya terminó, el suscriptor recibe solo el "fin" */
+        synchronized void suscribir(SseEmitter emisor) {
+            if (terminadoEn != 0) {
+                EstadoTrabajo estadoFinal = estado();
+                despachar(() -> {
+                    if (enviar(emisor, "fin", estadoFinal)) emisor.complete();
+                });
+                return;
+            }
+            emisor.onCompletion(() -> suscriptores.remove(emisor));
+            emisor.onTimeout(() -> suscriptores.remove(emisor));
+            emisor.onError(e -> suscriptores.remove(emisor));
+            suscriptores.add(emisor);
+            ProgresoTrabajo ultimo = progreso;
+            if (ultimo != null) despachar(() -> enviar(emisor, "progreso", ultimo));
+        }
+
+        /** Con el ejecutor de eventos cerrado (apagando la aplicación) los eventos se pierden */
+        private void despachar(Runnable envio) {
+            try {
+                eventos.execute(envio);
+            } catch (RejectedExecutionException e) {
+                progresoPendiente.set(false);
+            }
+        }
+
+        /** Un cliente que se desconectó se descarta sin afectar la búsqueda */
+        private boolean enviar(SseEmitter emisor, String evento, Object datos) {
+            try {
+                emisor.send(SseEmitter.event().name(evento).data(datos));
+                return true;
+            } catch (IOException | IllegalStateException e) {
+                suscriptores.remove(emisor);
+                emisor.completeWithError(e);
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.f1ruta.algoritmo;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.DoubleBuffer;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ArchivoCircuitosTest {
+
+    private static final String[] NOMBRES = {"Monza", "Spa", "Silverstone", "Suzuka"};
+    private static final double[] LAT = {45.6156, 50.4372, 52.0786, 34.8431};
+    private static final double[] LON = {9.2811, 5.9714, -1.0169, 136.5407};
+
+    @Test
+    void elMismoSetLeeLaMatrizMapeada(@TempDir Path dir) throws Exception {
+        SnapshotCircuitos original = SnapshotCircuitos.de(NOMBRES, LAT, LON, 1);
+        Path archivo = dir.resolve(ArchivoCircuitos.nombreArchivo(original));
+        ArchivoCircuitos.guardar(archivo, original, null);
+
+        SnapshotCircuitos releido = SnapshotCircuitos.de(NOMBRES, LAT, LON, 2);
+        assertTrue(ArchivoCircuitos.abrir(archivo, releido, null).matriz());
+        assertTrue(releido.matriz().mapeada());
+        for (int i = 0; i < NOMBRES.length; i++) {
+            for (int j = 0; j < NOMBRES.length; j++) {
+                assertEquals(original.matriz().get(i, j), releido.matriz().get(i, j));
+            }
+        }
+    }
+
+    @Test
+    void otrasCoordenadasConLosMismosNombresNoUsanElArchivo(@TempDir Path dir) throws Exception {
+        SnapshotCircuitos original = SnapshotCircuitos.de(NOMBRES, LAT, LON, 1);
+        double[] movida = LAT.clone();
+        movida[2] = Math.nextUp(movida[2]);
+        SnapshotCircuitos otro = SnapshotCircuitos.de(NOMBRES, movida, LON, 2);
+        assertNotEquals(ArchivoCircuitos.nombreArchivo(original), ArchivoCircuitos.nombreArchivo(otro));
+        assertFalse(original.mismoContenido(otro));
+
+        // Aunque el archivo esté en el lugar del otro set, no se instala
+        Path archivo = dir.resolve(ArchivoCircuitos.nombreArchivo(otro));
+        ArchivoCircuitos.guardar(archivo, original, null);
+        assertFalse(ArchivoCircuitos.abrir(archivo, otro, null).matriz());
+        assertFalse(otro.matriz().mapeada());
+    }
+
+    @Test
+    void laMatrizPorTramosDaLasMismasDistancias() {
+        Random rnd = new Random(15);
+        int n = 37;
+        String[] nombres = new String[n];
+        double[] lat = new double[n], lon = new double[n];
+        for (int i = 0; i < n; i++) {
+            nombres[i] = "C" + i;
+            lat[i] = rnd.nextDouble() * 140 - 70;
+            lon[i] = rnd.nextDouble() * 360 - 180;
+        }
+        SnapshotCircuitos s = SnapshotCircuitos.de(nombres, lat, lon, 1);
+        // También desde una matriz parcheada, que se copia celda por celda
+        s.matriz();
+        SnapshotCircuitos parcheado = s.conCircuito("C3", 10.0, 20.0, 2);
+        assertEquals(1, parcheado.matriz().filasParcheadas());
+
+        for (SnapshotCircuitos origen : new SnapshotCircuitos[]{s, parcheado}) {
+            DistanceMatrix m = origen.matriz();
+            long celdas = DistanceMatrix.celdas(n);
+            for (int porTramo : new int[]{8, 64, 1024}) {
+                DoubleBuffer[] tramos = new DoubleBuffer[(int) ((celdas + porTramo - 1) / porTramo)];
+                for (int t = 0; t < tramos.length; t++) {
+                    tramos[t] = DoubleBuffer.allocate((int) Math.min(porTramo, celdas - (long) t * porTramo));
+                }
+                m.copiarEn(tramos);
+                for (DoubleBuffer tramo : tramos) tramo.rewind();
+
+                DistanceMatrix leida = new DistanceMatrix(n, 1, tramos);
+                for (int i = 0; i < n; i++) {
+                    for (int j = 0; j < n; j++) assertEquals(m.get(i, j), leida.get(i, j), "porTramo " + porTramo);
+                }
+            }
+        }
+
+        DoubleBuffer[] desparejos = {DoubleBuffer.allocate(6), DoubleBuffer.allocate((int) DistanceMatrix.celdas(n) - 6)};
+        assertThrows(IllegalArgumentException.class, () -> new DistanceMatrix(n, 1, desparejos));
+    }
+
+    @Test
+    void seGuardaMasAllaDeLos2GbDeUnSoloMapeo() {
+        // Con un único mapeo de doubles el límite era n ≈ 23k; por tramos es el de la matriz en el heap
+        assertTrue(ArchivoCircuitos.puedeGuardar(23_171, false));
+        assertTrue(ArchivoCircuitos.puedeGuardar(40_000, false));
+        assertTrue(ArchivoCircuitos.puedeGuardar(65_535, false));
+        assertFalse(ArchivoCircuitos.puedeGuardar(65_537, false));
+        assertFalse(ArchivoCircuitos.puedeGuardar(40_000, true));
+    }
+}
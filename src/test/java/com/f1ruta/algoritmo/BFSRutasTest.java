@@ -0,0 +1,101 @@
+package com.f1ruta.algoritmo;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BFSRutasTest {
+
+    /** Vecindario sobre arreglos en memoria, con el mismo contrato que el de Neo4j; anota los excluidos */
+    private static final class VecindarioEnMemoria implements BFSRutas.Vecindario {
+
+        final String[] nombres;
+        final double[] lat, lon;
+        int maximoExcluidos;
+
+        VecindarioEnMemoria(String[] nombres, double[] lat, double[] lon) {
+            this.nombres = nombres;
+            this.lat = lat;
+            this.lon = lon;
+        }
+
+        @Override
+        public BFSRutas.Candidato buscar(String nombre) {
+            for (int i = 0; i < nombres.length; i++) {
+                if (nombres[i].equalsIgnoreCase(nombre)) return new BFSRutas.Candidato(null, nombres[i], lat[i], lon[i]);
+            }
+            return null;
+        }
+
+        @Override
+        public List<BFSRutas.Candidato> vecinos(List<String> frontera, double radioKm, List<String> excluidos) {
+            maximoExcluidos = Math.max(maximoExcluidos, excluidos.size());
+            Set<String> fuera = new HashSet<>(excluidos);
+            List<BFSRutas.Candidato> vecinos = new ArrayList<>();
+            for (String origen : frontera) {
+                BFSRutas.Candidato o = buscar(origen);
+                for (int i = 0; i < nombres.length; i++) {
+                    if (fuera.contains(nombres[i])) continue;
+                    if (KernelHaversine.distancia(o.latitud(), o.longitud(), lat[i], lon[i]) <= radioKm) {
+                        vecinos.add(new BFSRutas.Candidato(origen, nombres[i], lat[i], lon[i]));
+                    }
+                }
+            }
+            return vecinos;
+        }
+    }
+
+    /** Niveles con sus circuitos ordenados: dentro de un nivel el orden depende del modo */
+    private static Map<Integer, List<String>> ordenados(Map<Integer, List<String>> niveles) {
+        Map<Integer, List<String>> copia = new TreeMap<>();
+        niveles.forEach((nivel, nombres) -> copia.put(nivel, nombres.stream().sorted().toList()));
+        return copia;
+    }
+
+    @Test
+    void elModoRemotoDaLosMismosNivelesQueElSnapshot() {
+        Random rnd = new Random(25);
+        int n = 400;
+        String[] nombres = new String[n];
+        double[] lat = new double[n], lon = new double[n];
+        for (int i = 0; i < n; i++) {
+            nombres[i] = String.format("C%03d", i);
+            lat[i] = rnd.nextDouble() * 120 - 60;
+            lon[i] = rnd.nextDouble() * 360 - 180;
+        }
+        SnapshotCircuitos circuitos = SnapshotCircuitos.de(nombres, lat, lon, 1);
+
+        for (double maxKm : new double[]{800, 1500, 3000}) {
+            for (int inicio : new int[]{0, 17, 299}) {
+                VecindarioEnMemoria vecindario = new VecindarioEnMemoria(nombres, lat, lon);
+                BFSRutas.Resultado enMemoria = BFSRutas.ejecutar(circuitos, nombres[inicio], maxKm);
+                BFSRutas.ResultadoRemoto remoto = BFSRutas.ejecutar(vecindario, nombres[inicio], maxKm);
+
+                assertEquals(ordenados(enMemoria.niveles()), ordenados(remoto.resultado().niveles()),
+                        "maxKm " + maxKm + ", inicio " + nombres[inicio]);
+                assertEquals(new HashSet<>(enMemoria.ordenVisita()), new HashSet<>(remoto.resultado().ordenVisita()));
+                assertEquals(enMemoria.ordenVisita().size(), remoto.visitados().size());
+                assertNull(remoto.resultado().noAlcanzados());
+
+                // Solo viajan los dos últimos niveles, no todo lo visitado
+                int dosNiveles = 0;
+                List<List<String>> niveles = new ArrayList<>(enMemoria.niveles().values());
+                for (int i = 1; i < niveles.size(); i++) {
+                    dosNiveles = Math.max(dosNiveles, niveles.get(i - 1).size() + niveles.get(i).size());
+                }
+                assertTrue(vecindario.maximoExcluidos <= Math.max(1, dosNiveles),
+                        vecindario.maximoExcluidos + " excluidos");
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.f1ruta.algoritmo;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BranchBoundTSPTest {
+
+    private ForkJoinPool pool;
+
+    @BeforeEach
+    void preparar() {
+        pool = new ForkJoinPool(4);
+    }
+
+    @AfterEach
+    void cerrar() {
+        pool.shutdown();
+    }
+
+    private static SnapshotCircuitos alAzar(Random rnd, int n) {
+        String[] nombres = new String[n];
+        double[] lat = new double[n], lon = new double[n];
+        for (int i = 0; i < n; i++) {
+            nombres[i] = "C" + i;
+            lat[i] = rnd.nextDouble() * 140 - 70;
+            lon[i] = rnd.nextDouble() * 360 - 180;
+        }
+        return SnapshotCircuitos.de(nombres, lat, lon, 1);
+    }
+
+    /** Grilla de 4 columnas: muchas rutas empatadas, así que el árbol se ramifica más que al azar */
+    private static SnapshotCircuitos grilla(int n) {
+        String[] nombres = new String[n];
+        double[] lat = new double[n], lon = new double[n];
+        for (int i = 0; i < n; i++) {
+            nombres[i] = "C" + i;
+            lat[i] = (i / 4) * 2.0;
+            lon[i] = (i % 4) * 2.0;
+        }
+        return SnapshotCircuitos.de(nombres, lat, lon, 1);
+    }
+
+    @Test
+    void unoYCuatroTrabajadoresDanElOptimoDeHeldKarp() {
+        Random rnd = new Random(5);
+        // Límites holgados: la búsqueda tiene que terminar sin cortes para que el costo sea determinista
+        BranchBoundTSP.Config uno = new BranchBoundTSP.Config(1, 120_000, Integer.MAX_VALUE, CotaInferior.Tipo.UNO_ARBOL);
+        BranchBoundTSP.Config cuatro = new BranchBoundTSP.Config(4, 120_000, Integer.MAX_VALUE, CotaInferior.Tipo.UNO_ARBOL);
+        for (int n = 12; n <= 16; n++) {
+            for (SnapshotCircuitos cs : List.of(alAzar(rnd, n), alAzar(rnd, n), grilla(n))) {
+                String origen = cs.nombre(rnd.nextInt(n));
+                double optimo = HeldKarpTSP.calcularRuta(cs, origen).kmTotales();
+
+                BranchBoundTSP.Resultado secuencial = BranchBoundTSP.calcularRuta(cs, origen, uno, pool);
+                verificar(secuencial, optimo, origen, n);
+                // Varias corridas en paralelo: el reparto y el robo cambian en cada una, el costo no
+                for (int corrida = 0; corrida < 3; corrida++) {
+                    BranchBoundTSP.Resultado paralelo = BranchBoundTSP.calcularRuta(cs, origen, cuatro, pool);
+                    verificar(paralelo, optimo, origen, n);
+                    assertEquals(secuencial.kmTotales(), paralelo.kmTotales(), "n " + n);
+                }
+            }
+        }
+    }
+
+    private static void verificar(BranchBoundTSP.Resultado r, double optimo, String origen, int n) {
+        assertEquals(BranchBoundTSP.Corte.NINGUNO, r.estadisticas().corte(), "n " + n);
+        assertEquals(optimo, r.kmTotales(), "n " + n);
+        assertEquals(origen, r.ruta().get(0));
+        assertEquals(n, new HashSet<>(r.ruta()).size());
+        assertEquals(0.0, r.estadisticas().gap(), 1e-6);
+    }
+}
@@ -0,0 +1,100 @@
+package com.f1ruta.algoritmo;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BusquedaLocalTest {
+
+    private static DistanceMatrix alAzar(Random rnd, int n) {
+        String[] nombres = new String[n];
+        double[] lat = new double[n], lon = new double[n];
+        for (int i = 0; i < n; i++) {
+            nombres[i] = "C" + i;
+            lat[i] = rnd.nextDouble() * 140 - 70;
+            lon[i] = rnd.nextDouble() * 360 - 180;
+        }
+        return SnapshotCircuitos.de(nombres, lat, lon, 1).matriz();
+    }
+
+    /** Permutación al azar de 0..n-1 que empieza en 'origen' */
+    private static int[] rutaAlAzar(Random rnd, int n, int origen) {
+        int[] ruta = new int[n];
+        for (int i = 0; i < n; i++) ruta[i] = i;
+        ruta[origen] = 0;
+        ruta[0] = origen;
+        for (int i = n - 1; i > 1; i--) {
+            int j = 1 + rnd.nextInt(i);
+            int t = ruta[i]; ruta[i] = ruta[j]; ruta[j] = t;
+        }
+        return ruta;
+    }
+
+    private static void esPermutacionDesde(int[] ruta, int origen) {
+        assertEquals(origen, ruta[0]);
+        int[] ordenada = ruta.clone();
+        Arrays.sort(ordenada);
+        int[] todos = new int[ruta.length];
+        for (int i = 0; i < todos.length; i++) todos[i] = i;
+        assertArrayEquals(todos, ordenada);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {5, 50, 500})
+    void mejorarDejaUnaPermutacionQueNoEsMasLargaYCuentaSusMovimientos(int n) {
+        Random rnd = new Random(7L * n);
+        DistanceMatrix d = alAzar(rnd, n);
+        BusquedaLocal busqueda = new BusquedaLocal(d);
+
+        for (int intento = 0; intento < 5; intento++) {
+            int origen = rnd.nextInt(n);
+            int[] ruta = rutaAlAzar(rnd, n, origen);
+            double antes = busqueda.largo(ruta);
+            long movimientosAntes = BusquedaLocal.movimientosDosOpt() + BusquedaLocal.movimientosOrOpt();
+
+            double despues = busqueda.mejorar(ruta);
+
+            esPermutacionDesde(ruta, origen);
+            assertEquals(busqueda.largo(ruta), despues, 1e-9);
+            assertTrue(despues <= antes + 1e-9, despues + " > " + antes);
+            // Las ganancias acumuladas de los movimientos dan el largo real de la ruta
+            assertEquals(despues, busqueda.largoAcumulado(), 1e-6 * antes);
+            // Cada movimiento contado acortó la ruta en más de EPS, y sin movimientos no cambió
+            long movimientos = BusquedaLocal.movimientosDosOpt() + BusquedaLocal.movimientosOrOpt() - movimientosAntes;
+            assertTrue(antes - despues >= movimientos * 1e-6 - 1e-9, movimientos + " movimientos");
+            if (movimientos == 0) assertEquals(antes, despues, 0.0);
+            else assertTrue(despues < antes);
+
+            // Volver a pasar (con todos los nodos activos otra vez) tampoco la alarga
+            assertTrue(busqueda.mejorar(ruta) <= despues + 1e-9);
+            esPermutacionDesde(ruta, origen);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {5, 50, 500})
+    void iterarNoEmpeoraLaRutaMejorada(int n) {
+        Random rnd = new Random(11L * n);
+        DistanceMatrix d = alAzar(rnd, n);
+        BusquedaLocal busqueda = new BusquedaLocal(d);
+        int origen = rnd.nextInt(n);
+        int[] ruta = rutaAlAzar(rnd, n, origen);
+        double inicial = busqueda.largo(ruta);
+        int[] mejorada = ruta.clone();
+        double optimoLocal = busqueda.mejorar(mejorada);
+
+        double iterada = busqueda.iterar(ruta, new Random(1), System.nanoTime() + 50_000_000L);
+
+        esPermutacionDesde(ruta, origen);
+        assertEquals(busqueda.largo(ruta), iterada, 1e-9);
+        assertTrue(iterada <= inicial + 1e-9);
+        // Parte del mismo óptimo local (búsqueda determinista) y solo acepta mejoras
+        assertTrue(iterada <= optimoLocal + 1e-9, iterada + " > " + optimoLocal);
+    }
+}
@@ -0,0 +1,101 @@
+package com.f1ruta.algoritmo;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CotaInferiorTest {
+
+    private static DistanceMatrix alAzar(Random rnd, int n) {
+        String[] nombres = new String[n];
+        double[] lat = new double[n], lon = new double[n];
+        for (int i = 0; i < n; i++) {
+            nombres[i] = "C" + i;
+            lat[i] = rnd.nextDouble() * 140 - 70;
+            lon[i] = rnd.nextDouble() * 360 - 180;
+        }
+        return SnapshotCircuitos.de(nombres, lat, lon, 1).matriz();
+    }
+
+    /** Costo mínimo de recorrer todos los no visitados saliendo de 'ultimo' (ruta abierta), por fuerza bruta */
+    private static double restoOptimo(DistanceMatrix d, long[] visitados, int ultimo) {
+        List<Integer> libres = new ArrayList<>();
+        for (int j = 0; j < d.size(); j++) if (!CotaInferior.visitado(visitados, j)) libres.add(j);
+        int[] resto = libres.stream().mapToInt(Integer::intValue).toArray();
+        return permutar(d, ultimo, resto, 0, 0.0, Double.POSITIVE_INFINITY);
+    }
+
+    private static double permutar(DistanceMatrix d, int ultimo, int[] resto, int fijos, double largo, double mejor) {
+        if (largo >= mejor) return mejor;
+        if (fijos == resto.length) return largo;
+        for (int i = fijos; i < resto.length; i++) {
+            int t = resto[fijos]; resto[fijos] = resto[i]; resto[i] = t;
+            mejor = permutar(d, resto[fijos], resto, fijos + 1, largo + d.get(ultimo, resto[fijos]), mejor);
+            t = resto[fijos]; resto[fijos] = resto[i]; resto[i] = t;
+        }
+        return mejor;
+    }
+
+    /** Un camino al azar desde 'origen': en cada paso la máscara de visitados y el último agregado */
+    private static List<int[]> caminoAlAzar(Random rnd, int n, int origen) {
+        List<int[]> pasos = new ArrayList<>();
+        List<Integer> libres = new ArrayList<>();
+        for (int j = 0; j < n; j++) if (j != origen) libres.add(j);
+        pasos.add(new int[]{origen});
+        while (!libres.isEmpty()) pasos.add(new int[]{libres.remove(rnd.nextInt(libres.size()))});
+        return pasos;
+    }
+
+    @Test
+    void elUnoArbolNoSuperaElOptimoEnLaRaizNiEnCaminosParciales() {
+        Random rnd = new Random(6);
+        for (int n = 3; n <= 10; n++) {
+            DistanceMatrix d = alAzar(rnd, n);
+            // La misma instancia en todos los caminos: las penalidades heredadas no pueden romper la cota
+            CotaInferior cota = CotaInferior.Tipo.UNO_ARBOL.crear(d);
+            for (int camino = 0; camino < 6; camino++) {
+                long[] visitados = new long[1];
+                double aux = Double.NaN;
+                for (int[] paso : caminoAlAzar(rnd, n, rnd.nextInt(n))) {
+                    int ultimo = paso[0];
+                    visitados[0] |= 1L << ultimo;
+                    float valor = cota.calcular(visitados, ultimo, aux);
+                    aux = cota.aux();
+                    double optimo = restoOptimo(d, visitados, ultimo);
+                    assertTrue(valor <= optimo, "n " + n + ": cota " + valor + " > óptimo " + optimo);
+                    assertTrue(valor >= 0f);
+                }
+            }
+        }
+    }
+
+    @Test
+    void laIncrementalDaLaMismaCotaQueDosAristas() {
+        Random rnd = new Random(7);
+        // Con n grande las listas de vecinos son más cortas que la fila y se usa el recorrido de la fila
+        for (int n : new int[]{2, 5, 12, CotaDosAristasIncremental.VECINOS + 1, 40, 90}) {
+            DistanceMatrix d = alAzar(rnd, n);
+            CotaInferior completa = CotaInferior.Tipo.DOS_ARISTAS.crear(d);
+            CotaInferior incremental = CotaInferior.Tipo.DOS_ARISTAS_INCREMENTAL.crear(d);
+            int palabras = (n + 63) >>> 6;
+            for (int camino = 0; camino < 5; camino++) {
+                long[] visitados = new long[palabras];
+                double aux = Double.NaN;
+                for (int[] paso : caminoAlAzar(rnd, n, rnd.nextInt(n))) {
+                    int ultimo = paso[0];
+                    visitados[ultimo >>> 6] |= 1L << ultimo;
+                    float esperado = completa.calcular(visitados, ultimo, Double.NaN);
+                    float valor = incremental.calcular(visitados, ultimo, aux);
+                    aux = incremental.aux();
+                    // La incremental suma en otro orden: puede diferir en el redondeo, no más
+                    assertEquals(esperado, valor, Math.max(1e-3, Math.ulp(esperado) * 4), "n " + n);
+                }
+            }
+        }
+    }
+}
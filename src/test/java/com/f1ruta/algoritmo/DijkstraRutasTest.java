@@ -0,0 +1,130 @@
+package com.f1ruta.algoritmo;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DijkstraRutasTest {
+
+    /** Dos grupos de circuitos en continentes distintos: con k chico el grafo disperso queda partido */
+    private static SnapshotCircuitos dosContinentes(Random rnd, int porGrupo) {
+        int n = 2 * porGrupo;
+        String[] nombres = new String[n];
+        double[] lat = new double[n], lon = new double[n];
+        for (int i = 0; i < n; i++) {
+            nombres[i] = String.format("C%03d", i);
+            boolean europa = i < porGrupo;
+            lat[i] = europa ? 36 + rnd.nextDouble() * 20 : -38 + rnd.nextDouble() * 20;
+            lon[i] = europa ? -8 + rnd.nextDouble() * 30 : 115 + rnd.nextDouble() * 35;
+        }
+        return SnapshotCircuitos.de(nombres, lat, lon, 1);
+    }
+
+    /** Dijkstra de referencia, O(n²) y sin heap, sobre las aristas del grafo disperso */
+    private static double[] referencia(GrafoDisperso g, int s) {
+        int n = g.size();
+        double[] dist = new double[n];
+        boolean[] cerrado = new boolean[n];
+        Arrays.fill(dist, Double.POSITIVE_INFINITY);
+        dist[s] = 0;
+        while (true) {
+            int u = -1;
+            for (int v = 0; v < n; v++) {
+                if (!cerrado[v] && !Double.isInfinite(dist[v]) && (u < 0 || dist[v] < dist[u])) u = v;
+            }
+            if (u < 0) return dist;
+            cerrado[u] = true;
+            for (int e = g.inicio(u); e < g.fin(u); e++) {
+                dist[g.destino(e)] = Math.min(dist[g.destino(e)], dist[u] + g.peso(e));
+            }
+        }
+    }
+
+    /** Km de una ruta por nombres, sumando las aristas del grafo (falla si usa una que no está) */
+    private static double largo(SnapshotCircuitos circuitos, GrafoDisperso g, List<String> ruta) {
+        double total = 0;
+        for (int i = 0; i + 1 < ruta.size(); i++) {
+            int u = circuitos.indice(ruta.get(i)), v = circuitos.indice(ruta.get(i + 1));
+            double peso = Double.NaN;
+            for (int e = g.inicio(u); e < g.fin(u); e++) if (g.destino(e) == v) peso = g.peso(e);
+            assertTrue(!Double.isNaN(peso), "arista inexistente " + ruta.get(i) + "-" + ruta.get(i + 1));
+            total += peso;
+        }
+        return total;
+    }
+
+    @Test
+    void aEstrellaYLaTablaDanLaRutaMinimaDelGrafoDisperso() {
+        Random rnd = new Random(13);
+        SnapshotCircuitos circuitos = dosContinentes(rnd, 60);
+        int n = circuitos.size();
+        GrafoDisperso grafo = GrafoDisperso.deVecinos(circuitos.indiceEspacial(), 3, 0);
+        TablaRutas tabla = TablaRutas.calcular(grafo, null);
+
+        int conectados = 0, partidos = 0;
+        for (int s = 0; s < n; s += 7) {
+            double[] dist = referencia(grafo, s);
+            for (int t = 0; t < n; t++) {
+                String origen = circuitos.nombre(s), destino = circuitos.nombre(t);
+                if (Double.isInfinite(dist[t])) {
+                    partidos++;
+                    assertNull(tabla.ruta(s, t));
+                    assertThrows(RutaInexistenteException.class, () -> DijkstraRutas.calcularRuta(circuitos, origen, destino, grafo));
+                    assertThrows(RutaInexistenteException.class, () -> DijkstraRutas.calcularRuta(circuitos, origen, destino, tabla));
+                    continue;
+                }
+                conectados++;
+                DijkstraRutas.Resultado aEstrella = DijkstraRutas.calcularRuta(circuitos, origen, destino, grafo);
+                DijkstraRutas.Resultado deTabla = DijkstraRutas.calcularRuta(circuitos, origen, destino, tabla);
+                for (DijkstraRutas.Resultado r : List.of(aEstrella, deTabla)) {
+                    assertEquals(origen, r.ruta().get(0));
+                    assertEquals(destino, r.ruta().get(r.ruta().size() - 1));
+                    assertEquals(dist[t], largo(circuitos, grafo, r.ruta()), 1e-6, origen + " -> " + destino);
+                    assertEquals(Math.round(dist[t]), r.kmTotales(), 1.0);
+                }
+                assertEquals(dist[t], tabla.largo(tabla.ruta(s, t)), 1e-6);
+            }
+        }
+        assertTrue(conectados > 0 && partidos > 0, conectados + " conectados, " + partidos + " partidos");
+    }
+
+    @Test
+    void conTodosLosVecinosCoincidenConElDijkstraCompleto() {
+        Random rnd = new Random(31);
+        SnapshotCircuitos circuitos = dosContinentes(rnd, 20);
+        int n = circuitos.size();
+        GrafoDisperso grafo = GrafoDisperso.deVecinos(circuitos.indiceEspacial(), n - 1, 0);
+        TablaRutas tabla = TablaRutas.calcular(grafo, null);
+
+        for (int s = 0; s < n; s += 3) {
+            for (int t = 0; t < n; t += 2) {
+                String origen = circuitos.nombre(s), destino = circuitos.nombre(t);
+                double completo = DijkstraRutas.calcularRuta(circuitos, origen, destino).kmTotales();
+                assertEquals(completo, DijkstraRutas.calcularRuta(circuitos, origen, destino, grafo).kmTotales());
+                assertEquals(completo, DijkstraRutas.calcularRuta(circuitos, origen, destino, tabla).kmTotales());
+            }
+        }
+    }
+
+    @Test
+    void elDijkstraCompletoNuncaEsMasLargoQueElDisperso() {
+        Random rnd = new Random(47);
+        SnapshotCircuitos circuitos = dosContinentes(rnd, 40);
+        GrafoDisperso grafo = GrafoDisperso.deVecinos(circuitos.indiceEspacial(), 4, 0);
+        for (int s = 0; s < 40; s += 5) {
+            double[] dist = referencia(grafo, s);
+            for (int t = 0; t < 40; t++) {
+                if (Double.isInfinite(dist[t])) continue;
+                DijkstraRutas.Resultado completo = DijkstraRutas.calcularRuta(circuitos, circuitos.nombre(s), circuitos.nombre(t));
+                assertTrue(completo.kmTotales() <= Math.round(dist[t]));
+            }
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.f1ruta.algoritmo;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HeapIndexadoTest {
+
+    @Test
+    void sacaEnOrdenDeClaveConDecreaseKeyYReinserciones() {
+        Random rnd = new Random(13);
+        int n = 500;
+        HeapIndexado heap = new HeapIndexado(n);
+        // Referencia: la clave vigente de cada nodo en el heap (NaN = fuera)
+        double[] clave = new double[n];
+        Arrays.fill(clave, Double.NaN);
+
+        for (int paso = 0; paso < 20_000; paso++) {
+            if (rnd.nextInt(3) > 0 || heap.isEmpty()) {
+                int nodo = rnd.nextInt(n);
+                double nueva = rnd.nextInt(1000) / 10.0; // con empates
+                heap.actualizar(nodo, nueva);
+                // Solo baja la clave de un nodo que ya está
+                if (Double.isNaN(clave[nodo]) || nueva < clave[nodo]) clave[nodo] = nueva;
+            } else {
+                double minima = Double.POSITIVE_INFINITY;
+                for (double c : clave) if (!Double.isNaN(c)) minima = Math.min(minima, c);
+                int nodo = heap.sacar();
+                assertEquals(minima, clave[nodo], "paso " + paso);
+                clave[nodo] = Double.NaN;
+            }
+        }
+        int restantes = 0;
+        for (double c : clave) if (!Double.isNaN(c)) restantes++;
+        double anterior = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < restantes; i++) {
+            int nodo = heap.sacar();
+            assertTrue(clave[nodo] >= anterior);
+            anterior = clave[nodo];
+        }
+        assertTrue(heap.isEmpty());
+    }
+}
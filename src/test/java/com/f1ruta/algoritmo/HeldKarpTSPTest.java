@@ -0,0 +1,109 @@
+package com.f1ruta.algoritmo;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HeldKarpTSPTest {
+
+    private static SnapshotCircuitos alAzar(Random rnd, int n) {
+        String[] nombres = new String[n];
+        double[] lat = new double[n], lon = new double[n];
+        for (int i = 0; i < n; i++) {
+            nombres[i] = "C" + i;
+            lat[i] = rnd.nextDouble() * 140 - 70;
+            lon[i] = rnd.nextDouble() * 360 - 180;
+        }
+        return SnapshotCircuitos.de(nombres, lat, lon, 1);
+    }
+
+    /** Ruta abierta más corta desde 'origen' probando todas las permutaciones del resto */
+    private static double fuerzaBruta(DistanceMatrix d, int n, int origen) {
+        int[] resto = new int[n - 1];
+        for (int i = 0, k = 0; i < n; i++) if (i != origen) resto[k++] = i;
+        return permutar(d, origen, resto, 0, 0.0, Double.POSITIVE_INFINITY);
+    }
+
+    private static double permutar(DistanceMatrix d, int ultimo, int[] resto, int fijos, double largo, double mejor) {
+        if (largo >= mejor) return mejor;
+        if (fijos == resto.length) return largo;
+        for (int i = fijos; i < resto.length; i++) {
+            int t = resto[fijos]; resto[fijos] = resto[i]; resto[i] = t;
+            mejor = permutar(d, resto[fijos], resto, fijos + 1, largo + d.get(ultimo, resto[fijos]), mejor);
+            t = resto[fijos]; resto[fijos] = resto[i]; resto[i] = t;
+        }
+        return mejor;
+    }
+
+    private static List<Integer> indices(SnapshotCircuitos cs, List<String> ruta) {
+        List<Integer> indices = new ArrayList<>();
+        for (String nombre : ruta) indices.add(cs.indice(nombre));
+        return indices;
+    }
+
+    @Test
+    void coincideConLaFuerzaBrutaDesdeCadaOrigen() {
+        Random rnd = new Random(3);
+        for (int n = 1; n <= 9; n++) {
+            for (int set = 0; set < 3; set++) {
+                SnapshotCircuitos cs = alAzar(rnd, n);
+                DistanceMatrix d = cs.matriz();
+                for (int origen = 0; origen < n; origen++) {
+                    HeldKarpTSP.Resultado r = HeldKarpTSP.calcularRuta(cs, cs.nombre(origen));
+                    List<Integer> ruta = indices(cs, r.ruta());
+
+                    // Ruta abierta: empieza en el origen, pasa una vez por cada circuito y no vuelve
+                    assertEquals(n, ruta.size());
+                    assertEquals(n, new HashSet<>(ruta).size());
+                    assertEquals(origen, ruta.get(0));
+
+                    // La tabla es float: la ruta elegida puede quedar a centésimas de km del óptimo en double
+                    double largo = d.largoRuta(ruta);
+                    double optimo = fuerzaBruta(d, n, origen);
+                    assertEquals(optimo, largo, 0.05, "n " + n + ", origen " + origen);
+                    assertEquals(Math.round(largo), r.kmTotales());
+                }
+            }
+        }
+    }
+
+    @Test
+    void sinOrigenSaleDelPrimero() {
+        SnapshotCircuitos cs = alAzar(new Random(5), 6);
+        HeldKarpTSP.Resultado r = HeldKarpTSP.calcularRuta(cs, null);
+        assertEquals(cs.nombre(0), r.ruta().get(0));
+        assertEquals(r, HeldKarpTSP.calcularRuta(cs, "  "));
+        assertEquals(Math.round(fuerzaBruta(cs.matriz(), 6, 0)), r.kmTotales(), 1.0);
+    }
+
+    @Test
+    void unoYDosCircuitos() {
+        SnapshotCircuitos uno = SnapshotCircuitos.de(new String[]{"Monza"}, new double[]{45.6156}, new double[]{9.2811}, 1);
+        assertEquals(new HeldKarpTSP.Resultado(List.of("Monza"), 0.0), HeldKarpTSP.calcularRuta(uno, "monza"));
+
+        SnapshotCircuitos dos = SnapshotCircuitos.de(new String[]{"Monza", "Spa"},
+                new double[]{45.6156, 50.4372}, new double[]{9.2811, 5.9714}, 1);
+        double km = Math.round(DistanceMatrix.haversine(45.6156, 9.2811, 50.4372, 5.9714));
+        assertEquals(new HeldKarpTSP.Resultado(List.of("Spa", "Monza"), km), HeldKarpTSP.calcularRuta(dos, "SPA"));
+        assertEquals(new HeldKarpTSP.Resultado(List.of("Monza", "Spa"), km), HeldKarpTSP.calcularRuta(dos, "Monza"));
+    }
+
+    @Test
+    void unOrigenDesconocidoEsUnParametroInvalido() {
+        SnapshotCircuitos cs = alAzar(new Random(7), 5);
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> HeldKarpTSP.calcularRuta(cs, "Atlantis"));
+        assertTrue(e.getMessage().contains("Atlantis"));
+        SnapshotCircuitos uno = SnapshotCircuitos.de(new String[]{"Monza"}, new double[]{45.6}, new double[]{9.2}, 1);
+        assertThrows(IllegalArgumentException.class, () -> HeldKarpTSP.calcularRuta(uno, "Atlantis"));
+        // Branch & Bound responde igual para los sets que no van a Held-Karp
+        assertThrows(IllegalArgumentException.class, () -> BranchBoundTSP.calcularRuta(cs, "Atlantis"));
+    }
+}
@@ -0,0 +1,120 @@
+package com.f1ruta.algoritmo;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class IndiceOrdenTest {
+
+    private static ForkJoinPool pool;
+
+    @BeforeAll
+    static void crearPool() {
+        pool = new ForkJoinPool(4);
+    }
+
+    @AfterAll
+    static void cerrarPool() {
+        pool.shutdown();
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 2, 40, 500, 3 * (1 << 13) + 17})
+    void cadaPosicionEsLaDelOrdenCompletoEnLosDosSentidos(int n) {
+        SnapshotCircuitos cs = MergesortCircuitosTest.conEmpates(new Random(17L + n), n);
+        for (MergesortCircuitos.Criterio criterio : MergesortCircuitos.Criterio.values()) {
+            IndiceOrden indice = cs.ordenPor(criterio, pool);
+            assertEquals(n, indice.size());
+            for (MergesortCircuitos.Orden orden : MergesortCircuitos.Orden.values()) {
+                // DESC sale de recorrer los tramos de empate: no es el ASC al revés
+                int[] esperado = MergesortCircuitosTest.referencia(cs, criterio, orden);
+                int[] posiciones = new int[n];
+                for (int p = 0; p < n; p++) posiciones[p] = indice.circuito(p, orden);
+                assertArrayEquals(esperado, posiciones, criterio + " " + orden + ", n " + n);
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 40, 500, 3 * (1 << 13) + 17})
+    void laBandaYLasPaginasSonLasDelOrdenCompletoFiltrado(int n) {
+        Random rnd = new Random(170L + n);
+        SnapshotCircuitos cs = MergesortCircuitosTest.conEmpates(rnd, n);
+        // Bordes en valores de la grilla (inclusivos, con 0.0 y -0.0), entre valores, invertidos e infinitos
+        double[] bordes = {Double.NEGATIVE_INFINITY, -200, -75, -40, -7.5, -3.75, -0.0, 0.0, 3.75, 7.5, 40, 75,
+                160, 200, Double.POSITIVE_INFINITY};
+
+        for (MergesortCircuitos.Criterio criterio : new MergesortCircuitos.Criterio[]{
+                MergesortCircuitos.Criterio.LATITUD, MergesortCircuitos.Criterio.LONGITUD}) {
+            for (MergesortCircuitos.Orden orden : MergesortCircuitos.Orden.values()) {
+                int[] completo = MergesortCircuitosTest.referencia(cs, criterio, orden);
+                for (int consulta = 0; consulta < 40; consulta++) {
+                    double min = bordes[rnd.nextInt(bordes.length)], max = bordes[rnd.nextInt(bordes.length)];
+                    String caso = criterio + " " + orden + " [" + min + ", " + max + "], n " + n;
+
+                    // La banda: las posiciones contiguas del orden completo con el valor dentro de [min, max]
+                    List<Integer> posiciones = new ArrayList<>();
+                    for (int p = 0; p < n; p++) {
+                        double v = criterio == MergesortCircuitos.Criterio.LATITUD
+                                ? cs.latitud(completo[p]) : cs.longitud(completo[p]);
+                        if (Double.compare(v, min) >= 0 && Double.compare(v, max) <= 0) posiciones.add(p);
+                    }
+                    int[] banda = cs.ordenPor(criterio, pool).banda(min, max, orden);
+                    assertEquals(posiciones.size(), banda[1] - banda[0], caso);
+                    if (!posiciones.isEmpty()) assertEquals(posiciones.get(0), banda[0], caso);
+
+                    // Y una página de ella: offset y límite sobre lo filtrado, con la posición en el orden completo
+                    int offset = rnd.nextInt(posiciones.size() + 3);
+                    int limite = rnd.nextInt(4) == 0 ? 0 : 1 + rnd.nextInt(n + 2);
+                    MergesortCircuitos.Resultado r = MergesortCircuitos.consultar(cs, criterio, orden, min, max,
+                            offset, limite, pool);
+                    int desde = Math.min(offset, posiciones.size());
+                    int hasta = limite > 0 ? Math.min(posiciones.size(), desde + limite) : posiciones.size();
+                    int[] pagina = posiciones.subList(desde, hasta).stream().mapToInt(p -> completo[p]).toArray();
+                    assertArrayEquals(pagina, r.circuitos(), caso + ", offset " + offset + ", límite " + limite);
+                    assertEquals(posiciones.size(), r.total(), caso);
+                    if (pagina.length > 0) assertEquals(posiciones.get(desde), r.primeraPosicion(), caso);
+                }
+            }
+        }
+    }
+
+    @Test
+    void lasPaginasSinBandaCortanElOrdenCompleto() {
+        SnapshotCircuitos cs = MergesortCircuitosTest.conEmpates(new Random(171), 300);
+        for (MergesortCircuitos.Criterio criterio : MergesortCircuitos.Criterio.values()) {
+            for (MergesortCircuitos.Orden orden : MergesortCircuitos.Orden.values()) {
+                int[] completo = MergesortCircuitosTest.referencia(cs, criterio, orden);
+                for (int[] pedido : new int[][]{{0, 0}, {0, 10}, {295, 10}, {300, 1}, {1000, 5}, {7, 0}}) {
+                    MergesortCircuitos.Resultado r = MergesortCircuitos.consultar(cs, criterio, orden, null, null,
+                            pedido[0], pedido[1], null);
+                    int desde = Math.min(pedido[0], 300);
+                    int hasta = pedido[1] > 0 ? Math.min(300, desde + pedido[1]) : 300;
+                    assertArrayEquals(Arrays.copyOfRange(completo, desde, hasta), r.circuitos(),
+                            criterio + " " + orden + " " + Arrays.toString(pedido));
+                    assertEquals(300, r.total());
+                    assertEquals(desde, r.primeraPosicion());
+                }
+            }
+        }
+    }
+
+    @Test
+    void laBandaNoSeAplicaAlNombre() {
+        SnapshotCircuitos cs = MergesortCircuitosTest.conEmpates(new Random(172), 10);
+        IndiceOrden indice = cs.ordenPor(MergesortCircuitos.Criterio.NOMBRE, null);
+        assertThrows(IllegalArgumentException.class, () -> indice.banda(0, 1, MergesortCircuitos.Orden.ASC));
+    }
+}
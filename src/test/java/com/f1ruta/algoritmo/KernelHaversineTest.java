@@ -0,0 +1,132 @@
+package com.f1ruta.algoritmo;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class KernelHaversineTest {
+
+    private static final double R = DistanceMatrix.RADIO_TIERRA_KM;
+
+    /** Referencia independiente del kernel: fórmula de Vincenty para la esfera, bien condicionada en todo el rango */
+    private static double vincenty(double lat1, double lon1, double lat2, double lon2) {
+        double p1 = Math.toRadians(lat1), p2 = Math.toRadians(lat2);
+        double dl = Math.toRadians(lon2 - lon1);
+        double a = Math.cos(p2) * Math.sin(dl);
+        double b = Math.cos(p1) * Math.sin(p2) - Math.sin(p1) * Math.cos(p2) * Math.cos(dl);
+        double c = Math.sin(p1) * Math.sin(p2) + Math.cos(p1) * Math.cos(p2) * Math.cos(dl);
+        return R * Math.atan2(Math.hypot(a, b), c);
+    }
+
+    /** Distancias de i a todos con el camino de filas (vectorial si el módulo está cargado) y el escalar */
+    private static void verificar(double[] lat, double[] lon, double[] esperado, int i) {
+        double[][] u = KernelHaversine.unitarios(lat, lon);
+        int n = lat.length;
+        double[] fila = new double[n];
+        KernelHaversine.fila(u[0], u[1], u[2], i, 0, n, fila, 0);
+        for (int j = 0; j < n; j++) {
+            assertEquals(esperado[j], fila[j], KernelHaversine.ERROR_MAXIMO_KM, "fila, punto " + j);
+            assertEquals(esperado[j], KernelHaversine.distancia(u[0], u[1], u[2], i, j),
+                    KernelHaversine.ERROR_MAXIMO_KM, "escalar, punto " + j);
+        }
+    }
+
+    @Test
+    void paresAlAzarDentroDelErrorMaximo() {
+        Random rnd = new Random(22);
+        int n = 2000;
+        double[] lat = new double[n];
+        double[] lon = new double[n];
+        for (int i = 0; i < n; i++) {
+            lat[i] = Math.toDegrees(Math.asin(2 * rnd.nextDouble() - 1)); // uniforme sobre la esfera
+            lon[i] = -180 + rnd.nextDouble() * 360;
+        }
+        double[] esperado = new double[n];
+        for (int i = 0; i < n; i += 97) {
+            for (int j = 0; j < n; j++) esperado[j] = vincenty(lat[i], lon[i], lat[j], lon[j]);
+            verificar(lat, lon, esperado, i);
+        }
+    }
+
+    @Test
+    void casiAntipodasDentroDelErrorMaximo() {
+        // Punto 0 y, sobre su mismo meridiano, corrimientos de su antípoda: la distancia exacta es R·(π − ε)
+        double[] corrimientos = {0, 1e-12, 1e-10, 1e-8, 1e-7, 1e-6, 1e-5, 1e-4, 1e-3, 1e-2, 1e-1, 1};
+        Random rnd = new Random(7);
+        for (int caso = 0; caso < 50; caso++) {
+            int n = corrimientos.length + 1;
+            double[] lat = new double[n];
+            double[] lon = new double[n];
+            double[] esperado = new double[n];
+            lat[0] = -75 + rnd.nextDouble() * 150;
+            lon[0] = -180 + rnd.nextDouble() * 360;
+            for (int k = 0; k < corrimientos.length; k++) {
+                double epsilon = rnd.nextBoolean() ? corrimientos[k] : -corrimientos[k];
+                lat[k + 1] = -lat[0] + epsilon;
+                lon[k + 1] = lon[0] + 180;
+                esperado[k + 1] = R * (Math.PI - Math.abs(Math.toRadians(lat[k + 1] + lat[0])));
+            }
+            verificar(lat, lon, esperado, 0);
+        }
+    }
+
+    @Test
+    void unaSolaFormulaEnMatrizIndiceYHaversine() {
+        Random rnd = new Random(12);
+        int n = 400;
+        String[] nombres = new String[n];
+        double[] lat = new double[n];
+        double[] lon = new double[n];
+        for (int i = 0; i < n; i++) {
+            nombres[i] = "c" + i;
+            lat[i] = -89 + rnd.nextDouble() * 178;
+            lon[i] = -180 + rnd.nextDouble() * 360;
+        }
+        // Un par casi antípoda, el caso donde la fórmula anterior se separaba
+        lat[1] = -lat[0] + 1e-9;
+        lon[1] = lon[0] + 180;
+        SnapshotCircuitos cs = SnapshotCircuitos.de(nombres, lat, lon, 1);
+        DistanceMatrix matriz = cs.matriz();
+        IndiceEspacial indice = cs.indiceEspacial();
+        double[][] u = KernelHaversine.unitarios(lat, lon);
+        double[] fila = new double[n];
+        for (int i = 0; i < n; i++) {
+            KernelHaversine.filaEscalar(u[0], u[1], u[2], i, 0, n, fila, 0);
+            for (int j = 0; j < n; j++) {
+                if (i == j) continue;
+                double d = DistanceMatrix.haversine(lat[i], lon[i], lat[j], lon[j]);
+                // Umbrales (índice) y camino escalar de la matriz: bit a bit
+                assertEquals(d, indice.distancia(i, j), 0.0);
+                assertEquals(d, fila[j], 0.0);
+                if (KernelHaversine.VECTORIAL) assertEquals(d, matriz.get(i, j), KernelHaversine.ERROR_MAXIMO_KM);
+                else assertEquals(d, matriz.get(i, j), 0.0);
+            }
+        }
+    }
+
+    @Test
+    void caminoVectorialDentroDelErrorDelEscalar() {
+        assumeTrue(KernelHaversine.VECTORIAL, "sin --add-modules jdk.incubator.vector");
+        Random rnd = new Random(3);
+        int n = 1001; // no múltiplo del ancho del vector: también pasa por el resto escalar
+        double[] lat = new double[n];
+        double[] lon = new double[n];
+        for (int i = 0; i < n; i++) {
+            lat[i] = Math.toDegrees(Math.asin(2 * rnd.nextDouble() - 1));
+            lon[i] = -180 + rnd.nextDouble() * 360;
+        }
+        double[][] u = KernelHaversine.unitarios(lat, lon);
+        double[] vectorial = new double[n];
+        double[] escalar = new double[n];
+        for (int i = 0; i < n; i += 13) {
+            KernelHaversine.filaVectorial(u[0], u[1], u[2], i, 0, n, vectorial, 0);
+            KernelHaversine.filaEscalar(u[0], u[1], u[2], i, 0, n, escalar, 0);
+            for (int j = 0; j < n; j++) {
+                assertEquals(escalar[j], vectorial[j], KernelHaversine.ERROR_MAXIMO_KM);
+            }
+        }
+    }
+}
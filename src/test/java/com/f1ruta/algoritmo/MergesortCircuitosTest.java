@@ -0,0 +1,78 @@
+package com.f1ruta.algoritmo;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+class MergesortCircuitosTest {
+
+    private static ForkJoinPool pool;
+
+    @BeforeAll
+    static void crearPool() {
+        pool = new ForkJoinPool(4);
+    }
+
+    @AfterAll
+    static void cerrarPool() {
+        pool.shutdown();
+    }
+
+    /**
+     * Set con muchos empates: latitudes de una grilla chica (con 0.0 y -0.0), longitudes de otra, y
+     * nombres que solo difieren en mayúsculas, incluidos caracteres que se pliegan distinto (i sin punto, I con punto, eszett)
+     */
+    static SnapshotCircuitos conEmpates(Random rnd, int n) {
+        // Con escapes: el código fuente se compila con la codificación de la plataforma
+        String[] bases = {"monza", "Monza", "MONZA", "spa", "SPA", "\u0131stanbul", "Istanbul", "istanbul",
+                "\u0130stanbul", "stra\u00dfe", "STRASSE", "S\u00e3o Paulo", "S\u00c3O PAULO", "suzuka"};
+        String[] nombres = new String[n];
+        double[] lat = new double[n], lon = new double[n];
+        for (int i = 0; i < n; i++) {
+            // La mitad repite un nombre base tal cual: empates exactos en NOMBRE
+            nombres[i] = bases[rnd.nextInt(bases.length)] + (rnd.nextBoolean() ? "" : " " + rnd.nextInt(n / 4 + 1));
+            int fila = rnd.nextInt(21) - 10;
+            lat[i] = fila == 0 ? (rnd.nextBoolean() ? 0.0 : -0.0) : fila * 7.5;
+            lon[i] = (rnd.nextInt(9) - 4) * 40.0;
+        }
+        return SnapshotCircuitos.de(nombres, lat, lon, 1);
+    }
+
+    /** Orden de referencia: List.sort (estable) sobre índices en caja con el comparador del criterio */
+    static int[] referencia(SnapshotCircuitos cs, MergesortCircuitos.Criterio criterio, MergesortCircuitos.Orden orden) {
+        Comparator<Integer> comparador = switch (criterio) {
+            case LATITUD -> (a, b) -> Double.compare(cs.latitud(a), cs.latitud(b));
+            case LONGITUD -> (a, b) -> Double.compare(cs.longitud(a), cs.longitud(b));
+            case NOMBRE -> (a, b) -> cs.nombre(a).compareToIgnoreCase(cs.nombre(b));
+        };
+        if (orden == MergesortCircuitos.Orden.DESC) comparador = comparador.reversed();
+        List<Integer> indices = new ArrayList<>();
+        for (int i = 0; i < cs.size(); i++) indices.add(i);
+        indices.sort(comparador);
+        return indices.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, 1, 2, 31, 33, 500, 3 * (1 << 13) + 17})
+    void ordenaComoElSortEstableDeLaBiblioteca(int n) {
+        SnapshotCircuitos cs = conEmpates(new Random(16L + n), n);
+        for (MergesortCircuitos.Criterio criterio : MergesortCircuitos.Criterio.values()) {
+            for (MergesortCircuitos.Orden orden : MergesortCircuitos.Orden.values()) {
+                int[] esperado = referencia(cs, criterio, orden);
+                String caso = criterio + " " + orden + ", n " + n;
+                assertArrayEquals(esperado, MergesortCircuitos.ordenarIndices(cs, criterio, orden, null), caso);
+                // Con pool: por encima de UMBRAL_PARALELO las mitades se ordenan como tareas
+                assertArrayEquals(esperado, MergesortCircuitos.ordenarIndices(cs, criterio, orden, pool), caso);
+            }
+        }
+    }
+}
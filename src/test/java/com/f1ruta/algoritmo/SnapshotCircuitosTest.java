@@ -0,0 +1,132 @@
+package com.f1ruta.algoritmo;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SnapshotCircuitosTest {
+
+    /** Pocos valores posibles por coordenada, para que haya empates en los órdenes */
+    private static double coordenada(Random rnd, double maximo) {
+        return (rnd.nextInt(13) - 6) * maximo / 6;
+    }
+
+    private static SnapshotCircuitos desdeCero(SnapshotCircuitos s) {
+        int n = s.size();
+        String[] nombres = new String[n];
+        double[] lat = new double[n], lon = new double[n];
+        for (int i = 0; i < n; i++) {
+            nombres[i] = s.nombre(i);
+            lat[i] = s.latitud(i);
+            lon[i] = s.longitud(i);
+        }
+        return SnapshotCircuitos.de(nombres, lat, lon, s.version());
+    }
+
+    /** Construye las estructuras que se heredan parcheadas, si el parche anterior no las dejó */
+    private static void usar(SnapshotCircuitos s) {
+        s.matriz();
+        s.indiceEspacial();
+        for (MergesortCircuitos.Criterio c : MergesortCircuitos.Criterio.values()) s.ordenPor(c, null);
+    }
+
+    @Test
+    void losParchesDanLoMismoQueConstruirDesdeCero() {
+        Random rnd = new Random(23);
+        int n = 40;
+        String[] nombres = new String[n];
+        double[] lat = new double[n], lon = new double[n];
+        for (int i = 0; i < n; i++) {
+            nombres[i] = "c" + i;
+            lat[i] = coordenada(rnd, 60);
+            lon[i] = coordenada(rnd, 170);
+        }
+        SnapshotCircuitos s = SnapshotCircuitos.de(nombres, lat, lon, 1);
+        usar(s);
+
+        int siguiente = n, maximoParcheadas = 0, reconstrucciones = 0, renumerados = 0;
+        for (int paso = 0; paso < 300; paso++) {
+            long version = paso + 2;
+            int tamanio = s.size();
+            int accion = tamanio < 10 ? 0 : rnd.nextInt(3);
+            SnapshotCircuitos nuevo;
+            if (accion == 0) {
+                nuevo = s.conCircuito("C" + siguiente++, coordenada(rnd, 60), coordenada(rnd, 170), version);
+            } else if (accion == 1) {
+                // Mover uno existente, a veces cambiando solo las mayúsculas del nombre
+                String nombre = s.nombre(rnd.nextInt(tamanio));
+                if (rnd.nextBoolean()) nombre = nombre.toUpperCase();
+                nuevo = s.conCircuito(nombre, coordenada(rnd, 60), coordenada(rnd, 170), version);
+            } else {
+                int i = rnd.nextInt(tamanio);
+                if (i != tamanio - 1) renumerados++;
+                nuevo = s.sinCircuito(s.nombre(i), version);
+            }
+            if (nuevo == s) continue;
+
+            // Lo heredado del anterior, sin construir nada: o el parche o null (se reconstruye en el primer uso)
+            int parcheadas = nuevo.matriz().filasParcheadas();
+            if (parcheadas == 0 && maximoParcheadas > 0) reconstrucciones++;
+            maximoParcheadas = Math.max(maximoParcheadas, parcheadas);
+            comparar(desdeCero(nuevo), nuevo, rnd);
+            usar(nuevo);
+            s = nuevo;
+        }
+        // Se pasó el máximo de filas parcheadas (y de huecos) y se borró tanto el último como uno del medio
+        assertEquals(DistanceMatrix.MAX_FILAS_PARCHE, maximoParcheadas);
+        assertTrue(reconstrucciones > 0);
+        assertTrue(renumerados > 0);
+    }
+
+    private static void comparar(SnapshotCircuitos esperado, SnapshotCircuitos parcheado, Random rnd) {
+        int n = esperado.size();
+        String mensaje = "versión " + parcheado.version();
+
+        DistanceMatrix d = esperado.matriz(), p = parcheado.matriz();
+        assertEquals(n, p.size());
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) assertEquals(d.get(i, j), p.get(i, j), 1e-9, mensaje);
+        }
+
+        IndiceEspacial ie = esperado.indiceEspacial(), ip = parcheado.indiceEspacial();
+        int[] a = new int[n], b = new int[n];
+        for (int consulta = 0; consulta < 5; consulta++) {
+            int centro = rnd.nextInt(n);
+            double radio = rnd.nextDouble() * 6000;
+            assertEquals(conjunto(a, ie.masCercanos(centro, n, radio, a)),
+                    conjunto(b, ip.masCercanos(centro, n, radio, b)), mensaje);
+            IndiceEspacial.Recorrido re = ie.recorrido(), rp = ip.recorrido();
+            re.quitar(centro);
+            rp.quitar(centro);
+            assertEquals(conjunto(a, re.extraer(centro, radio, a)), conjunto(b, rp.extraer(centro, radio, b)), mensaje);
+            // Lo ya extraído no vuelve a salir, esté en el árbol, en un hueco o fuera de él
+            assertEquals(conjunto(a, re.extraer(centro, 2 * radio, a)), conjunto(b, rp.extraer(centro, 2 * radio, b)), mensaje);
+        }
+
+        for (MergesortCircuitos.Criterio c : MergesortCircuitos.Criterio.values()) {
+            IndiceOrden oe = esperado.ordenPor(c, null), op = parcheado.ordenPor(c, null);
+            assertNotSame(oe, op);
+            assertEquals(n, op.size());
+            for (MergesortCircuitos.Orden orden : MergesortCircuitos.Orden.values()) {
+                int[] e = new int[n], r = new int[n];
+                for (int pos = 0; pos < n; pos++) {
+                    e[pos] = oe.circuito(pos, orden);
+                    r[pos] = op.circuito(pos, orden);
+                }
+                assertArrayEquals(e, r, mensaje + ", " + c + " " + orden);
+            }
+        }
+    }
+
+    private static String conjunto(int[] salida, int cantidad) {
+        int[] copia = Arrays.copyOf(salida, cantidad);
+        Arrays.sort(copia);
+        return Arrays.toString(copia);
+    }
+}
@@ -0,0 +1,48 @@
+package com.f1ruta.algoritmo;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VecinosCercanosTest {
+
+    private static DistanceMatrix matriz(int n, long semilla) {
+        Random rnd = new Random(semilla);
+        double[] lat = new double[n];
+        double[] lon = new double[n];
+        for (int i = 0; i < n; i++) {
+            lat[i] = -60 + rnd.nextDouble() * 120;
+            lon[i] = -180 + rnd.nextDouble() * 360;
+        }
+        return DistanceMatrix.de(lat, lon, 1);
+    }
+
+    @Test
+    void filasOrdenadasCoincidenConLaInsercionAcotada() {
+        DistanceMatrix d = matriz(300, 7);
+        VecinosCercanos cortos = new VecinosCercanos(d, 20);
+        VecinosCercanos completos = new VecinosCercanos(d, d.size() - 1);
+        for (int i = 0; i < d.size(); i++) {
+            for (int r = 0; r < cortos.k(); r++) {
+                assertEquals(cortos.vecino(i, r), completos.vecino(i, r), "nodo " + i + ", vecino " + r);
+            }
+            for (int r = 1; r < completos.k(); r++) {
+                assertTrue(d.get(i, completos.vecino(i, r - 1)) <= d.get(i, completos.vecino(i, r)));
+            }
+        }
+    }
+
+    @Test
+    void listasCortasYCompletasNoSePisan() {
+        DistanceMatrix d = matriz(60, 11);
+        VecinosCercanos cortos = d.vecinos(BusquedaLocal.VECINOS);
+        VecinosCercanos completos = d.vecinos(d.size() - 1);
+        assertEquals(d.size() - 1, completos.k());
+        assertSame(cortos, d.vecinos(BusquedaLocal.VECINOS));
+        assertSame(completos, d.vecinos(d.size() - 1));
+    }
+}
@@ -0,0 +1,59 @@
+package com.f1ruta.controller;
+
+import com.f1ruta.algoritmo.RutaInexistenteException;
+import com.f1ruta.service.RutaService;
+import com.f1ruta.service.SnapshotService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import static org.hamcrest.Matchers.startsWith;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class ManejoErroresTest {
+
+    private MockMvc mvc;
+
+    @BeforeEach
+    void preparar() {
+        RutaService servicio = mock(RutaService.class);
+        SnapshotService snapshots = mock(SnapshotService.class);
+        when(servicio.ejecutarBFS(anyString(), any(), any(), anyBoolean()))
+                .thenThrow(new IllegalArgumentException("Circuito inicio no encontrado: Atlantis"));
+        when(servicio.ejecutarDijkstra(anyString(), anyString(), anyString(), anyBoolean()))
+                .thenThrow(new RutaInexistenteException("Monza", "Melbourne"));
+        when(snapshots.guardarCircuito(anyString(), anyDouble(), anyDouble()))
+                .thenThrow(new IllegalArgumentException("latitud debe estar entre -90 y 90"));
+        mvc = MockMvcBuilders.standaloneSetup(new AlgoritmoController(servicio, snapshots))
+                .setControllerAdvice(new ManejoErrores())
+                .build();
+    }
+
+    @Test
+    void unParametroInvalidoEsUn400EnLosAlgoritmosYEnElSnapshot() throws Exception {
+        mvc.perform(get("/api/algoritmos/bfs").param("inicio", "Atlantis"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.detail").value("Circuito inicio no encontrado: Atlantis"));
+        mvc.perform(put("/api/algoritmos/snapshot/circuitos/Monza").param("latitud", "91").param("longitud", "9"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.detail").value("latitud debe estar entre -90 y 90"));
+    }
+
+    @Test
+    void unParSinCaminoEnElGrafoDispersoEsUn422() throws Exception {
+        mvc.perform(get("/api/algoritmos/dijkstra").param("origen", "Monza").param("destino", "Melbourne")
+                        .param("modo", "disperso"))
+                .andExpect(status().isUnprocessableEntity())
+                .andExpect(jsonPath("$.detail").value(startsWith("No existe ruta entre Monza y Melbourne")));
+    }
+}
@@ -0,0 +1,209 @@
+package com.f1ruta.repository;
+
+import com.f1ruta.algoritmo.BFSRutas;
+import com.f1ruta.algoritmo.DistanceMatrix;
+import com.f1ruta.algoritmo.SnapshotCircuitos;
+import com.f1ruta.domain.Circuito;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CircuitoRepositoryPersonalizadoImplTest {
+
+    private static final int LOTE = 3;
+
+    /** Una sola base para toda la clase: arrancarla lleva segundos, vaciarla no */
+    private static Neo4jEmbebido base;
+    private CircuitoRepositoryPersonalizadoImpl repositorio;
+
+    @BeforeAll
+    static void arrancar() {
+        base = new Neo4jEmbebido();
+    }
+
+    @AfterAll
+    static void cerrar() {
+        base.close();
+    }
+
+    @BeforeEach
+    void preparar() {
+        base.limpiar();
+        repositorio = new CircuitoRepositoryPersonalizadoImpl(base.cliente(), LOTE, 2);
+    }
+
+    @Test
+    void laProyeccionDevuelveLoMismoQueFindAll() {
+        // Más filas que la capacidad inicial (1024), y coordenadas ausentes como las deja el mapeo de la entidad
+        List<Map<String, Object>> nodos = new ArrayList<>();
+        for (int i = 0; i < 2500; i++) {
+            nodos.add(Neo4jEmbebido.nodo("C" + i, i % 7 == 0 ? null : i * 0.01 - 12.5, i % 11 == 0 ? null : 180 - i * 0.1));
+        }
+        base.crear(nodos);
+
+        CircuitoRepositoryPersonalizado.Proyeccion p = repositorio.cargarProyeccion();
+
+        // La proyección sale en el orden de la base; findAll se compara por nombre
+        List<Circuito> proyectados = new ArrayList<>();
+        for (int i = 0; i < p.nombres().length; i++) {
+            proyectados.add(new Circuito(p.nombres()[i], p.latitudes()[i], p.longitudes()[i]));
+        }
+        proyectados.sort(Comparator.comparing(Circuito::getNombre));
+        assertEquals(base.circuitos(), proyectados);
+        assertEquals(p.nombres().length, p.latitudes().length);
+        assertEquals(p.nombres().length, p.longitudes().length);
+    }
+
+    @Test
+    void laProyeccionDeUnaBaseVaciaEsVacia() {
+        CircuitoRepositoryPersonalizado.Proyeccion p = repositorio.cargarProyeccion();
+        assertEquals(0, p.nombres().length);
+        assertEquals(0, p.latitudes().length);
+        assertEquals(0, p.longitudes().length);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, 1, LOTE, LOTE + 1})
+    void importarEnLosBordesDelLoteEsIdempotente(int n) {
+        List<Circuito> circuitos = new ArrayList<>();
+        for (int i = 0; i < n; i++) circuitos.add(new Circuito("I" + i, 10 + i, 20 - i));
+        // Las consultas de prepararEsquema no cuentan
+        repositorio.prepararEsquema();
+        base.consultas.clear();
+        int lotes = (n + LOTE - 1) / LOTE;
+
+        assertEquals(n, repositorio.importar(circuitos));
+        assertEquals(lotes, base.consultas("UNWIND $filas").size());
+        List<Circuito> primera = base.circuitos();
+
+        assertEquals(n, repositorio.importar(circuitos));
+        assertEquals(2 * lotes, base.consultas("UNWIND $filas").size());
+        assertEquals(primera, base.circuitos());
+        assertEquals(circuitos, base.circuitos());
+
+        // Cada lote lleva entre 1 y LOTE filas; cada importación manda cada circuito una vez
+        int filas = 0;
+        for (Neo4jEmbebido.Consulta c : base.consultas("UNWIND $filas")) {
+            int enLote = c.parametros().get("filas").size();
+            assertTrue(enLote >= 1 && enLote <= LOTE);
+            filas += enLote;
+        }
+        assertEquals(2 * n, filas);
+        base.conUbicacion().values().forEach(Assertions::assertTrue);
+    }
+
+    @Test
+    void importarActualizaPorNombreSinDuplicar() {
+        base.crear("Monza", 0.0, 0.0);
+        repositorio.importar(List.of(new Circuito("Monza", 45.6156, 9.2811), new Circuito("Spa", 50.4372, 5.9714)));
+
+        assertEquals(List.of(new Circuito("Monza", 45.6156, 9.2811), new Circuito("Spa", 50.4372, 5.9714)),
+                base.circuitos());
+    }
+
+    @Test
+    void prepararEsquemaCreaLosIndicesYCompletaLaUbicacionPorLotes() {
+        for (int i = 0; i < 7; i++) base.crear("C" + i, 40.0 + i, 10.0 - i);
+        base.crear("SinLatitud", null, 3.0);
+
+        repositorio.prepararEsquema();
+
+        assertEquals(Map.of("circuito_nombre", "RANGE", "circuito_ubicacion", "POINT"), base.tiposDeIndice());
+        // Lotes de 3, 3, 1 y una última vuelta que ya no completa ninguno
+        assertEquals(4, base.consultas("MATCH (c:Circuito)\nWHERE c.ubicacion IS NULL").size());
+        base.conUbicacion().forEach((nombre, ubicacion) -> assertEquals(!nombre.equals("SinLatitud"), ubicacion, nombre));
+
+        int consultas = base.consultas.size();
+        repositorio.prepararEsquema();
+        repositorio.buscar("C1");
+        assertEquals(consultas + 1, base.consultas.size());
+    }
+
+    @Test
+    void elRadioSeAgrandaPorElRadioTerrestreDeNeo4j() {
+        base.crear("A", 45.0, 9.0);
+        base.crear("B", 52.0, -1.0);
+        repositorio.prepararEsquema();
+        double maxKm = DistanceMatrix.haversine(45.0, 9.0, 52.0, -1.0);
+        // El point.distance de Neo4j mide con un radio mayor: sin agrandar el radio, B quedaría fuera
+        double metrosNeo4j = base.distanciaMetros(45.0, 9.0, 52.0, -1.0);
+        assertTrue(metrosNeo4j > maxKm * 1000);
+        // Y la proporción es exactamente la que usa el repositorio para agrandar el radio
+        assertEquals(CircuitoRepositoryPersonalizadoImpl.RADIO_NEO4J_KM / DistanceMatrix.RADIO_TIERRA_KM,
+                metrosNeo4j / (maxKm * 1000), 1e-9);
+
+        List<BFSRutas.Candidato> vecinos = repositorio.vecinos(List.of("A"), maxKm, List.of("A"));
+
+        assertEquals(List.of(new BFSRutas.Candidato("A", "B", 52.0, -1.0)), vecinos);
+        double metros = base.consultas("UNWIND $frontera").get(0).parametros().get("metros").asDouble();
+        assertEquals(maxKm * 1000 * CircuitoRepositoryPersonalizadoImpl.RADIO_NEO4J_KM / DistanceMatrix.RADIO_TIERRA_KM,
+                metros, 1e-2);
+    }
+
+    @Test
+    void losVecinosSeBuscanPorRangoEnElIndiceDePuntos() {
+        base.crear("A", 45.0, 9.0);
+        repositorio.prepararEsquema();
+
+        String plan = base.plan(CircuitoRepositoryPersonalizadoImpl.VECINOS,
+                Map.of("frontera", List.of("A"), "metros", 1000.0, "excluidos", List.of()));
+
+        // El origen sale del índice por nombre y los candidatos de una búsqueda por rango en el de puntos
+        assertTrue(plan.contains("RANGE INDEX o:Circuito(nombre)"), plan);
+        assertTrue(plan.contains("NodeIndexSeekByRange"), plan);
+        assertTrue(plan.contains("POINT INDEX c:Circuito(ubicacion)"), plan);
+        assertFalse(plan.contains("AllNodesScan") || plan.contains("NodeByLabelScan"), plan);
+    }
+
+    @Test
+    void elBfsContraLaBaseDaLosMismosNivelesQueEnMemoria() {
+        Random rnd = new Random(25);
+        int n = 300;
+        String[] nombres = new String[n];
+        double[] lat = new double[n], lon = new double[n];
+        List<Map<String, Object>> nodos = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            nombres[i] = String.format("C%03d", i);
+            lat[i] = rnd.nextDouble() * 120 - 60;
+            lon[i] = rnd.nextDouble() * 360 - 180;
+            nodos.add(Neo4jEmbebido.nodo(nombres[i], lat[i], lon[i]));
+        }
+        // Cargados como el seed JSON: la ubicación la completa prepararEsquema
+        base.crear(nodos);
+        SnapshotCircuitos circuitos = SnapshotCircuitos.de(nombres, lat, lon, 1);
+
+        for (double maxKm : new double[]{900, 2000}) {
+            BFSRutas.Resultado enMemoria = BFSRutas.ejecutar(circuitos, "C007", maxKm);
+            BFSRutas.ResultadoRemoto remoto = BFSRutas.ejecutar(repositorio, "c007", maxKm);
+
+            assertEquals(ordenados(enMemoria.niveles()), ordenados(remoto.resultado().niveles()), "maxKm " + maxKm);
+            assertEquals(enMemoria.ordenVisita().size(), remoto.visitados().size());
+        }
+        // Los lotes de la frontera (de a 2) nunca mandan lo visitado entero
+        assertFalse(base.consultas("UNWIND $frontera").isEmpty());
+        for (Neo4jEmbebido.Consulta c : base.consultas("UNWIND $frontera")) {
+            assertTrue(c.parametros().get("frontera").size() <= 2);
+        }
+    }
+
+    private static Map<Integer, List<String>> ordenados(Map<Integer, List<String>> niveles) {
+        Map<Integer, List<String>> copia = new TreeMap<>();
+        niveles.forEach((nivel, nombres) -> copia.put(nivel, nombres.stream().sorted().toList()));
+        return copia;
+    }
+}
@@ -0,0 +1,171 @@
+package com.f1ruta.repository;
+
+import com.f1ruta.domain.Circuito;
+import org.neo4j.driver.AuthTokens;
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.GraphDatabase;
+import org.neo4j.driver.Query;
+import org.neo4j.driver.Record;
+import org.neo4j.driver.Session;
+import org.neo4j.driver.Value;
+import org.neo4j.driver.Values;
+import org.neo4j.harness.Neo4j;
+import org.neo4j.harness.Neo4jBuilders;
+import org.springframework.data.neo4j.core.Neo4jClient;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Neo4j embebido (neo4j-harness, sin servidor HTTP) para probar {@link CircuitoRepositoryPersonalizadoImpl}
+ * contra el motor real: las consultas se ejecutan de verdad. El driver que recibe el {@link Neo4jClient}
+ * solo envuelve al real para anotar cada consulta con sus parámetros y poder contarlas.
+ */
+final class Neo4jEmbebido implements AutoCloseable {
+
+    record Consulta(String texto, Value parametros) {}
+
+    private final Neo4j neo4j;
+    private final Driver driver;
+    final List<Consulta> consultas = new ArrayList<>();
+
+    Neo4jEmbebido() {
+        neo4j = Neo4jBuilders.newInProcessBuilder().withDisabledServer().build();
+        driver = GraphDatabase.driver(neo4j.boltURI(), AuthTokens.none());
+    }
+
+    /** Base vacía, sin los índices del repositorio y sin consultas anotadas */
+    void limpiar() {
+        escribir("MATCH (n) DETACH DELETE n", Map.of());
+        for (String indice : indices()) escribir("DROP INDEX " + indice, Map.of());
+        consultas.clear();
+    }
+
+    /** Nodos como los del seed JSON: con coordenadas (null = ausente) pero sin la ubicación del índice de puntos */
+    void crear(List<Map<String, Object>> nodos) {
+        escribir("UNWIND $nodos AS f CREATE (c:Circuito) SET c = f", Map.of("nodos", nodos));
+    }
+
+    void crear(String nombre, Double latitud, Double longitud) {
+        crear(List.of(nodo(nombre, latitud, longitud)));
+    }
+
+    static Map<String, Object> nodo(String nombre, Double latitud, Double longitud) {
+        Map<String, Object> nodo = new HashMap<>();
+        nodo.put("nombre", nombre);
+        nodo.put("latitud", latitud);
+        nodo.put("longitud", longitud);
+        return nodo;
+    }
+
+    /** Lo que devolvería findAll, por nombre: el mapeo de la entidad deja en 0 una coordenada ausente */
+    List<Circuito> circuitos() {
+        return leer("MATCH (c:Circuito) RETURN c.nombre, c.latitud, c.longitud ORDER BY c.nombre", Map.of()).stream()
+                .map(r -> new Circuito(r.get(0).asString(), r.get(1).asDouble(0.0), r.get(2).asDouble(0.0)))
+                .toList();
+    }
+
+    /** Si cada circuito tiene la ubicación (point) que usa el índice espacial, por nombre */
+    Map<String, Boolean> conUbicacion() {
+        Map<String, Boolean> ubicacion = new TreeMap<>();
+        for (Record r : leer("MATCH (c:Circuito) RETURN c.nombre, c.ubicacion IS NOT NULL", Map.of())) {
+            ubicacion.put(r.get(0).asString(), r.get(1).asBoolean());
+        }
+        return ubicacion;
+    }
+
+    /** Índices creados por el repositorio (sin los de búsqueda por etiqueta que trae toda base), con su tipo */
+    Map<String, String> tiposDeIndice() {
+        Map<String, String> tipos = new TreeMap<>();
+        for (Record r : leer("SHOW INDEXES YIELD name, type WHERE type <> 'LOOKUP' RETURN name, type", Map.of())) {
+            tipos.put(r.get(0).asString(), r.get(1).asString());
+        }
+        return tipos;
+    }
+
+    private Set<String> indices() {
+        return new TreeSet<>(tiposDeIndice().keySet());
+    }
+
+    /** point.distance de Neo4j, en metros, entre dos coordenadas WGS-84 */
+    double distanciaMetros(double lat1, double lon1, double lat2, double lon2) {
+        return leer("RETURN point.distance(point({latitude: $lat1, longitude: $lon1}), "
+                + "point({latitude: $lat2, longitude: $lon2}))",
+                Map.of("lat1", lat1, "lon1", lon1, "lat2", lat2, "lon2", lon2)).get(0).get(0).asDouble();
+    }
+
+    /** Plan de una consulta (EXPLAIN), como texto con los operadores y sus argumentos */
+    String plan(String consulta, Map<String, Object> parametros) {
+        try (Session s = driver.session()) {
+            return s.run("EXPLAIN " + consulta, parametros).consume().plan().toString();
+        }
+    }
+
+    List<Record> leer(String consulta, Map<String, Object> parametros) {
+        try (Session s = driver.session()) {
+            return s.run(consulta, parametros).list();
+        }
+    }
+
+    private void escribir(String consulta, Map<String, Object> parametros) {
+        try (Session s = driver.session()) {
+            s.run(consulta, parametros).consume();
+        }
+    }
+
+    /** Consultas del repositorio que empiezan con 'prefijo' */
+    List<Consulta> consultas(String prefijo) {
+        return consultas.stream().filter(c -> c.texto().startsWith(prefijo)).toList();
+    }
+
+    /** Cliente sobre el driver real que anota las consultas de las sesiones y transacciones que abre */
+    Neo4jClient cliente() {
+        return Neo4jClient.create(anotando(Driver.class, driver));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T anotando(Class<T> tipo, Object real) {
+        return (T) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{tipo}, (p, m, args) -> {
+            if (m.getName().equals("run") && args != null) anotar(args);
+            Object resultado;
+            try {
+                resultado = m.invoke(real, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            // session(Class, ...) devuelve el tipo de sesión pedido; las demás, el tipo declarado
+            if (m.getName().startsWith("session") && args != null && args[0] instanceof Class<?> c) {
+                return anotando(c, resultado);
+            }
+            if (m.getName().startsWith("session") || m.getName().equals("beginTransaction")) {
+                return anotando(m.getReturnType(), resultado);
+            }
+            return resultado;
+        });
+    }
+
+    private void anotar(Object[] args) {
+        if (args[0] instanceof Query q) {
+            consultas.add(new Consulta(q.text(), q.parameters()));
+            return;
+        }
+        Value parametros = args.length < 2 || args[1] == null ? Values.EmptyMap
+                : args[1] instanceof Value v ? v
+                : args[1] instanceof Map<?, ?> mapa ? Values.value(mapa)
+                : Values.value(((Record) args[1]).asMap());
+        consultas.add(new Consulta((String) args[0], parametros));
+    }
+
+    @Override
+    public void close() {
+        driver.close();
+        neo4j.close();
+    }
+}
@@ -0,0 +1,42 @@
+package com.f1ruta.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CacheResultadosTest {
+
+    @Test
+    void noGuardaLasRespuestasQueNoCumplenElPredicado() {
+        CacheResultados cache = new CacheResultados(new SimpleMeterRegistry(), 16);
+        AtomicInteger calculos = new AtomicInteger();
+        for (int i = 0; i < 3; i++) {
+            cache.obtener("branch-bound", 1, List.of("a", 100L), calculos::incrementAndGet, r -> false);
+        }
+        assertEquals(3, calculos.get());
+        assertEquals(0, cache.tamanio());
+
+        cache.obtener("branch-bound", 1, List.of("a", 100L), calculos::incrementAndGet, r -> true);
+        cache.obtener("branch-bound", 1, List.of("a", 100L), calculos::incrementAndGet, r -> true);
+        assertEquals(4, calculos.get());
+        assertEquals(1, cache.tamanio());
+    }
+
+    @Test
+    void noGuardaVersionesYaReemplazadas() {
+        CacheResultados cache = new CacheResultados(new SimpleMeterRegistry(), 16);
+        AtomicInteger calculos = new AtomicInteger();
+        cache.obtener("bfs", 2, List.of("a"), calculos::incrementAndGet);
+        assertEquals(1, cache.tamanio());
+
+        // Un request que tomó el snapshot anterior termina después de publicarse la versión 2
+        cache.obtener("bfs", 1, List.of("a"), calculos::incrementAndGet);
+        cache.obtener("bfs", 1, List.of("a"), calculos::incrementAndGet);
+        assertEquals(3, calculos.get());
+        assertEquals(1, cache.tamanio());
+    }
+}
@@ -0,0 +1,81 @@
+package com.f1ruta.service;
+
+import com.f1ruta.algoritmo.CotaInferior;
+import com.f1ruta.dto.ConsultaBatch;
+import com.f1ruta.dto.ResultadoBatch;
+import com.f1ruta.repository.CircuitoRepository;
+import com.f1ruta.repository.CircuitoRepositoryPersonalizado;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RutaServiceBatchTest {
+
+    private ForkJoinPool pool;
+    private ExecutorService poolBatch;
+    private RutaService servicio;
+
+    @BeforeEach
+    void preparar() {
+        CircuitoRepository repositorio = mock(CircuitoRepository.class);
+        when(repositorio.cargarProyeccion()).thenReturn(new CircuitoRepositoryPersonalizado.Proyeccion(
+                new String[]{"Monza", "Spa", "Silverstone", "Suzuka"},
+                new double[]{45.6156, 50.4372, 52.0786, 34.8431},
+                new double[]{9.2811, 5.9714, -1.0169, 136.5407}));
+        // El BFS en modo neo4j falla con un error que no es de parámetros (base caída)
+        when(repositorio.buscar(anyString())).thenThrow(new RuntimeException("Neo4j no responde"));
+
+        SimpleMeterRegistry registro = new SimpleMeterRegistry();
+        pool = new ForkJoinPool(2);
+        poolBatch = Executors.newFixedThreadPool(2);
+        SnapshotService snapshots = new SnapshotService(repositorio, pool, registro, 0, "", 6, 0, false, 256);
+        servicio = new RutaService(snapshots, repositorio, pool, new CacheResultados(registro, 256),
+                new MetricasAlgoritmos(registro), 0, 0, 18, 0, 0, 0, CotaInferior.Tipo.UNO_ARBOL, 1000,
+                poolBatch, 3);
+    }
+
+    @AfterEach
+    void cerrar() {
+        pool.shutdown();
+        poolBatch.shutdown();
+    }
+
+    private static ConsultaBatch consulta(String algoritmo, String origen, String destino, String modo, String inicio) {
+        return new ConsultaBatch(algoritmo, origen, destino, modo, inicio, null, null, null,
+                null, null, null, null, null, null, null);
+    }
+
+    @Test
+    void unErrorInesperadoFallaSoloSuConsulta() {
+        List<ConsultaBatch> consultas = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            consultas.add(consulta("dijkstra", "Monza", "Suzuka", null, null));
+            consultas.add(consulta("bfs", null, null, "neo4j", "Monza"));
+            consultas.add(consulta("desconocido", null, null, null, null));
+        }
+
+        List<ResultadoBatch> resultados = servicio.ejecutarBatch(consultas);
+
+        assertEquals(consultas.size(), resultados.size());
+        for (int i = 0; i < resultados.size(); i += 3) {
+            assertNull(resultados.get(i).error());
+            assertNotNull(resultados.get(i).resultado());
+            assertEquals("Neo4j no responde", resultados.get(i + 1).error());
+            assertEquals("Algoritmo desconocido: desconocido", resultados.get(i + 2).error());
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.f1ruta.service;
+
+import com.f1ruta.algoritmo.CotaInferior;
+import com.f1ruta.dto.RespuestaMergesort;
+import com.f1ruta.repository.CircuitoRepository;
+import com.f1ruta.repository.CircuitoRepositoryPersonalizado;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RutaServiceMergesortTest {
+
+    private ForkJoinPool pool;
+    private ExecutorService poolBatch;
+    private CacheResultados cache;
+    private RutaService servicio;
+
+    @BeforeEach
+    void preparar() {
+        CircuitoRepository repositorio = mock(CircuitoRepository.class);
+        when(repositorio.cargarProyeccion()).thenReturn(new CircuitoRepositoryPersonalizado.Proyeccion(
+                new String[]{"Monza", "Spa", "Silverstone", "Suzuka"},
+                new double[]{45.6156, 50.4372, 52.0786, 34.8431},
+                new double[]{9.2811, 5.9714, -1.0169, 136.5407}));
+        SimpleMeterRegistry registro = new SimpleMeterRegistry();
+        pool = new ForkJoinPool(2);
+        poolBatch = Executors.newFixedThreadPool(1);
+        cache = new CacheResultados(registro, 256);
+        SnapshotService snapshots = new SnapshotService(repositorio, pool, registro, 0, "", 6, 0, false, 256);
+        servicio = new RutaService(snapshots, repositorio, pool, cache, new MetricasAlgoritmos(registro),
+                0, 0, 18, 0, 0, 0, CotaInferior.Tipo.UNO_ARBOL, 1000, poolBatch, 2);
+    }
+
+    @AfterEach
+    void cerrar() {
+        pool.shutdown();
+        poolBatch.shutdown();
+    }
+
+    @Test
+    void laMismaConsultaEscritaDistintoCompartePosicionEnLaCache() {
+        RespuestaMergesort primera = servicio.ejecutarMergesort("LATITUD", "Desc", null, null, null, null, null);
+        assertSame(primera, servicio.ejecutarMergesort("latitud", "desc", null, null, null, null, null));
+        assertSame(primera, servicio.ejecutarMergesort(" latitud ", "DESC ", null, null, null, null, null));
+        assertEquals("latitud", primera.criterio());
+        assertEquals("desc", primera.orden());
+
+        // Lo que no se reconoce cae en los valores por defecto: la misma entrada que nombre/asc
+        RespuestaMergesort porDefecto = servicio.ejecutarMergesort(null, null, null, null, null, null, null);
+        assertSame(porDefecto, servicio.ejecutarMergesort("altitud", "", null, null, null, null, null));
+        assertSame(porDefecto, servicio.ejecutarMergesort("Nombre", "asc", null, null, null, null, null));
+        assertEquals("nombre", porDefecto.criterio());
+        assertEquals("asc", porDefecto.orden());
+
+        assertEquals(2, cache.tamanio());
+    }
+}
@@ -0,0 +1,60 @@
+package com.f1ruta.service;
+
+import com.f1ruta.algoritmo.SnapshotCircuitos;
+import com.f1ruta.algoritmo.TablaRutas;
+import com.f1ruta.repository.CircuitoRepository;
+import com.f1ruta.repository.CircuitoRepositoryPersonalizado;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SnapshotServiceTest {
+
+    private ForkJoinPool pool;
+    private SimpleMeterRegistry registro;
+    private SnapshotService servicio;
+
+    @BeforeEach
+    void preparar() {
+        CircuitoRepository repositorio = mock(CircuitoRepository.class);
+        when(repositorio.cargarProyeccion()).thenReturn(new CircuitoRepositoryPersonalizado.Proyeccion(
+                new String[]{"Monza", "Spa", "Silverstone", "Suzuka"},
+                new double[]{45.6156, 50.4372, 52.0786, 34.8431},
+                new double[]{9.2811, 5.9714, -1.0169, 136.5407}));
+        registro = new SimpleMeterRegistry();
+        pool = new ForkJoinPool(2);
+        servicio = new SnapshotService(repositorio, pool, registro, 0, "", 3, 0, true, 256);
+    }
+
+    @AfterEach
+    void cerrar() {
+        pool.shutdown();
+    }
+
+    private double bytesTabla() {
+        return registro.get("f1ruta.rutas.tabla.bytes").gauge().value();
+    }
+
+    @Test
+    void elGaugeDeLaTablaNoVuelveACeroAlParchear() {
+        servicio.actual();
+        assertEquals(TablaRutas.bytesNecesarios(4), bytesTabla());
+
+        SnapshotCircuitos parcheado = servicio.guardarCircuito("Interlagos", -23.7036, -46.6997);
+        // Hasta que se arma la tabla del parcheado mide la anterior, que sigue en uso
+        assertTrue(bytesTabla() > 0);
+
+        assertTrue(pool.awaitQuiescence(10, TimeUnit.SECONDS));
+        assertEquals(TablaRutas.bytesNecesarios(5), bytesTabla());
+        assertTrue(parcheado == servicio.actual());
+    }
+}
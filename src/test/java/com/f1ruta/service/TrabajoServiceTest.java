@@ -0,0 +1,53 @@
+package com.f1ruta.service;
+
+import com.f1ruta.algoritmo.BranchBoundTSP;
+import com.f1ruta.dto.EstadoTrabajo;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TrabajoServiceTest {
+
+    @Test
+    void elProgresoSeEncolaFueraDeLaBusquedaYSeCoalesce() {
+        List<Runnable> trabajos = new ArrayList<>();
+        List<Runnable> eventos = new ArrayList<>();
+        ThreadPoolExecutor poolTrabajos = mock(ThreadPoolExecutor.class);
+        doAnswer(i -> trabajos.add(i.getArgument(0))).when(poolTrabajos).execute(any());
+        ExecutorService poolEventos = mock(ExecutorService.class);
+        doAnswer(i -> eventos.add(i.getArgument(0))).when(poolEventos).execute(any());
+
+        RutaService rutas = mock(RutaService.class);
+        when(rutas.ejecutarBranchBound(eq("Monza"), any(), anyBoolean(), any())).thenAnswer(i -> {
+            BranchBoundTSP.Observador observador = i.getArgument(3);
+            for (int k = 0; k < 1000; k++) {
+                observador.progreso(new BranchBoundTSP.Progreso(10_000 - k, k, 5_000, k));
+            }
+            // Ningún envío corrió en este hilo: solo quedó un envío de progreso encolado
+            assertEquals(1, eventos.size());
+            return null;
+        });
+
+        TrabajoService servicio = new TrabajoService(rutas, poolTrabajos, poolEventos, 600_000);
+        EstadoTrabajo enviado = servicio.enviarBranchBound("Monza", 1000L, false);
+        assertNotNull(servicio.suscribir(enviado.id()));
+        trabajos.get(0).run();
+
+        // El "fin" va detrás del progreso pendiente, en el mismo hilo de eventos
+        assertEquals(2, eventos.size());
+        assertEquals("TERMINADO", servicio.estado(enviado.id()).estado());
+        for (Runnable envio : eventos) envio.run();
+    }
+}